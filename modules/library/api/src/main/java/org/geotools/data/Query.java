@@ -120,7 +120,7 @@ public class Query {
      * 
      */
     public static Hints.Key INCLUDE_MANDATORY_PROPS = new Hints.Key(Boolean.class);
-    
+
     /**
      * Constant (actually null) used to represent no namespace restrictions on the returned result, should be considered ANY_URI
      */
@@ -44,6 +44,7 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
 import java.util.logging.Level;
 
 import javax.sql.DataSource;
@@ -75,6 +76,7 @@ import org.geotools.filter.FilterCapabilities;
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.jdbc.JoinInfo.JoinPart;
 import org.geotools.referencing.CRS;
+import org.geotools.renderer.ScreenMap;
 import org.geotools.util.Converters;
 import org.opengis.feature.FeatureVisitor;
 import org.opengis.feature.simple.SimpleFeature;
@@ -98,6 +100,7 @@ import org.opengis.referencing.operation.TransformException;
 
 import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.MultiPoint;
 import com.vividsolutions.jts.geom.Point;
 
 
@@ -251,6 +254,27 @@ public final class JDBCDataStore extends ContentDataStore
      */
     protected int fetchSize;
     
+    /**
+     * The number of features inserted in a single round trip to the database, defaulting to 1.
+     */
+    protected int batchInsertSize = 1;
+    
+    /**
+     * The number of connections used in parallel to read a single large query, defaulting to 1.
+     */
+    protected int parallelReads = 1;
+    
+    /**
+     * The permits to run the partitions of the parallel reads, one for each connection they
+     * can take from the pool, built lazily
+     */
+    Semaphore parallelReadPermits;
+    
+    /**
+     * The cache of the filters encoded for prepared statements, null if disabled
+     */
+    protected PreparedFilterCache preparedFilterCache;
+    
     /**
      * flag controlling whether primary key columns of a table are exposed via the 
      * feature type.
@@ -391,6 +415,76 @@ public final class JDBCDataStore extends ContentDataStore
         this.fetchSize = fetchSize;
     }
 
+    /**
+     * The number of features sent to the database in a single round trip when inserting. The
+     * feature writers buffer this many new features before inserting them, so the feature ids
+     * of the new features are known only once the buffer is flushed, or the writer closed.
+     */
+    public int getBatchInsertSize() {
+        return batchInsertSize;
+    }
+
+    /**
+     * Changes the batch insert size, a value of 1 or less disables batching
+     * @param batchInsertSize
+     */
+    public void setBatchInsertSize(int batchInsertSize) {
+        this.batchInsertSize = batchInsertSize;
+    }
+
+    /**
+     * The number of key ranges a read gets split into, each one read on its own connection in
+     * parallel. Only queries against tables with a single integral primary key, without sorting
+     * nor paging, running outside of a transaction, are split.
+     */
+    public int getParallelReads() {
+        return parallelReads;
+    }
+
+    /**
+     * Changes the number of parallel reads, a value of 1 or less disables them. The connection
+     * pool should be large enough to provide this many connections for each concurrent query.
+     * @param parallelReads
+     */
+    public void setParallelReads(int parallelReads) {
+        this.parallelReads = parallelReads;
+        resetParallelReadPermits();
+    }
+
+    /**
+     * Returns the permits the parallel reads must acquire to run each partition, bounding the
+     * number of connections they take from the pool, see {@link ParallelRead}
+     */
+    synchronized Semaphore getParallelReadPermits() {
+        if (parallelReadPermits == null) {
+            parallelReadPermits = new Semaphore(ParallelRead.getMaxRunningPartitions(this));
+        }
+        return parallelReadPermits;
+    }
+
+    synchronized void resetParallelReadPermits() {
+        // the reads in progress keep releasing to the old permits
+        parallelReadPermits = null;
+    }
+
+    /**
+     * The cache of the filters encoded in SQL for prepared statements, providing the hit and miss
+     * counts, or null if the cache is disabled
+     */
+    public PreparedFilterCache getPreparedFilterCache() {
+        return preparedFilterCache;
+    }
+
+    /**
+     * Sets the number of filter encodings kept in the cache, a value of 0 or less disables the
+     * cache. Only used with a {@link PreparedStatementSQLDialect}, where the filters sharing the
+     * same structure are encoded in the same SQL, and only their parameter values change.
+     * @param size
+     */
+    public void setPreparedFilterCacheSize(int size) {
+        this.preparedFilterCache = size > 0 ? new PreparedFilterCache(size) : null;
+    }
+
     /**
      * Determines if the datastore creates feature types which include those columns / attributes
      * which compose the primary key.
@@ -449,6 +543,7 @@ public final class JDBCDataStore extends ContentDataStore
      */
     public void setDataSource(DataSource dataSource) {
         this.dataSource = dataSource;
+        resetParallelReadPermits();
     }
 
     /**
@@ -1414,6 +1509,54 @@ public final class JDBCDataStore extends ContentDataStore
         }
     }
 
+    /**
+     * Returns the minimum and maximum value of a primary key column among the features matching
+     * the query filter, which must be fully encodable in SQL. Both values are null if no feature
+     * matches.
+     */
+    Object[] getPrimaryKeyRange(SimpleFeatureType featureType, PrimaryKeyColumn column,
+            Query query, Connection cx) throws IOException {
+        StringBuffer sql = new StringBuffer("SELECT MIN(");
+        dialect.encodeColumnName(column.getName(), sql);
+        sql.append("), MAX(");
+        dialect.encodeColumnName(column.getName(), sql);
+        sql.append(") FROM ");
+        
+        Statement st = null;
+        ResultSet rs = null;
+        try {
+            encodeTableName(featureType.getTypeName(), sql, query.getHints());
+            FilterToSQL toSQL = null;
+            Filter filter = query.getFilter();
+            if (filter != null && !Filter.INCLUDE.equals(filter)) {
+                sql.append(" WHERE ");
+                toSQL = filter(featureType, filter, sql);
+            }
+            LOGGER.fine(sql.toString());
+            
+            if (dialect instanceof PreparedStatementSQLDialect) {
+                st = cx.prepareStatement(sql.toString());
+                if (toSQL != null) {
+                    setPreparedFilterValues((PreparedStatement) st, (PreparedFilterToSQL) toSQL,
+                            0, cx);
+                }
+                rs = ((PreparedStatement) st).executeQuery();
+            } else {
+                st = cx.createStatement();
+                rs = st.executeQuery(sql.toString());
+            }
+            rs.next();
+            Object min = Converters.convert(rs.getObject(1), column.getType());
+            Object max = Converters.convert(rs.getObject(2), column.getType());
+            return new Object[] { min, max };
+        } catch (SQLException e) {
+            throw (IOException) new IOException().initCause(e);
+        } finally {
+            closeSafe(rs);
+            closeSafe(st);
+        }
+    }
+
     /**
      * Helper method for getting the expression from a visitor
      * TODO: Remove this method when there is an interface for aggregate visitors.
@@ -1497,6 +1640,12 @@ public final class JDBCDataStore extends ContentDataStore
         throws IOException {
         PrimaryKey key = getPrimaryKey(featureType);
 
+        // send the features in batches, the ones whose keys cannot be computed in advance
+        // are inserted one at a time
+        if (batchInsertSize > 1 && features.size() > 1) {
+            features = insertInBatches(features, featureType, key, cx);
+        }
+
         // we do this in a synchronized block because we need to do two queries,
         // first to figure out what the id will be, then the insert statement
         synchronized (this) {
@@ -1560,6 +1709,142 @@ public final class JDBCDataStore extends ContentDataStore
         }
     }
 
+    /**
+     * Inserts the features in batches of {@link #getBatchInsertSize()}, using the dialect bulk
+     * loading support when available, JDBC statement batches otherwise. A batch can be sent in
+     * one go only if all of its key values are known before the insert, the features of the
+     * batches that do not satisfy this condition are returned, to be inserted one at a time.
+     */
+    Collection insertInBatches(Collection features, SimpleFeatureType featureType,
+            PrimaryKey key, Connection cx) throws IOException {
+        List<SimpleFeature> leftovers = new ArrayList<SimpleFeature>();
+        List<SimpleFeature> batch = new ArrayList<SimpleFeature>(batchInsertSize);
+        try {
+            for (Iterator f = features.iterator(); f.hasNext();) {
+                batch.add((SimpleFeature) f.next());
+                if (batch.size() >= batchInsertSize || !f.hasNext()) {
+                    // same as the single inserts, the key values and the insert must not be
+                    // interleaved with the ones of other threads
+                    synchronized (this) {
+                        List<List<Object>> keyValues = getBatchKeyValues(batch, key, cx);
+                        if (keyValues == null) {
+                            leftovers.addAll(batch);
+                        } else {
+                            insertBatch(batch, keyValues, featureType, key, cx);
+                        }
+                    }
+                    batch.clear();
+                }
+            }
+        } catch (SQLException e) {
+            String msg = "Error inserting features";
+            throw (IOException) new IOException(msg).initCause(e);
+        }
+
+        return leftovers;
+    }
+
+    /**
+     * Computes the key values of a batch of features before inserting them, returns null if the
+     * values of an auto generated column cannot be determined in advance
+     */
+    List<List<Object>> getBatchKeyValues(List<SimpleFeature> batch, PrimaryKey key,
+            Connection cx) throws SQLException, IOException {
+        List<List<Object>> keyValues = new ArrayList<List<Object>>(batch.size());
+        int generated = 0;
+        for (SimpleFeature feature : batch) {
+            if (Boolean.TRUE.equals(feature.getUserData().get(Hints.USE_PROVIDED_FID))) {
+                keyValues.add(decodeFID(key, feature.getID(), true));
+            } else {
+                keyValues.add(null);
+                generated++;
+            }
+        }
+        if (generated == 0) {
+            return keyValues;
+        }
+
+        // grab the new values column by column, with a single query when possible
+        List<PrimaryKeyColumn> columns = key.getColumns();
+        List<List<Object>> columnValues = new ArrayList<List<Object>>(columns.size());
+        for (PrimaryKeyColumn col : columns) {
+            List<Object> values = getNextValues(col, key, generated, cx);
+            if (values == null) {
+                return null;
+            }
+            columnValues.add(values);
+        }
+        int next = 0;
+        for (int i = 0; i < keyValues.size(); i++) {
+            if (keyValues.get(i) == null) {
+                List<Object> values = new ArrayList<Object>(columns.size());
+                for (List<Object> column : columnValues) {
+                    values.add(column.get(next));
+                }
+                keyValues.set(i, values);
+                next++;
+            }
+        }
+        return keyValues;
+    }
+
+    /**
+     * Sends a batch of features, whose key values are all known, to the database
+     */
+    void insertBatch(List<SimpleFeature> batch, List<List<Object>> keyValues,
+            SimpleFeatureType featureType, PrimaryKey key, Connection cx) throws SQLException,
+            IOException {
+        if (dialect.isBulkInsertSupported()) {
+            dialect.bulkInsert(featureType, batch, key, keyValues, cx);
+        } else if (dialect instanceof PreparedStatementSQLDialect) {
+            PreparedStatementSQLDialect psDialect = (PreparedStatementSQLDialect) dialect;
+            PreparedStatement ps = null;
+            String psSQL = null;
+            try {
+                for (int i = 0; i < batch.size(); i++) {
+                    SimpleFeature feature = batch.get(i);
+                    // the geometry encoding can change the sql, start a new batch when it does
+                    String sql = insertSQLPS(featureType, feature, true);
+                    if (!sql.equals(psSQL)) {
+                        if (ps != null) {
+                            ps.executeBatch();
+                            closeSafe(ps);
+                        }
+                        LOGGER.log(Level.FINE, "Inserting new features with ps: {0}", sql);
+                        ps = cx.prepareStatement(sql);
+                        psSQL = sql;
+                        psDialect.onInsert(ps, cx, featureType);
+                    }
+                    setInsertValues(ps, featureType, feature, keyValues.get(i), true, cx);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            } finally {
+                closeSafe(ps);
+            }
+        } else {
+            BasicSQLDialect basicDialect = (BasicSQLDialect) dialect;
+            Statement st = cx.createStatement();
+            try {
+                basicDialect.onInsert(st, cx, featureType);
+                for (int i = 0; i < batch.size(); i++) {
+                    String sql = insertSQL(featureType, batch.get(i), keyValues.get(i), true, cx);
+                    LOGGER.log(Level.FINE, "Inserting new feature: {0}", sql);
+                    st.addBatch(sql);
+                }
+                st.executeBatch();
+            } finally {
+                closeSafe(st);
+            }
+        }
+
+        //report the feature ids as user data since we cant set the fid
+        for (int i = 0; i < batch.size(); i++) {
+            String fid = featureType.getTypeName() + "." + encodeFID(keyValues.get(i));
+            batch.get(i).getUserData().put("fid", fid);
+        }
+    }
+
     /**
      * Updates an existing feature(s) in the database for a particular feature type / table.
      */
@@ -1984,6 +2269,57 @@ public final class JDBCDataStore extends ContentDataStore
         return next;
     }
 
+    /**
+     * Gets the next <tt>count</tt> values for the column of a primary key, or null if the column
+     * is auto generated and the dialect cannot tell its values before the insert.
+     */
+    List<Object> getNextValues(PrimaryKeyColumn col, PrimaryKey pkey, int count, Connection cx)
+            throws SQLException, IOException {
+        if (col instanceof AutoGeneratedPrimaryKeyColumn) {
+            return dialect.getNextAutoGeneratedValues(databaseSchema, pkey.getTableName(),
+                    col.getName(), count, cx);
+        } else if (col instanceof SequencedPrimaryKeyColumn) {
+            String sequenceName = ((SequencedPrimaryKeyColumn) col).getSequenceName();
+            return dialect.getNextSequenceValues(databaseSchema, sequenceName, count, cx);
+        }
+
+        List<Object> values = new ArrayList<Object>(count);
+        Object next = getNextValue(col, pkey, cx);
+        values.add(next);
+        for (int i = 1; i < count; i++) {
+            if (next instanceof Number) {
+                // the max has been computed once, just keep on incrementing it
+                next = increment((Number) next, col.getType());
+            } else {
+                next = getNextValue(col, pkey, cx);
+            }
+            values.add(next);
+        }
+        return values;
+    }
+
+    /**
+     * Adds one to a numeric key value, returning it with the column type
+     */
+    Object increment(Number value, Class binding) {
+        if (value instanceof BigDecimal) {
+            return ((BigDecimal) value).add(BigDecimal.ONE);
+        } else if (value instanceof BigInteger) {
+            return ((BigInteger) value).add(BigInteger.ONE);
+        }
+        long next = value.longValue() + 1;
+        if (binding == Short.class) {
+            return Short.valueOf((short) next);
+        } else if (binding == Integer.class) {
+            return Integer.valueOf((int) next);
+        } else if (binding == BigInteger.class) {
+            return BigInteger.valueOf(next);
+        } else if (binding == BigDecimal.class) {
+            return BigDecimal.valueOf(next);
+        }
+        return Long.valueOf(next);
+    }
+
     /**
      * Gets the last value of a generated primary key.
      */
@@ -3011,6 +3347,7 @@ public final class JDBCDataStore extends ContentDataStore
     protected String selectSQL(SimpleFeatureType featureType, Query query) throws IOException, SQLException {
         StringBuffer sql = new StringBuffer();
         sql.append("SELECT ");
+        encodeScreenMapDistinct(featureType, query, sql);
 
         //column names
         selectColumns(featureType, null, query, sql);
@@ -3152,7 +3489,12 @@ public final class JDBCDataStore extends ContentDataStore
             FilterToSQL toSQL = dialect instanceof PreparedStatementSQLDialect ? 
                 createPreparedFilterToSQL(fullSchema) : createFilterToSQL(fullSchema);
             toSQL.setInline(true);
-            sql.append(" ").append(toSQL.encodeToString(filter));
+            PreparedFilterCache cache = preparedFilterCache;
+            if (cache != null && toSQL instanceof PreparedFilterToSQL) {
+                sql.append(" ").append(cache.encode(fullSchema, filter, (PreparedFilterToSQL) toSQL));
+            } else {
+                sql.append(" ").append(toSQL.encodeToString(filter));
+            }
             return toSQL;
         } catch (FilterToSQLException e) {
             throw new RuntimeException(e);
@@ -3222,6 +3564,7 @@ public final class JDBCDataStore extends ContentDataStore
         
         StringBuffer sql = new StringBuffer();
         sql.append("SELECT ");
+        List<Object> screenMapValues = encodeScreenMapDistinctPS(featureType, query, sql);
 
         //column names
         selectColumns(featureType, null, query, sql);
@@ -3251,8 +3594,14 @@ public final class JDBCDataStore extends ContentDataStore
         PreparedStatement ps = cx.prepareStatement(sql.toString(), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
         ps.setFetchSize(fetchSize);
         
+        // the screen map values come first, they are part of the select clause
+        PreparedStatementSQLDialect psDialect = (PreparedStatementSQLDialect) dialect;
+        for (int i = 0; i < screenMapValues.size(); i++) {
+            psDialect.setValue(screenMapValues.get(i), Double.class, ps, i + 1, cx);
+        }
+        
         if ( toSQL != null ) {
-            setPreparedFilterValues( ps, toSQL, 0, cx );
+            setPreparedFilterValues( ps, toSQL, screenMapValues.size(), cx );
         } 
         
         return ps;
@@ -3676,6 +4025,17 @@ public final class JDBCDataStore extends ContentDataStore
      */
     protected String insertSQL(SimpleFeatureType featureType, SimpleFeature feature, 
             List keyValues, Connection cx) throws SQLException {
+        boolean useExisting = Boolean.TRUE.equals(feature.getUserData().get(Hints.USE_PROVIDED_FID));
+        return insertSQL(featureType, feature, keyValues, useExisting, cx);
+    }
+    
+    /**
+     * Generates a 'INSERT INFO' sql statement.
+     * 
+     * @param useExisting if true the auto generated key columns are included in the statement
+     */
+    String insertSQL(SimpleFeatureType featureType, SimpleFeature feature, List keyValues,
+            boolean useExisting, Connection cx) throws SQLException {
         BasicSQLDialect dialect = (BasicSQLDialect) getSQLDialect();
         
         // grab the primary key and collect the pk column names 
@@ -3705,7 +4065,6 @@ public final class JDBCDataStore extends ContentDataStore
         }
 
         //primary key values
-        boolean useExisting = Boolean.TRUE.equals(feature.getUserData().get(Hints.USE_PROVIDED_FID));
         for (PrimaryKeyColumn col : key.getColumns() ) {
             //only include if its non auto generating
             if ( !(col instanceof AutoGeneratedPrimaryKeyColumn )  || useExisting) {
@@ -3795,16 +4154,29 @@ public final class JDBCDataStore extends ContentDataStore
      * Generates a 'INSERT INFO' prepared statement.
      */
     protected PreparedStatement insertSQLPS(SimpleFeatureType featureType, SimpleFeature feature, List keyValues, Connection cx) 
+        throws IOException, SQLException {
+        boolean useExisting = Boolean.TRUE.equals(feature.getUserData().get(Hints.USE_PROVIDED_FID));
+        String sql = insertSQLPS(featureType, feature, useExisting);
+        LOGGER.log(Level.FINE, "Inserting new feature with ps: {0}", sql);
+        
+        //create the prepared statement
+        PreparedStatement ps = cx.prepareStatement(sql);
+        setInsertValues(ps, featureType, feature, keyValues, useExisting, cx);
+        
+        return ps;
+    }
+    
+    /**
+     * Generates the sql of a 'INSERT INTO' prepared statement
+     * 
+     * @param useExisting if true the auto generated key columns are included in the statement
+     */
+    String insertSQLPS(SimpleFeatureType featureType, SimpleFeature feature, boolean useExisting) 
         throws IOException, SQLException {
         PreparedStatementSQLDialect dialect = (PreparedStatementSQLDialect) getSQLDialect();
         
         // grab the primary key and collect the pk column names 
-        PrimaryKey key = null; 
-        try {
-            key = getPrimaryKey(featureType);
-        } catch (IOException e) {
-            throw new RuntimeException( e );
-        }
+        PrimaryKey key = getPrimaryKey(featureType);
         Set<String> pkColumnNames = getColumnNames(key);
         
         StringBuffer sql = new StringBuffer();
@@ -3826,7 +4198,6 @@ public final class JDBCDataStore extends ContentDataStore
         }
 
         // primary key values
-        boolean useExisting = Boolean.TRUE.equals(feature.getUserData().get(Hints.USE_PROVIDED_FID));
         for (PrimaryKeyColumn col : key.getColumns() ) {
             //only include if its non auto generating
             if ( !(col instanceof AutoGeneratedPrimaryKeyColumn ) || useExisting ) {
@@ -3864,10 +4235,20 @@ public final class JDBCDataStore extends ContentDataStore
         
         sql.setLength(sql.length()-1);
         sql.append(")");
-        LOGGER.log(Level.FINE, "Inserting new feature with ps: {0}", sql);
         
-        //create the prepared statement
-        PreparedStatement ps = cx.prepareStatement(sql.toString());
+        return sql.toString();
+    }
+    
+    /**
+     * Sets the attribute and key values of a feature in a statement built by
+     * {@link #insertSQLPS(SimpleFeatureType, SimpleFeature, boolean)}
+     */
+    void setInsertValues(PreparedStatement ps, SimpleFeatureType featureType,
+            SimpleFeature feature, List keyValues, boolean useExisting, Connection cx)
+            throws IOException, SQLException {
+        PreparedStatementSQLDialect dialect = (PreparedStatementSQLDialect) getSQLDialect();
+        PrimaryKey key = getPrimaryKey(featureType);
+        Set<String> pkColumnNames = getColumnNames(key);
         
         //set the attribute values
         int i = 1;
@@ -3918,8 +4299,6 @@ public final class JDBCDataStore extends ContentDataStore
                 }
             }
         }
-        
-        return ps;
     }
     
     /**
@@ -4548,6 +4927,95 @@ public final class JDBCDataStore extends ContentDataStore
         encodeGeometryColumn(gatt, null, sql, hints);
     }
 
+    /**
+     * Returns the screen map whose decimation can be pushed down to the database, that is, 
+     * the {@link Hints#SCREENMAP} of the query, provided the dialect supports it and the query 
+     * allows for it, or null otherwise
+     * 
+     * @param featureType
+     * @param query
+     */
+    ScreenMap getScreenMapDistinct(SimpleFeatureType featureType, Query query) 
+            throws IOException {
+        Hints hints = query.getHints();
+        if (hints == null || !(hints.get(Hints.SCREENMAP) instanceof ScreenMap)) {
+            return null;
+        }
+        ScreenMap screenMap = (ScreenMap) hints.get(Hints.SCREENMAP);
+        if (screenMap.getSpanX() <= 0 || screenMap.getSpanY() <= 0) {
+            return null;
+        }
+        // the database might force us to sort on the distinct expressions
+        if (query.getSortBy() != null && query.getSortBy().length > 0) {
+            return null;
+        }
+        // points are not decimated by the screen map
+        GeometryDescriptor gatt = featureType.getGeometryDescriptor();
+        if (gatt == null || Point.class.isAssignableFrom(gatt.getType().getBinding())
+                || MultiPoint.class.isAssignableFrom(gatt.getType().getBinding())) {
+            return null;
+        }
+        // we need the primary key to return all the large features
+        if (getPrimaryKey(featureType) instanceof NullPrimaryKey) {
+            return null;
+        }
+        if (!isScreenMapSupported()) {
+            return null;
+        }
+
+        return screenMap;
+    }
+
+    /**
+     * Returns true if the dialect reports support for the {@link Hints#SCREENMAP} hint
+     */
+    boolean isScreenMapSupported() {
+        Set<Hints.Key> supported = new HashSet<Hints.Key>();
+        dialect.addSupportedHints(supported);
+        return supported.contains(Hints.SCREENMAP);
+    }
+
+    /**
+     * Pushes down the {@link Hints#SCREENMAP} decimation to the database, if the dialect 
+     * supports it and the query allows for it. See 
+     * {@link SQLDialect#encodeScreenMapDistinct(GeometryDescriptor, String, PrimaryKey, double, double, StringBuffer)}
+     * 
+     * @param featureType
+     * @param query
+     * @param sql
+     */
+    void encodeScreenMapDistinct(SimpleFeatureType featureType, Query query, StringBuffer sql) 
+            throws IOException {
+        ScreenMap screenMap = getScreenMapDistinct(featureType, query);
+        if (screenMap != null) {
+            dialect.encodeScreenMapDistinct(featureType.getGeometryDescriptor(), null,
+                    getPrimaryKey(featureType), screenMap.getSpanX(), screenMap.getSpanY(), sql);
+            sql.append(" ");
+        }
+    }
+
+    /**
+     * Prepared statement version of {@link #encodeScreenMapDistinct(SimpleFeatureType, Query, StringBuffer)}, 
+     * see {@link PreparedStatementSQLDialect#encodeScreenMapDistinct(GeometryDescriptor, String, PrimaryKey, double, double, StringBuffer, List)}
+     * 
+     * @param featureType
+     * @param query
+     * @param sql
+     * @return the values to be set in the prepared statement, before the filter ones
+     */
+    List<Object> encodeScreenMapDistinctPS(SimpleFeatureType featureType, Query query,
+            StringBuffer sql) throws IOException {
+        List<Object> values = new ArrayList<Object>();
+        ScreenMap screenMap = getScreenMapDistinct(featureType, query);
+        if (screenMap != null) {
+            ((PreparedStatementSQLDialect) dialect).encodeScreenMapDistinct(
+                    featureType.getGeometryDescriptor(), null, getPrimaryKey(featureType),
+                    screenMap.getSpanX(), screenMap.getSpanY(), sql, values);
+            sql.append(" ");
+        }
+        return values;
+    }
+
     protected void encodeGeometryColumn(GeometryDescriptor gatt, String prefix, StringBuffer sql,Hints hints) {
     	
     	int srid = getDescriptorSRID(gatt);
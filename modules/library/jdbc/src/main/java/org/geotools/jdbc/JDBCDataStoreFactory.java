@@ -97,6 +97,20 @@ public abstract class JDBCDataStoreFactory extends AbstractDataStoreFactory {
     public static final Param FETCHSIZE = new Param("fetch size", Integer.class,
             "number of records read with each iteraction with the dbms", false, 1000);
     
+    /** Number of features inserted in a single round trip to the database */
+    public static final Param BATCH_INSERT_SIZE = new Param("Batch insert size", Integer.class,
+            "Number of records inserted in the same batch (default, 1). For optimal performance, set to 100.", false, 1);
+    
+    /** Number of connections used in parallel to read a single large query */
+    public static final Param PARALLEL_READS = new Param("Parallel reads", Integer.class,
+            "Number of connections used in parallel to read large tables with a numeric primary key (default, 1). "
+            + "The connection pool must be large enough to provide them", false, 1);
+    
+    /** Number of filter encodings cached for reuse by prepared statements */
+    public static final Param PREPARED_FILTER_CACHE_SIZE = new Param("Prepared filter cache size", Integer.class,
+            "Number of SQL encodings of filters kept for reuse by queries whose filters have the same structure (default, 0, disabled). "
+            + "Used only with prepared statements", false, 0);
+    
     /** Maximum amount of time the pool will wait when trying to grab a new connection **/
     public static final Param MAXWAIT = new Param("Connection timeout", Integer.class,
             "number of seconds the connection pool will wait before timing out attempting to get a new connection (default, 20 seconds)", false, 20);
@@ -181,6 +195,21 @@ public abstract class JDBCDataStoreFactory extends AbstractDataStoreFactory {
         if(fetchSize != null && fetchSize > 0)
             dataStore.setFetchSize(fetchSize);
 
+        // batch insert size
+        Integer batchInsertSize = (Integer) BATCH_INSERT_SIZE.lookUp(params);
+        if(batchInsertSize != null && batchInsertSize > 0)
+            dataStore.setBatchInsertSize(batchInsertSize);
+
+        // parallel reads
+        Integer parallelReads = (Integer) PARALLEL_READS.lookUp(params);
+        if(parallelReads != null && parallelReads > 0)
+            dataStore.setParallelReads(parallelReads);
+
+        // prepared filter cache
+        Integer filterCacheSize = (Integer) PREPARED_FILTER_CACHE_SIZE.lookUp(params);
+        if(filterCacheSize != null && filterCacheSize > 0)
+            dataStore.setPreparedFilterCacheSize(filterCacheSize);
+
         // namespace
         String namespace = (String) NAMESPACE.lookUp(params);
 
@@ -308,6 +337,9 @@ public abstract class JDBCDataStoreFactory extends AbstractDataStoreFactory {
         parameters.put(MAXCONN.key, MAXCONN);
         parameters.put(MINCONN.key, MINCONN);
         parameters.put(FETCHSIZE.key, FETCHSIZE);
+        parameters.put(BATCH_INSERT_SIZE.key, BATCH_INSERT_SIZE);
+        parameters.put(PARALLEL_READS.key, PARALLEL_READS);
+        parameters.put(PREPARED_FILTER_CACHE_SIZE.key, PREPARED_FILTER_CACHE_SIZE);
         parameters.put(MAXWAIT.key, MAXWAIT);
         if(getValidationQuery() != null)
             parameters.put(VALIDATECONN.key, VALIDATECONN);
@@ -27,6 +27,7 @@ import java.sql.Statement;
 import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.logging.Level;
@@ -47,6 +48,7 @@ import org.geotools.factory.Hints.Key;
 import org.geotools.feature.AttributeTypeBuilder;
 import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
 import org.geotools.feature.visitor.MaxVisitor;
+import org.geotools.feature.visitor.MergeableFeatureCalc;
 import org.geotools.feature.visitor.MinVisitor;
 import org.geotools.feature.visitor.NearestVisitor;
 import org.geotools.filter.FilterAttributeExtractor;
@@ -54,6 +56,7 @@ import org.geotools.filter.visitor.PostPreProcessFilterSplittingVisitor;
 import org.geotools.filter.visitor.SimplifyingFilterVisitor;
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.referencing.CRS;
+import org.geotools.renderer.ScreenMap;
 import org.geotools.util.logging.Logging;
 import org.opengis.feature.Association;
 import org.opengis.feature.FeatureVisitor;
@@ -64,6 +67,8 @@ import org.opengis.filter.Filter;
 import org.opengis.filter.FilterFactory;
 import org.opengis.filter.expression.Expression;
 import org.opengis.filter.expression.PropertyName;
+import org.opengis.filter.sort.SortBy;
+import org.opengis.filter.sort.SortOrder;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 
 import com.vividsolutions.jts.geom.Geometry;
@@ -564,10 +569,41 @@ public class JDBCFeatureSource extends ContentFeatureSource {
     }
     
     protected  FeatureReader<SimpleFeatureType, SimpleFeature> getReaderInternal(Query query) throws IOException {
+        Filter seek = getPageCursorFilter(query);
+        if (seek != null) {
+            // seek past the page cursor instead of having the database skip the start index rows
+            Query seekQuery = new Query(query);
+            seekQuery.setStartIndex(null);
+            if (query.getSortBy() == null || query.getSortBy().length == 0) {
+                seekQuery.setSortBy(new SortBy[] { SortBy.NATURAL_ORDER });
+            }
+            return getReaderInternal(seekQuery, seek);
+        }
+        if (canReadInParallel(query)) {
+            // split the read in primary key ranges, each one read on its own connection
+            ParallelRead read = new ParallelRead(this, query, getDataStore().getParallelReads());
+            FeatureReader<SimpleFeatureType, SimpleFeature> reader = read.getReader();
+            if (reader != null) {
+                return reader;
+            }
+        }
+        return getReaderInternal(query, null);
+    }
+
+    /**
+     * Builds a reader for the query, restricting it to the features matching the partition filter
+     * if not null. The partition filter is added straight to the SQL statement, it must be fully
+     * supported by the SQL encoder.
+     */
+    FeatureReader<SimpleFeatureType, SimpleFeature> getReaderInternal(Query query, Filter partition)
+            throws IOException {
         // split the filter
         Filter[] split = splitFilter(query.getFilter());
         Filter preFilter = split[0];
         Filter postFilter = split[1];
+        if (partition != null) {
+            preFilter = andPartition(preFilter, partition);
+        }
 
         // rebuild a new query with the same params, but just the pre-filter
         DefaultQuery preQuery = new DefaultQuery(query);
@@ -645,6 +681,14 @@ public class JDBCFeatureSource extends ContentFeatureSource {
             if(!returnedSchema.equals(querySchema))
                 reader = new ReTypeFeatureReader(reader, returnedSchema);
         }
+        
+        // the screen map is advertised by the dialect, but the database decimation is partial 
+        // (or not performed at all if the query does not allow it), complete it on the client side
+        if (query.getHints() != null && query.getHints().get(Hints.SCREENMAP) instanceof ScreenMap
+                && getDataStore().isScreenMapSupported()) {
+            reader = new JDBCScreenMapFeatureReader(reader, 
+                    (ScreenMap) query.getHints().get(Hints.SCREENMAP));
+        }
 
         return reader;
     }
@@ -688,15 +732,172 @@ public class JDBCFeatureSource extends ContentFeatureSource {
         } else {
             // grab connection using the current transaction
             Connection cx = getDataStore().getConnection(getState());
+            Object result;
             try {
-                Object result = getDataStore().getAggregateValue(visitor, getSchema(), query, cx);
-                return result != null;
+                result = getDataStore().getAggregateValue(visitor, getSchema(), query, cx);
             }
             finally {
             	// release the connection - behaviour depends on Transaction.AUTO_COMMIT
             	getDataStore().releaseConnection(cx, getState());
             }
+            
+            // the visitor cannot be turned into SQL, see if we can at least visit the 
+            // primary key ranges in parallel
+            if (result == null && visitor instanceof MergeableFeatureCalc
+                    && query.getCoordinateSystem() == null
+                    && query.getCoordinateSystemReproject() == null && canReadInParallel(query)) {
+                ParallelRead read = new ParallelRead(this, query, getDataStore().getParallelReads());
+                return read.visit((MergeableFeatureCalc) visitor);
+            }
+            return result != null;
+        }
+    }
+
+    /**
+     * Checks if the query can be split in primary key ranges read in parallel, that is, if
+     * parallel reads are enabled, the query is not part of a transaction, does not need a
+     * specific order or paging, and the table has a single integral primary key column
+     */
+    boolean canReadInParallel(Query query) throws IOException {
+        if (getDataStore().getParallelReads() < 2
+                || getState().getTransaction() != Transaction.AUTO_COMMIT) {
+            return false;
+        }
+        if (!query.getJoins().isEmpty() || query.getStartIndex() != null
+                || !query.isMaxFeaturesUnlimited()
+                || (query.getSortBy() != null && query.getSortBy().length > 0)) {
+            return false;
+        }
+        // the screen map is not thread safe
+        if (query.getHints() != null && query.getHints().get(Hints.SCREENMAP) != null) {
+            return false;
+        }
+        
+        List<PrimaryKeyColumn> columns = getPrimaryKey().getColumns();
+        if (columns.size() != 1) {
+            return false;
+        }
+        Class type = columns.get(0).getType();
+        return type == Long.class || type == Integer.class || type == Short.class
+                || type == Byte.class;
+    }
+
+    /**
+     * Builds a filter selecting the features sorting after the {@link Hints#PAGE_CURSOR} one, 
+     * comparing the sort columns in order, as in 
+     * <code>a > :a OR (a = :a AND b > :b) ...</code>
+     * 
+     * @return the filter, or null if the query has no cursor, or its sort does not identify the
+     *         features univocally
+     */
+    Filter getPageCursorFilter(Query query) throws IOException {
+        Object cursor = query.getHints() != null ? query.getHints().get(Hints.PAGE_CURSOR) : null;
+        if (!(cursor instanceof SimpleFeature) || !query.getJoins().isEmpty()
+                || !getDataStore().getSQLDialect().isLimitOffsetSupported()) {
+            return null;
+        }
+        SimpleFeature last = (SimpleFeature) cursor;
+        SortBy[] sort = query.getSortBy();
+        if (sort == null || sort.length == 0) {
+            sort = new SortBy[] { SortBy.NATURAL_ORDER };
+        }
+
+        // collect the sort columns, their direction, and the values of the cursor
+        PrimaryKey key = getPrimaryKey();
+        List<String> columns = new ArrayList<String>();
+        List<Boolean> ascending = new ArrayList<Boolean>();
+        List<Object> values = new ArrayList<Object>();
+        boolean unique = false;
+        for (SortBy sb : sort) {
+            boolean asc = sb.getSortOrder() != SortOrder.DESCENDING;
+            if (SortBy.NATURAL_ORDER.equals(sb) || SortBy.REVERSE_ORDER.equals(sb)) {
+                if (key instanceof NullPrimaryKey) {
+                    return null;
+                }
+                List<Object> keyValues;
+                try {
+                    keyValues = getDataStore().decodeFID(key, last.getID(), true);
+                } catch (IllegalArgumentException e) {
+                    LOGGER.log(Level.FINE, "Page cursor " + last.getID()
+                            + " is not a valid feature id, using the start index", e);
+                    return null;
+                }
+                for (int i = 0; i < key.getColumns().size(); i++) {
+                    columns.add(key.getColumns().get(i).getName());
+                    ascending.add(asc);
+                    values.add(keyValues.get(i));
+                }
+                unique = true;
+            } else {
+                AttributeDescriptor ad = getSchema().getDescriptor(
+                        sb.getPropertyName().getPropertyName());
+                if (ad == null) {
+                    return null;
+                }
+                String name = ad.getLocalName();
+                Object value = last.getAttribute(name);
+                // nulls do not compare, the seek would skip or repeat features
+                if (ad.isNillable() || value == null) {
+                    return null;
+                }
+                columns.add(name);
+                ascending.add(asc);
+                values.add(value);
+                unique |= getUniqueColumns().contains(name)
+                        || (key.getColumns().size() == 1 && key.getColumns().get(0).getName()
+                                .equals(name));
+            }
+        }
+        if (!unique) {
+            return null;
+        }
+
+        FilterFactory ff = getDataStore().getFilterFactory();
+        List<Filter> alternatives = new ArrayList<Filter>();
+        for (int i = 0; i < columns.size(); i++) {
+            List<Filter> conditions = new ArrayList<Filter>();
+            for (int j = 0; j < i; j++) {
+                conditions.add(ff.equals(ff.property(columns.get(j)), ff.literal(values.get(j))));
+            }
+            Expression property = ff.property(columns.get(i));
+            Expression value = ff.literal(values.get(i));
+            conditions.add(ascending.get(i) ? ff.greater(property, value) : ff.less(property,
+                    value));
+            alternatives.add(conditions.size() == 1 ? conditions.get(0) : ff.and(conditions));
+        }
+        return alternatives.size() == 1 ? alternatives.get(0) : ff.or(alternatives);
+    }
+
+    /**
+     * Returns the names of the columns with a single column unique index, caching them in the
+     * state
+     */
+    Set<String> getUniqueColumns() throws IOException {
+        JDBCState state = getState();
+        Set<String> columns = state.getUniqueColumns();
+        if (columns == null) {
+            columns = new HashSet<String>();
+            // virtual tables have no indexes
+            if (!getDataStore().getVirtualTables().containsKey(entry.getTypeName())) {
+                for (Index index : getDataStore().getIndexes(entry.getTypeName())) {
+                    if (index.isUnique() && index.getAttributes().size() == 1) {
+                        columns.add(index.getAttributes().get(0));
+                    }
+                }
+            }
+            state.setUniqueColumns(columns);
+        }
+        return columns;
+    }
+
+    /**
+     * Adds the partition filter to the filter that will be encoded in SQL
+     */
+    Filter andPartition(Filter preFilter, Filter partition) {
+        if (preFilter == null || preFilter == Filter.INCLUDE) {
+            return partition;
         }
+        return getDataStore().getFilterFactory().and(preFilter, partition);
     }
 
     /**
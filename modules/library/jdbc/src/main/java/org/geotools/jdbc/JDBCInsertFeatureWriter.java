@@ -20,6 +20,8 @@ import java.io.IOException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
 
 import org.geotools.data.FeatureWriter;
 import org.geotools.data.store.ContentEntry;
@@ -35,6 +37,15 @@ import org.opengis.feature.simple.SimpleFeatureType;
  */
 public class JDBCInsertFeatureWriter extends JDBCFeatureReader implements FeatureWriter<SimpleFeatureType, SimpleFeature> {
 
+    /**
+     * The features waiting to be inserted, see {@link JDBCDataStore#getBatchInsertSize()}
+     */
+    ResultSetFeature[] buffer;
+    
+    /**
+     * The number of features in the buffer that have been written
+     */
+    int curBufferPos = 0;
     
     ResultSetFeature last;
     
@@ -42,17 +53,25 @@ public class JDBCInsertFeatureWriter extends JDBCFeatureReader implements Featur
             JDBCFeatureSource featureSource, Hints hints) throws SQLException, IOException {
         super(sql, cx, featureSource, featureSource.getSchema(), hints);
         last = new ResultSetFeature( rs, cx );
+        initBuffer();
     }
 
     public JDBCInsertFeatureWriter(PreparedStatement ps, Connection cx, JDBCFeatureSource featureSource, Hints hints)
         throws SQLException, IOException {
         super( ps, cx, featureSource, featureSource.getSchema(), hints );
         last = new ResultSetFeature( rs, ps.getConnection() );
+        initBuffer();
     }
     
     public JDBCInsertFeatureWriter(JDBCUpdateFeatureWriter other) {
         super(other);
         last = other.last;
+        initBuffer();
+    }
+    
+    void initBuffer() {
+        buffer = new ResultSetFeature[Math.max(1, dataStore.getBatchInsertSize())];
+        buffer[0] = last;
     }
 
     public boolean hasNext() throws IOException {
@@ -60,6 +79,16 @@ public class JDBCInsertFeatureWriter extends JDBCFeatureReader implements Featur
     }
 
     public SimpleFeature next() throws IOException {
+        // each feature in the batch needs its own copy
+        if (buffer[curBufferPos] == null) {
+            try {
+                buffer[curBufferPos] = new ResultSetFeature(rs, cx);
+            } catch (SQLException e) {
+                throw (IOException) new IOException().initCause(e);
+            }
+        }
+        last = buffer[curBufferPos];
+        
         //init, setting id to null explicity since the feature is yet to be 
         // inserted
         last.init(null);
@@ -71,27 +100,55 @@ public class JDBCInsertFeatureWriter extends JDBCFeatureReader implements Featur
     }
 
     public void write() throws IOException {
+        curBufferPos++;
+        if (curBufferPos >= buffer.length) {
+            flush();
+        }
+    }
+
+    /**
+     * Inserts the features written so far
+     */
+    public void flush() throws IOException {
+        if (curBufferPos == 0) {
+            return;
+        }
+        
         try {
             //do the insert
-            dataStore.insert(last, featureType, st.getConnection());
-            
-            //the datastore sets as userData, grab it and update the fid
-            String fid = (String) last.getUserData().get( "fid" );
-            last.setID( fid );
+            List<ResultSetFeature> features = Arrays.asList(buffer).subList(0, curBufferPos);
+            dataStore.insert(features, featureType, st.getConnection());
             
             ContentEntry entry = featureSource.getEntry();
-            ContentState state = entry.getState( this.tx );            
-            state.fireFeatureAdded( featureSource, last );
+            ContentState state = entry.getState( this.tx );
+            for (ResultSetFeature feature : features) {
+                //the datastore sets as userData, grab it and update the fid
+                String fid = (String) feature.getUserData().get( "fid" );
+                feature.setID( fid );
+                
+                state.fireFeatureAdded( featureSource, feature );
+            }
         } catch (SQLException e) {
             throw (IOException) new IOException().initCause(e);
+        } finally {
+            curBufferPos = 0;
         }
     }
 
     public void close() throws IOException {
-        super.close();
-        
-        if ( last != null ) {
-            last.close();
+        try {
+            flush();
+        } finally {
+            super.close();
+            
+            if ( buffer != null ) {
+                for (ResultSetFeature feature : buffer) {
+                    if (feature != null) {
+                        feature.close();
+                    }
+                }
+                buffer = null;
+            }
             last = null;
         }
     }
@@ -0,0 +1,121 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+
+package org.geotools.jdbc;
+
+import java.io.IOException;
+import java.util.NoSuchElementException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geotools.data.DelegatingFeatureReader;
+import org.geotools.data.FeatureReader;
+import org.geotools.renderer.ScreenMap;
+import org.geotools.util.logging.Logging;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.referencing.operation.TransformException;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.Point;
+
+/**
+ * Feature reader applying the {@link ScreenMap} decimation on the client side: features whose
+ * default geometry is smaller than a pixel are skipped if the pixel has been already used, or
+ * otherwise have their geometry replaced by one filling the pixel. This is the same processing
+ * the renderer performs when the store does not support the {@link org.geotools.factory.Hints#SCREENMAP}
+ * hint, the database might have already removed most of the sub-pixel features using
+ * {@link SQLDialect#encodeScreenMapDistinct(org.opengis.feature.type.GeometryDescriptor, String, PrimaryKey, double, double, StringBuffer)}
+ */
+public class JDBCScreenMapFeatureReader implements
+        DelegatingFeatureReader<SimpleFeatureType, SimpleFeature> {
+
+    static final Logger LOGGER = Logging.getLogger(JDBCScreenMapFeatureReader.class);
+
+    FeatureReader<SimpleFeatureType, SimpleFeature> delegate;
+
+    ScreenMap screenMap;
+
+    SimpleFeature next;
+
+    public JDBCScreenMapFeatureReader(FeatureReader<SimpleFeatureType, SimpleFeature> delegate,
+            ScreenMap screenMap) {
+        this.delegate = delegate;
+        this.screenMap = screenMap;
+    }
+
+    public FeatureReader<SimpleFeatureType, SimpleFeature> getDelegate() {
+        return delegate;
+    }
+
+    public SimpleFeatureType getFeatureType() {
+        return delegate.getFeatureType();
+    }
+
+    public boolean hasNext() throws IOException {
+        if (next != null) {
+            return true;
+        }
+
+        // scroll through the delegate until we get a feature that is not hidden by the ones
+        // already returned
+        while (delegate.hasNext()) {
+            SimpleFeature peek = delegate.next();
+
+            Object value = peek.getDefaultGeometry();
+            if (value instanceof Geometry && !(value instanceof Point)) {
+                Geometry g = (Geometry) value;
+                Envelope env = g.getEnvelopeInternal();
+                try {
+                    if (screenMap.canSimplify(env)) {
+                        if (screenMap.checkAndSet(env)) {
+                            continue;
+                        } else {
+                            peek.setDefaultGeometry(screenMap.getSimplifiedShape(env.getMinX(),
+                                    env.getMinY(), env.getMaxX(), env.getMaxY(), g.getFactory(),
+                                    g.getClass()));
+                        }
+                    }
+                } catch (TransformException e) {
+                    LOGGER.log(Level.FINE, "Failed to check the geometry against the screen map, "
+                            + "returning it as is", e);
+                }
+            }
+
+            next = peek;
+            break;
+        }
+
+        return next != null;
+    }
+
+    public SimpleFeature next() throws IOException, IllegalArgumentException,
+            NoSuchElementException {
+        if (!hasNext()) {
+            throw new NoSuchElementException("No more features");
+        }
+
+        SimpleFeature f = next;
+        next = null;
+        return f;
+    }
+
+    public void close() throws IOException {
+        delegate.close();
+    }
+}
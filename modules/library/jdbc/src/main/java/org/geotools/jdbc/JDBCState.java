@@ -16,6 +16,8 @@
  */
 package org.geotools.jdbc;
 
+import java.util.Set;
+
 import org.geotools.data.store.ContentEntry;
 import org.geotools.data.store.ContentState;
 
@@ -43,6 +45,11 @@ public final class JDBCState extends ContentState {
      */
     private boolean exposePrimaryKeyColumns;
     
+    /**
+     * cached names of the columns having a unique index on them
+     */
+    private Set<String> uniqueColumns;
+    
     /**
      * Creates the state from an existing one.
      */
@@ -52,6 +59,7 @@ public final class JDBCState extends ContentState {
         //copy the primary key
         primaryKey = state.getPrimaryKey();
         exposePrimaryKeyColumns = state.isExposePrimaryKeyColumns();
+        uniqueColumns = state.getUniqueColumns();
     }
 
     /**
@@ -96,11 +104,27 @@ public final class JDBCState extends ContentState {
         this.exposePrimaryKeyColumns = exposePrimaryKeyColumns;
     }
     
+    /**
+     * The cached names of the columns with a single column unique index.
+     */
+    public Set<String> getUniqueColumns() {
+        return uniqueColumns;
+    }
+
+    /**
+     * Sets the cached names of the columns with a single column unique index.
+     * @param uniqueColumns
+     */
+    public void setUniqueColumns(Set<String> uniqueColumns) {
+        this.uniqueColumns = uniqueColumns;
+    }
+    
     /**
      * Flushes all cached state.
      */
     public void flush() {
         primaryKey = null;
+        uniqueColumns = null;
         super.flush();
     }
 
@@ -0,0 +1,519 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.jdbc;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.dbcp.BasicDataSource;
+import org.geotools.data.DefaultQuery;
+import org.geotools.data.FeatureReader;
+import org.geotools.data.Query;
+import org.geotools.data.jdbc.datasource.DBCPDataSource;
+import org.geotools.feature.visitor.MergeableFeatureCalc;
+import org.geotools.util.Converters;
+import org.geotools.util.logging.Logging;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.Filter;
+import org.opengis.filter.FilterFactory;
+
+/**
+ * Reads a query in parallel: the range of values of the primary key is split in contiguous
+ * partitions, each partition is read on its own connection by a task running on a shared
+ * executor. The features are then either merged in a single reader, or visited by partial copies
+ * of a visitor whose results are finally merged back into the original visitor.
+ * <p>
+ * The partitions are disjoint, so no feature is returned twice, but the overall order of the
+ * features is not predictable.
+ * <p>
+ * Each partition takes a connection from the pool while it runs, the partitions running at the
+ * same time on a store are bounded by the store permits, see
+ * {@link #getMaxRunningPartitions(JDBCDataStore)}. A read that cannot get at least two permits
+ * is not split.
+ */
+class ParallelRead {
+
+    static final Logger LOGGER = Logging.getLogger(ParallelRead.class);
+
+    /**
+     * The minimum number of key values in a partition, with less than that the cost of grabbing
+     * a new connection and running one more query is not paid back
+     */
+    static final long MIN_PARTITION_SIZE = 10000;
+
+    /**
+     * The number of features the partition readers can read ahead of the merged reader
+     */
+    static final int QUEUE_SIZE = 1024;
+
+    /**
+     * Marks the end of a partition in the queue of the merged reader
+     */
+    static final Object END = new Object();
+
+    static ExecutorService executor;
+
+    final JDBCFeatureSource source;
+
+    final Query query;
+
+    final int partitions;
+
+    long minPartitionSize = MIN_PARTITION_SIZE;
+
+    volatile boolean cancelled;
+
+    /**
+     * The permits of the store, each partition task releases one when done
+     */
+    Semaphore permits;
+
+    /**
+     * Returns the executor shared by all the parallel reads, its threads are daemons and die
+     * after being idle for a while. The tasks never wait in a queue, their number is bounded by
+     * the permits of each store instead
+     */
+    static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newCachedThreadPool(new ThreadFactory() {
+                AtomicInteger count = new AtomicInteger();
+
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "gt-jdbc-read-" + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * Returns how many partitions can run at the same time on the store, among all the parallel
+     * reads. Each one takes a connection, and one connection is left to the code running the
+     * queries. When the size of the pool is unknown, a single read at a time can run all of its
+     * partitions
+     */
+    static int getMaxRunningPartitions(JDBCDataStore store) {
+        DataSource dataSource = store.getDataSource();
+        if (dataSource instanceof DBCPDataSource) {
+            dataSource = ((DBCPDataSource) dataSource).getWrapped();
+        }
+        if (dataSource instanceof BasicDataSource) {
+            int maxConnections = ((BasicDataSource) dataSource).getMaxActive();
+            if (maxConnections > 0) {
+                return maxConnections - 1;
+            }
+        }
+        return store.getParallelReads();
+    }
+
+    public ParallelRead(JDBCFeatureSource source, Query query, int partitions) {
+        this.source = source;
+        this.query = query;
+        this.partitions = partitions;
+    }
+
+    /**
+     * Returns a reader merging the features read in parallel from each partition
+     *
+     * @return the reader, or null if the data is too small to be worth a parallel read
+     * @throws IOException
+     */
+    FeatureReader<SimpleFeatureType, SimpleFeature> getReader() throws IOException {
+        List<Filter> filters = reservePartitions();
+        if (filters == null) {
+            return null;
+        }
+
+        // this also makes sure the feature type is known before the partitions are read
+        FeatureReader<SimpleFeatureType, SimpleFeature> first = null;
+        try {
+            first = source.getReaderInternal(query, filters.get(0));
+        } finally {
+            if (first == null) {
+                permits.release(filters.size());
+            }
+        }
+        MergingReader reader = new MergingReader(first.getFeatureType(), filters.size());
+        ExecutorService executor = getExecutor();
+        executor.submit(new PartitionRead(reader, first, null));
+        for (int i = 1; i < filters.size(); i++) {
+            executor.submit(new PartitionRead(reader, null, filters.get(i)));
+        }
+        return reader;
+    }
+
+    /**
+     * Visits the partitions in parallel
+     *
+     * @param visitor the visitor, will contain the merged results at the end of the visit
+     * @return false if the data is too small to be worth a parallel visit, or the visitor
+     *         cannot be split in partial ones, in this case the visitor has not been touched
+     * @throws IOException
+     */
+    boolean visit(MergeableFeatureCalc visitor) throws IOException {
+        MergeableFeatureCalc first = visitor.createPartial();
+        if (first == null) {
+            return false;
+        }
+        List<Filter> filters = reservePartitions();
+        if (filters == null) {
+            return false;
+        }
+
+        List<MergeableFeatureCalc> partials = new ArrayList<MergeableFeatureCalc>(filters.size());
+        partials.add(first);
+        for (int i = 1; i < filters.size(); i++) {
+            partials.add(visitor.createPartial());
+        }
+        List<Future<MergeableFeatureCalc>> futures = new ArrayList<Future<MergeableFeatureCalc>>();
+        try {
+            ExecutorService executor = getExecutor();
+            for (int i = 0; i < filters.size(); i++) {
+                futures.add(executor.submit(new PartitionVisit(partials.get(i), filters.get(i))));
+            }
+
+            // wait for all partitions to complete before touching the visitor
+            for (Future<MergeableFeatureCalc> future : futures) {
+                future.get();
+            }
+            for (MergeableFeatureCalc partial : partials) {
+                visitor.merge(partial);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            // the running partitions stop on their own and release their permits
+            cancelled = true;
+            Thread.currentThread().interrupt();
+            InterruptedIOException ioe = new InterruptedIOException(
+                    "Interrupted while visiting " + source.getSchema().getTypeName());
+            ioe.initCause(e);
+            throw ioe;
+        } catch (ExecutionException e) {
+            throw toIOException(e.getCause());
+        }
+    }
+
+    /**
+     * Reserves the permits to run as many partitions as possible, up to the configured number,
+     * and splits the query in that many partitions, at most. Each partition task releases its
+     * permit when done
+     *
+     * @return the partition filters, or null if the read should not be split
+     */
+    List<Filter> reservePartitions() throws IOException {
+        permits = source.getDataStore().getParallelReadPermits();
+        int reserved = 0;
+        for (int n = partitions; n >= 2 && reserved == 0; n--) {
+            if (permits.tryAcquire(n)) {
+                reserved = n;
+            }
+        }
+        if (reserved == 0) {
+            return null;
+        }
+
+        List<Filter> filters = null;
+        try {
+            filters = getPartitionFilters(reserved);
+        } finally {
+            int used = filters == null ? 0 : filters.size();
+            if (used < reserved) {
+                permits.release(reserved - used);
+            }
+        }
+        return filters;
+    }
+
+    /**
+     * Splits the range of primary key values matching the query in partitions of equal width
+     *
+     * @return the partition filters, or null if the range is too small to be split
+     */
+    List<Filter> getPartitionFilters() throws IOException {
+        return getPartitionFilters(partitions);
+    }
+
+    /**
+     * Splits the range of primary key values matching the query in at most the specified number
+     * of partitions of equal width
+     *
+     * @return the partition filters, or null if the range is too small to be split
+     */
+    List<Filter> getPartitionFilters(int maxPartitions) throws IOException {
+        PrimaryKeyColumn column = source.getPrimaryKey().getColumns().get(0);
+        JDBCDataStore store = source.getDataStore();
+
+        // the range is computed only on the part of the filter that can be encoded in SQL
+        DefaultQuery preQuery = new DefaultQuery(query);
+        preQuery.setFilter(source.splitFilter(query.getFilter())[0]);
+        Object[] range;
+        Connection cx = store.getConnection(source.getState());
+        try {
+            range = store.getPrimaryKeyRange(source.getSchema(), column, preQuery, cx);
+        } finally {
+            store.releaseConnection(cx, source.getState());
+        }
+        if (range[0] == null || range[1] == null) {
+            return null;
+        }
+
+        long min = ((Number) range[0]).longValue();
+        long max = ((Number) range[1]).longValue();
+        // using doubles, the difference might not fit in a long
+        double width = (double) max - (double) min + 1;
+        int count = (int) Math.min(maxPartitions, width / Math.max(1, minPartitionSize));
+        if (count < 2) {
+            return null;
+        }
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Reading " + source.getSchema().getTypeName() + " in " + count
+                    + " partitions of the " + column.getName() + " range [" + min + "," + max
+                    + "]");
+        }
+
+        FilterFactory ff = store.getFilterFactory();
+        List<Filter> filters = new ArrayList<Filter>(count);
+        long lower = min;
+        for (int i = 1; i <= count; i++) {
+            Filter filter = ff.greaterOrEqual(ff.property(column.getName()),
+                    ff.literal(Converters.convert(lower, column.getType())));
+            if (i < count) {
+                long upper = (long) (min + width * i / count);
+                filter = ff.and(filter, ff.less(ff.property(column.getName()),
+                        ff.literal(Converters.convert(upper, column.getType()))));
+                lower = upper;
+            } else {
+                filter = ff.and(filter, ff.lessOrEqual(ff.property(column.getName()),
+                        ff.literal(Converters.convert(max, column.getType()))));
+            }
+            filters.add(filter);
+        }
+        return filters;
+    }
+
+    IOException toIOException(Throwable t) {
+        cancelled = true;
+        if (t instanceof IOException) {
+            return (IOException) t;
+        }
+        return (IOException) new IOException("Failed to read "
+                + source.getSchema().getTypeName() + " in parallel: " + t.getMessage())
+                .initCause(t);
+    }
+
+    /**
+     * Visits a partition with a partial visitor
+     */
+    class PartitionVisit implements Callable<MergeableFeatureCalc> {
+
+        MergeableFeatureCalc partial;
+
+        Filter filter;
+
+        public PartitionVisit(MergeableFeatureCalc partial, Filter filter) {
+            this.partial = partial;
+            this.filter = filter;
+        }
+
+        public MergeableFeatureCalc call() throws Exception {
+            try {
+                FeatureReader<SimpleFeatureType, SimpleFeature> reader = source
+                        .getReaderInternal(query, filter);
+                try {
+                    while (!cancelled && reader.hasNext()) {
+                        partial.visit(reader.next());
+                    }
+                } finally {
+                    reader.close();
+                }
+            } catch (Exception e) {
+                // no point in keeping the other partitions going
+                cancelled = true;
+                throw e;
+            } catch (Error e) {
+                cancelled = true;
+                throw e;
+            } finally {
+                permits.release();
+            }
+            return partial;
+        }
+    }
+
+    /**
+     * Reads a partition and pushes its features in the queue of the merged reader
+     */
+    class PartitionRead implements Callable<Object> {
+
+        MergingReader merger;
+
+        FeatureReader<SimpleFeatureType, SimpleFeature> reader;
+
+        Filter filter;
+
+        public PartitionRead(MergingReader merger,
+                FeatureReader<SimpleFeatureType, SimpleFeature> reader, Filter filter) {
+            this.merger = merger;
+            this.reader = reader;
+            this.filter = filter;
+        }
+
+        public Object call() throws Exception {
+            // the merged reader waits for either the end marker or a failure from each partition
+            Object last = END;
+            try {
+                if (reader == null) {
+                    reader = source.getReaderInternal(query, filter);
+                }
+                while (!cancelled && reader.hasNext()) {
+                    merger.put(reader.next());
+                }
+            } catch (Throwable t) {
+                last = t;
+            } finally {
+                if (reader != null) {
+                    try {
+                        reader.close();
+                    } catch (IOException e) {
+                        LOGGER.log(Level.FINE, "Failed to close the partition reader", e);
+                    }
+                }
+                permits.release();
+                merger.end(last);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Returns the features pushed in the queue by the partition readers
+     */
+    class MergingReader implements FeatureReader<SimpleFeatureType, SimpleFeature> {
+
+        SimpleFeatureType featureType;
+
+        BlockingQueue<Object> queue = new ArrayBlockingQueue<Object>(QUEUE_SIZE);
+
+        int running;
+
+        SimpleFeature next;
+
+        public MergingReader(SimpleFeatureType featureType, int partitions) {
+            this.featureType = featureType;
+            this.running = partitions;
+        }
+
+        /**
+         * Called by the partition readers, waits for space in the queue unless the read
+         * got cancelled
+         */
+        void put(Object item) throws InterruptedException {
+            while (!cancelled) {
+                if (queue.offer(item, 100, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Called by the partition readers when done, with the end marker or the failure.
+         * Interrupts do not stop it, the merged reader would otherwise wait forever
+         */
+        void end(Object item) {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    put(item);
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        public SimpleFeatureType getFeatureType() {
+            return featureType;
+        }
+
+        public boolean hasNext() throws IOException {
+            while (next == null && running > 0) {
+                Object item;
+                try {
+                    item = queue.take();
+                } catch (InterruptedException e) {
+                    close();
+                    InterruptedIOException ioe = new InterruptedIOException(
+                            "Interrupted while reading " + featureType.getTypeName());
+                    ioe.initCause(e);
+                    throw ioe;
+                }
+
+                if (item == END) {
+                    running--;
+                } else if (item instanceof Throwable) {
+                    close();
+                    throw toIOException((Throwable) item);
+                } else {
+                    next = (SimpleFeature) item;
+                }
+            }
+            return next != null;
+        }
+
+        public SimpleFeature next() throws IOException, IllegalArgumentException,
+                NoSuchElementException {
+            if (!hasNext()) {
+                throw new NoSuchElementException("No more features to read");
+            }
+            SimpleFeature result = next;
+            next = null;
+            return result;
+        }
+
+        public void close() throws IOException {
+            // stops the partition readers, they will close their own readers and connections
+            cancelled = true;
+            running = 0;
+            queue.clear();
+        }
+    }
+}
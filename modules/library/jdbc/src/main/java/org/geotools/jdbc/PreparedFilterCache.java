@@ -0,0 +1,335 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.jdbc;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.geotools.data.jdbc.FilterToSQLException;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.BinaryComparisonOperator;
+import org.opengis.filter.BinaryLogicOperator;
+import org.opengis.filter.ExcludeFilter;
+import org.opengis.filter.Filter;
+import org.opengis.filter.Id;
+import org.opengis.filter.IncludeFilter;
+import org.opengis.filter.Not;
+import org.opengis.filter.PropertyIsBetween;
+import org.opengis.filter.PropertyIsLike;
+import org.opengis.filter.PropertyIsNil;
+import org.opengis.filter.PropertyIsNull;
+import org.opengis.filter.expression.BinaryExpression;
+import org.opengis.filter.expression.Function;
+import org.opengis.filter.expression.Literal;
+import org.opengis.filter.expression.NilExpression;
+import org.opengis.filter.expression.PropertyName;
+import org.opengis.filter.identity.Identifier;
+import org.opengis.filter.spatial.BinarySpatialOperator;
+import org.opengis.filter.spatial.DistanceBufferOperator;
+import org.opengis.filter.temporal.BinaryTemporalOperator;
+
+/**
+ * A LRU cache of the filters encoded in SQL by a {@link PreparedFilterToSQL}, keyed by the
+ * structure of the filter with the literal values abstracted out. Filters with the same structure
+ * reuse the SQL encoded the first time, only their literals are evaluated and bound to the
+ * statement parameters. As a side effect the statements built out of them are identical, and can
+ * be pooled by the connection pool, and reuse the database query plans.
+ * <p>
+ * A filter encoding is cached only if each literal of the filter has been turned into a statement
+ * parameter, encoders that inline some literal in the SQL, or evaluate them to pick the SQL to
+ * generate, are thus never served from the cache.
+ */
+public class PreparedFilterCache {
+
+    final int maxSize;
+
+    final Map<String, Entry> cache;
+
+    final AtomicLong hits = new AtomicLong();
+
+    final AtomicLong misses = new AtomicLong();
+
+    public PreparedFilterCache(final int maxSize) {
+        this.maxSize = maxSize;
+        this.cache = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Encodes the filter in SQL, using the cached encoding of a filter with the same structure if
+     * available
+     *
+     * @param schema the full feature type the filter is encoded against
+     * @param filter the filter to encode
+     * @param toSQL a new encoder, that will be used to encode the filter if not found in the
+     *        cache, and will in any case contain the values to be bound to the statement
+     * @return the SQL encoding of the filter
+     */
+    public String encode(SimpleFeatureType schema, Filter filter, PreparedFilterToSQL toSQL)
+            throws FilterToSQLException {
+        List<Literal> literals = new ArrayList<Literal>();
+        StringBuilder sb = new StringBuilder(schema.getTypeName()).append(':');
+        if (!appendShape(filter, sb, literals)) {
+            misses.incrementAndGet();
+            return toSQL.encodeToString(filter);
+        }
+        String key = sb.toString();
+
+        Entry entry;
+        synchronized (cache) {
+            entry = cache.get(key);
+        }
+        // the schema gets rebuilt when the store caches are flushed
+        if (entry != null && entry.schema == schema) {
+            hits.incrementAndGet();
+            List<Literal> bound = new ArrayList<Literal>(entry.literalIndexes.length);
+            for (int index : entry.literalIndexes) {
+                bound.add(index >= 0 ? literals.get(index) : null);
+            }
+            toSQL.bind(bound, entry.encoded.literalContexts, entry.encoded);
+            return entry.sql;
+        }
+
+        misses.incrementAndGet();
+        String sql = toSQL.encodeToString(filter);
+        int[] literalIndexes = getLiteralIndexes(literals, toSQL);
+        if (literalIndexes != null) {
+            synchronized (cache) {
+                cache.put(key, new Entry(schema, sql, toSQL, literalIndexes));
+            }
+        }
+        return sql;
+    }
+
+    /**
+     * Maps each value collected by the encoder to the position of the literal it comes from, -1
+     * for the values not coming from literals.
+     *
+     * @return the positions, or null if some literal has not been turned into a parameter
+     */
+    int[] getLiteralIndexes(List<Literal> literals, PreparedFilterToSQL toSQL) {
+        int values = toSQL.getLiteralValues().size();
+        if (toSQL.literalExpressions.size() != values || toSQL.getLiteralTypes().size() != values
+                || toSQL.getSRIDs().size() != values || toSQL.getDimensions().size() != values) {
+            // a subclass collected values on its own
+            return null;
+        }
+
+        Map<Literal, Integer> positions = new IdentityHashMap<Literal, Integer>();
+        for (int i = 0; i < literals.size(); i++) {
+            if (positions.put(literals.get(i), i) != null) {
+                // the same literal object is used twice, cannot tell the two apart
+                return null;
+            }
+        }
+        int[] indexes = new int[values];
+        int found = 0;
+        for (int i = 0; i < values; i++) {
+            Literal expression = toSQL.literalExpressions.get(i);
+            if (expression == null) {
+                indexes[i] = -1;
+            } else {
+                Integer position = positions.remove(expression);
+                if (position == null) {
+                    // a literal built by the encoder, or visited twice
+                    return null;
+                }
+                indexes[i] = position;
+                found++;
+            }
+        }
+        return found == literals.size() ? indexes : null;
+    }
+
+    /**
+     * Appends a description of the filter structure, listing its literals along the way
+     *
+     * @return false if the filter contains elements whose structure cannot be described
+     */
+    static boolean appendShape(Object node, StringBuilder sb, List<Literal> literals) {
+        if (node == null) {
+            sb.append("null");
+            return true;
+        }
+        sb.append(node.getClass().getName());
+        if (node instanceof Literal) {
+            // the value type can change the encoding, the value is a statement parameter
+            Object value = ((Literal) node).getValue();
+            sb.append('<').append(value == null ? "null" : value.getClass().getName())
+                    .append('>');
+            literals.add((Literal) node);
+            return true;
+        } else if (node instanceof PropertyName) {
+            sb.append('[').append(((PropertyName) node).getPropertyName()).append(']');
+            return true;
+        } else if (node instanceof NilExpression || node instanceof IncludeFilter
+                || node instanceof ExcludeFilter) {
+            return true;
+        } else if (node instanceof Function) {
+            Function function = (Function) node;
+            sb.append('[').append(function.getName()).append(']');
+            return appendChildren(function.getParameters(), sb, literals);
+        } else if (node instanceof BinaryExpression) {
+            BinaryExpression be = (BinaryExpression) node;
+            return appendChildren(be.getExpression1(), be.getExpression2(), sb, literals);
+        } else if (node instanceof BinaryLogicOperator) {
+            return appendChildren(((BinaryLogicOperator) node).getChildren(), sb, literals);
+        } else if (node instanceof Not) {
+            return appendChildren(((Not) node).getFilter(), null, sb, literals);
+        } else if (node instanceof Id) {
+            // the ids are encoded as parameters, but their number changes the SQL
+            sb.append('[');
+            for (Identifier id : ((Id) node).getIdentifiers()) {
+                sb.append(id.getID()).append(',');
+            }
+            sb.append(']');
+            return true;
+        } else if (node instanceof BinaryComparisonOperator) {
+            BinaryComparisonOperator bc = (BinaryComparisonOperator) node;
+            sb.append('[').append(bc.isMatchingCase()).append(',').append(bc.getMatchAction())
+                    .append(']');
+            return appendChildren(bc.getExpression1(), bc.getExpression2(), sb, literals);
+        } else if (node instanceof PropertyIsLike) {
+            // the pattern is not a literal, it is part of the structure
+            PropertyIsLike like = (PropertyIsLike) node;
+            sb.append('[').append(like.getLiteral()).append(',').append(like.getWildCard())
+                    .append(',').append(like.getSingleChar()).append(',')
+                    .append(like.getEscape()).append(',').append(like.isMatchingCase())
+                    .append(',').append(like.getMatchAction()).append(']');
+            return appendChildren(like.getExpression(), null, sb, literals);
+        } else if (node instanceof PropertyIsBetween) {
+            PropertyIsBetween between = (PropertyIsBetween) node;
+            sb.append('[').append(between.getMatchAction()).append(']');
+            return appendChildren(between.getExpression(), null, sb, literals)
+                    && appendChildren(between.getLowerBoundary(),
+                            between.getUpperBoundary(), sb, literals);
+        } else if (node instanceof PropertyIsNull) {
+            return appendChildren(((PropertyIsNull) node).getExpression(), null, sb, literals);
+        } else if (node instanceof PropertyIsNil) {
+            PropertyIsNil nil = (PropertyIsNil) node;
+            sb.append('[').append(nil.getNilReason()).append(']');
+            return appendChildren(nil.getExpression(), null, sb, literals);
+        } else if (node instanceof BinarySpatialOperator) {
+            BinarySpatialOperator bs = (BinarySpatialOperator) node;
+            sb.append('[').append(bs.getMatchAction());
+            if (node instanceof DistanceBufferOperator) {
+                DistanceBufferOperator db = (DistanceBufferOperator) node;
+                sb.append(',').append(db.getDistance()).append(',').append(
+                        db.getDistanceUnits());
+            }
+            sb.append(']');
+            return appendChildren(bs.getExpression1(), bs.getExpression2(), sb, literals);
+        } else if (node instanceof BinaryTemporalOperator) {
+            BinaryTemporalOperator bt = (BinaryTemporalOperator) node;
+            sb.append('[').append(bt.getMatchAction()).append(']');
+            return appendChildren(bt.getExpression1(), bt.getExpression2(), sb, literals);
+        }
+
+        // unknown element, we cannot tell what makes up its structure
+        return false;
+    }
+
+    static boolean appendChildren(Object first, Object second, StringBuilder sb,
+            List<Literal> literals) {
+        List<Object> children = new ArrayList<Object>(2);
+        children.add(first);
+        if (second != null) {
+            children.add(second);
+        }
+        return appendChildren(children, sb, literals);
+    }
+
+    static boolean appendChildren(List<?> children, StringBuilder sb, List<Literal> literals) {
+        sb.append('(').append(children.size()).append(':');
+        for (Object child : children) {
+            if (!appendShape(child, sb, literals)) {
+                return false;
+            }
+            sb.append(';');
+        }
+        sb.append(')');
+        return true;
+    }
+
+    /**
+     * Number of filters whose encoding has been found in the cache
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Number of filters that had to be encoded
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * The ratio between the hits and the overall number of encoded filters, or 0 if no filter has
+     * been encoded yet
+     */
+    public double getHitRatio() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    /**
+     * Number of cached filter encodings
+     */
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * Removes all the cached encodings
+     */
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    static class Entry {
+        SimpleFeatureType schema;
+
+        String sql;
+
+        PreparedFilterToSQL encoded;
+
+        int[] literalIndexes;
+
+        Entry(SimpleFeatureType schema, String sql, PreparedFilterToSQL encoded,
+                int[] literalIndexes) {
+            this.schema = schema;
+            this.sql = sql;
+            this.encoded = encoded;
+            this.literalIndexes = literalIndexes;
+        }
+    }
+}
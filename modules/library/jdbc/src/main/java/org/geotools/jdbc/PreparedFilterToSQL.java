@@ -58,6 +58,13 @@ public class PreparedFilterToSQL extends FilterToSQL {
     protected PreparedStatementSQLDialect dialect;
     boolean prepareEnabled = true;
     
+    /**
+     * the literal expressions the values have been evaluated from, null for the values 
+     * coming from feature ids, along with the evaluation context of each literal
+     */
+    List<Literal> literalExpressions = new ArrayList<Literal>();
+    List<Class> literalContexts = new ArrayList<Class>();
+    
     /**
      * Default constructor
      * @deprecated Use {@link PreparedFilterToSQL(PreparedStatementSQLDialect)} instead
@@ -100,6 +107,8 @@ public class PreparedFilterToSQL extends FilterToSQL {
         // evaluate the literal and store it for later
         Object literalValue = evaluateLiteral( expression, (context instanceof Class ? (Class) context : null) );
         literalValues.add(literalValue);
+        literalExpressions.add(expression);
+        literalContexts.add(context instanceof Class ? (Class) context : null);
         SRIDs.add(currentSRID);
         dimensions.add(currentDimension);
         
@@ -174,6 +183,8 @@ public class PreparedFilterToSQL extends FilterToSQL {
                     
                     // store the value for later usage
                     literalValues.add(attValues[j]);
+                    literalExpressions.add(null);
+                    literalContexts.add(null);
                     // no srid, pk are not formed with geometry values
                     SRIDs.add(-1);
                     dimensions.add(-1);
@@ -222,4 +233,37 @@ public class PreparedFilterToSQL extends FilterToSQL {
         return dimensions;
     }
 
+    /**
+     * Sets up the values of a filter whose SQL has been encoded by another instance, 
+     * evaluating the literals the same way {@link #visit(Literal, Object)} does
+     * 
+     * @param literals the literals of the filter being encoded, in the order the encoded values
+     *        are expected to be bound
+     * @param contexts the evaluation contexts of the literals
+     * @param encoded the encoder that originally encoded a filter with the same structure, 
+     *        for the values not coming from literals, and the geometry SRIDs and dimensions
+     */
+    void bind(List<Literal> literals, List<Class> contexts, PreparedFilterToSQL encoded) {
+        for (int i = 0; i < literals.size(); i++) {
+            Literal literal = literals.get(i);
+            if (literal == null) {
+                literalValues.add(encoded.literalValues.get(i));
+                literalTypes.add(encoded.literalTypes.get(i));
+            } else {
+                Class context = contexts.get(i);
+                Object literalValue = evaluateLiteral(literal, context);
+                literalValues.add(literalValue);
+                if (context != null) {
+                    literalTypes.add(context);
+                } else {
+                    literalTypes.add(literalValue != null ? literalValue.getClass() : null);
+                }
+            }
+            literalExpressions.add(literal);
+            literalContexts.add(contexts.get(i));
+        }
+        SRIDs.addAll(encoded.SRIDs);
+        dimensions.addAll(encoded.dimensions);
+    }
+
 }
@@ -26,9 +26,11 @@ import java.sql.Statement;
 import java.sql.Time;
 import java.sql.Timestamp;
 import java.sql.Types;
+import java.util.List;
 
 import org.geotools.util.Converters;
 import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.GeometryDescriptor;
 
 import com.vividsolutions.jts.geom.Geometry;
 
@@ -77,6 +79,25 @@ public abstract class PreparedStatementSQLDialect extends SQLDialect {
         sql.append("?");
     }
     
+    /**
+     * Prepared statement version of 
+     * {@link #encodeScreenMapDistinct(GeometryDescriptor, String, PrimaryKey, double, double, StringBuffer)}, 
+     * the numbers are encoded as placeholders and their values added to <code>values</code>, 
+     * in the same order, for the store to set them before the filter ones.
+     * 
+     * @param gatt The default geometry of the feature type
+     * @param prefix The table prefix, may be null
+     * @param key The primary key, used to tell apart the larger features
+     * @param spanX The cell width, in the geometry units 
+     * @param spanY The cell height, in the geometry units
+     * @param sql The prepared sql statement buffer
+     * @param values The list receiving the values of the placeholders, as doubles
+     */
+    public void encodeScreenMapDistinct(GeometryDescriptor gatt, String prefix, PrimaryKey key,
+            double spanX, double spanY, StringBuffer sql, List<Object> values) {
+        throw new UnsupportedOperationException("Screen map decimation not supported");
+    }
+    
     /**
      * Sets the geometry value into the prepared statement. 
      * @param g The geometry
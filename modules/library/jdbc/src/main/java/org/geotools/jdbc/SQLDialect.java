@@ -48,6 +48,7 @@ import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.referencing.CRS;
 import org.geotools.util.logging.Logging;
 import org.opengis.feature.FeatureVisitor;
+import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.feature.type.AttributeDescriptor;
 import org.opengis.feature.type.GeometryDescriptor;
@@ -822,6 +823,44 @@ public abstract class SQLDialect {
         throw new UnsupportedOperationException("Geometry simplification not supported");
     }
 
+    /**
+     * Encodes, right after the SELECT keyword, a clause making the database return a single
+     * feature among the ones whose geometry bounds are smaller than <code>spanX</code> by 
+     * <code>spanY</code> and whose bounds center falls in the same <code>spanX</code> by 
+     * <code>spanY</code> cell, while returning all the larger features.
+     * This allows to perform the {@link Hints#SCREENMAP} pixel decimation in the database, 
+     * the features returned will still be checked against the screen map by the store.
+     * If not supported, subclasses should not implement
+     * Only called if {@link Hints#SCREENMAP} is supported, the query has no sorting, 
+     * the feature type has a primary key and its default geometry is not a point.
+     * The numbers should be encoded with {@link BasicSQLDialect#encodeValue(Object, Class, StringBuffer)}, 
+     * prepared statement dialects are called with 
+     * {@link PreparedStatementSQLDialect#encodeScreenMapDistinct(GeometryDescriptor, String, PrimaryKey, double, double, StringBuffer, java.util.List)}
+     * instead
+     * <p>
+     * Example, using the PostgreSQL syntax:
+     * </p>
+     * <pre>
+     *   <code>
+     *   DISTINCT ON (
+     *     CASE WHEN &lt;small&gt; THEN floor(&lt;center x&gt; / spanX) END,
+     *     CASE WHEN &lt;small&gt; THEN floor(&lt;center y&gt; / spanY) END,
+     *     CASE WHEN &lt;small&gt; THEN NULL ELSE &lt;pk&gt; END)
+     *   </code>
+     * </pre>
+     * 
+     * @param gatt The default geometry of the feature type
+     * @param prefix The table prefix, may be null
+     * @param key The primary key, used to tell apart the larger features
+     * @param spanX The cell width, in the geometry units 
+     * @param spanY The cell height, in the geometry units
+     * @param sql The buffer to append to
+     */
+    public void encodeScreenMapDistinct(GeometryDescriptor gatt, String prefix, PrimaryKey key,
+            double spanX, double spanY, StringBuffer sql) {
+        throw new UnsupportedOperationException("Screen map decimation not supported");
+    }
+
     /**
      * Decodes a geometry value from the result of a query.
      * <p>
@@ -1155,6 +1194,82 @@ public abstract class SQLDialect {
         return null;
     }
     
+    /**
+     * Obtains the next <tt>count</tt> values of a sequence, used when inserting features in
+     * batches.
+     * <p>
+     * The default implementation calls {@link #getNextSequenceValue(String, String, Connection)}
+     * once per value, subclasses should override to grab all the values in a single round trip.
+     * </p>
+     * @param schemaName The schema name, this might be <code>null</code>.
+     * @param sequenceName The name of the sequence.
+     * @param count The number of values to be returned.
+     * @param cx The database connection.
+     *
+     * @return The next values of the sequence.
+     */
+    public List<Object> getNextSequenceValues(String schemaName, String sequenceName, int count,
+            Connection cx) throws SQLException {
+        List<Object> values = new ArrayList<Object>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(getNextSequenceValue(schemaName, sequenceName, cx));
+        }
+        return values;
+    }
+    
+    /**
+     * Obtains the next <tt>count</tt> values of an auto generated column, reserving them so that
+     * they can be explicitly used when inserting features in batches.
+     * <p>
+     * Unlike {@link #getNextAutoGeneratedValue(String, String, String, Connection)}, which can
+     * just peek at the next value, the values returned must not be generated again by the
+     * database. The default implementation returns <code>null</code>, meaning the values cannot
+     * be reserved, and the features will be inserted one at a time.
+     * </p>
+     * @param schemaName The schema name, this might be <code>null</code>.
+     * @param tableName The name of the table.
+     * @param columnName The column.
+     * @param count The number of values to be returned.
+     * @param cx The database connection.
+     *
+     * @return The next values of the column, or <code>null</code>.
+     */
+    public List<Object> getNextAutoGeneratedValues(String schemaName, String tableName,
+            String columnName, int count, Connection cx) throws SQLException {
+        return null;
+    }
+    
+    /**
+     * Returns true if this dialect can load a batch of new features with a native bulk loading
+     * mechanism, faster than a batch of insert statements.
+     * <p>
+     * Default implementation returns false, subclasses returning true must implement
+     * {@link #bulkInsert(SimpleFeatureType, List, PrimaryKey, List, Connection)}.
+     * </p>
+     */
+    public boolean isBulkInsertSupported() {
+        return false;
+    }
+    
+    /**
+     * Loads a batch of new features in the table backing the feature type.
+     * <p>
+     * The key values of all the features are provided, including the ones of the auto generated
+     * columns, and must be inserted as they are. The connection must not be closed, and it is
+     * part of the current transaction.
+     * </p>
+     * @param featureType The feature type of the table.
+     * @param features The features to be inserted.
+     * @param key The primary key of the table.
+     * @param keyValues The primary key values, one list per feature.
+     * @param cx The database connection.
+     */
+    public void bulkInsert(SimpleFeatureType featureType, List<SimpleFeature> features,
+            PrimaryKey key, List<List<Object>> keyValues, Connection cx) throws SQLException,
+            IOException {
+        throw new UnsupportedOperationException("Bulk insert is not supported");
+    }
+    
     /**
      * Returns true if this dialect can encode both {@linkplain Query#getStartIndex()}
      * and {@linkplain Query#getMaxFeatures()} into native SQL. 
@@ -1183,6 +1298,7 @@ public abstract class SQLDialect {
      *  
      * {@link Hints#GEOMETRY_GENERALIZATION}
      * {@link Hints#GEOMETRY_SIMPLIFICATION}
+     * {@link Hints#SCREENMAP}
      *  
      * @param hints
      */
@@ -16,6 +16,7 @@
  */
 package org.geotools.jdbc;
 
+import java.awt.geom.AffineTransform;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.SQLException;
@@ -51,12 +52,16 @@ import org.geotools.geometry.jts.LiteCoordinateSequence;
 import org.geotools.geometry.jts.LiteCoordinateSequenceFactory;
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.referencing.CRS;
+import org.geotools.referencing.operation.transform.AffineTransform2D;
+import org.geotools.renderer.ScreenMap;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.feature.type.AttributeDescriptor;
 import org.opengis.filter.Filter;
 import org.opengis.filter.FilterFactory;
 import org.opengis.filter.PropertyIsEqualTo;
+import org.opengis.filter.sort.SortBy;
+import org.opengis.filter.sort.SortOrder;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 
 import com.vividsolutions.jts.geom.Geometry;
@@ -1718,4 +1723,49 @@ public abstract class JDBCDataStoreAPITest extends JDBCTestSupport {
             }    
 	    assertTrue(original.getNumPoints()>=simplified.getNumPoints());
 	}
+
+    public void testScreenMap() throws Exception {
+        SimpleFeatureSource fs = dataStore.getFeatureSource(tname("road"));
+
+        if (fs.getSupportedHints().contains(Hints.SCREENMAP) == false)
+            return;
+
+        // all roads are smaller than a pixel, and fall in the same pixel
+        ScreenMap screenMap = new ScreenMap(0, 0, 10, 10, new AffineTransform2D(
+                AffineTransform.getScaleInstance(0.1, 0.1)));
+        screenMap.setSpans(10, 10);
+        Query query = new Query();
+        query.setHints(new Hints(Hints.SCREENMAP, screenMap));
+        assertEquals(1, countFeatures(fs.getFeatures(query)));
+
+        // with small pixels all roads are returned
+        screenMap = new ScreenMap(0, 0, 10000, 10000, new AffineTransform2D(
+                AffineTransform.getScaleInstance(1000, 1000)));
+        screenMap.setSpans(0.001, 0.001);
+        query.setHints(new Hints(Hints.SCREENMAP, screenMap));
+        assertEquals(3, countFeatures(fs.getFeatures(query)));
+
+        // sorting prevents the database decimation, the store still applies the screen map
+        screenMap = new ScreenMap(0, 0, 10, 10, new AffineTransform2D(
+                AffineTransform.getScaleInstance(0.1, 0.1)));
+        screenMap.setSpans(10, 10);
+        query.setHints(new Hints(Hints.SCREENMAP, screenMap));
+        query.setSortBy(new SortBy[] { dataStore.getFilterFactory().sort(td.ROAD_ID,
+                SortOrder.ASCENDING) });
+        assertEquals(1, countFeatures(fs.getFeatures(query)));
+    }
+
+    private int countFeatures(SimpleFeatureCollection fc) {
+        int count = 0;
+        SimpleFeatureIterator iterator = fc.features();
+        try {
+            while (iterator.hasNext()) {
+                iterator.next();
+                count++;
+            }
+        } finally {
+            iterator.close();
+        }
+        return count;
+    }
 }
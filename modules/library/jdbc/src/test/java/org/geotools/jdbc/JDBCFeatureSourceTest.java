@@ -17,10 +17,17 @@
 package org.geotools.jdbc;
 
 import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
 
 import org.geotools.data.Query;
+import org.geotools.data.DataUtilities;
 import org.geotools.data.DefaultTransaction;
+import org.geotools.data.FeatureReader;
 import org.geotools.data.QueryCapabilities;
 import org.geotools.data.Transaction;
 import org.geotools.data.simple.SimpleFeatureCollection;
@@ -30,6 +37,7 @@ import org.geotools.factory.CommonFactoryFinder;
 import org.geotools.factory.Hints;
 import org.geotools.feature.FeatureCollection;
 import org.geotools.feature.FeatureIterator;
+import org.geotools.feature.visitor.BoundsVisitor;
 import org.geotools.geometry.jts.LiteCoordinateSequenceFactory;
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.referencing.CRS;
@@ -424,6 +432,95 @@ public abstract class JDBCFeatureSourceTest extends JDBCTestSupport {
         features.close();
     }
     
+    public void testPageCursor() throws Exception {
+        for (SortBy sort : new SortBy[] { SortBy.NATURAL_ORDER, SortBy.REVERSE_ORDER }) {
+            Query q = new Query(featureSource.getSchema().getTypeName());
+            q.setSortBy(new SortBy[] { sort });
+            List<String> expected = new ArrayList<String>();
+            SimpleFeatureIterator features = featureSource.getFeatures(q).features();
+            try {
+                while (features.hasNext()) {
+                    expected.add(features.next().getID());
+                }
+            } finally {
+                features.close();
+            }
+
+            // read one feature per page, seeking after the last feature of the previous page
+            List<String> actual = new ArrayList<String>();
+            SimpleFeature cursor = null;
+            for (int page = 0; page <= expected.size(); page++) {
+                Query pq = new Query(q);
+                pq.setStartIndex(page);
+                pq.setMaxFeatures(1);
+                if (cursor != null) {
+                    pq.setHints(new Hints(Hints.PAGE_CURSOR, cursor));
+                    assertNotNull(((JDBCFeatureStore) featureSource).getFeatureSource()
+                            .getPageCursorFilter(pq));
+                }
+                features = featureSource.getFeatures(pq).features();
+                try {
+                    if (features.hasNext()) {
+                        cursor = features.next();
+                        actual.add(cursor.getID());
+                    }
+                    assertFalse(features.hasNext());
+                } finally {
+                    features.close();
+                }
+            }
+            assertEquals(expected, actual);
+        }
+    }
+
+    public void testPageCursorReverseMultiple() throws Exception {
+        Query q = new Query(featureSource.getSchema().getTypeName());
+        q.setSortBy(new SortBy[] { SortBy.REVERSE_ORDER });
+        List<String> expected = new ArrayList<String>();
+        SimpleFeatureIterator features = featureSource.getFeatures(q).features();
+        try {
+            while (features.hasNext()) {
+                expected.add(features.next().getID());
+            }
+        } finally {
+            features.close();
+        }
+
+        // read two features per page, seeking after the last feature of the previous page
+        List<String> actual = new ArrayList<String>();
+        SimpleFeature cursor = null;
+        for (int start = 0; start < expected.size(); start += 2) {
+            Query pq = new Query(q);
+            pq.setStartIndex(start);
+            pq.setMaxFeatures(2);
+            if (cursor != null) {
+                pq.setHints(new Hints(Hints.PAGE_CURSOR, cursor));
+            }
+            SimpleFeatureCollection page = featureSource.getFeatures(pq);
+            assertEquals(Math.min(2, expected.size() - start), page.size());
+            features = page.features();
+            try {
+                while (features.hasNext()) {
+                    cursor = features.next();
+                    actual.add(cursor.getID());
+                }
+            } finally {
+                features.close();
+            }
+        }
+        assertEquals(expected, actual);
+    }
+
+    public void testPageCursorNotUnique() throws Exception {
+        Query q = new Query(featureSource.getSchema().getTypeName());
+        q.setSortBy(new SortBy[] { dataStore.getFilterFactory().sort(aname("stringProperty"),
+                SortOrder.ASCENDING) });
+        SimpleFeature cursor = DataUtilities.first(featureSource.getFeatures(q));
+        q.setHints(new Hints(Hints.PAGE_CURSOR, cursor));
+        // the sort does not identify the features, the start index is used instead
+        assertNull(((JDBCFeatureStore) featureSource).getFeatureSource().getPageCursorFilter(q));
+    }
+
     public void testFeatureIteratorNextContract() throws Exception {
         SimpleFeatureIterator features = featureSource.getFeatures().features();
         
@@ -562,4 +659,63 @@ public abstract class JDBCFeatureSourceTest extends JDBCTestSupport {
     		}
     	}
      }
+
+    public void testParallelRead() throws Exception {
+        JDBCFeatureSource source = ((JDBCFeatureStore) featureSource).getFeatureSource();
+        dataStore.setParallelReads(3);
+        try {
+            if (!source.canReadInParallel(Query.ALL)) {
+                // the primary key is not integral in this database
+                return;
+            }
+        } finally {
+            dataStore.setParallelReads(1);
+        }
+
+        ParallelRead read = new ParallelRead(source, Query.ALL, 3);
+        // the test table is tiny, force the split anyways
+        read.minPartitionSize = 1;
+        assertEquals(3, read.getPartitionFilters().size());
+
+        Set<String> expected = new HashSet<String>();
+        SimpleFeatureIterator it = featureSource.getFeatures().features();
+        try {
+            while (it.hasNext()) {
+                expected.add(it.next().getID());
+            }
+        } finally {
+            it.close();
+        }
+
+        Set<String> actual = new HashSet<String>();
+        FeatureReader<SimpleFeatureType, SimpleFeature> reader = read.getReader();
+        try {
+            while (reader.hasNext()) {
+                assertTrue(actual.add(reader.next().getID()));
+            }
+        } finally {
+            reader.close();
+        }
+        assertEquals(expected, actual);
+
+        // the visitor partials get merged back
+        BoundsVisitor sequential = new BoundsVisitor();
+        featureSource.accepts(Query.ALL, sequential, null);
+        BoundsVisitor parallel = new BoundsVisitor();
+        read = new ParallelRead(source, Query.ALL, 3);
+        read.minPartitionSize = 1;
+        assertTrue(read.visit(parallel));
+        assertEquals(sequential.getBounds(), parallel.getBounds());
+
+        // a subclass might change the visit logic, it is not split
+        BoundsVisitor subclass = new BoundsVisitor() {};
+        read = new ParallelRead(source, Query.ALL, 3);
+        read.minPartitionSize = 1;
+        assertFalse(read.visit(subclass));
+        assertTrue(subclass.getBounds().isEmpty());
+
+        // all the partitions gave their permits back
+        Semaphore permits = dataStore.getParallelReadPermits();
+        assertEquals(ParallelRead.getMaxRunningPartitions(dataStore), permits.availablePermits());
+    }
 }
@@ -148,7 +148,43 @@ public abstract class JDBCFeatureStoreTest extends JDBCTestSupport {
             assertEquals(1, features.size());
         }
     }
-    
+
+    public void testAddFeaturesInBatches() throws IOException {
+        // two full batches and a partial one, flushed when the writer is closed
+        dataStore.setBatchInsertSize(2);
+        SimpleFeatureBuilder b = new SimpleFeatureBuilder(featureStore.getSchema());
+        DefaultFeatureCollection collection = new DefaultFeatureCollection(null,
+                featureStore.getSchema());
+        for (int i = 3; i < 8; i++) {
+            b.set(aname("intProperty"), new Integer(i));
+            b.set(aname("geometry"), new GeometryFactory().createPoint(new Coordinate(i, i)));
+            collection.add(b.buildFeature(null));
+        }
+        FeatureEventWatcher watcher = new FeatureEventWatcher();
+        featureStore.addFeatureListener( watcher );
+        List<FeatureId> fids = featureStore.addFeatures((SimpleFeatureCollection)collection);
+        assertEquals( watcher.bounds, collection.getBounds() );
+
+        assertEquals(5, fids.size());
+        assertEquals(5, new HashSet<FeatureId>(fids).size());
+        assertEquals(8, featureStore.getFeatures().size());
+
+        FilterFactory ff = dataStore.getFilterFactory();
+        for (int i = 0; i < fids.size(); i++) {
+            Id filter = ff.id(Collections.singleton(fids.get(i)));
+            SimpleFeatureIterator iterator = featureStore.getFeatures(filter).features();
+            try {
+                assertTrue(iterator.hasNext());
+                SimpleFeature feature = iterator.next();
+                assertEquals(fids.get(i).getID(), feature.getID());
+                assertEquals(i + 3, ((Number) feature.getAttribute(aname("intProperty"))).intValue());
+                assertFalse(iterator.hasNext());
+            } finally {
+                iterator.close();
+            }
+        }
+    }
+
     public void testAddInTransaction() throws IOException {
         SimpleFeatureBuilder b = new SimpleFeatureBuilder(featureStore.getSchema());
         DefaultFeatureCollection collection = new DefaultFeatureCollection(null,
@@ -0,0 +1,116 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.jdbc;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.geotools.data.DataUtilities;
+import org.geotools.factory.CommonFactoryFinder;
+import org.junit.Before;
+import org.junit.Test;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.Filter;
+import org.opengis.filter.FilterFactory2;
+import org.opengis.filter.expression.Literal;
+
+public class PreparedFilterCacheTest {
+
+    FilterFactory2 ff = CommonFactoryFinder.getFilterFactory2();
+
+    SimpleFeatureType schema;
+
+    PreparedFilterCache cache;
+
+    @Before
+    public void setup() throws Exception {
+        schema = DataUtilities.createType("test", "name:String,value:Integer");
+        cache = new PreparedFilterCache(2);
+    }
+
+    PreparedFilterToSQL encoder() {
+        PreparedFilterToSQL toSQL = new PreparedFilterToSQL((PreparedStatementSQLDialect) null);
+        toSQL.setFeatureType(schema);
+        toSQL.setInline(true);
+        return toSQL;
+    }
+
+    Filter nameAndValue(String name, int value) {
+        return ff.and(ff.equal(ff.property("name"), ff.literal(name), true),
+                ff.greater(ff.property("value"), ff.literal(value)));
+    }
+
+    @Test
+    public void testSameStructure() throws Exception {
+        PreparedFilterToSQL first = encoder();
+        String sql = cache.encode(schema, nameAndValue("a", 10), first);
+        assertEquals(0, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.size());
+        assertEquals(Arrays.asList((Object) "a", 10), first.getLiteralValues());
+
+        PreparedFilterToSQL second = encoder();
+        assertEquals(sql, cache.encode(schema, nameAndValue("b", 20), second));
+        assertEquals(1, cache.getHits());
+        assertEquals(0.5, cache.getHitRatio(), 0d);
+        assertEquals(Arrays.asList((Object) "b", 20), second.getLiteralValues());
+        assertEquals(first.getLiteralTypes(), second.getLiteralTypes());
+        assertEquals(first.getSRIDs(), second.getSRIDs());
+        assertEquals(first.getDimensions(), second.getDimensions());
+    }
+
+    @Test
+    public void testDifferentStructure() throws Exception {
+        cache.encode(schema, nameAndValue("a", 10), encoder());
+        // matching case changes the SQL, but not the filter equality
+        cache.encode(schema, ff.and(ff.equal(ff.property("name"), ff.literal("a"), false),
+                ff.greater(ff.property("value"), ff.literal(10))), encoder());
+        // different value types might be encoded differently
+        cache.encode(schema, ff.and(ff.equal(ff.property("name"), ff.literal("a"), true),
+                ff.greater(ff.property("value"), ff.literal(10.5))), encoder());
+        // the like pattern is part of the SQL
+        cache.encode(schema, ff.like(ff.property("name"), "a*"), encoder());
+        cache.encode(schema, ff.like(ff.property("name"), "b*"), encoder());
+        assertEquals(0, cache.getHits());
+        assertEquals(5, cache.getMisses());
+        // the cache is bounded
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testSchemaChange() throws Exception {
+        cache.encode(schema, nameAndValue("a", 10), encoder());
+        schema = DataUtilities.createType("test", "name:String,value:Integer");
+        cache.encode(schema, nameAndValue("b", 20), encoder());
+        assertEquals(0, cache.getHits());
+        cache.encode(schema, nameAndValue("c", 30), encoder());
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void testSharedLiteral() throws Exception {
+        Literal shared = ff.literal(10);
+        Filter filter = ff.or(ff.equal(ff.property("value"), shared, true),
+                ff.greater(ff.property("value"), shared));
+        PreparedFilterToSQL toSQL = encoder();
+        cache.encode(schema, filter, toSQL);
+        assertEquals(Arrays.asList((Object) 10, 10), toSQL.getLiteralValues());
+        // cannot tell which parameter comes from which literal, not cached
+        assertEquals(0, cache.size());
+    }
+}
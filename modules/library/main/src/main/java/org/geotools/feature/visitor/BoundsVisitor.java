@@ -31,7 +31,7 @@ import com.vividsolutions.jts.geom.Envelope;
  *
  * @source $URL$
  */
-public class BoundsVisitor implements FeatureCalc {
+public class BoundsVisitor implements MergeableFeatureCalc {
     ReferencedEnvelope bounds = new ReferencedEnvelope();    
         
     public void visit(org.opengis.feature.Feature feature) {
@@ -46,6 +46,20 @@ public class BoundsVisitor implements FeatureCalc {
         this.bounds = new ReferencedEnvelope();
     }
 
+    public MergeableFeatureCalc createPartial() {
+        if (getClass() != BoundsVisitor.class) {
+            return null;
+        }
+        return new BoundsVisitor();
+    }
+
+    public void merge(MergeableFeatureCalc partial) {
+        ReferencedEnvelope other = ((BoundsVisitor) partial).bounds;
+        if (other != null && !other.isNull()) {
+            bounds.include(other);
+        }
+    }
+
     public CalcResult getResult() {
     	if(bounds == null || bounds.isEmpty()) {
     		return CalcResult.NULL_RESULT;
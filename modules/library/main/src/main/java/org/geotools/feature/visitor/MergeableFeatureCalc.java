@@ -0,0 +1,45 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.feature.visitor;
+
+/**
+ * A {@link FeatureCalc} whose calculation can be split among several partial calculators, each
+ * one visiting a subset of the features, and whose results can then be merged back. Stores
+ * can use this to visit different portions of the data in parallel.
+ * <p>
+ * The partial calculators are used each by a single thread, the merges happen in the thread
+ * that originally received the visitor.
+ */
+public interface MergeableFeatureCalc extends FeatureCalc {
+
+    /**
+     * Returns a new calculator, performing the same calculation as this one, but with no
+     * features visited yet. Callers must visit the features sequentially with this calculator
+     * when null is returned.
+     *
+     * @return the partial calculator, or null if the calculation cannot be split, e.g. because
+     *         this calculator is a subclass that might change the visit logic
+     */
+    MergeableFeatureCalc createPartial();
+
+    /**
+     * Merges in this calculator the results of a partial one
+     *
+     * @param partial a calculator built by {@link #createPartial()}
+     */
+    void merge(MergeableFeatureCalc partial);
+}
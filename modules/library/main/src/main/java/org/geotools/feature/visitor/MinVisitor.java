@@ -37,11 +37,13 @@ import org.opengis.filter.expression.Expression;
  *
  * @source $URL$
  */
-public class MinVisitor implements FeatureCalc, FeatureAttributeVisitor {
+public class MinVisitor implements MergeableFeatureCalc, FeatureAttributeVisitor {
     private Expression expr;
     Comparable minvalue;
     Comparable curvalue;
     boolean visited = false;
+    int countNull = 0;
+    int countNaN = 0;
 
     public MinVisitor(String attributeTypeName) {
         FilterFactory factory = CommonFactoryFinder.getFilterFactory(null);
@@ -85,7 +87,16 @@ public class MinVisitor implements FeatureCalc, FeatureAttributeVisitor {
         Object attribValue = expr.evaluate(feature);
 
         if (attribValue == null) {
-            return; //attribute is null, therefore skip
+            countNull++; //increment the null count, but don't store its value
+            return;
+        }
+
+        if (attribValue instanceof Double) {
+            double doubleVal = ((Double) attribValue).doubleValue();
+            if (Double.isNaN(doubleVal)) {
+                countNaN++; //increment the NaN count, but don't store NaN as the min
+                return;
+            }
         }
 
         curvalue = (Comparable) attribValue;
@@ -114,12 +125,45 @@ public class MinVisitor implements FeatureCalc, FeatureAttributeVisitor {
         return minvalue;
     }
 
+    /**
+     * @return the number of features which returned a NaN
+     */
+    public int getNaNCount() {
+        return countNaN;
+    }
+
+    /**
+     * @return the number of features which returned a null
+     */
+    public int getNullCount() {
+        return countNull;
+    }
+
     public void reset() {
         /**
          * Reset the count and current minimum
          */
         this.visited = false;
         this.minvalue = new Integer(0);
+        this.countNaN = 0;
+        this.countNull = 0;
+    }
+
+    public MergeableFeatureCalc createPartial() {
+        if (getClass() != MinVisitor.class) {
+            return null;
+        }
+        return new MinVisitor(expr);
+    }
+
+    public void merge(MergeableFeatureCalc partial) {
+        MinVisitor other = (MinVisitor) partial;
+        if (other.visited && (!visited || other.minvalue.compareTo(minvalue) < 0)) {
+            minvalue = other.minvalue;
+            visited = true;
+        }
+        countNull += other.countNull;
+        countNaN += other.countNaN;
     }
 
     public CalcResult getResult() {
@@ -42,7 +42,7 @@ import org.opengis.filter.expression.Expression;
  *
  * @source $URL$
  */
-public class SumVisitor implements FeatureCalc, FeatureAttributeVisitor {
+public class SumVisitor implements MergeableFeatureCalc, FeatureAttributeVisitor {
     private Expression expr;
     SumStrategy strategy;
 
@@ -128,6 +128,24 @@ public class SumVisitor implements FeatureCalc, FeatureAttributeVisitor {
         strategy = null;
     }
 
+    public MergeableFeatureCalc createPartial() {
+        if (getClass() != SumVisitor.class) {
+            return null;
+        }
+        return new SumVisitor(expr);
+    }
+
+    public void merge(MergeableFeatureCalc partial) {
+        SumVisitor other = (SumVisitor) partial;
+        if (other.strategy != null) {
+            Object partialSum = other.strategy.getResult();
+            if (strategy == null) {
+                strategy = createStrategy(partialSum.getClass());
+            }
+            strategy.add(partialSum);
+        }
+    }
+
     public CalcResult getResult() {
     	if(strategy == null) {
     		return CalcResult.NULL_RESULT;
@@ -46,7 +46,7 @@ import org.opengis.filter.expression.Expression;
  *
  * @source $URL$
  */
-public class UniqueVisitor implements FeatureCalc, FeatureAttributeVisitor {
+public class UniqueVisitor implements MergeableFeatureCalc, FeatureAttributeVisitor {
     private Expression expr;
     Set set = new HashSet();
 
@@ -124,6 +124,17 @@ public class UniqueVisitor implements FeatureCalc, FeatureAttributeVisitor {
         this.set = new HashSet();
     }
 
+    public MergeableFeatureCalc createPartial() {
+        if (getClass() != UniqueVisitor.class) {
+            return null;
+        }
+        return new UniqueVisitor(expr);
+    }
+
+    public void merge(MergeableFeatureCalc partial) {
+        set.addAll(((UniqueVisitor) partial).set);
+    }
+
     public CalcResult getResult() {
         if (set.size() < 1) {
             return CalcResult.NULL_RESULT;
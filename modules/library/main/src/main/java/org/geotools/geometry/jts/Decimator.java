@@ -17,15 +17,19 @@
 package org.geotools.geometry.jts;
 
 import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.opengis.referencing.operation.MathTransform;
 import org.opengis.referencing.operation.TransformException;
 
+import com.vividsolutions.jts.geom.CoordinateSequence;
 import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.geom.GeometryCollection;
+import com.vividsolutions.jts.geom.GeometryFactory;
 import com.vividsolutions.jts.geom.LineString;
 import com.vividsolutions.jts.geom.LinearRing;
 import com.vividsolutions.jts.geom.MultiPoint;
@@ -64,6 +68,21 @@ public final class Decimator {
     }
     
     private static final double EPS = 1e-9; 
+    
+    /**
+     * Max size of the per thread scratch buffers, larger coordinate arrays are allocated
+     * on demand and not retained (1M doubles, 8MB)
+     */
+    static final int MAX_SCRATCH_SIZE = 1024 * 1024;
+    
+    /**
+     * Per thread scratch buffer used to decimate and transform coordinates without allocating
+     * temporary arrays
+     */
+    private static final ThreadLocal<double[]> SCRATCH = new ThreadLocal<double[]>();
+    
+    private static final GeometryFactory LITE_FACTORY = new GeometryFactory(
+            new LiteCoordinateSequenceFactory());
 
 	private double spanx = -1;
 
@@ -231,6 +250,66 @@ public final class Decimator {
 		}
 	}
 
+	/**
+	 * Builds a decimated, transformed and generalized copy of the geometry, backed by
+	 * {@link LiteCoordinateSequence}. The source geometry can use any coordinate sequence and
+	 * is left untouched.
+	 * <p>
+	 * This is equivalent to cloning the geometry with
+	 * {@link LiteCoordinateSequence#cloneGeometry(Geometry, int)} and then calling
+	 * {@link #decimateTransformGeneralize(Geometry, MathTransform)}, but the coordinates are
+	 * read into a per thread scratch buffer, and only the final, decimated arrays get
+	 * allocated.
+	 * 
+	 * @param geometry
+	 * @param transform
+	 * @return
+	 * @throws TransformException
+	 */
+	public final Geometry decimateTransformGeneralizeCopy(Geometry geometry,
+	        MathTransform transform) throws TransformException {
+	    if (geometry instanceof GeometryCollection) {
+	        GeometryCollection collection = (GeometryCollection) geometry;
+	        final int length = collection.getNumGeometries();
+	        if (length == 0) {
+	            return LITE_FACTORY.createGeometryCollection(new Geometry[0]);
+	        }
+	        List<Geometry> geometries = new ArrayList<Geometry>(length);
+	        for (int i = 0; i < length; i++) {
+	            geometries.add(decimateTransformGeneralizeCopy(collection.getGeometryN(i),
+	                    transform));
+	        }
+	        return LITE_FACTORY.buildGeometry(geometries);
+	    } else if (geometry instanceof Point) {
+	        CoordinateSequence cs = ((Point) geometry).getCoordinateSequence();
+	        return LITE_FACTORY.createPoint(decimateTransformGeneralizeCopy(cs, transform, false));
+	    } else if (geometry instanceof Polygon) {
+	        Polygon polygon = (Polygon) geometry;
+	        LinearRing shell = (LinearRing) decimateTransformGeneralizeCopy(
+	                polygon.getExteriorRing(), transform);
+	        LinearRing[] holes = new LinearRing[polygon.getNumInteriorRing()];
+	        for (int i = 0; i < holes.length; i++) {
+	            holes[i] = (LinearRing) decimateTransformGeneralizeCopy(
+	                    polygon.getInteriorRingN(i), transform);
+	        }
+	        return LITE_FACTORY.createPolygon(shell, holes);
+	    } else if (geometry instanceof LinearRing) {
+	        CoordinateSequence cs = ((LinearRing) geometry).getCoordinateSequence();
+	        return LITE_FACTORY.createLinearRing(decimateTransformGeneralizeCopy(cs, transform,
+	                true));
+	    } else if (geometry instanceof LineString) {
+	        CoordinateSequence cs = ((LineString) geometry).getCoordinateSequence();
+	        boolean loop = false;
+	        if (cs.size() > 1) {
+	            loop = Math.abs(cs.getOrdinate(0, 0) - cs.getOrdinate(cs.size() - 1, 0)) < EPS
+	                    && Math.abs(cs.getOrdinate(0, 1) - cs.getOrdinate(cs.size() - 1, 1)) < EPS;
+	        }
+	        return LITE_FACTORY.createLineString(decimateTransformGeneralizeCopy(cs, transform,
+	                loop));
+	    }
+	    return null;
+	}
+
 	/**
 	 * decimates JTS geometries.
 	 */
@@ -323,101 +402,173 @@ public final class Decimator {
 	 * 1. remove any points that are within the spanx,spany. We ALWAYS keep 1st
 	 * and last point 2. transform to screen coordinates 3. remove any points
 	 * that are close (span <1)
+	 * <p>
+	 * The work is performed in place when the sequence dimension matches the transform one,
+	 * in a per thread scratch buffer otherwise, and a new array is allocated only if the
+	 * number of coordinates or the dimension changed
 	 * 
 	 * @param seq
 	 * @param tranform
 	 */
 	private final void decimateTransformGeneralize(LiteCoordinateSequence seq,
 			MathTransform transform, boolean ring) throws TransformException {
-		// decimates before XFORM
-		int ncoords = seq.size();
-		double coords[] = null;
-		if(transform != null) {
-		    coords = seq.getOrdinateArray(transform.getSourceDimensions());
-		} else {
-		    coords = seq.getXYArray();
-		}
-
-		if (ncoords < 2) {
-			if (ncoords == 1) // 1 coordinate -- just xform it
-			{
-				// double[] newCoordsXformed2 = new double[2];
-			    if(transform != null) {
-			        transform.transform(coords, 0, coords, 0, 1);
-			        seq.setArray(coords, 2);
-			    }
-				return;
-			} else
-				return; // ncoords =0
+		final int ncoords = seq.size();
+		if (isNoOp(ncoords, transform)) {
+		    return;
 		}
 		
-		// if spanx/spany is -1, then no generalization should be done and all
-        // coordinates can just be transformed directly
-        if (spanx == -1 && spany == -1) {
-            // do the xform if needed
-            if ((transform != null) && (!transform.isIdentity())) {
-                transform.transform(coords, 0, coords, 0, ncoords);
-                seq.setArray(coords, 2);
-            }
-            return;
-        }
-
-        // generalize, use the heavier algorithm for longer lines
-        int actualCoords = spanBasedGeneralize(ncoords, coords);
-        if(DP_THRESHOLD > 0 && actualCoords > DP_THRESHOLD) {
-            actualCoords = dpBasedGeneralize(actualCoords, coords, Math.min(spanx, spany) * Math.min(spanx, spany));
-        }
-		
-		// handle rings
-		if(ring && actualCoords <= 3) {
-		    if(coords.length > 6) {
-		        // normal rings
-    			coords[2] = coords[2];
-    			coords[3] = coords[3];
-    			coords[4] = coords[4];
-    			coords[5] = coords[5];
-    			actualCoords = 3;
-		    } else if(coords.length > 4){
-		        // invalid rings, they do A-B-A, that is, two overlapping lines
-		        coords[2] = coords[2];
-                coords[3] = coords[3];
-                actualCoords = 2;
-		    }
+		final int dims = transform != null ? transform.getSourceDimensions() : 2;
+		double[] coords = seq.getArray();
+		if (seq.getDimension() != dims) {
+		    double[] scratch = getScratch(ncoords * dims);
+		    copyOrdinates(seq, scratch, ncoords, dims);
+		    coords = scratch;
 		}
 		
-		// always have last one
-		coords[actualCoords * 2] = coords[(ncoords - 1) * 2];
-		coords[actualCoords * 2 + 1] = coords[(ncoords - 1) * 2 + 1];
-		actualCoords++;
-
-		// DO THE XFORM
-		if ((transform == null) || (transform.isIdentity())) {
-		    // no actual xform
-		} else {
-		    transform.transform(coords, 0, coords, 0, actualCoords);
-		}
+		int actualCoords = decimateTransformGeneralize(coords, ncoords, dims, transform, ring);
 
 		// stick back into the coordinate sequence
-		if(actualCoords * 2 < coords.length) {
+		if(coords == seq.getArray() && actualCoords * 2 == coords.length) {
+		    seq.setArray(coords, 2);
+		} else {
 		    double[] seqDouble = new double[2 * actualCoords];
 		    System.arraycopy(coords, 0, seqDouble, 0, actualCoords * 2);
 		    seq.setArray(seqDouble, 2);
-		} else {
-		    seq.setArray(coords, 2);
 		}
 	}
+	
+	/**
+	 * Same as {@link #decimateTransformGeneralize(LiteCoordinateSequence, MathTransform, boolean)},
+	 * but reads from a generic coordinate sequence, which is left untouched, and returns the
+	 * results in a new {@link LiteCoordinateSequence}
+	 */
+	private LiteCoordinateSequence decimateTransformGeneralizeCopy(CoordinateSequence cs,
+	        MathTransform transform, boolean ring) throws TransformException {
+	    final int ncoords = cs.size();
+	    final int dims = transform != null ? transform.getSourceDimensions() : 2;
+	    if (isNoOp(ncoords, transform)) {
+	        return new LiteCoordinateSequence(cs, dims);
+	    }
+	    
+	    double[] coords = getScratch(ncoords * dims);
+	    copyOrdinates(cs, coords, ncoords, dims);
+	    int actualCoords = decimateTransformGeneralize(coords, ncoords, dims, transform, ring);
+	    
+	    double[] seqDouble = new double[2 * actualCoords];
+	    System.arraycopy(coords, 0, seqDouble, 0, actualCoords * 2);
+	    return new LiteCoordinateSequence(seqDouble, 2);
+	}
+	
+	/**
+	 * Returns true if neither generalization nor transformation is needed
+	 */
+	private boolean isNoOp(int ncoords, MathTransform transform) {
+	    if (transform == null) {
+	        return ncoords < 2 || (spanx == -1 && spany == -1);
+	    } else {
+	        return ncoords == 0
+	                || (ncoords > 1 && spanx == -1 && spany == -1 && transform.isIdentity());
+	    }
+	}
+	
+	/**
+	 * Generalizes and transforms the first ncoords coordinates of the array, packed with the
+	 * specified dimension. The results are written back at the beginning of the same array,
+	 * packed in two dimensions
+	 * 
+	 * @return the number of coordinates left after the generalization 
+	 */
+	private int decimateTransformGeneralize(double[] coords, int ncoords, int dims,
+	        MathTransform transform, boolean ring) throws TransformException {
+	    int actualCoords = ncoords;
+	    
+	    // if spanx/spany is -1, then no generalization should be done and all
+	    // coordinates can just be transformed directly
+	    if (ncoords > 1 && (spanx != -1 || spany != -1)) {
+	        // generalize, use the heavier algorithm for longer lines
+	        actualCoords = spanBasedGeneralize(ncoords, coords, dims);
+	        if(DP_THRESHOLD > 0 && actualCoords > DP_THRESHOLD) {
+	            actualCoords = dpBasedGeneralize(actualCoords, coords, dims, Math.min(spanx, spany) * Math.min(spanx, spany));
+	        }
+	        
+	        // handle rings, keeping the first points as they are
+	        if(ring && actualCoords <= 3) {
+	            if(ncoords > 3) {
+	                // normal rings
+	                actualCoords = 3;
+	            } else if(ncoords > 2){
+	                // invalid rings, they do A-B-A, that is, two overlapping lines
+	                actualCoords = 2;
+	            }
+	        }
+	        
+	        // always have last one
+	        copyCoordinate(coords, dims, actualCoords * dims, (ncoords - 1) * dims);
+	        actualCoords++;
+	    }
+
+	    // DO THE XFORM
+	    if ((transform == null) || (transform.isIdentity())) {
+	        // no actual xform, just make sure we end up with two dimensions
+	        if (dims != 2) {
+	            for (int i = 0; i < actualCoords; i++) {
+	                coords[i * 2] = coords[i * dims];
+	                coords[i * 2 + 1] = coords[i * dims + 1];
+	            }
+	        }
+	    } else {
+	        transform.transform(coords, 0, coords, 0, actualCoords);
+	    }
+	    
+	    return actualCoords;
+	}
+	
+	/**
+	 * Returns a scratch buffer of at least the specified length, local to the calling thread
+	 */
+	static double[] getScratch(int length) {
+	    if (length > MAX_SCRATCH_SIZE) {
+	        // don't keep around huge arrays
+	        return new double[length];
+	    }
+	    double[] scratch = SCRATCH.get();
+	    if (scratch == null || scratch.length < length) {
+	        scratch = new double[Math.min(MAX_SCRATCH_SIZE, Math.max(length, scratch == null ? 1024 : scratch.length * 2))];
+	        SCRATCH.set(scratch);
+	    }
+	    return scratch;
+	}
+	
+	/**
+	 * Copies the coordinates of the sequence into the array, packed with the specified
+	 * dimension
+	 */
+	private static void copyOrdinates(CoordinateSequence cs, double[] coords, int ncoords, int dims) {
+	    if (cs instanceof LiteCoordinateSequence && cs.getDimension() == dims) {
+	        System.arraycopy(((LiteCoordinateSequence) cs).getArray(), 0, coords, 0, ncoords * dims);
+	    } else {
+	        final int minDims = Math.min(dims, cs.getDimension());
+	        for (int i = 0; i < ncoords; i++) {
+	            for (int d = 0; d < minDims; d++) {
+	                coords[i * dims + d] = cs.getOrdinate(i, d);
+	            }
+	            for (int d = minDims; d < dims; d++) {
+	                coords[i * dims + d] = 0;
+	            }
+	        }
+	    }
+	}
 
-    private int spanBasedGeneralize(int ncoords, double[] coords) {
+    private int spanBasedGeneralize(int ncoords, double[] coords, int dims) {
         int actualCoords = 1;
 		double lastX = coords[0];
 		double lastY = coords[1];
 		for (int t = 1; t < (ncoords - 1); t++) {
 			// see if this one should be added
-			double x = coords[t * 2];
-			double y = coords[t * 2 + 1];
+			double x = coords[t * dims];
+			double y = coords[t * dims + 1];
 			if ((Math.abs(x - lastX) > spanx) || (Math.abs(y - lastY)) > spany) {
-				coords[actualCoords * 2] = x;
-				coords[actualCoords * 2 + 1] = y;
+				copyCoordinate(coords, dims, actualCoords * dims, t * dims);
 				lastX = x;
 				lastY = y;
 				actualCoords++;
@@ -426,22 +577,19 @@ public final class Decimator {
         return actualCoords;
     }
     
-    private int dpBasedGeneralize(int ncoords, double[] coords, double maxDistance) {
-        while(coords[0] == coords[(ncoords - 1) * 2] && coords[1] == coords[2 * ncoords - 1] && ncoords > 0) {
+    private int dpBasedGeneralize(int ncoords, double[] coords, int dims, double maxDistance) {
+        while(ncoords > 0 && coords[0] == coords[(ncoords - 1) * dims] && coords[1] == coords[(ncoords - 1) * dims + 1]) {
             ncoords--;
         }
         if(ncoords == 0) {
             return 0;
         }
         
-        dpSimplifySection(0, ncoords - 1, coords, maxDistance);
+        dpSimplifySection(0, ncoords - 1, coords, dims, maxDistance);
         int actualCoords = 1;
         for(int i = 1; i < ncoords - 1; i++) {
-            final double x = coords[i * 2];
-            final double y = coords[i * 2 + 1];
-            if(!Double.isNaN(x)) {
-                coords[actualCoords * 2] = x;
-                coords[actualCoords * 2 + 1] = y;
+            if(!Double.isNaN(coords[i * dims])) {
+                copyCoordinate(coords, dims, actualCoords * dims, i * dims);
                 actualCoords++;
             }
         }
@@ -449,15 +597,15 @@ public final class Decimator {
         return actualCoords;
     }
 
-	private void dpSimplifySection(int first, int last, double[] coords, double maxDistanceSquared) {
+	private void dpSimplifySection(int first, int last, double[] coords, int dims, double maxDistanceSquared) {
 	    if(last - 1 <= first) {
 	        return;
 	    }
 	    
-	    double x0 = coords[first * 2];
-	    double y0 = coords[first * 2 + 1];
-	    double x1 = coords[last * 2];
-	    double y1 = coords[last * 2 + 1];
+	    double x0 = coords[first * dims];
+	    double y0 = coords[first * dims + 1];
+	    double x1 = coords[last * dims];
+	    double y1 = coords[last * dims + 1];
 	    double dx = x1 - x0;
 	    double dy = y1 - y0;
 	    double ls = dx * dx + dy * dy;
@@ -465,8 +613,8 @@ public final class Decimator {
 	    int idx = -1;
 	    double dsmax = -1;
 	    for (int i = first + 1; i < last; i++) {
-            double x = coords[i * 2];
-            double y = coords[i * 2 + 1];
+            double x = coords[i * dims];
+            double y = coords[i * dims + 1];
           
             double ds;
             double r = ((x - x0) * dx + (y - y0) * dy)  / ls;
@@ -487,12 +635,12 @@ public final class Decimator {
 	    
 	    if(dsmax <= maxDistanceSquared) {
 	        for (int i = first + 1; i < last; i++) {
-                coords[i * 2] = Double.NaN;
-                coords[i * 2 + 1] = Double.NaN;
+                coords[i * dims] = Double.NaN;
+                coords[i * dims + 1] = Double.NaN;
             }
 	    } else {
-	        dpSimplifySection(first, idx, coords, maxDistanceSquared);
-	        dpSimplifySection(idx, last, coords, maxDistanceSquared);
+	        dpSimplifySection(first, idx, coords, dims, maxDistanceSquared);
+	        dpSimplifySection(idx, last, coords, dims, maxDistanceSquared);
 	    }
     }
 
@@ -180,9 +180,15 @@ public class LiteCoordinateSequence extends PackedCoordinateSequence {
         this.dimension = dimension;
         
         if(cs instanceof LiteCoordinateSequence) {
-            double[] orig = ((LiteCoordinateSequence) cs).getOrdinateArray(dimension);
-            this.coords = new double[orig.length];
-            System.arraycopy(orig, 0, coords, 0, coords.length);
+            LiteCoordinateSequence lcs = (LiteCoordinateSequence) cs;
+            if (lcs.dimension == dimension) {
+                double[] orig = lcs.getArray();
+                this.coords = new double[orig.length];
+                System.arraycopy(orig, 0, coords, 0, coords.length);
+            } else {
+                // already a copy
+                this.coords = lcs.getOrdinateArray(dimension);
+            }
         } else {
             this.coords = new double[size * dimension];
             int minDimension = Math.min(dimension, cs.getDimension());
@@ -329,7 +335,7 @@ public class LiteCoordinateSequence extends PackedCoordinateSequence {
         int minDimensions = Math.min(dimensions, this.dimension);
         for (int t = 0; t < n; t++) {
             for (int d = 0; d < minDimensions; d++) {
-                result[t * 2 + d] = getOrdinate(t, d);
+                result[t * dimensions + d] = getOrdinate(t, d);
             }
         }
         return result;
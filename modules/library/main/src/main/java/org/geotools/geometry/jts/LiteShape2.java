@@ -141,14 +141,24 @@ public final class LiteShape2 implements Shape, Cloneable {
 	public LiteShape2(Geometry geom, MathTransform mathTransform,
 			Decimator decimator, boolean generalize, boolean clone) throws TransformException,
 			FactoryException {
+		this.mathTransform = mathTransform;
+		boolean inPlace = geom != null && !clone
+		        && geom.getFactory().getCoordinateSequenceFactory() instanceof LiteCoordinateSequenceFactory;
+		if (decimator != null && geom != null && !inPlace) {
+		    // decimate while copying, avoids allocating a full copy of the coordinates first
+		    this.geometry = decimator.decimateTransformGeneralizeCopy(geom, this.mathTransform);
+		    this.geometry.geometryChanged();
+		    this.generalize = false;
+		    return;
+		}
+		
 		if (geom != null) {
-		    if(!clone && geom.getFactory().getCoordinateSequenceFactory() instanceof LiteCoordinateSequenceFactory)
+		    if(inPlace)
 		        this.geometry = geom;
 		    else
 		        this.geometry = LiteCoordinateSequence.cloneGeometry(geom);
 		}
 
-		this.mathTransform = mathTransform;
 		if (decimator != null) {
 			decimator.decimateTransformGeneralize(this.geometry,this.mathTransform);
 			this.geometry.geometryChanged();
@@ -181,9 +191,8 @@ public final class LiteShape2 implements Shape, Cloneable {
 			LiteCoordinateSequence seq = (LiteCoordinateSequence) ((Point) geometry)
 					.getCoordinateSequence();
 			double[] coords = seq.getArray();
-			double[] newCoords = new double[coords.length];
-			mathTransform.transform(coords, 0, newCoords, 0, seq.size());
-			seq.setArray(newCoords);
+			mathTransform.transform(coords, 0, coords, 0, seq.size());
+			seq.setArray(coords);
 		} else if (geometry instanceof Polygon) {
 			Polygon polygon = (Polygon) geometry;
 			transformGeometry(polygon.getExteriorRing());
@@ -117,6 +117,22 @@ public class ScreenMap {
         this.spanY = spanY;
     }
 
+    /**
+     * The horizontal size of a pixel, in the coordinate system of the geometries checked against
+     * this screen map
+     */
+    public double getSpanX() {
+        return spanX;
+    }
+
+    /**
+     * The vertical size of a pixel, in the coordinate system of the geometries checked against
+     * this screen map
+     */
+    public double getSpanY() {
+        return spanY;
+    }
+
     /**
      * Checks if the geometry should be skipped. If the test returns true it means the geometry
      * sits in a pixel that has already been used
@@ -466,6 +466,93 @@ public class VisitorCalculationTest extends DataTestCase {
         assertEquals((double) 7.5, sumResult.toDouble(), 0);
     }
     
+    //visit fc3 in two halves with partial visitors, the merge must match a full visit
+    public void testMergePartials() throws IllegalFilterException, IOException {
+        Expression id = ff.property("id");
+        List<MergeableFeatureCalc> visitors = new ArrayList<MergeableFeatureCalc>();
+        visitors.add(new CountVisitor());
+        visitors.add(new SumVisitor(id));
+        visitors.add(new MinVisitor(id));
+        visitors.add(new MaxVisitor(id));
+        visitors.add(new UniqueVisitor(id));
+        for (MergeableFeatureCalc visitor : visitors) {
+            MergeableFeatureCalc full = visitor.createPartial();
+            fc3.accepts(full, null);
+
+            MergeableFeatureCalc first = visitor.createPartial();
+            MergeableFeatureCalc second = visitor.createPartial();
+            SimpleFeature[] features = DataUtilities.list(fc3).toArray(new SimpleFeature[100]);
+            for (int i = 0; i < features.length; i++) {
+                (i < 30 ? first : second).visit(features[i]);
+            }
+            visitor.merge(first);
+            visitor.merge(second);
+            // merging an empty partial changes nothing
+            visitor.merge(visitor.createPartial());
+            assertEquals(full.getResult().getValue(), visitor.getResult().getValue());
+        }
+        assertEquals(100, visitors.get(0).getResult().toInt());
+        assertEquals(5050, visitors.get(1).getResult().toInt());
+    }
+
+    //subclasses might change the visit logic, they cannot be split in partials
+    public void testSubclassPartials() throws IllegalFilterException, IOException {
+        Expression id = ff.property("id");
+        List<MergeableFeatureCalc> visitors = new ArrayList<MergeableFeatureCalc>();
+        visitors.add(new CountVisitor() {});
+        visitors.add(new SumVisitor(id) {});
+        visitors.add(new MinVisitor(id) {});
+        visitors.add(new MaxVisitor(id) {});
+        visitors.add(new UniqueVisitor(id) {});
+        visitors.add(new BoundsVisitor() {});
+        for (MergeableFeatureCalc visitor : visitors) {
+            assertNull(visitor.getClass().getName(), visitor.createPartial());
+        }
+        assertNotNull(new BoundsVisitor().createPartial());
+    }
+
+    //the null and NaN counts of the partials are merged too
+    public void testMergeNullNaNCounts() throws Exception {
+        SimpleFeatureType type = DataUtilities.createType("counts", "value:Double");
+        Double[] values = new Double[] {1d, null, Double.NaN, 3d, null};
+        SimpleFeature[] features = new SimpleFeature[values.length];
+        for (int i = 0; i < values.length; i++) {
+            features[i] = SimpleFeatureBuilder.build(type, new Object[] {values[i]}, null);
+        }
+        MinVisitor min = new MinVisitor("value");
+        MaxVisitor max = new MaxVisitor("value");
+        MinVisitor minFirst = (MinVisitor) min.createPartial();
+        MinVisitor minSecond = (MinVisitor) min.createPartial();
+        MaxVisitor maxFirst = (MaxVisitor) max.createPartial();
+        MaxVisitor maxSecond = (MaxVisitor) max.createPartial();
+        for (int i = 0; i < features.length; i++) {
+            (i < 2 ? minFirst : minSecond).visit(features[i]);
+            (i < 2 ? maxFirst : maxSecond).visit(features[i]);
+        }
+        min.merge(minFirst);
+        min.merge(minSecond);
+        max.merge(maxFirst);
+        max.merge(maxSecond);
+        assertEquals(1d, min.getMin());
+        assertEquals(2, min.getNullCount());
+        assertEquals(1, min.getNaNCount());
+        assertEquals(3d, max.getMax());
+        assertEquals(2, max.getNullCount());
+        assertEquals(1, max.getNaNCount());
+    }
+
+    //only NaNs are skipped, infinite values are legitimate minimums
+    public void testMinInfinity() throws Exception {
+        SimpleFeatureType type = DataUtilities.createType("counts", "value:Double");
+        MinVisitor min = new MinVisitor("value");
+        Double[] values = new Double[] {1d, Double.NEGATIVE_INFINITY, Double.NaN};
+        for (int i = 0; i < values.length; i++) {
+            min.visit(SimpleFeatureBuilder.build(type, new Object[] {values[i]}, null));
+        }
+        assertEquals(Double.NEGATIVE_INFINITY, min.getMin());
+        assertEquals(1, min.getNaNCount());
+    }
+
     //try merging 2 incompatible CalcResults and check for the exception
     public void testBadMerge() throws IllegalFilterException, IOException {
     	//count + max = boom!
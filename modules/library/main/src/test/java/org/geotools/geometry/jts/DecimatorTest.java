@@ -1,6 +1,7 @@
 package org.geotools.geometry.jts;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertTrue;
 
 import java.awt.Rectangle;
@@ -14,7 +15,10 @@ import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.geom.GeometryFactory;
 import com.vividsolutions.jts.geom.LineString;
 import com.vividsolutions.jts.geom.LinearRing;
+import com.vividsolutions.jts.geom.MultiPolygon;
 import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.io.WKTReader;
 
 /**
  * 
@@ -143,4 +147,71 @@ public class DecimatorTest {
         assertEquals(4, ls.getNumPoints());
         assertEquals(2, ls.getCoordinateSequence().getDimension());
     }
+    
+    @Test
+    public void testDecimate3DLineGeneralized() throws Exception {
+        // generalization has to skip the z ordinate
+        LineString ls = gf.createLineString(csf.create(new double[] {0,0,10, 0.1,0.1,20, 3,3,30, 4,4,40}, 3));
+        
+        Decimator d = new Decimator(1, 1);
+        d.decimateTransformGeneralize(ls, new AffineTransform2D(AffineTransform.getScaleInstance(2, 2)));
+        LiteCoordinateSequence cs = (LiteCoordinateSequence) ls.getCoordinateSequence();
+        assertEquals(2, cs.getDimension());
+        assertEquals(3, cs.size());
+        assertEquals(6, cs.getArray().length);
+        assertEquals(0, cs.getX(0), 0d);
+        assertEquals(6, cs.getX(1), 0d);
+        assertEquals(6, cs.getY(1), 0d);
+        assertEquals(8, cs.getX(2), 0d);
+        assertEquals(8, cs.getY(2), 0d);
+    }
+    
+    @Test
+    public void testDecimateCopy() throws Exception {
+        // a non lite geometry, with a decimated polygon, a hole collapsing to a triangle
+        MultiPolygon original = (MultiPolygon) new WKTReader().read("MULTIPOLYGON(((0 0, 0 0.1, 0 10, 10 10, 10 0, 0 0), " 
+                + "(1 1, 1 1.5, 1.5 1.5, 1.6 1.6, 1.5 1, 1 1)), ((20 20, 20 30, 30 30, 20 20)))");
+        MultiPolygon reference = (MultiPolygon) original.clone();
+        MathTransform mt = new AffineTransform2D(AffineTransform.getTranslateInstance(100, 0));
+        
+        Decimator d = new Decimator(1, 1);
+        Geometry copy = d.decimateTransformGeneralizeCopy(original, mt);
+        // the original is untouched
+        assertTrue(reference.equalsExact(original));
+        
+        // same result as cloning and decimating
+        Geometry expected = LiteCoordinateSequence.cloneGeometry(original);
+        d.decimateTransformGeneralize(expected, mt);
+        expected.geometryChanged();
+        assertTrue(copy instanceof MultiPolygon);
+        assertTrue(copy.getFactory().getCoordinateSequenceFactory() instanceof LiteCoordinateSequenceFactory);
+        assertTrue(expected.equalsExact(copy));
+        Polygon first = (Polygon) copy.getGeometryN(0);
+        assertEquals(5, first.getExteriorRing().getNumPoints());
+        assertEquals(4, first.getInteriorRingN(0).getNumPoints());
+        assertEquals(4, copy.getGeometryN(1).getNumPoints());
+        assertEquals(100, copy.getEnvelopeInternal().getMinX(), 0d);
+        assertTrue(copy.isValid());
+    }
+    
+    @Test
+    public void testDecimateCopyNoOp() throws Exception {
+        LineString ls = (LineString) new WKTReader().read("LINESTRING(0 0, 0.1 0.1, 5 5)");
+        Geometry copy = new Decimator(-1, -1).decimateTransformGeneralizeCopy(ls, null);
+        assertNotSame(ls.getCoordinateSequence(), ((LineString) copy).getCoordinateSequence());
+        assertTrue(ls.equalsExact(copy));
+        assertTrue(((LineString) copy).getCoordinateSequence() instanceof LiteCoordinateSequence);
+    }
+    
+    @Test
+    public void testOrdinateArray() {
+        LiteCoordinateSequence cs = (LiteCoordinateSequence) csf.create(new double[] {0,1, 2,3, 4,5});
+        double[] ordinates = cs.getOrdinateArray(3);
+        assertEquals(9, ordinates.length);
+        assertEquals(2, ordinates[3], 0d);
+        assertEquals(3, ordinates[4], 0d);
+        assertEquals(0, ordinates[5], 0d);
+        assertEquals(4, ordinates[6], 0d);
+        assertEquals(5, ordinates[7], 0d);
+    }
 }
@@ -630,6 +630,18 @@ public class Hints extends RenderingHints {
      */
     public static final Key SCREENMAP = new ClassKey("org.geotools.renderer.ScreenMap");
     
+    /**
+     * The last feature of the previous page, used as a cursor to read the next one.
+     * <p>
+     * Stores supporting it return the features sorting after the cursor instead of skipping
+     * the first {@link org.geotools.data.Query#getStartIndex()} ones, so that reading a page 
+     * costs the same no matter how deep it is in the results. The sort must identify the 
+     * features univocally, for example be the natural order or contain a unique attribute, 
+     * and the cursor must contain the values of the sort attributes. Stores not supporting it, 
+     * or unable to use it for a specific query, ignore it and use the start index.
+     */
+    public static final Key PAGE_CURSOR = new ClassKey("org.opengis.feature.simple.SimpleFeature");
+    
     /**
      * The actual coordinate dimensions of the geometry (to be used in
      * the GeometryDescriptor user map) 
@@ -0,0 +1,166 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.renderer;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The time spent in each rendering phase, and the number of items processed, while rendering a
+ * layer, or while placing the labels of all layers. The statistics can be updated concurrently, as
+ * the painting might happen in a different thread than the data loading.
+ *
+ * @see RenderingStatisticsListener
+ */
+public class RenderingStatistics {
+
+    /**
+     * The rendering phases
+     */
+    public enum Phase {
+        /** Building the query and opening the data access (e.g., running the SQL query) */
+        QUERY,
+        /** Reading the features (including geometry decoding), or the raster data */
+        READ,
+        /**
+         * Turning the geometries into screen space shapes: reprojection, generalization (the two
+         * happen in the same pass) and clipping. For rasters, the preparation of the image to be
+         * painted (crop, reprojection and symbolization, the latter are usually deferred to the
+         * painting phase)
+         */
+        TRANSFORM,
+        /** Painting the shapes and images on the output */
+        PAINT,
+        /** Placing and painting the labels */
+        LABELING
+    }
+
+    /**
+     * The rendering counters
+     */
+    public enum Counter {
+        /** The features read from the data source */
+        FEATURES_READ,
+        /** The features not painted because they fell in an already painted pixel */
+        FEATURES_SKIPPED_SCREENMAP,
+        /** The shapes painted (one per symbolizer applied to a feature) */
+        FEATURES_PAINTED,
+        /** The labels placed */
+        LABELS_PLACED
+    }
+
+    static final Phase[] PHASES = Phase.values();
+
+    static final Counter[] COUNTERS = Counter.values();
+
+    final String layerId;
+
+    final String layerName;
+
+    final AtomicLongArray nanos = new AtomicLongArray(PHASES.length);
+
+    final AtomicLongArray counts = new AtomicLongArray(COUNTERS.length);
+
+    /**
+     * Builds a new statistics object
+     *
+     * @param layerId the id of the layer, or null if the statistics are not layer specific (e.g.,
+     *        label placement)
+     * @param layerName the name of the layer, or null if not known
+     */
+    public RenderingStatistics(String layerId, String layerName) {
+        this.layerId = layerId;
+        this.layerName = layerName;
+    }
+
+    /**
+     * The layer identifier (the position of the layer in the map), or null if the statistics are
+     * not associated to a single layer
+     */
+    public String getLayerId() {
+        return layerId;
+    }
+
+    /**
+     * The layer name, or null if not available
+     */
+    public String getLayerName() {
+        return layerName;
+    }
+
+    /**
+     * Adds the specified time to the phase
+     *
+     * @param phase
+     * @param nanos the elapsed time, in nanoseconds
+     */
+    public void add(Phase phase, long nanos) {
+        this.nanos.addAndGet(phase.ordinal(), nanos);
+    }
+
+    /**
+     * Increments the counter by one
+     *
+     * @param counter
+     */
+    public void increment(Counter counter) {
+        counts.incrementAndGet(counter.ordinal());
+    }
+
+    /**
+     * Adds the specified amount to the counter
+     *
+     * @param counter
+     * @param amount
+     */
+    public void add(Counter counter, long amount) {
+        counts.addAndGet(counter.ordinal(), amount);
+    }
+
+    /**
+     * The time spent in the specified phase, in nanoseconds
+     *
+     * @param phase
+     * @return
+     */
+    public long getNanos(Phase phase) {
+        return nanos.get(phase.ordinal());
+    }
+
+    /**
+     * The current value of the specified counter
+     *
+     * @param counter
+     * @return
+     */
+    public long getCount(Counter counter) {
+        return counts.get(counter.ordinal());
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("RenderingStatistics[layerId=");
+        sb.append(layerId).append(", layerName=").append(layerName);
+        for (Phase phase : PHASES) {
+            sb.append(", ").append(phase).append("=").append(getNanos(phase) / 1000000.0)
+                    .append("ms");
+        }
+        for (Counter counter : COUNTERS) {
+            sb.append(", ").append(counter).append("=").append(getCount(counter));
+        }
+        return sb.append("]").toString();
+    }
+}
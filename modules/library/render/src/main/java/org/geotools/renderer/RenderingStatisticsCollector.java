@@ -0,0 +1,150 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.renderer;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.geotools.renderer.RenderingStatistics.Counter;
+import org.geotools.renderer.RenderingStatistics.Phase;
+
+/**
+ * A {@link RenderingStatisticsListener} accumulating the statistics of all the renderings it's
+ * attached to, which can be shared among renderers and published as a JMX MXBean using
+ * {@link #register(ObjectName)}, or polled directly to feed other monitoring systems.
+ */
+public class RenderingStatisticsCollector implements RenderingStatisticsListener,
+        RenderingStatisticsCollectorMXBean {
+
+    /**
+     * The object name used by {@link #register()}
+     */
+    public static final String DEFAULT_OBJECT_NAME = "org.geotools.renderer:type=RenderingStatistics";
+
+    final AtomicLong layers = new AtomicLong();
+
+    final RenderingStatistics totals = new RenderingStatistics(null, null);
+
+    public void layerRendered(RenderingStatistics statistics) {
+        layers.incrementAndGet();
+        accumulate(statistics);
+    }
+
+    public void labelsRendered(RenderingStatistics statistics) {
+        accumulate(statistics);
+    }
+
+    void accumulate(RenderingStatistics statistics) {
+        for (Phase phase : RenderingStatistics.PHASES) {
+            totals.add(phase, statistics.getNanos(phase));
+        }
+        for (Counter counter : RenderingStatistics.COUNTERS) {
+            totals.add(counter, statistics.getCount(counter));
+        }
+    }
+
+    /**
+     * The total time spent in the specified phase, in nanoseconds
+     */
+    public long getNanos(Phase phase) {
+        return totals.getNanos(phase);
+    }
+
+    /**
+     * The total value of the specified counter
+     */
+    public long getCount(Counter counter) {
+        return totals.getCount(counter);
+    }
+
+    public long getLayersRendered() {
+        return layers.get();
+    }
+
+    public Map<String, Double> getPhaseMillis() {
+        Map<String, Double> result = new LinkedHashMap<String, Double>();
+        for (Phase phase : RenderingStatistics.PHASES) {
+            result.put(phase.name(), totals.getNanos(phase) / 1000000.0);
+        }
+        return result;
+    }
+
+    public Map<String, Long> getCounters() {
+        Map<String, Long> result = new LinkedHashMap<String, Long>();
+        for (Counter counter : RenderingStatistics.COUNTERS) {
+            result.put(counter.name(), totals.getCount(counter));
+        }
+        return result;
+    }
+
+    public void reset() {
+        layers.set(0);
+        for (Phase phase : RenderingStatistics.PHASES) {
+            totals.nanos.set(phase.ordinal(), 0);
+        }
+        for (Counter counter : RenderingStatistics.COUNTERS) {
+            totals.counts.set(counter.ordinal(), 0);
+        }
+    }
+
+    /**
+     * Registers this collector in the platform MBean server using the
+     * {@link #DEFAULT_OBJECT_NAME}
+     *
+     * @return the name used to register the collector
+     * @throws JMException
+     */
+    public ObjectName register() throws JMException {
+        ObjectName name = new ObjectName(DEFAULT_OBJECT_NAME);
+        register(name);
+        return name;
+    }
+
+    /**
+     * Registers this collector in the platform MBean server with the specified name
+     *
+     * @param name
+     * @throws JMException
+     */
+    public void register(ObjectName name) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        server.registerMBean(this, name);
+    }
+
+    /**
+     * Removes the collector with the specified name from the platform MBean server
+     *
+     * @param name
+     * @throws JMException
+     */
+    public void unregister(ObjectName name) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        server.unregisterMBean(name);
+    }
+
+    @Override
+    public String toString() {
+        return "RenderingStatisticsCollector[layers=" + layers.get() + ", phases="
+                + getPhaseMillis() + ", counters=" + getCounters() + "]";
+    }
+}
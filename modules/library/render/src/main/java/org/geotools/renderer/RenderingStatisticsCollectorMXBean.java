@@ -0,0 +1,45 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.renderer;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link RenderingStatisticsCollector}
+ */
+public interface RenderingStatisticsCollectorMXBean {
+
+    /**
+     * The number of layers rendered since the last reset
+     */
+    public long getLayersRendered();
+
+    /**
+     * The total time spent in each rendering phase since the last reset, in milliseconds
+     */
+    public Map<String, Double> getPhaseMillis();
+
+    /**
+     * The total value of each rendering counter since the last reset
+     */
+    public Map<String, Long> getCounters();
+
+    /**
+     * Resets all the statistics
+     */
+    public void reset();
+}
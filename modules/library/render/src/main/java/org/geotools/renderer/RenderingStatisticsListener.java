@@ -0,0 +1,42 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.renderer;
+
+/**
+ * A RenderingStatisticsListener receives the time spent in each rendering phase, and the number
+ * of features processed, for each layer rendered and for the label placement. The statistics
+ * are collected only if at least one listener is registered, and are notified once the rendering
+ * is complete, from the thread that started it.
+ *
+ * @see RenderListener
+ */
+public interface RenderingStatisticsListener {
+
+    /**
+     * Called once for each layer that has been rendered
+     *
+     * @param statistics
+     */
+    public void layerRendered(RenderingStatistics statistics);
+
+    /**
+     * Called once the labels of all layers have been placed and painted
+     *
+     * @param statistics
+     */
+    public void labelsRendered(RenderingStatistics statistics);
+}
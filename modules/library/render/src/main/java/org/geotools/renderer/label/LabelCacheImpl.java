@@ -41,6 +41,7 @@ import java.util.logging.Logger;
 
 import org.geotools.geometry.jts.GeometryClipper;
 import org.geotools.geometry.jts.LiteShape2;
+import org.geotools.renderer.RenderingStatistics;
 import org.geotools.renderer.VendorOptionParser;
 import org.geotools.renderer.label.LabelCacheItem.GraphicResize;
 import org.geotools.renderer.lite.LabelCache;
@@ -117,6 +118,19 @@ public final class LabelCacheImpl implements LabelCache {
          */
         ADAPTIVE};
     
+    public enum LabelIndexMode {
+        /**
+         * Uses a {@link LabelIndex}, backed by a JTS quadtree, to check label conflicts. Works 
+         * well with any amount of labels, but allocates a few objects per check
+         */
+        QUADTREE,
+        /**
+         * Uses a {@link GridLabelIndex}, a uniform grid over the display area, to check label 
+         * conflicts. Does not allocate objects during the checks, and performs best with
+         * dense labelling 
+         */
+        GRID};
+    
     static final Logger LOGGER = Logging.getLogger(LabelCacheImpl.class);
 
     public double DEFAULT_PRIORITY = 1000.0;
@@ -141,6 +155,8 @@ public final class LabelCacheImpl implements LabelCache {
     static final double[] LEFT_ANCHOR_CANDIDATES = new double[] {1,0.5, 1,0, 1,1};
 
     protected LabelRenderingMode labelRenderingMode = LabelRenderingMode.STRING;
+    
+    protected LabelIndexMode labelIndexMode = LabelIndexMode.QUADTREE;
 
     protected SLDStyleFactory styleFactory = new SLDStyleFactory();
 
@@ -160,6 +176,8 @@ public final class LabelCacheImpl implements LabelCache {
     
     private VendorOptionParser voParser = new VendorOptionParser();
 
+    private RenderingStatistics statistics;
+
     public void enableLayer(String layerId) {
         needsOrdering = true;
         enabledLayers.add(layerId);
@@ -175,6 +193,30 @@ public final class LabelCacheImpl implements LabelCache {
     public void setLabelRenderingMode(LabelRenderingMode mode) {
         this.labelRenderingMode = mode;
     }
+    
+    public LabelIndexMode getLabelIndexMode() {
+        return labelIndexMode;
+    }
+
+    /**
+     * Sets the type of index used to check for label conflicts 
+     */
+    public void setLabelIndexMode(LabelIndexMode mode) {
+        this.labelIndexMode = mode;
+    }
+
+    public RenderingStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Sets the statistics object that will receive the label placement time, and the number of
+     * labels placed, during the next {@link #end(Graphics2D, Rectangle)} call. Can be null, in
+     * that case no statistics will be collected
+     */
+    public void setStatistics(RenderingStatistics statistics) {
+        this.statistics = statistics;
+    }
 
     public void stop() {
         stop = true;
@@ -393,11 +435,28 @@ public final class LabelCacheImpl implements LabelCache {
         return false;
     }
 
+    /**
+     * Builds the index used to check conflicts among the labels painted in the display area,
+     * according to the current {@link LabelIndexMode}
+     * 
+     * @param displayArea
+     * @return
+     */
+    AbstractLabelIndex createLabelIndex(Rectangle displayArea) {
+        if (labelIndexMode == LabelIndexMode.GRID) {
+            return new GridLabelIndex(displayArea);
+        } else {
+            return new LabelIndex();
+        }
+    }
+
     /**
      * @see org.geotools.renderer.lite.LabelCache#end(java.awt.Graphics2D,
      *      java.awt.Rectangle)
      */
     public void end(Graphics2D graphics, Rectangle displayArea) {
+        final RenderingStatistics statistics = this.statistics;
+        final long start = statistics != null ? System.nanoTime() : 0;
         final Object antialiasing = graphics.getRenderingHint(RenderingHints.KEY_ANTIALIASING);
         final Object textAntialiasing = graphics
                 .getRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING);
@@ -415,6 +474,9 @@ public final class LabelCacheImpl implements LabelCache {
             paintLabels(graphics, displayArea);
         } finally {
             graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, antialiasing);
+            if (statistics != null) {
+                statistics.add(RenderingStatistics.Phase.LABELING, System.nanoTime() - start);
+            }
         }
     }
 
@@ -424,7 +486,7 @@ public final class LabelCacheImpl implements LabelCache {
                     + " are layers that started rendering but have not completed,"
                     + " stop() or endLayer() must be called before end() is called");
         }
-        LabelIndex glyphs = new LabelIndex();
+        AbstractLabelIndex glyphs = createLabelIndex(displayArea);
         glyphs.reserveArea( reserved );
 
         // Hack: let's reduce the display area width and height by one pixel.
@@ -474,14 +536,18 @@ public final class LabelCacheImpl implements LabelCache {
                 AffineTransform tempTransform = new AffineTransform();
 
                 Geometry geom = labelItem.getGeometry();
+                boolean painted = false;
                 if ((geom instanceof Point) || (geom instanceof MultiPoint))
-                    paintPointLabel(painter, tempTransform, displayArea, glyphs);
+                    painted = paintPointLabel(painter, tempTransform, displayArea, glyphs);
                 else if (((geom instanceof LineString) && !(geom instanceof LinearRing))
                         || (geom instanceof MultiLineString))
-                    paintLineLabels(painter, tempTransform, displayArea, glyphs);
+                    painted = paintLineLabels(painter, tempTransform, displayArea, glyphs);
                 else if (geom instanceof Polygon || geom instanceof MultiPolygon
                         || geom instanceof LinearRing)
-                    paintPolygonLabel(painter, tempTransform, displayArea, glyphs);
+                    painted = paintPolygonLabel(painter, tempTransform, displayArea, glyphs);
+                if (painted && statistics != null) {
+                    statistics.increment(RenderingStatistics.Counter.LABELS_PLACED);
+                }
             } catch (Exception e) {
                 System.out.println("Issues painting " + labelItem.getLabel());
                 // the decimation can cause problems - we try to minimize it
@@ -569,7 +635,7 @@ public final class LabelCacheImpl implements LabelCache {
     }
 
     private boolean paintLineLabels(LabelPainter painter, AffineTransform originalTransform,
-            Rectangle displayArea, LabelIndex paintedBounds) throws Exception {
+            Rectangle displayArea, AbstractLabelIndex paintedBounds) throws Exception {
         final LabelCacheItem labelItem = painter.getLabel();
         List<LineString> lines = (List<LineString>) getLineSetRepresentativeLocation(
                 labelItem.getGeoms(), displayArea, labelItem.removeGroupOverlaps(),
@@ -875,7 +941,7 @@ public final class LabelCacheImpl implements LabelCache {
      * up until the radius of the circle becomes bigger than the max displacement
      */
     private boolean paintPointLabel(LabelPainter painter, AffineTransform tempTransform,
-            Rectangle displayArea, LabelIndex glyphs) throws Exception {
+            Rectangle displayArea, AbstractLabelIndex glyphs) throws Exception {
         LabelCacheItem labelItem = painter.getLabel();
         // get the point onto the shape has to be painted
         Point point = getPointSetRepresentativeLocation(labelItem.getGeoms(),
@@ -981,7 +1047,7 @@ public final class LabelCacheImpl implements LabelCache {
      * @throws Exception
      */
     private boolean paintPointLabelInternal(LabelPainter painter, AffineTransform tempTransform,
-            Rectangle displayArea, LabelIndex glyphs, LabelCacheItem labelItem, Point point,
+            Rectangle displayArea, AbstractLabelIndex glyphs, LabelCacheItem labelItem, Point point,
             TextStyle2D textStyle) throws Exception {
         setupPointTransform(tempTransform, point, textStyle, painter);
 
@@ -1012,7 +1078,7 @@ public final class LabelCacheImpl implements LabelCache {
      * the outside line and label it, but spec is unclear)
      */
     private boolean paintPolygonLabel(LabelPainter painter, AffineTransform tempTransform,
-            Rectangle displayArea, LabelIndex glyphs) throws Exception {
+            Rectangle displayArea, AbstractLabelIndex glyphs) throws Exception {
         LabelCacheItem labelItem = painter.getLabel();
         Polygon geom = getPolySetRepresentativeLocation(labelItem.getGeoms(), displayArea, labelItem.isPartialsEnabled());
         if (geom == null) {
@@ -1124,7 +1190,7 @@ public final class LabelCacheImpl implements LabelCache {
     }
     
     private boolean paintPolygonLabelInternal(LabelPainter painter, AffineTransform tempTransform,
-            Rectangle displayArea, LabelIndex glyphs, LabelCacheItem labelItem, PreparedGeometry pg,
+            Rectangle displayArea, AbstractLabelIndex glyphs, LabelCacheItem labelItem, PreparedGeometry pg,
             Point centroid, TextStyle2DExt textStyle) throws Exception {
         // useful to debug the label/centroid relationship 
         // painter.graphics.setColor(Color.RED);
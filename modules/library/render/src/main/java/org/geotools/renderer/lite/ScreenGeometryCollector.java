@@ -0,0 +1,58 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.renderer.lite;
+
+import org.geotools.map.Layer;
+import org.geotools.styling.Symbolizer;
+
+import com.vividsolutions.jts.geom.Geometry;
+
+/**
+ * Receives the geometries {@link StreamingRenderer} would have painted, already transformed in
+ * screen space, generalized and clipped, allowing to build vector outputs with the same data
+ * selection used for painting.
+ *
+ * @see StreamingRenderer#setScreenGeometryCollector(ScreenGeometryCollector)
+ */
+public interface ScreenGeometryCollector {
+
+    /**
+     * Called before the data of a layer is processed
+     *
+     * @param layerId the layer identifier (its position in the map content)
+     * @param layer the layer
+     */
+    void startLayer(String layerId, Layer layer);
+
+    /**
+     * Called for each feature and symbolizer combination that would have been painted. The same
+     * feature will be notified once for each symbolizer applied to it
+     *
+     * @param layerId the layer identifier
+     * @param feature the feature, or the object, being rendered
+     * @param geometry the geometry in screen space, clipped to the paint area plus the buffer
+     * @param symbolizer the symbolizer that would have been used to paint it
+     */
+    void collect(String layerId, Object feature, Geometry geometry, Symbolizer symbolizer);
+
+    /**
+     * Called after all the data of a layer has been processed
+     *
+     * @param layerId the layer identifier
+     */
+    void endLayer(String layerId);
+}
@@ -0,0 +1,153 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.renderer.lite;
+
+import java.awt.Graphics2D;
+import java.awt.geom.Path2D;
+
+import org.geotools.geometry.jts.LiteShape2;
+import org.geotools.renderer.RenderingStatistics;
+import org.geotools.renderer.style.PolygonStyle2D;
+import org.geotools.renderer.style.Style2D;
+
+import com.vividsolutions.jts.geom.CoordinateSequence;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryCollection;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.Polygon;
+
+/**
+ * Accumulates the shapes painted with the same {@link Style2D} on the same graphics into a
+ * single {@link Path2D}, so that they can be painted with a single Java2D call. Only styles
+ * accepted by {@link StyledShapePainter#isBatchable(Style2D)} can be batched.
+ * <p>
+ * Fills are accumulated using the non zero winding rule, with shells and holes consistently
+ * oriented, so that overlapping polygons are painted as their union, exactly as they would be
+ * painting them one by one with an opaque color.
+ */
+class ShapeBatch {
+
+    /**
+     * Max number of coordinates accumulated before the batch is painted, to keep the
+     * rasterization memory bounded
+     */
+    static final int MAX_COORDINATES = 65536;
+
+    Path2D.Float path = new Path2D.Float(Path2D.WIND_NON_ZERO, 1024);
+
+    Graphics2D graphics;
+
+    Style2D style;
+
+    boolean fill;
+
+    RenderingStatistics statistics;
+
+    int coordinates;
+
+    int shapes;
+
+    public ShapeBatch(Graphics2D graphics) {
+        this.graphics = graphics;
+    }
+
+    /**
+     * Returns true if the shapes painted with the given style can be added to this batch
+     */
+    public boolean accepts(Style2D style) {
+        return shapes == 0 || (this.style == style && coordinates < MAX_COORDINATES);
+    }
+
+    /**
+     * Adds a shape to the batch. The caller is responsible for checking the style is accepted
+     */
+    public void add(LiteShape2 shape, Style2D style, RenderingStatistics statistics) {
+        if (shapes == 0) {
+            this.style = style;
+            this.statistics = statistics;
+            this.fill = style instanceof PolygonStyle2D && ((PolygonStyle2D) style).getFill() != null;
+        }
+        if (fill) {
+            appendFill(shape.getGeometry());
+        } else {
+            // the outline is the same the painter would draw
+            path.append(shape.getPathIterator(null), false);
+            coordinates += shape.getGeometry().getNumPoints();
+        }
+        shapes++;
+    }
+
+    void appendFill(Geometry geometry) {
+        if (geometry instanceof Polygon) {
+            Polygon polygon = (Polygon) geometry;
+            appendRing(polygon.getExteriorRing().getCoordinateSequence(), true);
+            for (int i = 0; i < polygon.getNumInteriorRing(); i++) {
+                appendRing(polygon.getInteriorRingN(i).getCoordinateSequence(), false);
+            }
+        } else if (geometry instanceof LineString) {
+            // filled as if it was closed, as the painter does
+            appendRing(((LineString) geometry).getCoordinateSequence(), true);
+        } else if (geometry instanceof GeometryCollection) {
+            for (int i = 0; i < geometry.getNumGeometries(); i++) {
+                appendFill(geometry.getGeometryN(i));
+            }
+        }
+    }
+
+    /**
+     * Appends a ring, walking it so that shells turn one way and holes the other way, which
+     * is what makes the non zero winding rule compute the union of the polygons
+     */
+    void appendRing(CoordinateSequence cs, boolean shell) {
+        int size = cs.size();
+        if (size < 3) {
+            return;
+        }
+        double area = 0;
+        for (int i = 0, j = size - 1; i < size; j = i++) {
+            area += (cs.getX(j) - cs.getX(i)) * (cs.getY(j) + cs.getY(i));
+        }
+        if ((area >= 0) == shell) {
+            path.moveTo(cs.getX(0), cs.getY(0));
+            for (int i = 1; i < size; i++) {
+                path.lineTo(cs.getX(i), cs.getY(i));
+            }
+        } else {
+            path.moveTo(cs.getX(size - 1), cs.getY(size - 1));
+            for (int i = size - 2; i >= 0; i--) {
+                path.lineTo(cs.getX(i), cs.getY(i));
+            }
+        }
+        path.closePath();
+        coordinates += size;
+    }
+
+    public boolean isEmpty() {
+        return shapes == 0;
+    }
+
+    /**
+     * Clears the batch contents, keeping the path storage for the next batch
+     */
+    public void reset() {
+        path.reset();
+        style = null;
+        statistics = null;
+        coordinates = 0;
+        shapes = 0;
+    }
+}
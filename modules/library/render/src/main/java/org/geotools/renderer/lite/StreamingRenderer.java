@@ -18,36 +18,47 @@ package org.geotools.renderer.lite;
 
 import java.awt.AlphaComposite;
 import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsDevice;
 import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.RenderingHints.Key;
 import java.awt.Shape;
+import java.awt.Transparency;
 import java.awt.font.GlyphVector;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.NoninvertibleTransformException;
 import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.awt.image.RenderedImage;
+import java.awt.image.WritableRaster;
+import java.io.Closeable;
 import java.io.IOException;
 import java.text.NumberFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.measure.unit.NonSI;
+import javax.measure.unit.Unit;
 import javax.media.jai.PlanarImage;
 
 import org.geotools.coverage.grid.GridCoverage2D;
@@ -93,14 +104,21 @@ import org.geotools.referencing.operation.transform.ConcatenatedTransform;
 import org.geotools.referencing.operation.transform.ProjectiveTransform;
 import org.geotools.renderer.GTRenderer;
 import org.geotools.renderer.RenderListener;
+import org.geotools.renderer.RenderingStatistics;
+import org.geotools.renderer.RenderingStatistics.Counter;
+import org.geotools.renderer.RenderingStatistics.Phase;
+import org.geotools.renderer.RenderingStatisticsListener;
 import org.geotools.renderer.ScreenMap;
 import org.geotools.renderer.crs.ProjectionHandler;
 import org.geotools.renderer.crs.ProjectionHandlerFinder;
 import org.geotools.renderer.label.LabelCacheImpl;
+import org.geotools.renderer.label.LabelCacheImpl.LabelIndexMode;
 import org.geotools.renderer.label.LabelCacheImpl.LabelRenderingMode;
 import org.geotools.renderer.lite.gridcoverage2d.GridCoverageRenderer;
+import org.geotools.renderer.lite.gridcoverage2d.RasterTileCache;
 import org.geotools.renderer.style.SLDStyleFactory;
 import org.geotools.renderer.style.Style2D;
+import org.geotools.renderer.style.Style2DCache;
 import org.geotools.resources.coverage.FeatureUtilities;
 import org.geotools.resources.image.ImageUtilities;
 import org.geotools.styling.FeatureTypeStyle;
@@ -129,6 +147,7 @@ import org.opengis.filter.FilterFactory2;
 import org.opengis.filter.expression.Expression;
 import org.opengis.filter.expression.PropertyName;
 import org.opengis.parameter.GeneralParameterValue;
+import org.opengis.parameter.ParameterValue;
 import org.opengis.referencing.FactoryException;
 import org.opengis.referencing.NoSuchAuthorityCodeException;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
@@ -265,6 +284,18 @@ public class StreamingRenderer implements GTRenderer {
     /** Factory that will resolve symbolizers into rendered styles */
     private SLDStyleFactory styleFactory = new SLDStyleFactory();
 
+    /** 
+     * Maps the rescaled symbolizers to the style ones they have been built from, used to
+     * look up the shared {@link Style2DCache} 
+     */
+    private Map<Symbolizer, Symbolizer> sourceSymbolizers = new IdentityHashMap<Symbolizer, Symbolizer>();
+
+    /** The DPI rescaling factor applied to the symbolizers in the current rendering */
+    private double dpiFactor = 1;
+
+    /** The unit of measure rescaling factor applied to the symbolizers in the current rendering */
+    private double pixelsPerMeters = 1;
+
     protected LabelCache labelCache = new LabelCacheImpl();
 
     /** The painter class we use to depict shapes onto the screen */
@@ -275,6 +306,19 @@ public class StreamingRenderer implements GTRenderer {
 
     private List<RenderListener> renderListeners = new CopyOnWriteArrayList<RenderListener>();
 
+    private List<RenderingStatisticsListener> statisticsListeners = new CopyOnWriteArrayList<RenderingStatisticsListener>();
+
+    /**
+     * When set, the geometries are handed to the collector instead of being painted
+     */
+    private ScreenGeometryCollector screenGeometryCollector;
+
+    /**
+     * The statistics of the layer being rendered, null if there are no statistics listeners
+     * (used only by the thread loading the data, the painting requests keep their own reference)
+     */
+    private RenderingStatistics layerStatistics;
+
     private RenderingHints java2dHints;
 
     private int renderingBufferDEFAULT = 0;
@@ -307,6 +351,23 @@ public class StreamingRenderer implements GTRenderer {
     public static final String TEXT_RENDERING_KEY = "textRenderingMethod";
     private String textRenderingModeDEFAULT = TEXT_RENDERING_STRING;
 
+    /**
+     * Label conflicts will be checked using a quadtree based index
+     */
+    public static final String LABEL_INDEX_QUADTREE = LabelCacheImpl.LabelIndexMode.QUADTREE.name();
+
+    /**
+     * Label conflicts will be checked using a uniform grid over the paint area. Does not allocate
+     * objects during the checks, and performs best with dense labelling.
+     */
+    public static final String LABEL_INDEX_GRID = LabelCacheImpl.LabelIndexMode.GRID.name();
+
+    /**
+     * The index used to check label conflicts, either LABEL_INDEX_QUADTREE or LABEL_INDEX_GRID
+     */
+    public static final String LABEL_INDEX_KEY = "labelIndex";
+    private String labelIndexDEFAULT = LABEL_INDEX_QUADTREE;
+
     /**
      * Whether the thin line width optimization should be used, or not.
      * <p>When rendering non antialiased lines adopting a width of 0 makes the
@@ -355,11 +416,68 @@ public class StreamingRenderer implements GTRenderer {
     public static final String VECTOR_RENDERING_KEY = "vectorRenderingEnabled";
     private static boolean VECTOR_RENDERING_ENABLED_DEFAULT = false;
 
+    /**
+     * Boolean flag enabling parallel layer rendering (disabled by default).
+     * <p>When enabled each layer is queried and painted by a separate task, submitted to
+     * the thread pool set with {@link #setThreadPool(ExecutorService)} (or to a temporary
+     * one sized after the number of available processors), into its own memory back buffer.
+     * The back buffers are then composited on the target graphics in layer order, and the
+     * labels of all layers are placed at the end, exactly as in the sequential case.</p>
+     * <p>Each back buffer is as big as the image being rendered, so this mode trades memory
+     * for speed. The render listeners will be called from multiple threads. 
+     * The mode is ignored when the transforms have to be concatenated to the ones of the 
+     * target graphics, see {@link #setConcatTransforms(boolean)}, and when the target graphics
+     * is not backed by an image (e.g., PDF, SVG or printing), as the output would be
+     * rasterized</p>
+     */
+    public static final String PARALLEL_LAYER_RENDERING_KEY = "parallelLayerRendering";
+
+    /**
+     * A {@link Style2DCache} used to share the styles built out of static symbolizers among
+     * renderings (not set by default, meaning styles are rebuilt at each rendering). 
+     * Use {@link Style2DCache#getDefaultInstance()} to share the styles JVM wide.
+     * <p>The styles are associated to the symbolizer objects, if a style is modified in place the
+     * cache must be notified using {@link Style2DCache#invalidate(org.geotools.styling.Style)}</p>
+     */
+    public static final String STYLE2D_CACHE_KEY = "style2DCache";
+
+    /**
+     * Boolean flag enabling shape batching (disabled by default).
+     * <p>When enabled consecutive features painted on the same graphics with the same solid,
+     * opaque fill or stroke are accumulated in a single shape, which is then painted with a 
+     * single Java2D call when the style changes, greatly reducing the per feature painting 
+     * overhead on dense layers. See {@link StyledShapePainter#isBatchable(org.geotools.renderer.style.Style2D)}
+     * for the styles that can be batched. Only the styles built out of static symbolizers
+     * are shared among features, so batching does not kick in for styles depending on
+     * feature attributes.</p>
+     * <p>The output is the same as the one of the non batched painting, besides small differences
+     * along the borders shared by adjacent shapes when antialiasing is enabled. The feature 
+     * rendered events will be fired before the features are actually painted.</p>
+     */
+    public static final String SHAPE_BATCHING_KEY = "shapeBatching";
+
+    /**
+     * A {@link RasterTileCache} caching the symbolized and reprojected raster tiles among
+     * renderings (not set by default). When set, raster layers coming from a 
+     * {@link GridCoverage2DReader} are read over the whole cache tiles touched by the map, and
+     * the cached tiles are painted without any further processing.
+     * <p>The tiles are identified by reader and read parameters, or by the coverage object 
+     * for in memory coverages, the cache must be cleared if the underlying data changes. 
+     * The cache is not used for coverages produced by rendering transformations, 
+     * and for rotated maps.</p> 
+     */
+    public static final String RASTER_TILE_CACHE_KEY = "rasterTileCache";
+
     public static final String LABEL_CACHE_KEY = "labelCache";
     public static final String FORCE_EPSG_AXIS_ORDER_KEY = "ForceEPSGAxisOrder";
     public static final String DPI_KEY = "dpi";
     public static final String DECLARED_SCALE_DENOM_KEY = "declaredScaleDenominator";
     public static final String SCALE_COMPUTATION_METHOD_KEY = "scaleComputationMethod";
+    /**
+     * The rendering buffer, in pixels, used to expand the query area in order to capture the
+     * geometries just outside of the rendering bounds whose strokes fall inside them
+     */
+    public static final String RENDERING_BUFFER_KEY = "renderingBuffer";
 
     /**
      * "vectorRenderingEnabled"      - Boolean  yes/no (see default vectorRenderingEnabledDEFAULT)
@@ -400,6 +518,17 @@ public class StreamingRenderer implements GTRenderer {
      */
     private int metaBuffer;
 
+    /**
+     * When positive, the only layer of the map content that will be painted. Used by the
+     * per layer renderers during parallel layer rendering
+     */
+    private int renderedLayerIndex = -1;
+
+    /**
+     * The per layer renderers active during a parallel rendering
+     */
+    private List<StreamingRenderer> layerRenderers = new CopyOnWriteArrayList<StreamingRenderer>();
+
     /**
      * Creates a new instance of LiteRenderer without a context. Use it only to
      * gain access to utility methods of this class or if you want to render
@@ -464,6 +593,85 @@ public class StreamingRenderer implements GTRenderer {
         renderListeners.remove(listener);
     }
 
+    /**
+     * Adds a listener that will receive the time spent in each rendering phase, and the number of
+     * features processed, for each layer and for the labels. When no statistics listener is
+     * registered the renderer does not collect any statistic.
+     * 
+     * @see RenderingStatisticsListener
+     * 
+     * @param listener
+     *            the listener to add.
+     */
+    public void addRenderingStatisticsListener(RenderingStatisticsListener listener) {
+        statisticsListeners.add(listener);
+    }
+
+    /**
+     * Removes a rendering statistics listener.
+     * 
+     * @see RenderingStatisticsListener
+     * 
+     * @param listener
+     *            the listener to remove.
+     */
+    public void removeRenderingStatisticsListener(RenderingStatisticsListener listener) {
+        statisticsListeners.remove(listener);
+    }
+
+    public ScreenGeometryCollector getScreenGeometryCollector() {
+        return screenGeometryCollector;
+    }
+
+    /**
+     * Sets a collector that will receive the geometries, transformed in screen space, generalized
+     * and clipped to the paint area, instead of having them painted. This allows to build vector
+     * outputs using the same data selection and preparation used for painting: scale dependent
+     * rule filtering, query building, generalization, screen map decimation and clipping.
+     * Raster data and direct layers are skipped, labels are not placed, instead the geometries
+     * associated to text symbolizers are handed to the collector as well.
+     * <p>
+     * The clipping area is the paint area expanded by the rendering buffer, or the buffer
+     * estimated from the styles, whatever is larger.
+     * 
+     * @param collector the collector, or null to go back to normal painting
+     */
+    public void setScreenGeometryCollector(ScreenGeometryCollector collector) {
+        this.screenGeometryCollector = collector;
+    }
+
+    private void fireLayerRenderedEvents(List<RenderingStatistics> statistics) {
+        for (RenderingStatistics layer : statistics) {
+            for (RenderingStatisticsListener listener : statisticsListeners) {
+                listener.layerRendered(layer);
+            }
+        }
+    }
+
+    private void fireLabelsRenderedEvent(RenderingStatistics statistics) {
+        for (RenderingStatisticsListener listener : statisticsListeners) {
+            listener.labelsRendered(statistics);
+        }
+    }
+
+    /**
+     * Returns the current time if the statistics of the current layer are being collected, 0
+     * otherwise
+     */
+    private long startTiming() {
+        return layerStatistics != null ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Adds the time elapsed since <code>start</code> to the specified phase, if the statistics of
+     * the current layer are being collected
+     */
+    private void endTiming(Phase phase, long start) {
+        if (layerStatistics != null) {
+            layerStatistics.add(phase, System.nanoTime() - start);
+        }
+    }
+
     private void fireFeatureRenderedEvent(Object feature) {
         if( !(feature instanceof SimpleFeature)){
             if(feature instanceof Feature) {
@@ -504,16 +712,22 @@ public class StreamingRenderer implements GTRenderer {
      */
     public void stopRendering() {
         renderingStopRequested = true;
+        // stop the eventual per layer renderers
+        for (StreamingRenderer renderer : layerRenderers) {
+            renderer.stopRendering();
+        }
         // un-block the queue in case it was filled with requests and the main
         // thread got blocked on it
-        requests.clear();
-        // wake up the painter and put a death pill in the queue
-        painterThread.interrupt();
-        try {
-            requests.put(new EndRequest());
-        } catch(InterruptedException e) {
-            throw new RuntimeException("Interrupted while trying to put the end " +
-            		"request in the requests queue, this should never happen", e);
+        if (requests != null) {
+            requests.clear();
+            // wake up the painter and put a death pill in the queue
+            painterThread.interrupt();
+            try {
+                requests.put(new EndRequest());
+            } catch(InterruptedException e) {
+                throw new RuntimeException("Interrupted while trying to put the end " +
+                		"request in the requests queue, this should never happen", e);
+            }
         }
 
         labelCache.stop();
@@ -697,6 +911,18 @@ public class StreamingRenderer implements GTRenderer {
                 return;
         }
         
+        // ////////////////////////////////////////////////////////////////////
+        //
+        // Paint each layer in its own thread and back buffer if so requested
+        //
+        // ////////////////////////////////////////////////////////////////////
+        if (renderedLayerIndex < 0 && isParallelLayerRenderingEnabled() && !concatTransforms
+                && screenGeometryCollector == null && isImageOutput(graphics)
+                && mapContent != null && mapContent.layers().size() > 1) {
+            paintParallel(graphics, paintArea, mapArea, worldToScreen);
+            return;
+        }
+        
         // ////////////////////////////////////////////////////////////////////
         // 
         // Setting base information
@@ -718,6 +944,9 @@ public class StreamingRenderer implements GTRenderer {
         graphics.setRenderingHint(StyledShapePainter.TEXTURE_ANCHOR_HINT_KEY, textureAnchor);
         // reset the abort flag
         renderingStopRequested = false;
+        sourceSymbolizers.clear();
+        List<RenderingStatistics> statistics = statisticsListeners.isEmpty() ? null
+                : new ArrayList<RenderingStatistics>();
         
         // setup the graphic clip
         graphics.setClip(paintArea);
@@ -777,9 +1006,7 @@ public class StreamingRenderer implements GTRenderer {
             //
             // ////////////////////////////////////////////////////////////////////
             labelCache.start();
-            if(labelCache instanceof LabelCacheImpl) {
-                ((LabelCacheImpl) labelCache).setLabelRenderingMode(LabelRenderingMode.valueOf(getTextRenderingMethod()));
-            }
+            configureLabelCache();
             final int layersNumber = mapContent.layers().size();
             for (int i = 0; i < layersNumber; i++) // DJB: for each layer (ie. one
             {
@@ -789,21 +1016,38 @@ public class StreamingRenderer implements GTRenderer {
                     // Only render layer when layer is visible
                     continue;
                 }
+                
+                if (renderedLayerIndex >= 0 && renderedLayerIndex != i) {
+                    // parallel rendering, another renderer is taking care of this layer
+                    continue;
+                }
     
                 if (renderingStopRequested) {
                     return;
                 }
                 labelCache.startLayer(i+"");
+                if (statistics != null) {
+                    layerStatistics = new RenderingStatistics(i + "", getLayerName(layer));
+                    statistics.add(layerStatistics);
+                }
+                
+                if (screenGeometryCollector != null) {
+                    screenGeometryCollector.startLayer(i + "", layer);
+                }
                 
                 if (layer instanceof DirectLayer) {
-                    RenderingRequest request = new RenderDirectLayerRequest(
-                            graphics, (DirectLayer) layer);
-                    try {
-                        requests.put(request);
-                    } catch (InterruptedException e) {
-                        fireErrorEvent(e);
+                    if (screenGeometryCollector != null) {
+                        // direct layers can only paint, nothing to collect
+                        LOGGER.fine("Skipping direct layer " + layer + " in vector output");
+                    } else {
+                        RenderingRequest request = new RenderDirectLayerRequest(
+                                graphics, (DirectLayer) layer);
+                        try {
+                            requests.put(request);
+                        } catch (InterruptedException e) {
+                            fireErrorEvent(e);
+                        }
                     }
-                    
                 } else {
                     MapLayer currLayer = new MapLayer(layer);
                     try {
@@ -818,8 +1062,12 @@ public class StreamingRenderer implements GTRenderer {
                 }
     
                 labelCache.endLayer(i+"", graphics, screenSize);
+                if (screenGeometryCollector != null) {
+                    screenGeometryCollector.endLayer(i + "");
+                }
             }
         } finally {
+            layerStatistics = null;
             try {
                 if(!renderingStopRequested) {
                     requests.put(new EndRequest());
@@ -836,7 +1084,10 @@ public class StreamingRenderer implements GTRenderer {
         }
         
         if(!renderingStopRequested) {
-            labelCache.end(graphics, paintArea);
+            if (statistics != null) {
+                fireLayerRenderedEvents(statistics);
+            }
+            endLabels(graphics, paintArea);
         } else {
             labelCache.clear();
         }
@@ -855,6 +1106,315 @@ public class StreamingRenderer implements GTRenderer {
         
     }
 
+    /**
+     * Paints each visible layer in a separate task, each one using its own back buffer and 
+     * a dedicated renderer, then composites the back buffers in layer order and paints the 
+     * labels of all layers. See {@link #PARALLEL_LAYER_RENDERING_KEY} for details.
+     */
+    private void paintParallel(Graphics2D graphics, Rectangle paintArea,
+            ReferencedEnvelope mapArea, AffineTransform worldToScreen) {
+        // the back buffers inherit the hints, the labels are painted straight on the graphics
+        if (java2dHints != null)
+            graphics.setRenderingHints(java2dHints);
+        // reset the abort flag
+        renderingStopRequested = false;
+
+        ExecutorService localThreadPool = threadPool;
+        boolean localPool = false;
+        if (localThreadPool == null) {
+            localThreadPool = Executors.newFixedThreadPool(Runtime.getRuntime()
+                    .availableProcessors());
+            localPool = true;
+        }
+
+        final int layersNumber = mapContent.layers().size();
+        List<List<RenderingStatistics>> statisticsByLayer = 
+                new ArrayList<List<RenderingStatistics>>();
+        List<String> layerIds = new ArrayList<String>();
+        List<DeferredLabelCache> layerLabels = new ArrayList<DeferredLabelCache>();
+        List<BufferedImage> images = new ArrayList<BufferedImage>();
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        try {
+            // submit one rendering task per visible layer
+            for (int i = 0; i < layersNumber; i++) {
+                Layer layer = mapContent.layers().get(i);
+                if (!layer.isVisible()) {
+                    continue;
+                }
+
+                final DeferredLabelCache labels = new DeferredLabelCache();
+                final StreamingRenderer renderer = createLayerRenderer(i, labels);
+                final List<RenderingStatistics> statistics = Collections
+                        .synchronizedList(new ArrayList<RenderingStatistics>());
+                if (!statisticsListeners.isEmpty()) {
+                    // collect the layer statistics, they will be notified in layer order once
+                    // the layers have been composited, from this thread
+                    renderer.addRenderingStatisticsListener(new RenderingStatisticsListener() {
+
+                        public void layerRendered(RenderingStatistics layer) {
+                            statistics.add(layer);
+                        }
+
+                        public void labelsRendered(RenderingStatistics labels) {
+                            // the labels are placed by this renderer
+                        }
+                    });
+                }
+                final BufferedImage image = graphics.getDeviceConfiguration()
+                        .createCompatibleImage(paintArea.width, paintArea.height,
+                                Transparency.TRANSLUCENT);
+                final Graphics2D layerGraphics = image.createGraphics();
+                layerGraphics.setRenderingHints(graphics.getRenderingHints());
+                // the back buffer only covers the paint area, which might not start at the origin
+                layerGraphics.translate(-paintArea.x, -paintArea.y);
+                final Rectangle layerPaintArea = new Rectangle(paintArea);
+                final ReferencedEnvelope layerMapArea = new ReferencedEnvelope(mapArea);
+                final AffineTransform layerWorldToScreen = new AffineTransform(worldToScreen);
+
+                layerRenderers.add(renderer);
+                layerIds.add(i + "");
+                layerLabels.add(labels);
+                statisticsByLayer.add(statistics);
+                images.add(image);
+                futures.add(localThreadPool.submit(new Runnable() {
+
+                    public void run() {
+                        try {
+                            renderer.paint(layerGraphics, layerPaintArea, layerMapArea,
+                                    layerWorldToScreen);
+                        } finally {
+                            layerGraphics.dispose();
+                        }
+                    }
+                }));
+            }
+
+            // wait for all layers to be painted
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    fireErrorEvent(e.getCause());
+                } catch (InterruptedException e) {
+                    fireErrorEvent(e);
+                    stopRendering();
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        } finally {
+            layerRenderers.clear();
+            if (localPool) {
+                localThreadPool.shutdown();
+            }
+        }
+
+        if (renderingStopRequested) {
+            labelCache.clear();
+            return;
+        }
+
+        // composite the back buffers in layer order
+        graphics.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER));
+        for (BufferedImage image : images) {
+            graphics.drawImage(image, paintArea.x, paintArea.y, null);
+        }
+
+        // place the labels as the sequential rendering would have done
+        labelCache.start();
+        configureLabelCache();
+        for (int i = 0; i < layerIds.size(); i++) {
+            String layerId = layerIds.get(i);
+            labelCache.startLayer(layerId);
+            layerLabels.get(i).replay(labelCache);
+            labelCache.endLayer(layerId, graphics, paintArea);
+        }
+        for (List<RenderingStatistics> statistics : statisticsByLayer) {
+            fireLayerRenderedEvents(statistics);
+        }
+        endLabels(graphics, paintArea);
+    }
+
+    /**
+     * Returns true if the graphics paints on an image, the only kind of output the back buffers
+     * of the parallel rendering can be composited on without changing its nature
+     */
+    private boolean isImageOutput(Graphics2D graphics) {
+        GraphicsConfiguration configuration = graphics.getDeviceConfiguration();
+        return configuration != null
+                && configuration.getDevice().getType() == GraphicsDevice.TYPE_IMAGE_BUFFER;
+    }
+
+    /**
+     * Places and paints the labels, collecting the labelling statistics if there is any listener
+     * interested in them
+     */
+    private void endLabels(Graphics2D graphics, Rectangle paintArea) {
+        if (statisticsListeners.isEmpty() || renderedLayerIndex >= 0) {
+            // no one is listening, or we are rendering a single layer of a parallel rendering,
+            // the labels are placed by the parent renderer
+            labelCache.end(graphics, paintArea);
+            return;
+        }
+
+        RenderingStatistics statistics = new RenderingStatistics(null, null);
+        if (labelCache instanceof LabelCacheImpl) {
+            LabelCacheImpl cache = (LabelCacheImpl) labelCache;
+            cache.setStatistics(statistics);
+            try {
+                labelCache.end(graphics, paintArea);
+            } finally {
+                cache.setStatistics(null);
+            }
+        } else {
+            long start = System.nanoTime();
+            labelCache.end(graphics, paintArea);
+            statistics.add(Phase.LABELING, System.nanoTime() - start);
+        }
+        fireLabelsRenderedEvent(statistics);
+    }
+
+    /**
+     * Returns a human readable name for the layer, used in the rendering statistics
+     */
+    private String getLayerName(Layer layer) {
+        if (layer.getTitle() != null) {
+            return layer.getTitle();
+        } else if (layer.getFeatureSource() != null) {
+            return layer.getFeatureSource().getName().getLocalPart();
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Builds a renderer that will paint only the specified layer of the current map content,
+     * sharing the configuration of this renderer, and sending the labels to the specified
+     * cache
+     */
+    private StreamingRenderer createLayerRenderer(int layerIndex, LabelCache labels) {
+        StreamingRenderer renderer = new StreamingRenderer();
+        renderer.renderedLayerIndex = layerIndex;
+        renderer.setMapContent(mapContent);
+        Map hints = rendererHints == null ? new HashMap() : new HashMap(rendererHints);
+        hints.put(LABEL_CACHE_KEY, labels);
+        hints.put(PARALLEL_LAYER_RENDERING_KEY, Boolean.FALSE);
+        renderer.setRendererHints(hints);
+        renderer.setJava2DHints(java2dHints);
+        renderer.setGeneralizationDistance(generalizationDistance);
+        renderer.setInteractive(interactive);
+        for (RenderListener listener : renderListeners) {
+            renderer.addRenderListener(listener);
+        }
+        return renderer;
+    }
+
+    /**
+     * Renders a meta tile, that is, a block of <code>metaTileFactor</code> by
+     * <code>metaTileFactor</code> tiles, in a single pass, and slices it into the tiles composing
+     * it. Compared to painting each tile separately the data is queried, transformed and 
+     * labelled only once, and the labels crossing the tile borders are not duplicated.
+     * <p>
+     * The meta tile is painted with a gutter around it, as big as the largest meta buffer
+     * estimated from the styles of the visible layers (or the rendering buffer, if larger), so that
+     * the symbols of the features just outside of the meta tile are painted consistently with the
+     * neighbouring meta tiles.
+     * </p>
+     * 
+     * @param metaTileArea
+     *            the map area covered by the tiles, in map coordinates
+     * @param tileWidth
+     *            the width of each tile, in pixels
+     * @param tileHeight
+     *            the height of each tile, in pixels
+     * @param metaTileFactor
+     *            the number of tiles along each side of the meta tile
+     * @return the tiles, indexed by row and column, with the first row at the top of the meta tile
+     */
+    public BufferedImage[][] paintMetaTile(ReferencedEnvelope metaTileArea, int tileWidth,
+            int tileHeight, int metaTileFactor) {
+        if (metaTileArea == null) {
+            LOGGER.severe("renderer passed null metaTileArea argument");
+            throw new NullPointerException("renderer requires metaTileArea");
+        } else if (tileWidth <= 0 || tileHeight <= 0 || metaTileFactor <= 0) {
+            throw new IllegalArgumentException("The tile sizes and the meta tile factor "
+                    + "must be positive, got " + tileWidth + "x" + tileHeight + " and "
+                    + metaTileFactor);
+        }
+
+        // compute the painted area, including the gutter
+        final int gutter = getMetaTileGutter();
+        final int metaWidth = tileWidth * metaTileFactor;
+        final int metaHeight = tileHeight * metaTileFactor;
+        final double resX = metaTileArea.getWidth() / metaWidth;
+        final double resY = metaTileArea.getHeight() / metaHeight;
+        ReferencedEnvelope paintedArea = new ReferencedEnvelope(metaTileArea.getMinX() - gutter
+                * resX, metaTileArea.getMaxX() + gutter * resX, metaTileArea.getMinY() - gutter
+                * resY, metaTileArea.getMaxY() + gutter * resY,
+                metaTileArea.getCoordinateReferenceSystem());
+
+        // paint the whole meta tile once
+        BufferedImage image = new BufferedImage(metaWidth + gutter * 2, metaHeight + gutter * 2,
+                BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            if (java2dHints != null) {
+                graphics.setRenderingHints(java2dHints);
+            }
+            paint(graphics, new Rectangle(image.getWidth(), image.getHeight()), paintedArea);
+        } finally {
+            graphics.dispose();
+        }
+
+        // slice it, copying the pixels so that the meta tile can be garbage collected
+        final WritableRaster raster = image.getRaster();
+        BufferedImage[][] tiles = new BufferedImage[metaTileFactor][metaTileFactor];
+        for (int row = 0; row < metaTileFactor; row++) {
+            for (int col = 0; col < metaTileFactor; col++) {
+                BufferedImage tile = new BufferedImage(tileWidth, tileHeight,
+                        BufferedImage.TYPE_INT_ARGB);
+                tile.getRaster().setRect(-(gutter + col * tileWidth),
+                        -(gutter + row * tileHeight), raster);
+                tiles[row][col] = tile;
+            }
+        }
+
+        return tiles;
+    }
+
+    /**
+     * Returns the gutter, in pixels, to be painted around a meta tile
+     */
+    private int getMetaTileGutter() {
+        int gutter = getRenderingBuffer();
+        if (mapContent != null) {
+            final MetaBufferEstimator rbe = new MetaBufferEstimator();
+            for (Layer layer : mapContent.layers()) {
+                if (layer.isVisible() && layer instanceof StyleLayer) {
+                    Style style = ((StyleLayer) layer).getStyle();
+                    if (style != null) {
+                        style.accept(rbe);
+                    }
+                }
+            }
+            // same as findRenderingBuffer, half of the largest stroke/symbol size plus one pixel
+            // for antialiasing effects
+            gutter = Math.max(gutter, (int) Math.round(rbe.getBuffer() / 2.0 + 1));
+        }
+        return gutter;
+    }
+
+    /**
+     * Applies the label related renderer hints to the label cache
+     */
+    private void configureLabelCache() {
+        if (labelCache instanceof LabelCacheImpl) {
+            LabelCacheImpl cache = (LabelCacheImpl) labelCache;
+            cache.setLabelRenderingMode(LabelRenderingMode.valueOf(getTextRenderingMethod()));
+            cache.setLabelIndexMode(LabelIndexMode.valueOf(getLabelIndex()));
+        }
+    }
+
     /**
      * Builds the blocking queue used to bridge between the data loading thread and
      * the painting one
@@ -1392,6 +1952,32 @@ public class StreamingRenderer implements GTRenderer {
         return Boolean.TRUE.equals(result);
     }
 
+    /**
+     * Checks if parallel layer rendering is enabled, or not.
+     * See {@link #PARALLEL_LAYER_RENDERING_KEY} description for a full explanation.
+     */
+    private boolean isParallelLayerRenderingEnabled() {
+        if (rendererHints == null)
+            return false;
+        Object result = rendererHints.get(PARALLEL_LAYER_RENDERING_KEY);
+        if (result == null)
+            return false;
+        return Boolean.TRUE.equals(result);
+    }
+
+    /**
+     * Checks if shape batching is enabled, or not.
+     * See {@link #SHAPE_BATCHING_KEY} description for a full explanation.
+     */
+    private boolean isShapeBatchingEnabled() {
+        if (rendererHints == null)
+            return false;
+        Object result = rendererHints.get(SHAPE_BATCHING_KEY);
+        if (result == null)
+            return false;
+        return Boolean.TRUE.equals(result);
+    }
+
     /**
      * Checks if the advanced projection handling is enabled
      * @return
@@ -1968,6 +2554,7 @@ public class StreamingRenderer implements GTRenderer {
                 // turn down the flag if we don't 
                 inMemoryGeneralization = true;
                 boolean hasTransformation = transform != null;
+                long start = startTiming();
                 Query styleQuery = getStyleQuery(featureSource, schema,
                         uniform, mapArea, destinationCrs, sourceCrs, screenSize,
                         geometryAttribute, at, hasTransformation);
@@ -1991,6 +2578,7 @@ public class StreamingRenderer implements GTRenderer {
                     Object result = helper.applyRenderingTransformation(transform, featureSource, definitionQuery, 
                             styleQuery, gridGeometry, sourceCrs, java2dHints);
                     if(result == null) {
+                        endTiming(Phase.QUERY, start);
                         return;
                     } else if (result instanceof FeatureCollection) {
                         features = (FeatureCollection) result;
@@ -2030,6 +2618,7 @@ public class StreamingRenderer implements GTRenderer {
                     features.getSchema().getUserData().put("targetCrs", destinationCrs);
                     features.getSchema().getUserData().put("targetVersion", "wms:getmap");
                 }
+                endTiming(Phase.QUERY, start);
 
                 // finally, perform rendering
                 if(isOptimizedFTSRenderingEnabled() && lfts.size() > 1) {
@@ -2127,8 +2716,10 @@ public class StreamingRenderer implements GTRenderer {
         // apply dpi rescale
         double dpi = RendererUtilities.getDpi(getRendererHints());
         double standardDpi = RendererUtilities.getDpi(Collections.emptyMap());
+        dpiFactor = 1;
         if(dpi != standardDpi) {
             double scaleFactor = dpi / standardDpi;
+            dpiFactor = scaleFactor;
             DpiRescaleStyleVisitor dpiVisitor = new GraphicsAwareDpiRescaleStyleVisitor(scaleFactor);
             for(LiteFeatureTypeStyle fts : lfts) {
                 rescaleFeatureTypeStyle(fts, dpiVisitor);
@@ -2136,7 +2727,7 @@ public class StreamingRenderer implements GTRenderer {
         }
         
         // apply UOM rescaling
-        double pixelsPerMeters = RendererUtilities.calculatePixelsPerMeterRatio(scaleDenominator, rendererHints);
+        pixelsPerMeters = RendererUtilities.calculatePixelsPerMeterRatio(scaleDenominator, rendererHints);
         UomRescaleStyleVisitor rescaleVisitor = new UomRescaleStyleVisitor(pixelsPerMeters);
         for(LiteFeatureTypeStyle fts : lfts) {
             rescaleFeatureTypeStyle(fts, rescaleVisitor);
@@ -2278,17 +2869,60 @@ public class StreamingRenderer implements GTRenderer {
      */
     void rescaleFeatureTypeStyle(LiteFeatureTypeStyle fts, DuplicatingStyleVisitor visitor) {
         for (int i = 0; i < fts.ruleList.length; i++) {
-            visitor.visit(fts.ruleList[i]);
+            Rule original = fts.ruleList[i];
+            visitor.visit(original);
             fts.ruleList[i] = (Rule) visitor.getCopy();
+            trackSourceSymbolizers(original, fts.ruleList[i]);
         }
         if(fts.elseRules != null) {
             for (int i = 0; i < fts.elseRules.length; i++) {
-                visitor.visit(fts.elseRules[i]);
+                Rule original = fts.elseRules[i];
+                visitor.visit(original);
                 fts.elseRules[i] = (Rule) visitor.getCopy();
+                trackSourceSymbolizers(original, fts.elseRules[i]);
             }
         }
     }
 
+    /**
+     * Associates the symbolizers of a rescaled rule copy to the ones of the style they have
+     * been built from, so that the shared style cache can be used
+     * @param original
+     * @param copy
+     */
+    private void trackSourceSymbolizers(Rule original, Rule copy) {
+        if(styleFactory.getSharedCache() == null) {
+            return;
+        }
+        List<Symbolizer> originals = original.symbolizers();
+        List<Symbolizer> copies = copy.symbolizers();
+        if(originals.size() != copies.size()) {
+            return;
+        }
+        for (int i = 0; i < originals.size(); i++) {
+            Symbolizer source = sourceSymbolizers.get(originals.get(i));
+            if(source == null) {
+                source = originals.get(i);
+            }
+            sourceSymbolizers.put(copies.get(i), source);
+        }
+    }
+
+    /**
+     * Builds the style for the specified symbolizer, passing down to the style factory the 
+     * informations needed to use the shared style cache
+     */
+    private Style2D createStyle(Object content, Symbolizer symbolizer, NumberRange scaleRange) {
+        Symbolizer source = sourceSymbolizers.get(symbolizer);
+        if(source == null) {
+            return styleFactory.createStyle(content, symbolizer, scaleRange);
+        }
+        Unit<?> uom = source.getUnitOfMeasure();
+        double uomFactor = uom == null || NonSI.PIXEL.equals(uom) ? 1 : pixelsPerMeters;
+        return styleFactory.createStyle(content, symbolizer, scaleRange, source, dpiFactor,
+                uomFactor);
+    }
+
     /**
      * Performs all rendering on the user provided graphics object by scanning
      * the collection multiple times, one for each feature type style provided
@@ -2303,6 +2937,7 @@ public class StreamingRenderer implements GTRenderer {
         // for each lite feature type style, scan the whole collection and draw
         for (LiteFeatureTypeStyle liteFeatureTypeStyle : fts_array) {
             Iterator<?> iterator = null;
+            long start = startTiming();
             if (collection != null){
                 iterator = collection.iterator();
                 if (iterator == null ){
@@ -2319,6 +2954,10 @@ public class StreamingRenderer implements GTRenderer {
             else {
                 return; // nothing to do
             }
+            endTiming(Phase.QUERY, start);
+            if (layerStatistics != null) {
+                iterator = new StatisticsIterator(iterator, layerStatistics);
+            }
             try {
                 boolean clone = isCloningRequired(currLayer, fts_array);
                 RenderableFeature rf = new RenderableFeature(currLayer, clone);
@@ -2357,8 +2996,13 @@ public class StreamingRenderer implements GTRenderer {
 
         
         if( collection != null ) {
+            long start = startTiming();
             Iterator iterator = collection.iterator();        
             if( iterator == null ) return; // nothing to do
+            endTiming(Phase.QUERY, start);
+            if (layerStatistics != null) {
+                iterator = new StatisticsIterator(iterator, layerStatistics);
+            }
 
             try {
                 boolean clone = isCloningRequired(currLayer, fts_array);
@@ -2390,8 +3034,13 @@ public class StreamingRenderer implements GTRenderer {
         }
 
         if( features != null ) {
+            long start = startTiming();
             FeatureIterator<?> iterator = features.features();
             if( iterator == null ) return; // nothing to do
+            endTiming(Phase.QUERY, start);
+            if (layerStatistics != null) {
+                iterator = new StatisticsFeatureIterator(iterator, layerStatistics);
+            }
             try {
                 boolean clone = isCloningRequired(currLayer, fts_array);
                 RenderableFeature rf = new RenderableFeature(currLayer, clone);
@@ -2549,9 +3198,15 @@ public class StreamingRenderer implements GTRenderer {
             //
             // /////////////////////////////////////////////////////////////////
             if (symbolizer instanceof RasterSymbolizer) {
+                if (screenGeometryCollector != null) {
+                    // rasters cannot be turned into vector output
+                    continue;
+                }
                 // grab the grid coverage
                 GridCoverage2D coverage = null;
                 boolean disposeCoverage = false;
+                Object coverageKey = null;
+                RasterTileCache tileCache = getRasterTileCache();
                 
                 try {
                     // //
@@ -2561,13 +3216,23 @@ public class StreamingRenderer implements GTRenderer {
                     if (grid instanceof GridCoverage2D) {
                         coverage = (GridCoverage2D) grid;
                         disposeCoverage = grid instanceof DisposableGridCoverage;
+                        if (!disposeCoverage) {
+                            // an in memory coverage, stable among renderings
+                            coverageKey = coverage;
+                        }
                     } else if (grid instanceof GridCoverage2DReader) {
                         final Object params = paramsPropertyName.evaluate(drawMe.content);
                         GridCoverage2DReader reader = (GridCoverage2DReader) grid;
                         CoordinateReferenceSystem sourceCRS = reader.getCoordinateReferenceSystem();
-                        GridGeometry2D readGG = getRasterGridGeometry(destinationCrs, sourceCRS);
+                        GridGeometry2D readGG = getRasterGridGeometry(destinationCrs,
+                                sourceCRS, tileCache);
+                        long start = startTiming();
                         coverage = readCoverage(reader, params, readGG);
+                        endTiming(Phase.READ, start);
                         disposeCoverage = true;
+                        if (tileCache != null) {
+                            coverageKey = getCoverageKey(reader, params);
+                        }
                     }
                 } catch (IllegalArgumentException e) {
                     LOGGER.log(Level.WARNING, e.getLocalizedMessage(), e);
@@ -2578,8 +3243,13 @@ public class StreamingRenderer implements GTRenderer {
                 }
                 
                 if(coverage != null) {
-                    requests.put(new RenderRasterRequest(graphics, coverage, disposeCoverage,
-                            (RasterSymbolizer) symbolizer, destinationCrs, at));
+                    RenderRasterRequest rasterRequest = new RenderRasterRequest(graphics,
+                            coverage, disposeCoverage, (RasterSymbolizer) symbolizer,
+                            destinationCrs, at);
+                    if (tileCache != null && coverageKey != null) {
+                        rasterRequest.setTileCache(tileCache, coverageKey);
+                    }
+                    requests.put(rasterRequest);
                     paintCommands++;
                 }
             } else {
@@ -2589,18 +3259,23 @@ public class StreamingRenderer implements GTRenderer {
                 // FEATURE
                 //
                 // /////////////////////////////////////////////////////////////////
+                long start = startTiming();
                 LiteShape2 shape = drawMe.getShape(symbolizer, at);
+                endTiming(Phase.TRANSFORM, start);
                 if(shape == null) {
                     continue;
                 }
                 
-                if (symbolizer instanceof TextSymbolizer && drawMe.content instanceof Feature) {
+                if (screenGeometryCollector != null) {
+                    if (collectGeometry(drawMe, symbolizer, shape, layerId)) {
+                        paintCommands++;
+                    }
+                } else if (symbolizer instanceof TextSymbolizer && drawMe.content instanceof Feature) {
                     labelCache.put(layerId, (TextSymbolizer) symbolizer, (Feature) drawMe.content,
                             shape, scaleRange);
                     paintCommands++;
                 } else {
-                    Style2D style = styleFactory.createStyle(drawMe.content,
-                            symbolizer, scaleRange);
+                    Style2D style = createStyle(drawMe.content, symbolizer, scaleRange);
                     
                     // clip to the visible area + the size of the symbolizer (with some extra 
                     // to make sure we get no artefacts from polygon new borders)
@@ -2610,14 +3285,16 @@ public class StreamingRenderer implements GTRenderer {
                     double clipBuffer = Math.max(size / 2, metaBuffer) + 10;
                     Envelope env = new Envelope(screenSize.getMinX(), screenSize.getMaxX(), screenSize.getMinY(), screenSize.getMaxY());
                     env.expandBy(clipBuffer);
+                    start = startTiming();
                     final GeometryClipper clipper = new GeometryClipper(env);
                     Geometry g = clipper.clip(shape.getGeometry(), false);
+                    if(g != null && g != shape.getGeometry()) {
+                        shape = new LiteShape2(g, null, null, false);
+                    }
+                    endTiming(Phase.TRANSFORM, start);
                     if(g == null) {
                         continue;
                     }
-                    if(g != shape.getGeometry()) {
-                        shape = new LiteShape2(g, null, null, false);
-                    }
                     
                     PaintShapeRequest paintShapeRequest = 
                         new PaintShapeRequest(graphics, shape, style, scaleDenominator);
@@ -2637,6 +3314,30 @@ public class StreamingRenderer implements GTRenderer {
         }
     }
 
+    /**
+     * Clips the shape to the paint area expanded by the rendering buffer and hands it over to the
+     * screen geometry collector
+     * 
+     * @return true if the geometry was collected, false if it's outside of the clipping area
+     */
+    private boolean collectGeometry(RenderableFeature drawMe, Symbolizer symbolizer,
+            LiteShape2 shape, String layerId) {
+        double clipBuffer = Math.max(getRenderingBuffer(), metaBuffer);
+        Envelope env = new Envelope(screenSize.getMinX(), screenSize.getMaxX(),
+                screenSize.getMinY(), screenSize.getMaxY());
+        env.expandBy(clipBuffer);
+        long start = startTiming();
+        final GeometryClipper clipper = new GeometryClipper(env);
+        Geometry g = clipper.clip(shape.getGeometry(), false);
+        endTiming(Phase.TRANSFORM, start);
+        if (g == null || g.isEmpty()) {
+            return false;
+        }
+
+        screenGeometryCollector.collect(layerId, drawMe.content, g, symbolizer);
+        return true;
+    }
+
     /**
      * Builds a raster grid geometry that will be used for reading, taking into account
      * the original map extent and target paint area, and expanding the target raster area
@@ -2648,20 +3349,48 @@ public class StreamingRenderer implements GTRenderer {
      */
     GridGeometry2D getRasterGridGeometry(CoordinateReferenceSystem destinationCrs,
             CoordinateReferenceSystem sourceCRS) throws NoninvertibleTransformException {
+        return getRasterGridGeometry(destinationCrs, sourceCRS, null);
+    }
+
+    /**
+     * Builds a raster grid geometry that will be used for reading, like
+     * {@link #getRasterGridGeometry(CoordinateReferenceSystem, CoordinateReferenceSystem)}, 
+     * but expanding the area to the tiles of the specified tile cache touched by the map
+     * @param tileCache the tile cache, can be null
+     */
+    GridGeometry2D getRasterGridGeometry(CoordinateReferenceSystem destinationCrs,
+            CoordinateReferenceSystem sourceCRS, RasterTileCache tileCache)
+            throws NoninvertibleTransformException {
+        Rectangle targetArea = screenSize;
+        if (tileCache != null && isNorthUp(worldToScreenTransform)) {
+            // the whole tiles will be built and cached
+            ReferencedEnvelope aligned = tileCache.getTileAlignedEnvelope(originalMapExtent,
+                    screenSize);
+            targetArea = worldToScreenTransform.createTransformedShape(
+                    new Rectangle2D.Double(aligned.getMinX(), aligned.getMinY(),
+                            aligned.getWidth(), aligned.getHeight())).getBounds();
+        }
+
         GridGeometry2D readGG;
-        if (sourceCRS == null || destinationCrs == null ||
-                CRS.equalsIgnoreMetadata(destinationCrs, sourceCRS)) {
+        if (targetArea == screenSize && (sourceCRS == null || destinationCrs == null ||
+                CRS.equalsIgnoreMetadata(destinationCrs, sourceCRS))) {
             readGG = new GridGeometry2D(new GridEnvelope2D(screenSize),
                     originalMapExtent);
+        } else if (sourceCRS == null || destinationCrs == null ||
+                CRS.equalsIgnoreMetadata(destinationCrs, sourceCRS)) {
+            readGG = new GridGeometry2D(new GridEnvelope2D(targetArea),
+                    PixelInCell.CELL_CORNER, new AffineTransform2D(
+                            worldToScreenTransform.createInverse()),
+                    originalMapExtent.getCoordinateReferenceSystem(), null);
         } else {
             // reprojection involved, read a bit more pixels to account for rotation
-            Rectangle bufferedTargetArea = (Rectangle) screenSize.clone();
+            Rectangle bufferedTargetArea = (Rectangle) targetArea.clone();
             bufferedTargetArea.add( // exand top/right
-                    screenSize.x + screenSize.width + REPROJECTION_RASTER_GUTTER, 
-                    screenSize.y + screenSize.height + REPROJECTION_RASTER_GUTTER);
+                    targetArea.x + targetArea.width + REPROJECTION_RASTER_GUTTER, 
+                    targetArea.y + targetArea.height + REPROJECTION_RASTER_GUTTER);
             bufferedTargetArea.add( // exand bottom/left
-                    screenSize.x - REPROJECTION_RASTER_GUTTER,
-                    screenSize.y - REPROJECTION_RASTER_GUTTER);
+                    targetArea.x - REPROJECTION_RASTER_GUTTER,
+                    targetArea.y - REPROJECTION_RASTER_GUTTER);
 
             // now create the final envelope accordingly
             readGG = new GridGeometry2D(new GridEnvelope2D(bufferedTargetArea),
@@ -2672,6 +3401,11 @@ public class StreamingRenderer implements GTRenderer {
         return readGG;
     }
 
+    private boolean isNorthUp(AffineTransform worldToScreen) {
+        return worldToScreen.getShearX() == 0 && worldToScreen.getShearY() == 0
+                && worldToScreen.getScaleX() > 0 && worldToScreen.getScaleY() < 0;
+    }
+
 
 
 
@@ -2801,7 +3535,7 @@ public class StreamingRenderer implements GTRenderer {
     private int getRenderingBuffer() {
         if (rendererHints == null)
             return renderingBufferDEFAULT;
-        Number result = (Number) rendererHints.get("renderingBuffer");
+        Number result = (Number) rendererHints.get(RENDERING_BUFFER_KEY);
         if (result == null)
             return renderingBufferDEFAULT;
         return result.intValue();
@@ -2834,6 +3568,61 @@ public class StreamingRenderer implements GTRenderer {
         return result;
     }
 
+    /**
+     * Returns the shared raster tile cache, if any
+     */
+    private RasterTileCache getRasterTileCache() {
+        if (rendererHints == null)
+            return null;
+        return (RasterTileCache) rendererHints.get(RASTER_TILE_CACHE_KEY);
+    }
+
+    /**
+     * Builds the object identifying, in the raster tile cache, the coverage read from the
+     * specified reader with the given parameters
+     */
+    Object getCoverageKey(GridCoverage2DReader reader, Object params) {
+        List<Object> key = new ArrayList<Object>();
+        key.add(reader);
+        if (params instanceof GeneralParameterValue[]) {
+            final String ggName = AbstractGridFormat.READ_GRIDGEOMETRY2D.getName().toString();
+            for (GeneralParameterValue param : (GeneralParameterValue[]) params) {
+                String name = param.getDescriptor().getName().toString();
+                if (name.equalsIgnoreCase(ggName)) {
+                    // changes at every request, and it's accounted for by the tile keys
+                    continue;
+                }
+                key.add(name);
+                if (param instanceof ParameterValue) {
+                    Object value = ((ParameterValue) param).getValue();
+                    key.add(value instanceof Object[] ? Arrays.asList((Object[]) value) : value);
+                }
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Returns the shared style cache, if any
+     */
+    private Style2DCache getStyle2DCache() {
+        if (rendererHints == null)
+            return null;
+        return (Style2DCache) rendererHints.get(STYLE2D_CACHE_KEY);
+    }
+
+    /**
+     * Returns the label index type
+     */
+    private String getLabelIndex() {
+        if (rendererHints == null)
+            return labelIndexDEFAULT;
+        String result = (String) rendererHints.get(LABEL_INDEX_KEY);
+        if (result == null)
+            return labelIndexDEFAULT;
+        return result;
+    }
+
     /**
      * Returns the generalization distance in the screen space.
      * 
@@ -2886,6 +3675,7 @@ public class StreamingRenderer implements GTRenderer {
                 throw new NullPointerException("Label_Cache_Hint has a null value for the labelcache");
 
             this.labelCache=cache;
+            this.painter = new StyledShapePainter(cache);
         }
         if(hints != null && hints.containsKey(LINE_WIDTH_OPTIMIZATION_KEY)) {
             styleFactory.setLineOptimizationEnabled(Boolean.TRUE.equals(hints.get(LINE_WIDTH_OPTIMIZATION_KEY)));
@@ -2894,6 +3684,7 @@ public class StreamingRenderer implements GTRenderer {
 
         // sets whether vector rendering is enabled in the SLDStyleFactory
         styleFactory.setVectorRenderingEnabled(isVectorRenderingEnabled());
+        styleFactory.setSharedCache(getStyle2DCache());
     }
 
     /*
@@ -3062,6 +3853,9 @@ public class StreamingRenderer implements GTRenderer {
                     Envelope env = g.getEnvelopeInternal();
                     if(screenMap.canSimplify(env))
                         if (screenMap.checkAndSet(env)) {
+                            if (layerStatistics != null) {
+                                layerStatistics.increment(Counter.FEATURES_SKIPPED_SCREENMAP);
+                            }
                             return null;
                         } else {
                             g = screenMap.getSimplifiedShape(env.getMinX(), env.getMinY(), 
@@ -3157,14 +3951,15 @@ public class StreamingRenderer implements GTRenderer {
             }
 
             // we need to clone if the clone flag is high or if the coordinate sequence is not the one we asked for
-            Geometry geom = originalGeom;
-            if(clone || !(geom.getFactory().getCoordinateSequenceFactory() instanceof LiteCoordinateSequenceFactory)) {
-                int dim = sa.crs != null ? sa.crs.getCoordinateSystem().getDimension() : 2; 
-                geom = LiteCoordinateSequence.cloneGeometry(geom, dim);
-            }
+            boolean copy = clone || !(originalGeom.getFactory().getCoordinateSequenceFactory() instanceof LiteCoordinateSequenceFactory);
 
             LiteShape2 shape;
             if(projectionHandler != null && sa != null) {
+                Geometry geom = originalGeom;
+                if(copy) {
+                    int dim = sa.crs != null ? sa.crs.getCoordinateSystem().getDimension() : 2; 
+                    geom = LiteCoordinateSequence.cloneGeometry(geom, dim);
+                }
                 // first generalize and transform the geometry into the rendering CRS
                 geom = projectionHandler.preProcess(geom);
                 if(geom == null) {
@@ -3208,7 +4003,8 @@ public class StreamingRenderer implements GTRenderer {
                 MathTransform xform = null;
                 if(sa != null)
                     xform = sa.xform;
-                shape = new LiteShape2(geom, xform, getDecimator(xform), false, false);
+                // the decimator builds the copy directly, if one is needed
+                shape = new LiteShape2(originalGeom, xform, getDecimator(xform), false, copy);
             }
 
             // cache the result
@@ -3246,12 +4042,113 @@ public class StreamingRenderer implements GTRenderer {
         }
     }
     
+    /**
+     * Iterator wrapper accounting the time spent reading features, and their number, in the layer
+     * statistics
+     */
+    static class StatisticsIterator implements Iterator, Closeable {
+        Iterator delegate;
+
+        RenderingStatistics statistics;
+
+        public StatisticsIterator(Iterator delegate, RenderingStatistics statistics) {
+            this.delegate = delegate;
+            this.statistics = statistics;
+        }
+
+        public boolean hasNext() {
+            long start = System.nanoTime();
+            try {
+                return delegate.hasNext();
+            } finally {
+                statistics.add(Phase.READ, System.nanoTime() - start);
+            }
+        }
+
+        public Object next() {
+            long start = System.nanoTime();
+            try {
+                return delegate.next();
+            } finally {
+                statistics.add(Phase.READ, System.nanoTime() - start);
+                statistics.increment(Counter.FEATURES_READ);
+            }
+        }
+
+        public void remove() {
+            delegate.remove();
+        }
+
+        public void close() throws IOException {
+            DataUtilities.close(delegate);
+        }
+    }
+
+    /**
+     * Feature iterator wrapper accounting the time spent reading features, and their number, in
+     * the layer statistics
+     */
+    static class StatisticsFeatureIterator implements FeatureIterator {
+        FeatureIterator delegate;
+
+        RenderingStatistics statistics;
+
+        public StatisticsFeatureIterator(FeatureIterator delegate, RenderingStatistics statistics) {
+            this.delegate = delegate;
+            this.statistics = statistics;
+        }
+
+        public boolean hasNext() {
+            long start = System.nanoTime();
+            try {
+                return delegate.hasNext();
+            } finally {
+                statistics.add(Phase.READ, System.nanoTime() - start);
+            }
+        }
+
+        public Feature next() throws NoSuchElementException {
+            long start = System.nanoTime();
+            try {
+                return delegate.next();
+            } finally {
+                statistics.add(Phase.READ, System.nanoTime() - start);
+                statistics.increment(Counter.FEATURES_READ);
+            }
+        }
+
+        public void close() {
+            delegate.close();
+        }
+    }
+
     /**
      * A request sent to the painting thread 
      * @author aaime
      */
     abstract class RenderingRequest {
+        /**
+         * The statistics of the layer that generated the request, if any
+         */
+        RenderingStatistics statistics = layerStatistics;
+
         abstract void execute();
+
+        /**
+         * Executes the request, accounting the time spent as painting time in the layer statistics
+         */
+        void executeAndTime() {
+            if (statistics == null) {
+                execute();
+            } else {
+                long start = System.nanoTime();
+                try {
+                    execute();
+                } finally {
+                    statistics.add(Phase.PAINT, System.nanoTime() - start);
+                }
+            }
+        }
     }
     
     /**
@@ -3289,10 +4186,57 @@ public class StreamingRenderer implements GTRenderer {
             
             try {
                 painter.paint(graphic, shape, style, scale, labelObstacle);
+                if (statistics != null) {
+                    statistics.increment(Counter.FEATURES_PAINTED);
+                }
             } catch(Throwable t) {
                 fireErrorEvent(t);
             }
         }
+
+        /**
+         * Adds the shape to the batch, provided the style can be batched
+         * @return true if the shape has been added to the batch, false otherwise
+         */
+        boolean addTo(ShapeBatch batch) {
+            if (labelObstacle || !StyledShapePainter.isBatchable(style)
+                    || !style.isScaleInRange(scale)) {
+                return false;
+            }
+            if (!batch.accepts(style)) {
+                paintBatch(batch);
+            }
+            batch.add(shape, style, statistics);
+            if (statistics != null) {
+                statistics.increment(Counter.FEATURES_PAINTED);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Paints the shapes accumulated in the batch, and clears it
+     */
+    void paintBatch(ShapeBatch batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        RenderingStatistics statistics = batch.statistics;
+        long start = statistics != null ? System.nanoTime() : 0;
+        try {
+            Graphics2D graphics = batch.graphics;
+            if (graphics instanceof DelayedBackbufferGraphic) {
+                ((DelayedBackbufferGraphic) graphics).init();
+            }
+            painter.paintBatch(graphics, batch.path, batch.style);
+        } catch (Throwable t) {
+            fireErrorEvent(t);
+        } finally {
+            batch.reset();
+            if (statistics != null) {
+                statistics.add(Phase.PAINT, System.nanoTime() - start);
+            }
+        }
     }
     
     /**
@@ -3363,6 +4307,8 @@ public class StreamingRenderer implements GTRenderer {
         private RasterSymbolizer symbolizer;
         private CoordinateReferenceSystem destinationCRS;
         private AffineTransform worldToScreen;
+        private RasterTileCache tileCache;
+        private Object coverageKey;
 
         public RenderRasterRequest(Graphics2D graphics, GridCoverage2D coverage, boolean disposeCoverage,
                 RasterSymbolizer symbolizer, CoordinateReferenceSystem destinationCRS,
@@ -3375,6 +4321,11 @@ public class StreamingRenderer implements GTRenderer {
             this.worldToScreen = worldToScreen;
         }
 
+        public void setTileCache(RasterTileCache tileCache, Object coverageKey) {
+            this.tileCache = tileCache;
+            this.coverageKey = coverageKey;
+        }
+
         @Override
         void execute() {
             if (LOGGER.isLoggable(Level.FINE)) {
@@ -3391,6 +4342,8 @@ public class StreamingRenderer implements GTRenderer {
                 // /////////////////////////////////////////////////////////////////
                 final GridCoverageRenderer gcr = new GridCoverageRenderer(destinationCRS,
                         originalMapExtent, screenSize, worldToScreen, java2dHints);
+                gcr.setStatistics(statistics);
+                gcr.setTileCache(tileCache, coverageKey);
 
                 try {
                     gcr.paint(graphics, coverage, symbolizer);
@@ -3424,6 +4377,12 @@ public class StreamingRenderer implements GTRenderer {
                 fireErrorEvent(e);
             }
         }
+
+        @Override
+        void executeAndTime() {
+            // the grid coverage renderer accounts its own times
+            execute();
+        }
     }
     
     class RenderDirectLayerRequest extends RenderingRequest {
@@ -3489,14 +4448,32 @@ public class StreamingRenderer implements GTRenderer {
 
         public void run() {
             thread = Thread.currentThread();
+            // one batch per graphics, the fts back buffers are independent until merged
+            List<ShapeBatch> batches = isShapeBatchingEnabled() ? new ArrayList<ShapeBatch>()
+                    : null;
             boolean done = false;
             while(!done) {
                 try {
                     RenderingRequest request = requests.take();
                     if(request instanceof EndRequest || renderingStopRequested) {
+                        if (!renderingStopRequested) {
+                            paintBatches(batches);
+                        }
                         done = true;
+                    } else if (batches != null && request instanceof PaintShapeRequest) {
+                        PaintShapeRequest paintRequest = (PaintShapeRequest) request;
+                        ShapeBatch batch = getBatch(batches, paintRequest.graphic);
+                        if (!paintRequest.addTo(batch)) {
+                            // keep the z-order among the shapes painted on the same graphics
+                            paintBatch(batch);
+                            request.executeAndTime();
+                        }
                     } else {
-                        request.execute();
+                        // the feature rendered events do not paint anything
+                        if (!(request instanceof FeatureRenderedRequest)) {
+                            paintBatches(batches);
+                        }
+                        request.executeAndTime();
                     }
                 } catch(InterruptedException e) {
                     // ok, we might have been interupped to stop processing
@@ -3510,6 +4487,27 @@ public class StreamingRenderer implements GTRenderer {
             }
             
         }
+
+        ShapeBatch getBatch(List<ShapeBatch> batches, Graphics2D graphics) {
+            for (ShapeBatch batch : batches) {
+                if (batch.graphics == graphics) {
+                    return batch;
+                }
+            }
+            ShapeBatch batch = new ShapeBatch(graphics);
+            batches.add(batch);
+            return batch;
+        }
+
+        void paintBatches(List<ShapeBatch> batches) {
+            if (batches != null) {
+                for (ShapeBatch batch : batches) {
+                    paintBatch(batch);
+                }
+                // the graphics are not going to be used again, most of the time
+                batches.clear();
+            }
+        }
         
     }
     
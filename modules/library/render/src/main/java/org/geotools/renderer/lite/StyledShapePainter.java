@@ -19,6 +19,8 @@ package org.geotools.renderer.lite;
 
 import java.awt.AlphaComposite;
 import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Composite;
 import java.awt.Graphics2D;
 import java.awt.Paint;
 import java.awt.RenderingHints;
@@ -297,21 +299,8 @@ public final class StyledShapePainter {
                         }
 
                         // debugShape(shape);
-                        Stroke stroke = ls2d.getStroke();
-                        if (graphics
-                                .getRenderingHint(RenderingHints.KEY_ANTIALIASING) == RenderingHints.VALUE_ANTIALIAS_ON) {
-                            if (stroke instanceof BasicStroke) {
-                                BasicStroke bs = (BasicStroke) stroke;
-                                stroke = new BasicStroke(
-                                        bs.getLineWidth() + 0.5f, bs
-                                                .getEndCap(), bs.getLineJoin(),
-                                        bs.getMiterLimit(), bs.getDashArray(),
-                                        bs.getDashPhase());
-                            }
-                        }
-
                         graphics.setPaint(paint);
-                        graphics.setStroke(stroke);
+                        graphics.setStroke(getStroke(graphics, ls2d));
                         graphics.setComposite(ls2d.getContourComposite());
                         graphics.draw(shape);
                     }
@@ -320,6 +309,97 @@ public final class StyledShapePainter {
         }
     }
     
+    /**
+     * Returns the stroke used to paint the lines, slightly widened when antialiasing is
+     * enabled to make up for the partial coverage of the line borders
+     */
+    private Stroke getStroke(Graphics2D graphics, LineStyle2D ls2d) {
+        Stroke stroke = ls2d.getStroke();
+        if (graphics
+                .getRenderingHint(RenderingHints.KEY_ANTIALIASING) == RenderingHints.VALUE_ANTIALIAS_ON) {
+            if (stroke instanceof BasicStroke) {
+                BasicStroke bs = (BasicStroke) stroke;
+                stroke = new BasicStroke(
+                        bs.getLineWidth() + 0.5f, bs
+                                .getEndCap(), bs.getLineJoin(),
+                        bs.getMiterLimit(), bs.getDashArray(),
+                        bs.getDashPhase());
+            }
+        }
+        return stroke;
+    }
+
+    /**
+     * Checks if the shapes painted with the given style can be merged in a single shape and
+     * painted with a single Java2D call, see {@link #paintBatch(Graphics2D, Shape, Style2D)}.
+     * This is the case only for the styles whose result does not depend on how the shapes are
+     * grouped, that is, solid opaque fills and solid opaque strokes, not combined with each
+     * other nor with graphic fills and strokes (painting fill and stroke of a polygon in one
+     * go changes the z-order among adjacent polygons, use two separate feature type styles
+     * to get both batched).
+     */
+    public static boolean isBatchable(Style2D style) {
+        if (style == null) {
+            return false;
+        }
+        if (style.getClass() == PolygonStyle2D.class) {
+            PolygonStyle2D ps2d = (PolygonStyle2D) style;
+            if (ps2d.getGraphicFill() != null) {
+                return false;
+            }
+            if (ps2d.getFill() != null) {
+                return ps2d.getStroke() == null
+                        && isOpaque(ps2d.getFill(), ps2d.getFillComposite());
+            }
+        } else if (style.getClass() != LineStyle2D.class) {
+            return false;
+        }
+        LineStyle2D ls2d = (LineStyle2D) style;
+        return ls2d.getStroke() != null && ls2d.getGraphicStroke() == null
+                && isOpaque(ls2d.getContour(), ls2d.getContourComposite());
+    }
+
+    private static boolean isOpaque(Paint paint, Composite composite) {
+        if (!(paint instanceof Color) || ((Color) paint).getAlpha() != 255) {
+            return false;
+        }
+        if (composite == null) {
+            return true;
+        }
+        if (composite instanceof AlphaComposite) {
+            AlphaComposite ac = (AlphaComposite) composite;
+            return ac.getRule() == AlphaComposite.SRC_OVER && ac.getAlpha() == 1f;
+        }
+        return false;
+    }
+
+    /**
+     * Paints a shape accumulating many features painted with the same style, which must be
+     * one of those accepted by {@link #isBatchable(Style2D)}. Fills are performed with the
+     * winding rule of the shape.
+     * 
+     * @param graphics
+     *            The graphics in which to draw.
+     * @param shape
+     *            The shape to draw, in screen coordinates
+     * @param style
+     *            The style to apply
+     */
+    public void paintBatch(final Graphics2D graphics, final Shape shape, final Style2D style) {
+        if (style instanceof PolygonStyle2D && ((PolygonStyle2D) style).getFill() != null) {
+            PolygonStyle2D ps2d = (PolygonStyle2D) style;
+            graphics.setPaint(ps2d.getFill());
+            graphics.setComposite(ps2d.getFillComposite());
+            graphics.fill(shape);
+        } else {
+            LineStyle2D ls2d = (LineStyle2D) style;
+            graphics.setPaint(ls2d.getContour());
+            graphics.setStroke(getStroke(graphics, ls2d));
+            graphics.setComposite(ls2d.getContourComposite());
+            graphics.draw(shape);
+        }
+    }
+
     /**
      * Paints a GraphicLegend in the supplied graphics
      * 
@@ -61,9 +61,12 @@ import org.geotools.referencing.CRS;
 import org.geotools.referencing.crs.DefaultGeographicCRS;
 import org.geotools.referencing.operation.builder.GridToEnvelopeMapper;
 import org.geotools.referencing.operation.matrix.XAffineTransform;
+import org.geotools.renderer.RenderingStatistics;
+import org.geotools.renderer.RenderingStatistics.Phase;
 import org.geotools.resources.i18n.ErrorKeys;
 import org.geotools.resources.i18n.Errors;
 import org.geotools.styling.RasterSymbolizer;
+import org.geotools.styling.visitor.DuplicatingStyleVisitor;
 import org.jaitools.imageutils.ImageLayout2;
 import org.opengis.coverage.grid.GridCoverage;
 import org.opengis.filter.expression.Expression;
@@ -267,6 +270,15 @@ public final class GridCoverageRenderer {
 
     /** Parameters used to control the {@link Scale} operation. */
     private static final Resample resampleFactory = new Resample();
+
+    /** The statistics collecting the preparation and painting times, if any */
+    private RenderingStatistics statistics;
+
+    /** The cache of the symbolized and reprojected tiles, if any */
+    private RasterTileCache tileCache;
+
+    /** The object identifying the coverage contents in the tile cache */
+    private Object coverageKey;
     
 
     /**
@@ -454,6 +466,45 @@ public final class GridCoverageRenderer {
         }
     }
 
+    public RenderingStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Sets the statistics object that will receive the time spent preparing the image (crop,
+     * reprojection, symbolization) and painting it. Can be null, in that case no statistics
+     * will be collected
+     */
+    public void setStatistics(RenderingStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    public RasterTileCache getTileCache() {
+        return tileCache;
+    }
+
+    /**
+     * Sets the cache of symbolized and reprojected tiles used by
+     * {@link #paint(Graphics2D, GridCoverage2D, RasterSymbolizer)}. When set, the output is
+     * painted by tiles aligned to the cache tile grid, and only the tiles missing from the
+     * cache are computed, the others are painted directly, skipping the whole JAI processing.
+     * <p>
+     * The cache is not used for rotated outputs.
+     * 
+     * @param tileCache
+     *                the tile cache, or null to disable caching
+     * @param coverageKey
+     *                an object identifying the coverage contents, it must have proper equals
+     *                and hashCode implementations. When null the coverage itself will be used
+     *                as the key. When the coverage is read from a reader it must cover all the
+     *                tiles touched by the painted area, see
+     *                {@link RasterTileCache#getTileAlignedEnvelope(ReferencedEnvelope, Rectangle)}
+     */
+    public void setTileCache(RasterTileCache tileCache, Object coverageKey) {
+        this.tileCache = tileCache;
+        this.coverageKey = coverageKey;
+    }
+
     /**
      * Builds a (RenderedImage, AffineTransform) pair that can be used for rendering onto a
      * {@link Graphics2D} or as the basis to build a final image. Will return null if there is
@@ -837,6 +888,143 @@ public final class GridCoverageRenderer {
 
     }
     
+    /**
+     * Returns true if the output is neither rotated nor flipped, only in this case it can be
+     * painted by tiles
+     */
+    private boolean isNorthUp() {
+        return finalGridToWorld.getShearX() == 0 && finalGridToWorld.getShearY() == 0
+                && finalGridToWorld.getScaleX() > 0 && finalGridToWorld.getScaleY() < 0;
+    }
+
+    /**
+     * Paints the coverage by tiles, taking them from the tile cache when available, and
+     * computing the missing ones in a single pass
+     */
+    private void paintTiled(
+            final Graphics2D graphics,
+            final GridCoverage2D gridCoverage,
+            final RasterSymbolizer symbolizer)
+            throws FactoryException, TransformException, NoninvertibleTransformException {
+        // the tile grid at the resolution level closest to the requested one
+        final int tileSize = tileCache.getTileSize();
+        final int levelX = RasterTileCache.getLevel(finalGridToWorld.getScaleX());
+        final int levelY = RasterTileCache.getLevel(-finalGridToWorld.getScaleY());
+        final double resX = RasterTileCache.getResolution(levelX);
+        final double resY = RasterTileCache.getResolution(levelY);
+        final double spanX = tileSize * resX;
+        final double spanY = tileSize * resY;
+        final long minCol = (long) Math.floor(destinationEnvelope.getMinimum(0) / spanX);
+        final long maxCol = (long) Math.ceil(destinationEnvelope.getMaximum(0) / spanX) - 1;
+        final long minRow = (long) Math.floor(destinationEnvelope.getMinimum(1) / spanY);
+        final long maxRow = (long) Math.ceil(destinationEnvelope.getMaximum(1) / spanY) - 1;
+
+        final Object coverage = coverageKey != null ? coverageKey : gridCoverage;
+        // a copy, the symbolizer might be modified once its tiles are cached
+        Object style = null;
+        if (symbolizer != null) {
+            DuplicatingStyleVisitor duplicator = new DuplicatingStyleVisitor();
+            symbolizer.accept(duplicator);
+            style = duplicator.getCopy();
+        }
+        final Object interpolation = hints.get(JAI.KEY_INTERPOLATION);
+        final String interpolationKey = interpolation != null ? interpolation.getClass()
+                .getName() : null;
+
+        // grab the cached tiles, and compute the area covering the missing ones
+        final int cols = (int) (maxCol - minCol + 1);
+        final int rows = (int) (maxRow - minRow + 1);
+        final RasterTileCache.TileKey[][] keys = new RasterTileCache.TileKey[rows][cols];
+        final BufferedImage[][] tiles = new BufferedImage[rows][cols];
+        long missMinCol = Long.MAX_VALUE, missMaxCol = Long.MIN_VALUE;
+        long missMinRow = Long.MAX_VALUE, missMaxRow = Long.MIN_VALUE;
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                keys[r][c] = new RasterTileCache.TileKey(coverage, destinationCRS, levelX,
+                        levelY, style, interpolationKey, minCol + c, minRow + r);
+                tiles[r][c] = tileCache.get(keys[r][c]);
+                if (tiles[r][c] == null) {
+                    missMinCol = Math.min(missMinCol, minCol + c);
+                    missMaxCol = Math.max(missMaxCol, minCol + c);
+                    missMinRow = Math.min(missMinRow, minRow + r);
+                    missMaxRow = Math.max(missMaxRow, minRow + r);
+                }
+            }
+        }
+
+        long start = statistics != null ? System.nanoTime() : 0;
+        if (missMinCol <= missMaxCol) {
+            // paint the missing tiles in one shot with the usual pipeline
+            final int width = (int) (missMaxCol - missMinCol + 1) * tileSize;
+            final int height = (int) (missMaxRow - missMinRow + 1) * tileSize;
+            final ReferencedEnvelope blockEnvelope = new ReferencedEnvelope(missMinCol * spanX,
+                    (missMaxCol + 1) * spanX, missMinRow * spanY, (missMaxRow + 1) * spanY,
+                    destinationCRS);
+            final BufferedImage block = new BufferedImage(width, height,
+                    BufferedImage.TYPE_INT_ARGB);
+            final GridCoverageRenderer blockRenderer = new GridCoverageRenderer(destinationCRS,
+                    blockEnvelope, new Rectangle(width, height), null, hints);
+            final Graphics2D blockGraphics = block.createGraphics();
+            try {
+                blockRenderer.paint(blockGraphics, gridCoverage, symbolizer);
+            } finally {
+                blockGraphics.dispose();
+            }
+
+            // split it into tiles and cache them
+            for (int r = 0; r < rows; r++) {
+                for (int c = 0; c < cols; c++) {
+                    final long col = minCol + c;
+                    final long row = minRow + r;
+                    if (tiles[r][c] != null || col < missMinCol || col > missMaxCol
+                            || row < missMinRow || row > missMaxRow) {
+                        continue;
+                    }
+                    // image rows grow southwards, tile rows northwards
+                    final int x = (int) (col - missMinCol) * tileSize;
+                    final int y = (int) (missMaxRow - row) * tileSize;
+                    final BufferedImage tile = new BufferedImage(tileSize, tileSize,
+                            BufferedImage.TYPE_INT_ARGB);
+                    tile.getRaster().setDataElements(0, 0, tileSize, tileSize,
+                            block.getRaster().getDataElements(x, y, tileSize, tileSize, null));
+                    tileCache.put(keys[r][c], tile);
+                    tiles[r][c] = tile;
+                }
+            }
+        }
+        if (statistics != null) {
+            long now = System.nanoTime();
+            statistics.add(Phase.TRANSFORM, now - start);
+            start = now;
+        }
+
+        // force solid alpha, as in the non tiled case. The tile corners are snapped to whole
+        // pixels, adjacent tiles share the same edges, so that no seams appear between them
+        graphics.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER));
+        final long[] screenX = new long[cols + 1];
+        for (int c = 0; c <= cols; c++) {
+            screenX[c] = Math.round(finalWorldToGrid.getScaleX() * (minCol + c) * spanX
+                    + finalWorldToGrid.getTranslateX());
+        }
+        final long[] screenY = new long[rows + 1];
+        for (int r = 0; r <= rows; r++) {
+            screenY[r] = Math.round(finalWorldToGrid.getScaleY() * (minRow + r) * spanY
+                    + finalWorldToGrid.getTranslateY());
+        }
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                // tile rows grow northwards, screen rows southwards
+                final int x = (int) screenX[c];
+                final int y = (int) screenY[r + 1];
+                graphics.drawImage(tiles[r][c], x, y, (int) (screenX[c + 1] - x),
+                        (int) (screenY[r] - y), null);
+            }
+        }
+        if (statistics != null) {
+            statistics.add(Phase.PAINT, System.nanoTime() - start);
+        }
+    }
+
     /**
      * Paint this grid coverage. The caller must ensure that
      * <code>graphics</code> has an affine transform mapping "real world"
@@ -875,9 +1063,23 @@ public final class GridCoverageRenderer {
         final RenderingHints oldHints = graphics.getRenderingHints();
         graphics.setRenderingHints(this.hints);
         
+        if (tileCache != null && isNorthUp()) {
+            try {
+                paintTiled(graphics, gridCoverage, symbolizer);
+            } finally {
+                graphics.setRenderingHints(oldHints);
+            }
+            return;
+        }
         
         // Build the final image and the transformation
+        long start = statistics != null ? System.nanoTime() : 0;
         GCpair couple = prepareFinalImage(gridCoverage, symbolizer);
+        if (statistics != null) {
+            long now = System.nanoTime();
+            statistics.add(Phase.TRANSFORM, now - start);
+            start = now;
+        }
         if (couple == null)
             return;
 
@@ -972,6 +1174,9 @@ public final class GridCoverageRenderer {
                 LOGGER.log(Level.WARNING, t1.getLocalizedMessage(), t1);
             }
         }
+        if (statistics != null) {
+            statistics.add(Phase.PAINT, System.nanoTime() - start);
+        }
 
         // ///////////////////////////////////////////////////////////////////
         //
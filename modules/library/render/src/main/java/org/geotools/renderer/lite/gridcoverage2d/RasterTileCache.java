@@ -0,0 +1,318 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.renderer.lite.gridcoverage2d;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.resources.NIOUtilities;
+import org.geotools.util.Utilities;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+/**
+ * A bounded cache of symbolized and reprojected raster tiles, used by the
+ * {@link GridCoverageRenderer} to avoid re-running the crop, reprojection and raster symbolizer
+ * chain when the same area is painted again at the same resolution, as it happens when a map is
+ * panned.
+ * <p>
+ * The tiles are aligned to a grid having its origin in the origin of the target coordinate
+ * reference system, and a cell size depending on the resolution level. Resolutions are snapped
+ * to levels 2^(1/65536) apart, so that maps with nearly the same scale share the same tiles.
+ * <p>
+ * The tile pixels are stored off-heap, in direct buffers, and the least recently used tiles are
+ * evicted once the configured memory size is exceeded. The cache is thread safe and can be
+ * shared among renderers.
+ */
+public class RasterTileCache {
+
+    /** The default tile size, in pixels */
+    public static final int DEFAULT_TILE_SIZE = 256;
+
+    /** Number of resolution levels for each power of two */
+    static final int RESOLUTION_STEPS = 1 << 16;
+
+    static final double LN2 = Math.log(2);
+
+    final long maxSize;
+
+    final int tileSize;
+
+    final int tileBytes;
+
+    long size;
+
+    long hits;
+
+    long misses;
+
+    final LinkedHashMap<TileKey, ByteBuffer> tiles = new LinkedHashMap<TileKey, ByteBuffer>(16,
+            0.75f, true);
+
+    /**
+     * Builds a new cache using the default tile size
+     *
+     * @param maxSize the max amount of off-heap memory used by the cache, in bytes
+     */
+    public RasterTileCache(long maxSize) {
+        this(maxSize, DEFAULT_TILE_SIZE);
+    }
+
+    /**
+     * Builds a new cache
+     *
+     * @param maxSize the max amount of off-heap memory used by the cache, in bytes
+     * @param tileSize the width and height of the cached tiles, in pixels
+     */
+    public RasterTileCache(long maxSize, int tileSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("The cache size must be positive");
+        }
+        if (tileSize <= 0) {
+            throw new IllegalArgumentException("The tile size must be positive");
+        }
+        this.maxSize = maxSize;
+        this.tileSize = tileSize;
+        this.tileBytes = tileSize * tileSize * 4;
+    }
+
+    /**
+     * Returns a copy of the cached tile, as a {@link BufferedImage#TYPE_INT_ARGB} image, or null
+     * if the tile is not in the cache
+     */
+    public BufferedImage get(TileKey key) {
+        BufferedImage image;
+        synchronized (this) {
+            ByteBuffer buffer = tiles.get(key);
+            if (buffer == null) {
+                misses++;
+                return null;
+            }
+            hits++;
+            image = new BufferedImage(tileSize, tileSize, BufferedImage.TYPE_INT_ARGB);
+            int[] pixels = new int[tileSize * tileSize];
+            buffer.asIntBuffer().get(pixels);
+            image.getRaster().setDataElements(0, 0, tileSize, tileSize, pixels);
+        }
+        return image;
+    }
+
+    /**
+     * Stores a tile in the cache, evicting the least recently used tiles if the cache size is
+     * exceeded
+     *
+     * @param key the tile key
+     * @param tile a {@link BufferedImage#TYPE_INT_ARGB} image, as big as the tile size
+     */
+    public void put(TileKey key, BufferedImage tile) {
+        if (tile.getType() != BufferedImage.TYPE_INT_ARGB || tile.getWidth() != tileSize
+                || tile.getHeight() != tileSize) {
+            throw new IllegalArgumentException("The tile must be a " + tileSize + "x" + tileSize
+                    + " TYPE_INT_ARGB image");
+        }
+        int[] pixels = (int[]) tile.getRaster().getDataElements(0, 0, tileSize, tileSize, null);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(tileBytes).order(ByteOrder.nativeOrder());
+        buffer.asIntBuffer().put(pixels);
+
+        synchronized (this) {
+            ByteBuffer old = tiles.put(key, buffer);
+            if (old != null) {
+                NIOUtilities.clean(old);
+            } else {
+                size += tileBytes;
+            }
+            Iterator<Map.Entry<TileKey, ByteBuffer>> it = tiles.entrySet().iterator();
+            while (size > maxSize && it.hasNext()) {
+                Map.Entry<TileKey, ByteBuffer> eldest = it.next();
+                it.remove();
+                NIOUtilities.clean(eldest.getValue());
+                size -= tileBytes;
+            }
+        }
+    }
+
+    /**
+     * Removes all tiles from the cache
+     */
+    public synchronized void clear() {
+        for (ByteBuffer buffer : tiles.values()) {
+            NIOUtilities.clean(buffer);
+        }
+        tiles.clear();
+        size = 0;
+    }
+
+    /**
+     * Returns the envelope covering all the tiles touched by the specified map extent, that is,
+     * the area that needs to be read in order to build all the tiles needed to paint it.
+     * Rotated maps are not supported.
+     */
+    public ReferencedEnvelope getTileAlignedEnvelope(ReferencedEnvelope mapExtent,
+            Rectangle screenSize) {
+        double spanX = getTileSpan(mapExtent.getWidth() / screenSize.width);
+        double spanY = getTileSpan(mapExtent.getHeight() / screenSize.height);
+        double minX = Math.floor(mapExtent.getMinX() / spanX) * spanX;
+        double maxX = Math.ceil(mapExtent.getMaxX() / spanX) * spanX;
+        double minY = Math.floor(mapExtent.getMinY() / spanY) * spanY;
+        double maxY = Math.ceil(mapExtent.getMaxY() / spanY) * spanY;
+        return new ReferencedEnvelope(minX, maxX, minY, maxY,
+                mapExtent.getCoordinateReferenceSystem());
+    }
+
+    /**
+     * The ground size of a tile at the level the specified resolution snaps to
+     */
+    double getTileSpan(double resolution) {
+        return tileSize * getResolution(getLevel(resolution));
+    }
+
+    /**
+     * Returns the resolution level the given resolution snaps to
+     */
+    static int getLevel(double resolution) {
+        return (int) Math.round(Math.log(resolution) / LN2 * RESOLUTION_STEPS);
+    }
+
+    /**
+     * Returns the resolution of the specified level
+     */
+    static double getResolution(int level) {
+        return Math.pow(2, level / (double) RESOLUTION_STEPS);
+    }
+
+    /**
+     * The max amount of memory used by the cache, in bytes
+     */
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * The memory currently used by the cache, in bytes
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    public synchronized int getTileCount() {
+        return tiles.size();
+    }
+
+    /**
+     * The number of lookups that found the tile in the cache
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * The number of lookups that did not find the tile in the cache
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Identifies a tile of a coverage, symbolized and reprojected in a certain way
+     */
+    public static final class TileKey {
+        final Object coverage;
+
+        final CoordinateReferenceSystem crs;
+
+        final int levelX;
+
+        final int levelY;
+
+        final Object style;
+
+        final Object interpolation;
+
+        final long col;
+
+        final long row;
+
+        /**
+         * Builds a new tile key
+         *
+         * @param coverage an object identifying the coverage contents
+         * @param crs the target coordinate reference system
+         * @param levelX the resolution level along the horizontal axis
+         * @param levelY the resolution level along the vertical axis
+         * @param style the symbolizer used to paint the coverage, compared by equality, it
+         *        should not be modified once used in a key
+         * @param interpolation an object identifying the interpolation used, if any
+         * @param col the tile column, growing eastwards
+         * @param row the tile row, growing northwards
+         */
+        public TileKey(Object coverage, CoordinateReferenceSystem crs, int levelX, int levelY,
+                Object style, Object interpolation, long col, long row) {
+            this.coverage = coverage;
+            this.crs = crs;
+            this.levelX = levelX;
+            this.levelY = levelY;
+            this.style = style;
+            this.interpolation = interpolation;
+            this.col = col;
+            this.row = row;
+        }
+
+        @Override
+        public int hashCode() {
+            final int prime = 31;
+            int result = 1;
+            result = prime * result + ((coverage == null) ? 0 : coverage.hashCode());
+            result = prime * result + ((crs == null) ? 0 : crs.hashCode());
+            result = prime * result + levelX;
+            result = prime * result + levelY;
+            result = prime * result + ((style == null) ? 0 : style.hashCode());
+            result = prime * result + ((interpolation == null) ? 0 : interpolation.hashCode());
+            result = prime * result + (int) (col ^ (col >>> 32));
+            result = prime * result + (int) (row ^ (row >>> 32));
+            return result;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof TileKey))
+                return false;
+            TileKey other = (TileKey) obj;
+            return col == other.col && row == other.row && levelX == other.levelX
+                    && levelY == other.levelY && Utilities.equals(style, other.style)
+                    && Utilities.equals(coverage, other.coverage)
+                    && Utilities.equals(crs, other.crs)
+                    && Utilities.equals(interpolation, other.interpolation);
+        }
+
+        @Override
+        public String toString() {
+            return "TileKey[" + coverage + ", level " + levelX + "/" + levelY + ", style "
+                    + style + ", tile " + col + "/" + row + "]";
+        }
+    }
+}
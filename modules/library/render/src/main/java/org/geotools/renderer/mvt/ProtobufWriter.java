@@ -0,0 +1,167 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.renderer.mvt;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Minimal protocol buffers writer, supporting only the wire types needed to encode vector tiles
+ */
+class ProtobufWriter {
+
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    static final int WIRETYPE_VARINT = 0;
+
+    static final int WIRETYPE_FIXED64 = 1;
+
+    static final int WIRETYPE_LENGTH_DELIMITED = 2;
+
+    static final int WIRETYPE_FIXED32 = 5;
+
+    byte[] buffer;
+
+    int size;
+
+    public ProtobufWriter() {
+        this(256);
+    }
+
+    public ProtobufWriter(int capacity) {
+        buffer = new byte[capacity];
+    }
+
+    /**
+     * Writes the tag of a field
+     */
+    public void writeTag(int field, int wireType) {
+        writeVarint((field << 3) | wireType);
+    }
+
+    /**
+     * Writes a varint, the value is considered unsigned
+     */
+    public void writeVarint(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[size++] = (byte) value;
+    }
+
+    public void writeVarintField(int field, long value) {
+        writeTag(field, WIRETYPE_VARINT);
+        writeVarint(value);
+    }
+
+    public void writeFloatField(int field, float value) {
+        writeTag(field, WIRETYPE_FIXED32);
+        int bits = Float.floatToIntBits(value);
+        ensureCapacity(4);
+        for (int i = 0; i < 4; i++) {
+            buffer[size++] = (byte) (bits >>> (i * 8));
+        }
+    }
+
+    public void writeDoubleField(int field, double value) {
+        writeTag(field, WIRETYPE_FIXED64);
+        long bits = Double.doubleToLongBits(value);
+        ensureCapacity(8);
+        for (int i = 0; i < 8; i++) {
+            buffer[size++] = (byte) (bits >>> (i * 8));
+        }
+    }
+
+    public void writeStringField(int field, String value) {
+        writeBytesField(field, value.getBytes(UTF8));
+    }
+
+    public void writeBytesField(int field, byte[] bytes) {
+        writeBytesField(field, bytes, bytes.length);
+    }
+
+    void writeBytesField(int field, byte[] bytes, int length) {
+        writeTag(field, WIRETYPE_LENGTH_DELIMITED);
+        writeVarint(length);
+        ensureCapacity(length);
+        System.arraycopy(bytes, 0, buffer, size, length);
+        size += length;
+    }
+
+    /**
+     * Writes an embedded message
+     */
+    public void writeMessageField(int field, ProtobufWriter message) {
+        writeBytesField(field, message.buffer, message.size);
+    }
+
+    /**
+     * Appends the contents of another writer as is
+     */
+    public void writeRaw(ProtobufWriter other) {
+        ensureCapacity(other.size);
+        System.arraycopy(other.buffer, 0, buffer, size, other.size);
+        size += other.size;
+    }
+
+    /**
+     * Writes a packed repeated field of unsigned 32 bit integers
+     */
+    public void writePackedField(int field, int[] values, int length) {
+        int bytes = 0;
+        for (int i = 0; i < length; i++) {
+            bytes += varintSize(values[i] & 0xFFFFFFFFL);
+        }
+        writeTag(field, WIRETYPE_LENGTH_DELIMITED);
+        writeVarint(bytes);
+        for (int i = 0; i < length; i++) {
+            writeVarint(values[i] & 0xFFFFFFFFL);
+        }
+    }
+
+    static int varintSize(long value) {
+        int bytes = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            bytes++;
+        }
+        return bytes;
+    }
+
+    void ensureCapacity(int extra) {
+        if (size + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+        }
+    }
+
+    /**
+     * Clears the writer contents, keeping the allocated buffer
+     */
+    public void reset() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, size);
+    }
+}
@@ -0,0 +1,521 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.renderer.mvt;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.vividsolutions.jts.geom.CoordinateSequence;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryCollection;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.MultiLineString;
+import com.vividsolutions.jts.geom.MultiPoint;
+import com.vividsolutions.jts.geom.MultiPolygon;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.geom.Polygon;
+
+/**
+ * Encodes features in the Mapbox Vector Tile format (version 2). The geometries are expected to
+ * be already expressed in tile coordinates, that is, with the origin in the upper left corner,
+ * the y axis pointing down, and the tile covering the <code>[0, extent]</code> range on both
+ * axes. Coordinates are rounded to integers, repeated points and degenerate geometries are
+ * removed, and polygon rings are oriented as the specification requires.
+ * <p>
+ * Features with the same identifier and geometry added more than once to the same layer (e.g.,
+ * because multiple symbolizers were applied to them) are encoded only once.
+ * <p>
+ * The encoder is not thread safe.
+ */
+public class VectorTileEncoder {
+
+    /** The default tile extent, in tile units */
+    public static final int DEFAULT_EXTENT = 4096;
+
+    static final int VERSION = 2;
+
+    // tile fields
+    static final int TILE_LAYERS = 3;
+
+    // layer fields
+    static final int LAYER_NAME = 1;
+
+    static final int LAYER_FEATURES = 2;
+
+    static final int LAYER_KEYS = 3;
+
+    static final int LAYER_VALUES = 4;
+
+    static final int LAYER_EXTENT = 5;
+
+    static final int LAYER_VERSION = 15;
+
+    // feature fields
+    static final int FEATURE_ID = 1;
+
+    static final int FEATURE_TAGS = 2;
+
+    static final int FEATURE_TYPE = 3;
+
+    static final int FEATURE_GEOMETRY = 4;
+
+    // value fields
+    static final int VALUE_STRING = 1;
+
+    static final int VALUE_FLOAT = 2;
+
+    static final int VALUE_DOUBLE = 3;
+
+    static final int VALUE_INT = 4;
+
+    static final int VALUE_BOOL = 7;
+
+    // geometry types
+    static final int UNKNOWN = 0;
+
+    static final int POINT = 1;
+
+    static final int LINESTRING = 2;
+
+    static final int POLYGON = 3;
+
+    // geometry commands
+    static final int MOVE_TO = 1;
+
+    static final int LINE_TO = 2;
+
+    static final int CLOSE_PATH = 7;
+
+    final int extent;
+
+    final Map<String, LayerEncoder> layers = new LinkedHashMap<String, LayerEncoder>();
+
+    final ProtobufWriter feature = new ProtobufWriter();
+
+    // geometry encoding state
+    int[] commands = new int[256];
+
+    int length;
+
+    int cursorX;
+
+    int cursorY;
+
+    int[] xs = new int[256];
+
+    int[] ys = new int[256];
+
+    int[] tags = new int[32];
+
+    /**
+     * Builds an encoder with the {@link #DEFAULT_EXTENT}
+     */
+    public VectorTileEncoder() {
+        this(DEFAULT_EXTENT);
+    }
+
+    /**
+     * Builds an encoder with the specified extent
+     */
+    public VectorTileEncoder(int extent) {
+        if (extent <= 0) {
+            throw new IllegalArgumentException("The tile extent must be positive, but was "
+                    + extent);
+        }
+        this.extent = extent;
+    }
+
+    public int getExtent() {
+        return extent;
+    }
+
+    /**
+     * Adds a feature to the specified layer
+     *
+     * @param layerName the layer name
+     * @param featureId the feature identifier, can be null. If its last dot separated part is a
+     *        non negative integer it will be used as the feature id in the tile
+     * @param attributes the feature attributes, null values and geometries are skipped
+     * @param geometry the geometry, in tile coordinates
+     * @return true if the feature has been encoded, false if its geometry was degenerate once
+     *         rounded to integer coordinates, or it was a duplicate
+     */
+    public boolean addFeature(String layerName, String featureId, Map<String, ?> attributes,
+            Geometry geometry) {
+        if (geometry == null || geometry.isEmpty()) {
+            return false;
+        }
+        if (geometry.getClass().equals(GeometryCollection.class)) {
+            // heterogeneous collection, a feature can have only one geometry type
+            boolean added = false;
+            for (int i = 0; i < geometry.getNumGeometries(); i++) {
+                added |= addFeature(layerName, featureId, attributes, geometry.getGeometryN(i));
+            }
+            return added;
+        }
+
+        int type = encodeGeometry(geometry);
+        if (type == UNKNOWN) {
+            return false;
+        }
+
+        LayerEncoder layer = layers.get(layerName);
+        if (layer == null) {
+            layer = new LayerEncoder(layerName);
+            layers.put(layerName, layer);
+        }
+        if (featureId != null && layer.isDuplicate(featureId, type, commands, length)) {
+            return false;
+        }
+
+        // encode the feature right away, we don't need to keep it around
+        feature.reset();
+        Long id = parseId(featureId);
+        if (id != null) {
+            feature.writeVarintField(FEATURE_ID, id);
+        }
+        int tagCount = 0;
+        if (attributes != null) {
+            for (Map.Entry<String, ?> entry : attributes.entrySet()) {
+                Object value = entry.getValue();
+                if (value == null || value instanceof Geometry) {
+                    continue;
+                }
+                if (tagCount + 2 > tags.length) {
+                    tags = Arrays.copyOf(tags, tags.length * 2);
+                }
+                tags[tagCount++] = layer.keyIndex(entry.getKey());
+                tags[tagCount++] = layer.valueIndex(value);
+            }
+        }
+        if (tagCount > 0) {
+            feature.writePackedField(FEATURE_TAGS, tags, tagCount);
+        }
+        feature.writeVarintField(FEATURE_TYPE, type);
+        feature.writePackedField(FEATURE_GEOMETRY, commands, length);
+        layer.features.writeMessageField(LAYER_FEATURES, feature);
+
+        return true;
+    }
+
+    /**
+     * Returns true if no feature has been encoded so far
+     */
+    public boolean isEmpty() {
+        return layers.isEmpty();
+    }
+
+    /**
+     * Encodes the tile
+     *
+     * @return the tile contents, as an uncompressed protobuf message
+     */
+    public byte[] encode() {
+        ProtobufWriter tile = new ProtobufWriter();
+        ProtobufWriter message = new ProtobufWriter();
+        ProtobufWriter value = new ProtobufWriter(16);
+        for (LayerEncoder layer : layers.values()) {
+            message.reset();
+            message.writeVarintField(LAYER_VERSION, VERSION);
+            message.writeStringField(LAYER_NAME, layer.name);
+            // the features are already encoded as fields
+            message.writeRaw(layer.features);
+            for (String key : layer.keys.keySet()) {
+                message.writeStringField(LAYER_KEYS, key);
+            }
+            for (Object v : layer.values.keySet()) {
+                value.reset();
+                writeValue(value, v);
+                message.writeMessageField(LAYER_VALUES, value);
+            }
+            message.writeVarintField(LAYER_EXTENT, extent);
+            tile.writeMessageField(TILE_LAYERS, message);
+        }
+
+        return tile.toByteArray();
+    }
+
+    void writeValue(ProtobufWriter writer, Object value) {
+        if (value instanceof String) {
+            writer.writeStringField(VALUE_STRING, (String) value);
+        } else if (value instanceof Long) {
+            writer.writeVarintField(VALUE_INT, (Long) value);
+        } else if (value instanceof Float) {
+            writer.writeFloatField(VALUE_FLOAT, (Float) value);
+        } else if (value instanceof Double) {
+            writer.writeDoubleField(VALUE_DOUBLE, (Double) value);
+        } else if (value instanceof Boolean) {
+            writer.writeVarintField(VALUE_BOOL, ((Boolean) value) ? 1 : 0);
+        } else {
+            throw new IllegalArgumentException("Unexpected value type " + value.getClass());
+        }
+    }
+
+    /**
+     * Maps the attribute values to the types supported by the vector tile format
+     */
+    static Object normalizeValue(Object value) {
+        if (value instanceof String || value instanceof Boolean || value instanceof Float
+                || value instanceof Double) {
+            return value;
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short
+                || value instanceof Byte) {
+            return ((Number) value).longValue();
+        } else if (value instanceof BigInteger && ((BigInteger) value).bitLength() < 64) {
+            return ((BigInteger) value).longValue();
+        } else if (value instanceof BigDecimal) {
+            return ((BigDecimal) value).doubleValue();
+        } else if (value instanceof Number && !(value instanceof BigInteger)) {
+            return ((Number) value).doubleValue();
+        } else {
+            return value.toString();
+        }
+    }
+
+    /**
+     * Extracts a numeric id from the feature id, if possible
+     */
+    static Long parseId(String featureId) {
+        if (featureId == null) {
+            return null;
+        }
+        String id = featureId.substring(featureId.lastIndexOf('.') + 1);
+        if (id.length() == 0 || id.length() > 18) {
+            return null;
+        }
+        for (int i = 0; i < id.length(); i++) {
+            if (!Character.isDigit(id.charAt(i))) {
+                return null;
+            }
+        }
+        return Long.parseLong(id);
+    }
+
+    /**
+     * Encodes the geometry into {@link #commands}, returning the geometry type, or
+     * {@link #UNKNOWN} if nothing could be encoded
+     */
+    int encodeGeometry(Geometry geometry) {
+        length = 0;
+        cursorX = 0;
+        cursorY = 0;
+        if (geometry instanceof Point || geometry instanceof MultiPoint) {
+            int count = geometry.getNumGeometries();
+            if (count == 0) {
+                return UNKNOWN;
+            }
+            command(MOVE_TO, count);
+            for (int i = 0; i < count; i++) {
+                Point point = (Point) geometry.getGeometryN(i);
+                moveCursor((int) Math.round(point.getX()), (int) Math.round(point.getY()));
+            }
+            return POINT;
+        } else if (geometry instanceof LineString || geometry instanceof MultiLineString) {
+            for (int i = 0; i < geometry.getNumGeometries(); i++) {
+                encodeLine((LineString) geometry.getGeometryN(i));
+            }
+            return length > 0 ? LINESTRING : UNKNOWN;
+        } else if (geometry instanceof Polygon || geometry instanceof MultiPolygon) {
+            for (int i = 0; i < geometry.getNumGeometries(); i++) {
+                encodePolygon((Polygon) geometry.getGeometryN(i));
+            }
+            return length > 0 ? POLYGON : UNKNOWN;
+        } else {
+            return UNKNOWN;
+        }
+    }
+
+    void encodeLine(LineString line) {
+        int n = roundCoordinates(line.getCoordinateSequence(), false);
+        if (n < 2) {
+            return;
+        }
+        command(MOVE_TO, 1);
+        moveCursor(xs[0], ys[0]);
+        command(LINE_TO, n - 1);
+        for (int i = 1; i < n; i++) {
+            moveCursor(xs[i], ys[i]);
+        }
+    }
+
+    void encodePolygon(Polygon polygon) {
+        if (!encodeRing(polygon.getExteriorRing(), true)) {
+            // no shell, the holes would end up being interpreted as shells
+            return;
+        }
+        for (int i = 0; i < polygon.getNumInteriorRing(); i++) {
+            encodeRing(polygon.getInteriorRingN(i), false);
+        }
+    }
+
+    boolean encodeRing(LineString ring, boolean exterior) {
+        int n = roundCoordinates(ring.getCoordinateSequence(), true);
+        if (n < 3) {
+            return false;
+        }
+        // the exterior ring must have a positive area (clockwise with the y axis pointing down),
+        // the interior ones a negative one
+        long area = 0;
+        for (int i = 0; i < n; i++) {
+            int j = (i + 1) % n;
+            area += (long) xs[i] * ys[j] - (long) xs[j] * ys[i];
+        }
+        if (area == 0) {
+            return false;
+        }
+        if ((area > 0) != exterior) {
+            reverse(n);
+        }
+        command(MOVE_TO, 1);
+        moveCursor(xs[0], ys[0]);
+        command(LINE_TO, n - 1);
+        for (int i = 1; i < n; i++) {
+            moveCursor(xs[i], ys[i]);
+        }
+        command(CLOSE_PATH, 1);
+        return true;
+    }
+
+    /**
+     * Rounds the coordinates into {@link #xs} and {@link #ys}, removing the consecutive
+     * duplicates, and eventually the closing point of a ring
+     *
+     * @return the number of coordinates
+     */
+    int roundCoordinates(CoordinateSequence cs, boolean ring) {
+        int size = cs.size();
+        if (xs.length < size) {
+            xs = new int[size];
+            ys = new int[size];
+        }
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            int x = (int) Math.round(cs.getX(i));
+            int y = (int) Math.round(cs.getY(i));
+            if (n > 0 && xs[n - 1] == x && ys[n - 1] == y) {
+                continue;
+            }
+            xs[n] = x;
+            ys[n] = y;
+            n++;
+        }
+        if (ring && n > 1 && xs[0] == xs[n - 1] && ys[0] == ys[n - 1]) {
+            n--;
+        }
+        return n;
+    }
+
+    void reverse(int n) {
+        for (int i = 0, j = n - 1; i < j; i++, j--) {
+            int tx = xs[i];
+            xs[i] = xs[j];
+            xs[j] = tx;
+            int ty = ys[i];
+            ys[i] = ys[j];
+            ys[j] = ty;
+        }
+    }
+
+    void command(int id, int count) {
+        append((id & 0x7) | (count << 3));
+    }
+
+    void moveCursor(int x, int y) {
+        append(zigZag(x - cursorX));
+        append(zigZag(y - cursorY));
+        cursorX = x;
+        cursorY = y;
+    }
+
+    void append(int value) {
+        if (length == commands.length) {
+            commands = Arrays.copyOf(commands, commands.length * 2);
+        }
+        commands[length++] = value;
+    }
+
+    static int zigZag(int n) {
+        return (n << 1) ^ (n >> 31);
+    }
+
+    /**
+     * The features, dictionaries and duplicate tracking of a single layer
+     */
+    static class LayerEncoder {
+        final String name;
+
+        final ProtobufWriter features = new ProtobufWriter(1024);
+
+        final Map<String, Integer> keys = new LinkedHashMap<String, Integer>();
+
+        final Map<Object, Integer> values = new LinkedHashMap<Object, Integer>();
+
+        final Map<String, List<int[]>> encoded = new HashMap<String, List<int[]>>();
+
+        LayerEncoder(String name) {
+            this.name = name;
+        }
+
+        int keyIndex(String key) {
+            Integer index = keys.get(key);
+            if (index == null) {
+                index = keys.size();
+                keys.put(key, index);
+            }
+            return index;
+        }
+
+        int valueIndex(Object value) {
+            Object normalized = normalizeValue(value);
+            Integer index = values.get(normalized);
+            if (index == null) {
+                index = values.size();
+                values.put(normalized, index);
+            }
+            return index;
+        }
+
+        /**
+         * Checks if the same feature has already been encoded with the same geometry, and
+         * otherwise records it
+         */
+        boolean isDuplicate(String featureId, int type, int[] commands, int length) {
+            int[] geometry = new int[length + 1];
+            geometry[0] = type;
+            System.arraycopy(commands, 0, geometry, 1, length);
+            List<int[]> geometries = encoded.get(featureId);
+            if (geometries == null) {
+                geometries = new ArrayList<int[]>(1);
+                encoded.put(featureId, geometries);
+            } else {
+                for (int[] g : geometries) {
+                    if (Arrays.equals(g, geometry)) {
+                        return true;
+                    }
+                }
+            }
+            geometries.add(geometry);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.renderer.mvt;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.map.Layer;
+import org.geotools.map.MapContent;
+import org.geotools.renderer.RenderListener;
+import org.geotools.renderer.lite.ScreenGeometryCollector;
+import org.geotools.renderer.lite.StreamingRenderer;
+import org.geotools.styling.Symbolizer;
+import org.opengis.feature.Attribute;
+import org.opengis.feature.Feature;
+import org.opengis.feature.Property;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.type.AttributeDescriptor;
+import org.opengis.feature.type.GeometryDescriptor;
+
+import com.vividsolutions.jts.geom.Geometry;
+
+/**
+ * Builds Mapbox Vector Tiles out of a {@link MapContent}, using the {@link StreamingRenderer}
+ * data selection pipeline: only the features matching the rules active at the tile scale are
+ * loaded, with the attributes needed by the styles, and their geometries are transformed,
+ * generalized, decimated with the screen map and clipped exactly as they would be for painting.
+ * The styles are used only to select the data, the symbolization is left to the client.
+ * <p>
+ * Each map layer generates a vector tile layer named after the layer title, or the feature type
+ * name if the title is missing. Raster and direct layers are skipped.
+ */
+public class VectorTileRenderer {
+
+    /** The default buffer around the tile, in tile units */
+    public static final int DEFAULT_BUFFER = 64;
+
+    int extent = VectorTileEncoder.DEFAULT_EXTENT;
+
+    int buffer = DEFAULT_BUFFER;
+
+    Map<Object, Object> rendererHints;
+
+    List<RenderListener> renderListeners = new CopyOnWriteArrayList<RenderListener>();
+
+    public int getExtent() {
+        return extent;
+    }
+
+    /**
+     * Sets the tile extent, that is, the number of integer units used to represent the tile
+     * width and height
+     */
+    public void setExtent(int extent) {
+        this.extent = extent;
+    }
+
+    public int getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Sets the size of the area around the tile, in tile units, whose contents will be included
+     * in the tile
+     */
+    public void setBuffer(int buffer) {
+        this.buffer = buffer;
+    }
+
+    public Map<Object, Object> getRendererHints() {
+        return rendererHints;
+    }
+
+    /**
+     * Sets the {@link StreamingRenderer} hints used to select the data
+     */
+    public void setRendererHints(Map<Object, Object> rendererHints) {
+        this.rendererHints = rendererHints;
+    }
+
+    /**
+     * Adds a listener that will be notified of the features encoded, and of the errors occurred
+     * while encoding
+     */
+    public void addRenderListener(RenderListener listener) {
+        renderListeners.add(listener);
+    }
+
+    public void removeRenderListener(RenderListener listener) {
+        renderListeners.remove(listener);
+    }
+
+    /**
+     * Builds the vector tile covering the specified area
+     *
+     * @param mapContent the layers to be encoded
+     * @param tileBounds the tile bounds, in the target coordinate reference system
+     * @return the tile, as an uncompressed protobuf message
+     */
+    public byte[] render(MapContent mapContent, ReferencedEnvelope tileBounds) {
+        VectorTileEncoder encoder = new VectorTileEncoder(extent);
+
+        StreamingRenderer renderer = new StreamingRenderer();
+        renderer.setMapContent(mapContent);
+        Map<Object, Object> hints = rendererHints == null ? new HashMap<Object, Object>()
+                : new HashMap<Object, Object>(rendererHints);
+        hints.put(StreamingRenderer.RENDERING_BUFFER_KEY, buffer);
+        renderer.setRendererHints(hints);
+        for (RenderListener listener : renderListeners) {
+            renderer.addRenderListener(listener);
+        }
+        renderer.setScreenGeometryCollector(new EncodingCollector(encoder));
+
+        // nothing will be painted, yet the renderer needs a graphics to work against
+        BufferedImage image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            renderer.paint(graphics, new Rectangle(0, 0, extent, extent), tileBounds);
+        } finally {
+            graphics.dispose();
+        }
+
+        return encoder.encode();
+    }
+
+    /**
+     * Collects the renderer geometries into the vector tile encoder
+     */
+    static class EncodingCollector implements ScreenGeometryCollector {
+
+        VectorTileEncoder encoder;
+
+        String layerName;
+
+        public EncodingCollector(VectorTileEncoder encoder) {
+            this.encoder = encoder;
+        }
+
+        public void startLayer(String layerId, Layer layer) {
+            if (layer.getTitle() != null) {
+                layerName = layer.getTitle();
+            } else if (layer.getFeatureSource() != null) {
+                layerName = layer.getFeatureSource().getName().getLocalPart();
+            } else {
+                layerName = "layer" + layerId;
+            }
+        }
+
+        public void collect(String layerId, Object feature, Geometry geometry,
+                Symbolizer symbolizer) {
+            String id = null;
+            Map<String, Object> attributes = null;
+            if (feature instanceof Feature) {
+                Feature f = (Feature) feature;
+                if (f.getIdentifier() != null) {
+                    id = f.getIdentifier().getID();
+                }
+                attributes = getAttributes(f);
+            }
+            encoder.addFeature(layerName, id, attributes, geometry);
+        }
+
+        Map<String, Object> getAttributes(Feature feature) {
+            Map<String, Object> attributes = new LinkedHashMap<String, Object>();
+            if (feature instanceof SimpleFeature) {
+                SimpleFeature sf = (SimpleFeature) feature;
+                List<AttributeDescriptor> descriptors = sf.getFeatureType()
+                        .getAttributeDescriptors();
+                for (int i = 0; i < descriptors.size(); i++) {
+                    AttributeDescriptor ad = descriptors.get(i);
+                    if (!(ad instanceof GeometryDescriptor)) {
+                        attributes.put(ad.getLocalName(), sf.getAttribute(i));
+                    }
+                }
+            } else {
+                // only the simple valued properties can be encoded
+                for (Property p : feature.getProperties()) {
+                    if (p instanceof Attribute && !(p.getDescriptor() instanceof GeometryDescriptor)
+                            && !(p.getValue() instanceof Iterable)) {
+                        attributes.put(p.getName().getLocalPart(), p.getValue());
+                    }
+                }
+            }
+            return attributes;
+        }
+
+        public void endLayer(String layerId) {
+            layerName = null;
+        }
+    }
+}
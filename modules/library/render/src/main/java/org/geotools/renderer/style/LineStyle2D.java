@@ -125,4 +125,16 @@ public class LineStyle2D extends Style2D {
     public String toString() {
         return Classes.getShortClassName(this) + '[' + contour + ']';
     }
+
+    /**
+     * Clones this style, along with its graphic stroke
+     */
+    @Override
+    public Style clone() {
+        LineStyle2D clone = (LineStyle2D) super.clone();
+        if (graphicStroke != null) {
+            clone.graphicStroke = (Style2D) graphicStroke.clone();
+        }
+        return clone;
+    }
 }
@@ -105,4 +105,16 @@ public class PolygonStyle2D extends LineStyle2D {
     public String toString() {
         return Classes.getShortClassName(this) + '[' + fill + ']';
     }
+
+    /**
+     * Clones this style, along with its graphic fill
+     */
+    @Override
+    public Style clone() {
+        PolygonStyle2D clone = (PolygonStyle2D) super.clone();
+        if (graphicFill != null) {
+            clone.graphicFill = (Style2D) graphicFill.clone();
+        }
+        return clone;
+    }
 }
@@ -197,6 +197,11 @@ public class SLDStyleFactory {
 
 	private long requests;
 
+	/**
+	 * Cache of static styles shared with other factories, if any
+	 */
+	private Style2DCache sharedCache;
+
 	/**
 	 * Holds value of property mapScaleDenominator.
 	 */
@@ -282,6 +287,26 @@ public class SLDStyleFactory {
 		return requests;
 	}
 
+	/**
+	 * Returns the cache used to share the styles built out of static
+	 * symbolizers with other factories, or null if no sharing is performed
+	 * (the default)
+	 */
+	public Style2DCache getSharedCache() {
+		return sharedCache;
+	}
+
+	/**
+	 * Sets the cache used to share the styles built out of static symbolizers
+	 * with other factories, allowing to reuse them across renderings. Use null
+	 * to disable sharing.
+	 * 
+	 * @param sharedCache
+	 */
+	public void setSharedCache(Style2DCache sharedCache) {
+		this.sharedCache = sharedCache;
+	}
+
 	/**
 	 * <p>
 	 * Creates a rendered style
@@ -306,6 +331,44 @@ public class SLDStyleFactory {
 	 */
 	public Style2D createStyle(Object drawMe, Symbolizer symbolizer,
 			Range scaleRange) {
+		return createStyle(drawMe, symbolizer, scaleRange, symbolizer, 1, 1);
+	}
+
+	/**
+	 * <p>
+	 * Creates a rendered style, eventually using the shared
+	 * {@link Style2DCache} (see {@link #setSharedCache(Style2DCache)}).
+	 * </p>
+	 * 
+	 * <p>
+	 * Renderers rescale the symbolizers (e.g., to apply units of measure or a
+	 * DPI change) building new copies of them at each rendering, the shared
+	 * cache is thus keyed on the original symbolizer and the rescaling factors
+	 * applied to it, so that the styles built in a rendering can be reused in
+	 * the following ones.
+	 * </p>
+	 * 
+	 * @param drawMe
+	 *            The feature
+	 * @param symbolizer
+	 *            The SLD symbolizer, eventually rescaled
+	 * @param scaleRange
+	 *            The scale range in which the feature should be painted
+	 *            according to the symbolizer
+	 * @param sourceSymbolizer
+	 *            The symbolizer <code>symbolizer</code> has been built from,
+	 *            or <code>symbolizer</code> itself if no rescaling took place
+	 * @param dpiFactor
+	 *            The DPI rescaling factor applied to the source symbolizer
+	 * @param uomFactor
+	 *            The unit of measure rescaling factor applied to the source
+	 *            symbolizer
+	 * 
+	 * @return A rendered style equivalent to the symbolizer
+	 */
+	public Style2D createStyle(Object drawMe, Symbolizer symbolizer,
+			Range scaleRange, Symbolizer sourceSymbolizer, double dpiFactor,
+			double uomFactor) {
 		Style2D style = null;
 
 		SymbolizerKey key = new SymbolizerKey(symbolizer, scaleRange);
@@ -315,32 +378,53 @@ public class SLDStyleFactory {
 
 		if (style != null) {
 			hits++;
-		} else {
-			style = createStyleInternal(drawMe, symbolizer, scaleRange);
-
-			// for some legitimate cases some styles cannot be turned into a
-			// valid Style2D
-			// e.g., point symbolizer that contains no graphic that can be used
-			// due to network issues
-			if (style == null) {
-				return null;
-			}
+			return style;
+		}
 
-			// if known dynamic symbolizer return the style
-			if (dynamicSymbolizers.containsKey(key)) {
+		// the shared cache only knows about static symbolizers
+		Style2DCache.Key sharedKey = null;
+		if (sharedCache != null && !(symbolizer instanceof TextSymbolizer)
+				&& !dynamicSymbolizers.containsKey(key)) {
+			sharedKey = new Style2DCache.Key(sourceSymbolizer, scaleRange,
+					dpiFactor, uomFactor, lineOptimizationEnabled,
+					vectorRenderingEnabled, renderingHints);
+			style = sharedCache.get(sharedKey);
+			if (style != null) {
+				hits++;
+				staticSymbolizers.put(key, style);
 				return style;
-			} else {
-				// lets see if it's static or dynamic
-				StyleAttributeExtractorTruncated sae = new StyleAttributeExtractorTruncated();
-				sae.visit(symbolizer);
-
-				Set nameSet = sae.getAttributeNameSet();
-				boolean noAttributes = (nameSet == null) || (nameSet.size() == 0);
-				if (noAttributes && !sae.isUsingVolatileFunctions()) {
-					staticSymbolizers.put(key, style);
-				} else {
-					dynamicSymbolizers.put(key, Boolean.TRUE);
+			}
+		}
+
+		style = createStyleInternal(drawMe, symbolizer, scaleRange);
+
+		// for some legitimate cases some styles cannot be turned into a
+		// valid Style2D
+		// e.g., point symbolizer that contains no graphic that can be used
+		// due to network issues
+		if (style == null) {
+			return null;
+		}
+
+		// if known dynamic symbolizer return the style
+		if (dynamicSymbolizers.containsKey(key)) {
+			return style;
+		} else {
+			// lets see if it's static or dynamic
+			StyleAttributeExtractorTruncated sae = new StyleAttributeExtractorTruncated();
+			sae.visit(symbolizer);
+
+			Set nameSet = sae.getAttributeNameSet();
+			boolean noAttributes = (nameSet == null) || (nameSet.size() == 0);
+			if (noAttributes && !sae.isUsingVolatileFunctions()) {
+				staticSymbolizers.put(key, style);
+				// text styles get modified during label placement, cannot
+				// be shared among renderings
+				if (sharedKey != null && !(style instanceof TextStyle2D)) {
+					sharedCache.put(sharedKey, style);
 				}
+			} else {
+				dynamicSymbolizers.put(key, Boolean.TRUE);
 			}
 		}
 		return style;
@@ -0,0 +1,301 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.renderer.style;
+
+import java.awt.RenderingHints;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.geotools.styling.FeatureTypeStyle;
+import org.geotools.styling.Rule;
+import org.geotools.styling.Style;
+import org.geotools.styling.Symbolizer;
+import org.geotools.util.Range;
+
+/**
+ * A bounded, thread safe cache of the {@link Style2D} objects built out of static symbolizers
+ * (symbolizers that do not depend on the feature attributes), meant to be shared among
+ * {@link SLDStyleFactory} instances so that static styles are built once per application
+ * lifetime, instead of once per rendering. The least recently used entries are evicted once the
+ * maximum number of entries is reached.
+ * <p>
+ * Entries are keyed on the symbolizer identity, so a symbolizer that is modified in place must be
+ * removed from the cache using {@link #invalidate(Symbolizer)} or {@link #invalidate(Style)}.
+ * </p>
+ * <p>
+ * Styles are mutable, and renderers working in parallel might modify them, so the cache stores
+ * and hands out private copies of them.
+ * </p>
+ */
+public class Style2DCache {
+
+    /**
+     * The default maximum number of entries of the default instance, can be changed using the
+     * "org.geotools.renderer.style2DCacheSize" system variable
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    static final Style2DCache DEFAULT_INSTANCE = new Style2DCache(Integer.getInteger(
+            "org.geotools.renderer.style2DCacheSize", DEFAULT_MAX_ENTRIES));
+
+    /**
+     * Returns the default, JVM wide, cache instance
+     */
+    public static Style2DCache getDefaultInstance() {
+        return DEFAULT_INSTANCE;
+    }
+
+    final int maxEntries;
+
+    final Map<Key, Style2D> cache;
+
+    final AtomicLong hits = new AtomicLong();
+
+    final AtomicLong misses = new AtomicLong();
+
+    final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Builds a new cache holding at most the specified number of styles
+     *
+     * @param maxEntries
+     */
+    public Style2DCache(final int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("The maximum number of entries must be positive, got "
+                    + maxEntries);
+        }
+        this.maxEntries = maxEntries;
+        this.cache = new LinkedHashMap<Key, Style2D>(16, 0.75f, true) {
+            private static final long serialVersionUID = -2498542289640932585L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Style2D> eldest) {
+                if (size() > Style2DCache.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns a copy of the cached style, or null if not found
+     *
+     * @param key
+     * @return
+     */
+    public Style2D get(Key key) {
+        Style2D style;
+        synchronized (cache) {
+            style = cache.get(key);
+        }
+        if (style != null) {
+            hits.incrementAndGet();
+            return (Style2D) style.clone();
+        } else {
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * Caches a copy of the specified style
+     *
+     * @param key
+     * @param style
+     */
+    public void put(Key key, Style2D style) {
+        Style2D copy = (Style2D) style.clone();
+        synchronized (cache) {
+            cache.put(key, copy);
+        }
+    }
+
+    /**
+     * Removes all the styles built out of the specified symbolizer
+     *
+     * @param symbolizer
+     */
+    public void invalidate(Symbolizer symbolizer) {
+        synchronized (cache) {
+            for (Iterator<Key> it = cache.keySet().iterator(); it.hasNext();) {
+                if (it.next().symbolizer == symbolizer) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes all the styles built out of the symbolizers contained in the specified style. To be
+     * used when a style is modified in place.
+     *
+     * @param style
+     */
+    public void invalidate(Style style) {
+        for (FeatureTypeStyle fts : style.featureTypeStyles()) {
+            for (Rule rule : fts.rules()) {
+                for (Symbolizer symbolizer : rule.symbolizers()) {
+                    invalidate(symbolizer);
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes all the cached styles, without resetting the statistics
+     */
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * The number of styles currently cached
+     */
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * The number of styles removed from the cache to make room for new ones
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public double getHitRatio() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    /**
+     * Resets the hit, miss and eviction counters
+     */
+    public void resetStatistics() {
+        hits.set(0);
+        misses.set(0);
+        evictions.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "Style2DCache[size=" + size() + ", maxEntries=" + maxEntries + ", hits="
+                + hits.get() + ", misses=" + misses.get() + ", evictions=" + evictions.get()
+                + "]";
+    }
+
+    /**
+     * The cache key, made of the source symbolizer, compared by identity, the scale range, the
+     * rescaling factors applied to the source symbolizer, and the {@link SLDStyleFactory}
+     * configuration affecting the built style
+     */
+    public static final class Key {
+        final Symbolizer symbolizer;
+
+        final double minScale;
+
+        final double maxScale;
+
+        final double dpiFactor;
+
+        final double uomFactor;
+
+        final boolean lineOptimization;
+
+        final boolean vectorRendering;
+
+        final RenderingHints hints;
+
+        /**
+         * Builds a new key
+         *
+         * @param symbolizer the symbolizer the style is built from. In case the symbolizer has
+         *        been rescaled, this is the original symbolizer
+         * @param scaleRange the scale range the style is valid in
+         * @param dpiFactor the DPI rescaling factor applied to the symbolizer (1 if none)
+         * @param uomFactor the unit of measure rescaling factor applied to the symbolizer (1 if
+         *        none)
+         * @param lineOptimization {@link SLDStyleFactory#isLineOptimizationEnabled()}
+         * @param vectorRendering {@link SLDStyleFactory#isVectorRenderingEnabled()}
+         * @param hints {@link SLDStyleFactory#getRenderingHints()}
+         */
+        public Key(Symbolizer symbolizer, Range scaleRange, double dpiFactor, double uomFactor,
+                boolean lineOptimization, boolean vectorRendering, RenderingHints hints) {
+            this.symbolizer = symbolizer;
+            this.minScale = ((Number) scaleRange.getMinValue()).doubleValue();
+            this.maxScale = ((Number) scaleRange.getMaxValue()).doubleValue();
+            this.dpiFactor = dpiFactor;
+            this.uomFactor = uomFactor;
+            this.lineOptimization = lineOptimization;
+            this.vectorRendering = vectorRendering;
+            this.hints = hints == null ? null : (RenderingHints) hints.clone();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+
+            Key other = (Key) obj;
+            return other.symbolizer == symbolizer && other.minScale == minScale
+                    && other.maxScale == maxScale && other.dpiFactor == dpiFactor
+                    && other.uomFactor == uomFactor && other.lineOptimization == lineOptimization
+                    && other.vectorRendering == vectorRendering
+                    && (hints == null ? other.hints == null : hints.equals(other.hints));
+        }
+
+        @Override
+        public int hashCode() {
+            int result = 17 + System.identityHashCode(symbolizer);
+            result = result * 37 + doubleHash(minScale);
+            result = result * 37 + doubleHash(maxScale);
+            result = result * 37 + doubleHash(dpiFactor);
+            result = result * 37 + doubleHash(uomFactor);
+            result = result * 37 + (lineOptimization ? 1 : 0);
+            result = result * 37 + (vectorRendering ? 1 : 0);
+            return result;
+        }
+
+        private int doubleHash(double value) {
+            long bits = Double.doubleToLongBits(value);
+
+            return (int) (bits ^ (bits >>> 32));
+        }
+    }
+}
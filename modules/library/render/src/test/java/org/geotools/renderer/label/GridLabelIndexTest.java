@@ -0,0 +1,68 @@
+package org.geotools.renderer.label;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Rectangle;
+import java.awt.geom.Rectangle2D;
+import java.util.Collections;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class GridLabelIndexTest {
+
+    @Test
+    public void testSimpleConflicts() {
+        GridLabelIndex index = new GridLabelIndex(new Rectangle(0, 0, 256, 256), 16);
+        index.addLabel(null, new Rectangle2D.Double(10, 10, 20, 10));
+
+        // overlapping and touching
+        assertTrue(index.labelsWithinDistance(new Rectangle2D.Double(20, 15, 20, 10), 0));
+        assertTrue(index.labelsWithinDistance(new Rectangle2D.Double(30, 10, 10, 10), 0));
+        // far away, but not too far
+        assertFalse(index.labelsWithinDistance(new Rectangle2D.Double(40, 10, 10, 10), 0));
+        assertTrue(index.labelsWithinDistance(new Rectangle2D.Double(40, 10, 10, 10), 10));
+        // negative distance disables the check
+        assertFalse(index.labelsWithinDistance(new Rectangle2D.Double(20, 15, 20, 10), -1));
+    }
+
+    @Test
+    public void testOutsideDisplayArea() {
+        GridLabelIndex index = new GridLabelIndex(new Rectangle(0, 0, 256, 256));
+        index.reserveArea(Collections.<Rectangle2D> singletonList(new Rectangle2D.Double(-50,
+                -50, 20, 20)));
+        index.addLabel(null, new Rectangle2D.Double(300, 300, 10, 10));
+
+        assertTrue(index.labelsWithinDistance(new Rectangle2D.Double(-40, -40, 5, 5), 0));
+        assertFalse(index.labelsWithinDistance(new Rectangle2D.Double(0, 0, 5, 5), 0));
+        assertTrue(index.labelsWithinDistance(new Rectangle2D.Double(250, 250, 60, 60), 0));
+        assertFalse(index.labelsWithinDistance(new Rectangle2D.Double(250, 250, 5, 5), 0));
+    }
+
+    @Test
+    public void testSameResultsAsQuadtree() {
+        Rectangle displayArea = new Rectangle(0, 0, 1024, 768);
+        LabelIndex quadtree = new LabelIndex();
+        GridLabelIndex grid = new GridLabelIndex(displayArea);
+
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            Rectangle2D bounds = randomBounds(random, displayArea);
+            boolean expected = quadtree.labelsWithinDistance(bounds, 2);
+            assertEquals(expected, grid.labelsWithinDistance(bounds, 2));
+            if (!expected) {
+                quadtree.addLabel(null, bounds);
+                grid.addLabel(null, bounds);
+            }
+        }
+    }
+
+    private Rectangle2D randomBounds(Random random, Rectangle displayArea) {
+        double x = random.nextDouble() * (displayArea.width + 100) - 50;
+        double y = random.nextDouble() * (displayArea.height + 100) - 50;
+        return new Rectangle2D.Double(x, y, 10 + random.nextDouble() * 80,
+                5 + random.nextDouble() * 15);
+    }
+}
@@ -4,14 +4,21 @@ import static org.junit.Assert.*;
 
 import java.awt.Color;
 import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.geotools.coverage.grid.GridCoverage2D;
 import org.geotools.coverage.grid.GridCoverageFactory;
 import org.geotools.data.property.PropertyDataStore;
 import org.geotools.data.simple.SimpleFeatureSource;
 import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.image.test.ImageAssert;
 import org.geotools.map.FeatureLayer;
 import org.geotools.map.GridCoverageLayer;
 import org.geotools.map.MapContent;
@@ -65,4 +72,99 @@ public class MultiLayerTest {
 		assertEquals(0, pixel[2]);
 		assertEquals(255, pixel[3]);
 	}
+
+	@Test
+	public void testParallelLayerRendering() throws Exception {
+        File property = new File(TestData.getResource(this, "buildings.properties").toURI());
+        PropertyDataStore ds = new PropertyDataStore(property.getParentFile());
+        ReferencedEnvelope bounds = new ReferencedEnvelope(0, 10, 0, 10, DefaultGeographicCRS.WGS84);
+
+        StyleBuilder sb = new StyleBuilder();
+        Style pst = sb.createStyle(sb.createPolygonSymbolizer(sb.createStroke(Color.BLACK, 3), 
+                sb.createFill(Color.GRAY, 0.5)));
+        Style lst = sb.createStyle(sb.createLineSymbolizer(sb.createStroke(Color.BLUE, 2)));
+        Style tst = sb.createStyle(sb.createTextSymbolizer(Color.BLACK, sb.createFont("Serif", 10), "code"));
+        
+        MapContent mc = new MapContent();
+        mc.addLayer(new FeatureLayer(ds.getFeatureSource("buildings"), pst));
+        mc.addLayer(new FeatureLayer(ds.getFeatureSource("line"), lst));
+        mc.addLayer(new FeatureLayer(ds.getFeatureSource("point"), tst));
+        
+        // sequential reference
+        StreamingRenderer renderer = new StreamingRenderer();
+        renderer.setMapContent(mc);
+        BufferedImage expected = RendererBaseTest.renderImage(renderer, bounds, null);
+        
+        // parallel rendering, it should produce the same result
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        try {
+            renderer = new StreamingRenderer();
+            renderer.setMapContent(mc);
+            renderer.setThreadPool(pool);
+            Map hints = new HashMap();
+            hints.put(StreamingRenderer.PARALLEL_LAYER_RENDERING_KEY, Boolean.TRUE);
+            renderer.setRendererHints(hints);
+            BufferedImage actual = RendererBaseTest.renderImage(renderer, bounds, null);
+            
+            ImageAssert.assertEquals(expected, actual, 0);
+        } finally {
+            pool.shutdown();
+            mc.dispose();
+        }
+	}
+
+    @Test
+    public void testParallelLayerRenderingOffsetPaintArea() throws Exception {
+        File property = new File(TestData.getResource(this, "buildings.properties").toURI());
+        PropertyDataStore ds = new PropertyDataStore(property.getParentFile());
+        ReferencedEnvelope bounds = new ReferencedEnvelope(0, 10, 0, 10, DefaultGeographicCRS.WGS84);
+
+        StyleBuilder sb = new StyleBuilder();
+        Style pst = sb.createStyle(sb.createPolygonSymbolizer(sb.createStroke(Color.BLACK, 3), 
+                sb.createFill(Color.GRAY, 0.5)));
+        Style lst = sb.createStyle(sb.createLineSymbolizer(sb.createStroke(Color.BLUE, 2)));
+        Style tst = sb.createStyle(sb.createTextSymbolizer(Color.BLACK, sb.createFont("Serif", 10), "code"));
+
+        MapContent mc = new MapContent();
+        mc.addLayer(new FeatureLayer(ds.getFeatureSource("buildings"), pst));
+        mc.addLayer(new FeatureLayer(ds.getFeatureSource("line"), lst));
+        mc.addLayer(new FeatureLayer(ds.getFeatureSource("point"), tst));
+
+        // a paint area that does not start at the image origin
+        Rectangle paintArea = new Rectangle(60, 40, 300, 300);
+
+        // sequential reference
+        StreamingRenderer renderer = new StreamingRenderer();
+        renderer.setMapContent(mc);
+        BufferedImage expected = renderImage(renderer, paintArea, bounds);
+
+        // parallel rendering, it should paint the same content in the same place
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        try {
+            renderer = new StreamingRenderer();
+            renderer.setMapContent(mc);
+            renderer.setThreadPool(pool);
+            Map hints = new HashMap();
+            hints.put(StreamingRenderer.PARALLEL_LAYER_RENDERING_KEY, Boolean.TRUE);
+            renderer.setRendererHints(hints);
+            BufferedImage actual = renderImage(renderer, paintArea, bounds);
+
+            ImageAssert.assertEquals(expected, actual, 0);
+        } finally {
+            pool.shutdown();
+            mc.dispose();
+        }
+    }
+
+    BufferedImage renderImage(StreamingRenderer renderer, Rectangle paintArea,
+            ReferencedEnvelope bounds) {
+        BufferedImage image = new BufferedImage(paintArea.x + paintArea.width + 20, paintArea.y
+                + paintArea.height + 20, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, image.getWidth(), image.getHeight());
+        renderer.paint(graphics, paintArea, bounds);
+        graphics.dispose();
+        return image;
+    }
 }
@@ -0,0 +1,167 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.renderer.lite;
+
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.geotools.data.property.PropertyDataStore;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.map.FeatureLayer;
+import org.geotools.map.MapContent;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.geotools.renderer.RenderingStatistics;
+import org.geotools.renderer.RenderingStatistics.Counter;
+import org.geotools.renderer.RenderingStatistics.Phase;
+import org.geotools.renderer.RenderingStatisticsCollector;
+import org.geotools.renderer.RenderingStatisticsListener;
+import org.geotools.styling.Style;
+import org.geotools.styling.StyleBuilder;
+import org.geotools.test.TestData;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RenderingStatisticsTest {
+
+    MapContent mc;
+
+    ReferencedEnvelope bounds;
+
+    @Before
+    public void setup() throws Exception {
+        File property = new File(TestData.getResource(this, "buildings.properties").toURI());
+        PropertyDataStore ds = new PropertyDataStore(property.getParentFile());
+        bounds = new ReferencedEnvelope(0, 10, 0, 10, DefaultGeographicCRS.WGS84);
+
+        StyleBuilder sb = new StyleBuilder();
+        Style pst = sb.createStyle(sb.createPolygonSymbolizer(sb.createStroke(Color.BLACK, 3),
+                sb.createFill(Color.GRAY, 0.5)));
+        Style tst = sb.createStyle(sb.createTextSymbolizer(Color.BLACK,
+                sb.createFont("Serif", 10), "code"));
+
+        mc = new MapContent();
+        FeatureLayer buildings = new FeatureLayer(ds.getFeatureSource("buildings"), pst);
+        buildings.setTitle("buildings");
+        mc.addLayer(buildings);
+        mc.addLayer(new FeatureLayer(ds.getFeatureSource("point"), tst));
+    }
+
+    @After
+    public void dispose() {
+        mc.dispose();
+    }
+
+    @Test
+    public void testStatistics() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        StreamingRenderer renderer = new StreamingRenderer();
+        renderer.setMapContent(mc);
+        renderer.addRenderingStatisticsListener(listener);
+        RendererBaseTest.renderImage(renderer, bounds, null);
+
+        assertLayerStatistics(listener);
+    }
+
+    @Test
+    public void testParallelStatistics() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            RecordingListener listener = new RecordingListener();
+            StreamingRenderer renderer = new StreamingRenderer();
+            renderer.setMapContent(mc);
+            renderer.setThreadPool(pool);
+            Map hints = new HashMap();
+            hints.put(StreamingRenderer.PARALLEL_LAYER_RENDERING_KEY, Boolean.TRUE);
+            renderer.setRendererHints(hints);
+            renderer.addRenderingStatisticsListener(listener);
+            RendererBaseTest.renderImage(renderer, bounds, null);
+
+            assertLayerStatistics(listener);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    void assertLayerStatistics(RecordingListener listener) {
+        assertEquals(2, listener.layers.size());
+        // notified in layer order
+        RenderingStatistics buildings = listener.layers.get(0);
+        RenderingStatistics points = listener.layers.get(1);
+        assertEquals("0", buildings.getLayerId());
+        assertEquals("1", points.getLayerId());
+        assertEquals("buildings", buildings.getLayerName());
+        assertEquals("point", points.getLayerName());
+
+        // the buildings are painted, the points only labelled
+        assertTrue(buildings.getCount(Counter.FEATURES_READ) > 0);
+        assertTrue(buildings.getCount(Counter.FEATURES_PAINTED) > 0);
+        assertTrue(buildings.getNanos(Phase.READ) > 0);
+        assertTrue(buildings.getNanos(Phase.PAINT) > 0);
+        assertTrue(points.getCount(Counter.FEATURES_READ) > 0);
+        assertEquals(0, points.getCount(Counter.FEATURES_PAINTED));
+
+        // labels are notified once
+        assertEquals(1, listener.labels.size());
+        RenderingStatistics labels = listener.labels.get(0);
+        assertNull(labels.getLayerId());
+        assertTrue(labels.getCount(Counter.LABELS_PLACED) > 0);
+        assertTrue(labels.getNanos(Phase.LABELING) > 0);
+    }
+
+    @Test
+    public void testCollector() throws Exception {
+        RenderingStatisticsCollector collector = new RenderingStatisticsCollector();
+        StreamingRenderer renderer = new StreamingRenderer();
+        renderer.setMapContent(mc);
+        renderer.addRenderingStatisticsListener(collector);
+        RendererBaseTest.renderImage(renderer, bounds, null);
+        RendererBaseTest.renderImage(renderer, bounds, null);
+
+        assertEquals(4, collector.getLayersRendered());
+        assertTrue(collector.getCount(Counter.LABELS_PLACED) > 0);
+        assertTrue(collector.getCounters().get(Counter.FEATURES_READ.name()) > 0);
+        assertTrue(collector.getPhaseMillis().get(Phase.PAINT.name()) > 0);
+
+        collector.reset();
+        assertEquals(0, collector.getLayersRendered());
+        assertEquals(0, collector.getCount(Counter.FEATURES_READ));
+        assertEquals(0, collector.getNanos(Phase.PAINT));
+    }
+
+    static class RecordingListener implements RenderingStatisticsListener {
+        List<RenderingStatistics> layers = new ArrayList<RenderingStatistics>();
+
+        List<RenderingStatistics> labels = new ArrayList<RenderingStatistics>();
+
+        public void layerRendered(RenderingStatistics statistics) {
+            layers.add(statistics);
+        }
+
+        public void labelsRendered(RenderingStatistics statistics) {
+            labels.add(statistics);
+        }
+    }
+}
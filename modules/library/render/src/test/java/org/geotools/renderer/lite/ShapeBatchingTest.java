@@ -0,0 +1,236 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.renderer.lite;
+
+import static org.junit.Assert.*;
+
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.geotools.data.collection.ListFeatureCollection;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.map.FeatureLayer;
+import org.geotools.map.MapContent;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.geotools.renderer.RenderListener;
+import org.geotools.renderer.style.LineStyle2D;
+import org.geotools.renderer.style.MarkStyle2D;
+import org.geotools.renderer.style.PolygonStyle2D;
+import org.geotools.styling.FeatureTypeStyle;
+import org.geotools.styling.Style;
+import org.geotools.styling.StyleBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.io.WKTReader;
+
+public class ShapeBatchingTest {
+
+    static final int SIZE = 300;
+
+    ListFeatureCollection polygons;
+
+    ListFeatureCollection lines;
+
+    ReferencedEnvelope bounds = new ReferencedEnvelope(0, 30, 0, 30, DefaultGeographicCRS.WGS84);
+
+    StyleBuilder sb = new StyleBuilder();
+
+    MapContent mc;
+
+    @Before
+    public void setup() throws Exception {
+        WKTReader reader = new WKTReader();
+        // overlapping squares with holes, alternating ring orientation
+        polygons = buildCollection("polygons", Polygon.class);
+        lines = buildCollection("lines", LineString.class);
+        SimpleFeatureBuilder pb = new SimpleFeatureBuilder(polygons.getSchema());
+        SimpleFeatureBuilder lb = new SimpleFeatureBuilder(lines.getSchema());
+        int id = 0;
+        for (int i = 0; i < 10; i++) {
+            for (int j = 0; j < 10; j++) {
+                double x = i * 3;
+                double y = j * 3;
+                String shell = (i + j) % 2 == 0 ? coords(x, y, x + 4, y + 4, true) : coords(x,
+                        y, x + 4, y + 4, false);
+                String hole = coords(x + 1, y + 1, x + 2, y + 2, (i % 2) == 0);
+                pb.add(reader.read("POLYGON(" + shell + ", " + hole + ")"));
+                polygons.add(pb.buildFeature("p." + id));
+                lb.add(reader.read("LINESTRING(" + x + " " + y + ", " + (x + 5) + " "
+                        + (y + 2) + ", " + (x + 1) + " " + (y + 4) + ")"));
+                lines.add(lb.buildFeature("l." + id));
+                id++;
+            }
+        }
+        mc = new MapContent();
+    }
+
+    ListFeatureCollection buildCollection(String name, Class<?> geometryType) {
+        SimpleFeatureTypeBuilder tb = new SimpleFeatureTypeBuilder();
+        tb.setName(name);
+        tb.add("geom", geometryType, DefaultGeographicCRS.WGS84);
+        SimpleFeatureType schema = tb.buildFeatureType();
+        return new ListFeatureCollection(schema);
+    }
+
+    String coords(double x1, double y1, double x2, double y2, boolean clockwise) {
+        if (clockwise) {
+            return "(" + x1 + " " + y1 + ", " + x1 + " " + y2 + ", " + x2 + " " + y2 + ", " + x2
+                    + " " + y1 + ", " + x1 + " " + y1 + ")";
+        } else {
+            return "(" + x1 + " " + y1 + ", " + x2 + " " + y1 + ", " + x2 + " " + y2 + ", " + x1
+                    + " " + y2 + ", " + x1 + " " + y1 + ")";
+        }
+    }
+
+    @After
+    public void dispose() {
+        mc.dispose();
+    }
+
+    @Test
+    public void testBatchable() {
+        PolygonStyle2D fill = new PolygonStyle2D();
+        fill.setFill(Color.RED);
+        fill.setFillComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 1f));
+        assertTrue(StyledShapePainter.isBatchable(fill));
+
+        // translucent
+        fill.setFillComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.5f));
+        assertFalse(StyledShapePainter.isBatchable(fill));
+        fill.setFillComposite(null);
+        fill.setFill(new Color(255, 0, 0, 128));
+        assertFalse(StyledShapePainter.isBatchable(fill));
+
+        // fill and stroke
+        fill.setFill(Color.RED);
+        fill.setStroke(new BasicStroke(1));
+        fill.setContour(Color.BLACK);
+        assertFalse(StyledShapePainter.isBatchable(fill));
+
+        LineStyle2D line = new LineStyle2D();
+        line.setStroke(new BasicStroke(1));
+        line.setContour(Color.BLACK);
+        assertTrue(StyledShapePainter.isBatchable(line));
+        line.setContour(null);
+        assertFalse(StyledShapePainter.isBatchable(line));
+
+        MarkStyle2D mark = new MarkStyle2D();
+        mark.setFill(Color.RED);
+        assertFalse(StyledShapePainter.isBatchable(mark));
+        assertFalse(StyledShapePainter.isBatchable(null));
+    }
+
+    @Test
+    public void testPolygonFill() throws Exception {
+        mc.addLayer(new FeatureLayer(polygons, sb.createStyle(sb.createPolygonSymbolizer(null,
+                sb.createFill(Color.BLUE)))));
+        assertSameOutput();
+    }
+
+    @Test
+    public void testFillAndStrokeStyles() throws Exception {
+        // fill and stroke in separate feature type styles, both can be batched
+        Style style = sb.createStyle(sb.createPolygonSymbolizer(null, sb.createFill(Color.BLUE)));
+        FeatureTypeStyle strokes = sb.createFeatureTypeStyle(sb.createLineSymbolizer(sb
+                .createStroke(Color.BLACK, 2)));
+        style.featureTypeStyles().add(strokes);
+        mc.addLayer(new FeatureLayer(polygons, style));
+        mc.addLayer(new FeatureLayer(lines, sb.createStyle(sb.createLineSymbolizer(sb
+                .createStroke(Color.RED, 3)))));
+        assertSameOutput();
+    }
+
+    @Test
+    public void testMixedStyles() throws Exception {
+        // a combined fill and stroke, not batchable, interleaved with a batchable line
+        Style style = sb.createStyle(sb.createPolygonSymbolizer(sb.createStroke(Color.BLACK, 1),
+                sb.createFill(Color.YELLOW)));
+        style.featureTypeStyles().get(0).rules().get(0).symbolizers()
+                .add(sb.createLineSymbolizer(sb.createStroke(Color.GREEN, 2)));
+        mc.addLayer(new FeatureLayer(polygons, style));
+        assertSameOutput();
+    }
+
+    @Test
+    public void testFeatureRenderedEvents() throws Exception {
+        mc.addLayer(new FeatureLayer(polygons, sb.createStyle(sb.createPolygonSymbolizer(null,
+                sb.createFill(Color.BLUE)))));
+        StreamingRenderer renderer = buildRenderer(true);
+        final int[] counts = new int[2];
+        renderer.addRenderListener(new RenderListener() {
+
+            public void featureRenderer(SimpleFeature feature) {
+                counts[0]++;
+            }
+
+            public void errorOccurred(Exception e) {
+                counts[1]++;
+            }
+        });
+        render(renderer);
+        assertEquals(polygons.size(), counts[0]);
+        assertEquals(0, counts[1]);
+    }
+
+    void assertSameOutput() {
+        BufferedImage expected = render(buildRenderer(false));
+        BufferedImage actual = render(buildRenderer(true));
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                assertEquals("Different pixel at " + x + "," + y, expected.getRGB(x, y),
+                        actual.getRGB(x, y));
+            }
+        }
+    }
+
+    StreamingRenderer buildRenderer(boolean batching) {
+        StreamingRenderer renderer = new StreamingRenderer();
+        renderer.setMapContent(mc);
+        Map<Object, Object> hints = new HashMap<Object, Object>();
+        hints.put(StreamingRenderer.SHAPE_BATCHING_KEY, batching);
+        renderer.setRendererHints(hints);
+        return renderer;
+    }
+
+    BufferedImage render(StreamingRenderer renderer) {
+        BufferedImage image = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                RenderingHints.VALUE_ANTIALIAS_OFF);
+        try {
+            renderer.paint(graphics, new Rectangle(SIZE, SIZE), bounds);
+        } finally {
+            graphics.dispose();
+        }
+        return image;
+    }
+}
@@ -17,20 +17,27 @@
 package org.geotools.renderer.lite;
 
 import static java.awt.RenderingHints.*;
+import static org.junit.Assert.*;
 
+import java.awt.Color;
 import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
 import java.io.File;
 
 import org.geotools.data.property.PropertyDataStore;
 import org.geotools.data.simple.SimpleFeatureSource;
 import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.image.test.ImageAssert;
 import org.geotools.map.DefaultMapContext;
 import org.geotools.map.FeatureLayer;
 import org.geotools.map.MapContent;
 import org.geotools.referencing.crs.DefaultGeographicCRS;
 import org.geotools.renderer.style.FontCache;
 import org.geotools.styling.Style;
+import org.geotools.styling.StyleBuilder;
 import org.geotools.test.TestData;
 import org.junit.Before;
 import org.junit.Test;
@@ -108,4 +115,37 @@ public class TileTest {
                 rightTileBounds);
     }
 
+    @Test
+    public void testMetaTile() throws Exception {
+        StyleBuilder sb = new StyleBuilder();
+        Style style = sb.createStyle(sb.createPolygonSymbolizer(null, sb.createFill(Color.BLUE)));
+
+        MapContent mc = new MapContent();
+        mc.addLayer(new FeatureLayer(polyfs, style));
+
+        StreamingRenderer renderer = new StreamingRenderer();
+        renderer.setMapContent(mc);
+        ReferencedEnvelope metaTileBounds = new ReferencedEnvelope(0, 20, 0, 20, polyfs
+                .getBounds().getCoordinateReferenceSystem());
+        BufferedImage[][] tiles = renderer.paintMetaTile(metaTileBounds, 100, 100, 2);
+        assertEquals(2, tiles.length);
+        assertEquals(2, tiles[0].length);
+
+        // the bottom tiles must match the ones painted separately
+        ImageAssert.assertEquals(tile(renderer, leftTileBounds), tiles[1][0], 20);
+        ImageAssert.assertEquals(tile(renderer, rightTileBounds), tiles[1][1], 20);
+        // the top ones are empty
+        RendererBaseTest.assertPixel(tiles[0][0], 50, 50, new Color(0, 0, 0, 0));
+        RendererBaseTest.assertPixel(tiles[0][1], 50, 50, new Color(0, 0, 0, 0));
+        mc.dispose();
+    }
+
+    private BufferedImage tile(StreamingRenderer renderer, ReferencedEnvelope bounds) {
+        BufferedImage tile = new BufferedImage(100, 100, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = tile.createGraphics();
+        renderer.paint(graphics, new Rectangle(100, 100), bounds);
+        graphics.dispose();
+        return tile;
+    }
+
 }
@@ -0,0 +1,211 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.renderer.lite.gridcoverage2d;
+
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+import org.geotools.coverage.CoverageFactoryFinder;
+import org.geotools.coverage.grid.GridCoverage2D;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.geotools.renderer.lite.gridcoverage2d.RasterTileCache.TileKey;
+import org.junit.Test;
+
+public class RasterTileCacheTest {
+
+    static final int TILE_BYTES = 16 * 16 * 4;
+
+    TileKey key(long col, long row) {
+        return new TileKey("coverage", DefaultGeographicCRS.WGS84, 0, 0, 0, null, col, row);
+    }
+
+    BufferedImage tile(Color color, int size) {
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(color);
+        graphics.fillRect(0, 0, size, size);
+        graphics.dispose();
+        return image;
+    }
+
+    @Test
+    public void testPutGet() {
+        RasterTileCache cache = new RasterTileCache(TILE_BYTES * 10, 16);
+        assertNull(cache.get(key(0, 0)));
+        cache.put(key(0, 0), tile(Color.RED, 16));
+
+        BufferedImage cached = cache.get(key(0, 0));
+        assertNotNull(cached);
+        assertEquals(Color.RED.getRGB(), cached.getRGB(0, 0));
+        assertEquals(Color.RED.getRGB(), cached.getRGB(15, 15));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(TILE_BYTES, cache.getSize());
+
+        // replacing does not change the size
+        cache.put(key(0, 0), tile(Color.BLUE, 16));
+        assertEquals(Color.BLUE.getRGB(), cache.get(key(0, 0)).getRGB(5, 5));
+        assertEquals(TILE_BYTES, cache.getSize());
+        assertEquals(1, cache.getTileCount());
+
+        // the other key elements are significant
+        assertNull(cache.get(new TileKey("coverage", DefaultGeographicCRS.WGS84, 0, 0, 1, null,
+                0, 0)));
+        assertNull(cache.get(new TileKey("other", DefaultGeographicCRS.WGS84, 0, 0, 0, null, 0,
+                0)));
+        // styles are compared by equality, not just by hash code
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        cache.put(new TileKey("coverage", DefaultGeographicCRS.WGS84, 0, 0, "Aa", null, 0, 0),
+                tile(Color.GREEN, 16));
+        assertNull(cache.get(new TileKey("coverage", DefaultGeographicCRS.WGS84, 0, 0, "BB",
+                null, 0, 0)));
+
+        cache.clear();
+        assertEquals(0, cache.getSize());
+        assertNull(cache.get(key(0, 0)));
+    }
+
+    @Test
+    public void testInvalidTile() {
+        RasterTileCache cache = new RasterTileCache(TILE_BYTES * 10, 16);
+        try {
+            cache.put(key(0, 0), tile(Color.RED, 8));
+            fail("Should have failed, wrong size");
+        } catch (IllegalArgumentException e) {
+            // fine
+        }
+        try {
+            cache.put(key(0, 0), new BufferedImage(16, 16, BufferedImage.TYPE_3BYTE_BGR));
+            fail("Should have failed, wrong type");
+        } catch (IllegalArgumentException e) {
+            // fine
+        }
+    }
+
+    @Test
+    public void testEviction() {
+        RasterTileCache cache = new RasterTileCache(TILE_BYTES * 3, 16);
+        cache.put(key(0, 0), tile(Color.RED, 16));
+        cache.put(key(1, 0), tile(Color.RED, 16));
+        cache.put(key(2, 0), tile(Color.RED, 16));
+        // access the first, making the second the least recently used
+        assertNotNull(cache.get(key(0, 0)));
+        cache.put(key(3, 0), tile(Color.RED, 16));
+
+        assertEquals(3, cache.getTileCount());
+        assertEquals(TILE_BYTES * 3, cache.getSize());
+        assertNotNull(cache.get(key(0, 0)));
+        assertNull(cache.get(key(1, 0)));
+        assertNotNull(cache.get(key(2, 0)));
+        assertNotNull(cache.get(key(3, 0)));
+    }
+
+    @Test
+    public void testResolutionLevels() {
+        assertEquals(0, RasterTileCache.getLevel(1));
+        assertEquals(-2 * RasterTileCache.RESOLUTION_STEPS, RasterTileCache.getLevel(0.25));
+        assertEquals(0.25, RasterTileCache.getResolution(RasterTileCache.getLevel(0.25)), 1e-12);
+        // nearly identical resolutions share the level
+        assertEquals(RasterTileCache.getLevel(0.1), RasterTileCache.getLevel(0.1 + 1e-12));
+    }
+
+    @Test
+    public void testTileAlignedEnvelope() {
+        RasterTileCache cache = new RasterTileCache(TILE_BYTES, 16);
+        // resolution 0.25, tiles are 4 units wide
+        ReferencedEnvelope envelope = new ReferencedEnvelope(-3, 61, 1, 33,
+                DefaultGeographicCRS.WGS84);
+        ReferencedEnvelope aligned = cache.getTileAlignedEnvelope(envelope, new Rectangle(256,
+                128));
+        assertEquals(new ReferencedEnvelope(-4, 64, 0, 36, DefaultGeographicCRS.WGS84),
+                aligned);
+    }
+
+    @Test
+    public void testPaintCached() throws Exception {
+        // a 128x128 coverage with a red square in the middle, 0.5 degrees per pixel
+        BufferedImage image = new BufferedImage(128, 128, BufferedImage.TYPE_4BYTE_ABGR);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.BLUE);
+        graphics.fillRect(0, 0, 128, 128);
+        graphics.setColor(Color.RED);
+        graphics.fillRect(32, 32, 64, 64);
+        graphics.dispose();
+        ReferencedEnvelope coverageEnvelope = new ReferencedEnvelope(0, 64, 0, 64,
+                DefaultGeographicCRS.WGS84);
+        GridCoverage2D coverage = CoverageFactoryFinder.getGridCoverageFactory(null).create(
+                "test", image, coverageEnvelope);
+
+        // map extent matching the 256 pixel tiles of the cache
+        Rectangle screenSize = new Rectangle(256, 256);
+        BufferedImage expected = paint(coverage, coverageEnvelope, screenSize, null);
+
+        RasterTileCache cache = new RasterTileCache(1024 * 1024);
+        BufferedImage first = paint(coverage, coverageEnvelope, screenSize, cache);
+        assertEquals(0, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getTileCount());
+        assertSameImage(expected, first);
+
+        BufferedImage second = paint(coverage, coverageEnvelope, screenSize, cache);
+        assertEquals(1, cache.getHits());
+        assertSameImage(expected, second);
+
+        // pan by half a tile, the cached tile is reused and the missing ones get computed
+        ReferencedEnvelope panned = new ReferencedEnvelope(32, 96, 0, 64,
+                DefaultGeographicCRS.WGS84);
+        BufferedImage pannedImage = paint(coverage, panned, screenSize, cache);
+        assertEquals(2, cache.getHits());
+        assertEquals(2, cache.getTileCount());
+        // left half comes from the right half of the first tile
+        assertEquals(first.getRGB(192, 128), pannedImage.getRGB(64, 128));
+        assertEquals(Color.RED.getRGB(), pannedImage.getRGB(32, 128));
+        assertEquals(Color.BLUE.getRGB(), pannedImage.getRGB(100, 128));
+        // right half is outside of the coverage
+        assertEquals(0, pannedImage.getRGB(200, 128));
+    }
+
+    BufferedImage paint(GridCoverage2D coverage, ReferencedEnvelope envelope,
+            Rectangle screenSize, RasterTileCache cache) throws Exception {
+        GridCoverageRenderer renderer = new GridCoverageRenderer(DefaultGeographicCRS.WGS84,
+                envelope, screenSize, null);
+        renderer.setTileCache(cache, null);
+        BufferedImage result = new BufferedImage(screenSize.width, screenSize.height,
+                BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = result.createGraphics();
+        try {
+            renderer.paint(graphics, coverage, null);
+        } finally {
+            graphics.dispose();
+        }
+        return result;
+    }
+
+    void assertSameImage(BufferedImage expected, BufferedImage actual) {
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                assertEquals("Different pixel at " + x + "," + y, expected.getRGB(x, y),
+                        actual.getRGB(x, y));
+            }
+        }
+    }
+}
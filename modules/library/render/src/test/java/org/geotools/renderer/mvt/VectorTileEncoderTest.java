@@ -0,0 +1,296 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.renderer.mvt;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.vividsolutions.jts.io.WKTReader;
+
+public class VectorTileEncoderTest {
+
+    WKTReader reader = new WKTReader();
+
+    int[] encode(String wkt) throws Exception {
+        VectorTileEncoder encoder = new VectorTileEncoder();
+        int type = encoder.encodeGeometry(reader.read(wkt));
+        if (type == VectorTileEncoder.UNKNOWN) {
+            return null;
+        }
+        return Arrays.copyOf(encoder.commands, encoder.length);
+    }
+
+    @Test
+    public void testZigZag() {
+        assertEquals(0, VectorTileEncoder.zigZag(0));
+        assertEquals(1, VectorTileEncoder.zigZag(-1));
+        assertEquals(2, VectorTileEncoder.zigZag(1));
+        assertEquals(3, VectorTileEncoder.zigZag(-2));
+        assertEquals(4094, VectorTileEncoder.zigZag(2047));
+    }
+
+    @Test
+    public void testPoint() throws Exception {
+        // examples from the vector tile specification
+        assertArrayEquals(new int[] { 9, 50, 34 }, encode("POINT(25 17)"));
+        assertArrayEquals(new int[] { 17, 10, 14, 3, 9 }, encode("MULTIPOINT((5 7), (3 2))"));
+        // rounding
+        assertArrayEquals(new int[] { 9, 50, 34 }, encode("POINT(24.6 17.4)"));
+    }
+
+    @Test
+    public void testLineString() throws Exception {
+        assertArrayEquals(new int[] { 9, 4, 4, 18, 0, 16, 16, 0 },
+                encode("LINESTRING(2 2, 2 10, 10 10)"));
+        assertArrayEquals(new int[] { 9, 4, 4, 18, 0, 16, 16, 0, 9, 17, 17, 10, 4, 8 },
+                encode("MULTILINESTRING((2 2, 2 10, 10 10), (1 1, 3 5))"));
+        // repeated points are removed
+        assertArrayEquals(new int[] { 9, 4, 4, 18, 0, 16, 16, 0 },
+                encode("LINESTRING(2 2, 2 10, 2.2 10.1, 10 10)"));
+        // collapses to a point
+        assertNull(encode("LINESTRING(2 2, 2.1 2.1)"));
+    }
+
+    @Test
+    public void testPolygon() throws Exception {
+        assertArrayEquals(new int[] { 9, 6, 12, 18, 10, 12, 24, 44, 15 },
+                encode("POLYGON((3 6, 8 12, 20 34, 3 6))"));
+        // reversed shell gets oriented back
+        assertArrayEquals(new int[] { 9, 16, 24, 18, 24, 44, 33, 55, 15 },
+                encode("POLYGON((3 6, 20 34, 8 12, 3 6))"));
+        // the multipolygon example from the specification, shell and hole orientation
+        assertArrayEquals(new int[] { 9, 0, 0, 26, 20, 0, 0, 20, 19, 0, 15, 9, 22, 2, 26, 18,
+                0, 0, 18, 17, 0, 15, 9, 4, 13, 26, 0, 8, 8, 0, 0, 7, 15 },
+                encode("MULTIPOLYGON(((0 0, 10 0, 10 10, 0 10, 0 0)), "
+                        + "((11 11, 20 11, 20 20, 11 20, 11 11), "
+                        + "(13 13, 13 17, 17 17, 17 13, 13 13)))"));
+        // degenerate polygon
+        assertNull(encode("POLYGON((0 0, 0.1 0, 0.1 0.1, 0 0.1, 0 0))"));
+    }
+
+    @Test
+    public void testPolygonOrientation() throws Exception {
+        int[] clockwise = encode("POLYGON((0 0, 10 0, 10 10, 0 10, 0 0))");
+        int[] counterClockwise = encode("POLYGON((0 0, 0 10, 10 10, 10 0, 0 0))");
+        assertArrayEquals(new int[] { 9, 0, 0, 26, 20, 0, 0, 20, 19, 0, 15 }, clockwise);
+        // same ring, walked in the opposite direction
+        assertArrayEquals(new int[] { 9, 20, 0, 26, 0, 20, 19, 0, 0, 19, 15 }, counterClockwise);
+    }
+
+    @Test
+    public void testTile() throws Exception {
+        VectorTileEncoder encoder = new VectorTileEncoder(256);
+        Map<String, Object> attributes = new LinkedHashMap<String, Object>();
+        attributes.put("name", "first");
+        attributes.put("value", 10);
+        attributes.put("missing", null);
+        assertTrue(encoder.addFeature("points", "points.1", attributes, reader.read("POINT(1 1)")));
+        attributes.put("name", "second");
+        assertTrue(encoder.addFeature("points", "points.2", attributes, reader.read("POINT(2 2)")));
+        // duplicate
+        assertFalse(encoder.addFeature("points", "points.2", attributes, reader.read("POINT(2 2)")));
+        // degenerate
+        assertFalse(encoder.addFeature("lines", "lines.1", null, reader.read("LINESTRING(1 1, 1 1)")));
+        assertTrue(encoder.addFeature("lines", "lines.a", null, reader.read("LINESTRING(1 1, 2 2)")));
+
+        List<TileLayer> layers = TileLayer.decode(encoder.encode());
+        assertEquals(2, layers.size());
+        TileLayer points = layers.get(0);
+        assertEquals("points", points.name);
+        assertEquals(256, points.extent);
+        assertEquals(2, points.version);
+        assertEquals(Arrays.asList("name", "value"), points.keys);
+        // "first", "second" and 10, the latter shared
+        assertEquals(3, points.valueCount);
+        assertEquals(2, points.features.size());
+        assertEquals(Long.valueOf(1), points.features.get(0).id);
+        assertArrayEquals(new int[] { 0, 0, 1, 1 }, points.features.get(0).tags);
+        assertArrayEquals(new int[] { 0, 2, 1, 1 }, points.features.get(1).tags);
+        assertEquals(VectorTileEncoder.POINT, points.features.get(1).type);
+        assertArrayEquals(new int[] { 9, 4, 4 }, points.features.get(1).geometry);
+
+        TileLayer lines = layers.get(1);
+        assertEquals("lines", lines.name);
+        assertEquals(1, lines.features.size());
+        assertNull(lines.features.get(0).id);
+        assertEquals(VectorTileEncoder.LINESTRING, lines.features.get(0).type);
+    }
+
+    @Test
+    public void testParseId() {
+        assertEquals(Long.valueOf(12), VectorTileEncoder.parseId("roads.12"));
+        assertEquals(Long.valueOf(12), VectorTileEncoder.parseId("12"));
+        assertNull(VectorTileEncoder.parseId("roads.fid-12"));
+        assertNull(VectorTileEncoder.parseId("roads."));
+        assertNull(VectorTileEncoder.parseId(null));
+    }
+
+    /**
+     * Minimal vector tile decoder, used to verify the encoder output
+     */
+    static class TileLayer {
+        String name;
+
+        int version;
+
+        int extent;
+
+        List<String> keys = new ArrayList<String>();
+
+        int valueCount;
+
+        List<TileFeature> features = new ArrayList<TileFeature>();
+
+        static List<TileLayer> decode(byte[] tile) {
+            List<TileLayer> layers = new ArrayList<TileLayer>();
+            Decoder d = new Decoder(tile, 0, tile.length);
+            while (d.hasMore()) {
+                int tag = (int) d.varint();
+                assertEquals(3, tag >> 3);
+                layers.add(decodeLayer(d.message()));
+            }
+            return layers;
+        }
+
+        static TileLayer decodeLayer(Decoder d) {
+            TileLayer layer = new TileLayer();
+            while (d.hasMore()) {
+                int tag = (int) d.varint();
+                switch (tag >> 3) {
+                case 1:
+                    layer.name = d.string();
+                    break;
+                case 2:
+                    layer.features.add(TileFeature.decode(d.message()));
+                    break;
+                case 3:
+                    layer.keys.add(d.string());
+                    break;
+                case 4:
+                    d.message();
+                    layer.valueCount++;
+                    break;
+                case 5:
+                    layer.extent = (int) d.varint();
+                    break;
+                case 15:
+                    layer.version = (int) d.varint();
+                    break;
+                default:
+                    fail("Unexpected field " + (tag >> 3));
+                }
+            }
+            return layer;
+        }
+    }
+
+    static class TileFeature {
+        Long id;
+
+        int[] tags;
+
+        int type;
+
+        int[] geometry;
+
+        static TileFeature decode(Decoder d) {
+            TileFeature feature = new TileFeature();
+            while (d.hasMore()) {
+                int tag = (int) d.varint();
+                switch (tag >> 3) {
+                case 1:
+                    feature.id = d.varint();
+                    break;
+                case 2:
+                    feature.tags = d.packed();
+                    break;
+                case 3:
+                    feature.type = (int) d.varint();
+                    break;
+                case 4:
+                    feature.geometry = d.packed();
+                    break;
+                default:
+                    fail("Unexpected field " + (tag >> 3));
+                }
+            }
+            return feature;
+        }
+    }
+
+    static class Decoder {
+        byte[] bytes;
+
+        int pos;
+
+        int end;
+
+        Decoder(byte[] bytes, int pos, int end) {
+            this.bytes = bytes;
+            this.pos = pos;
+            this.end = end;
+        }
+
+        boolean hasMore() {
+            return pos < end;
+        }
+
+        long varint() {
+            long result = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[pos++];
+                result |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return result;
+        }
+
+        Decoder message() {
+            int length = (int) varint();
+            Decoder d = new Decoder(bytes, pos, pos + length);
+            pos += length;
+            return d;
+        }
+
+        String string() {
+            Decoder d = message();
+            return new String(bytes, d.pos, d.end - d.pos, ProtobufWriter.UTF8);
+        }
+
+        int[] packed() {
+            Decoder d = message();
+            List<Integer> values = new ArrayList<Integer>();
+            while (d.hasMore()) {
+                values.add((int) d.varint());
+            }
+            int[] result = new int[values.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = values.get(i);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.renderer.mvt;
+
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import org.geotools.data.property.PropertyDataStore;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.map.FeatureLayer;
+import org.geotools.map.MapContent;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.geotools.renderer.lite.StreamingRenderer;
+import org.geotools.renderer.mvt.VectorTileEncoderTest.TileFeature;
+import org.geotools.renderer.mvt.VectorTileEncoderTest.TileLayer;
+import org.geotools.styling.Rule;
+import org.geotools.styling.Style;
+import org.geotools.styling.StyleBuilder;
+import org.geotools.test.TestData;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opengis.filter.FilterFactory;
+
+public class VectorTileRendererTest {
+
+    PropertyDataStore ds;
+
+    MapContent mc;
+
+    ReferencedEnvelope bounds = new ReferencedEnvelope(0, 10, 0, 10,
+            DefaultGeographicCRS.WGS84);
+
+    StyleBuilder sb = new StyleBuilder();
+
+    @Before
+    public void setup() throws Exception {
+        File property = new File(TestData.getResource(StreamingRenderer.class, "point.properties")
+                .toURI());
+        ds = new PropertyDataStore(property.getParentFile());
+        mc = new MapContent();
+    }
+
+    @After
+    public void dispose() {
+        mc.dispose();
+    }
+
+    @Test
+    public void testRuleFiltering() throws Exception {
+        // only the points with id lower than 5, the style uses the "code" attribute
+        FilterFactory ff = CommonFactoryFinder.getFilterFactory(null);
+        Rule rule = sb.createRule(sb.createTextSymbolizer(Color.BLACK,
+                sb.createFont("Serif", 10), "code"));
+        rule.setFilter(ff.less(ff.property("id"), ff.literal(5)));
+        Style style = sb.createStyle();
+        style.featureTypeStyles().add(sb.createFeatureTypeStyle("point", rule));
+        FeatureLayer layer = new FeatureLayer(ds.getFeatureSource("point"), style);
+        layer.setTitle("points");
+        mc.addLayer(layer);
+
+        VectorTileRenderer renderer = new VectorTileRenderer();
+        List<TileLayer> layers = TileLayer.decode(renderer.render(mc, bounds));
+        assertEquals(1, layers.size());
+        TileLayer points = layers.get(0);
+        assertEquals("points", points.name);
+        assertEquals(VectorTileEncoder.DEFAULT_EXTENT, points.extent);
+        assertEquals(5, points.features.size());
+        assertTrue(points.keys.contains("code"));
+        // the attributes not used by the style are not loaded
+        assertFalse(points.keys.contains("rotation"));
+
+        // POINT(2 4) in tile coordinates, the y axis points down
+        TileFeature first = points.features.get(1);
+        assertEquals(Long.valueOf(1), first.id);
+        assertEquals(VectorTileEncoder.POINT, first.type);
+        assertArrayEquals(new int[] { 9, VectorTileEncoder.zigZag(819),
+                VectorTileEncoder.zigZag(2458) }, first.geometry);
+    }
+
+    @Test
+    public void testMultipleSymbolizers() throws Exception {
+        // two symbolizers on the same features, they should be encoded only once
+        Style style = sb.createStyle(sb.createLineSymbolizer(sb.createStroke(Color.BLUE, 3)));
+        style.featureTypeStyles().get(0).rules().get(0).symbolizers()
+                .add(sb.createLineSymbolizer(sb.createStroke(Color.RED, 1)));
+        mc.addLayer(new FeatureLayer(ds.getFeatureSource("line"), style));
+
+        VectorTileRenderer renderer = new VectorTileRenderer();
+        List<TileLayer> layers = TileLayer.decode(renderer.render(mc, bounds));
+        assertEquals(1, layers.size());
+        TileLayer lines = layers.get(0);
+        assertEquals("line", lines.name);
+        assertEquals(6, lines.features.size());
+        for (TileFeature f : lines.features) {
+            assertEquals(VectorTileEncoder.LINESTRING, f.type);
+        }
+    }
+
+    @Test
+    public void testClipping() throws Exception {
+        mc.addLayer(new FeatureLayer(ds.getFeatureSource("line"),
+                sb.createStyle(sb.createLineSymbolizer())));
+
+        // only the left half of the data set, the horizontal lines get clipped at the buffer
+        ReferencedEnvelope half = new ReferencedEnvelope(0, 5, 0, 10,
+                DefaultGeographicCRS.WGS84);
+        VectorTileRenderer renderer = new VectorTileRenderer();
+        renderer.setExtent(256);
+        renderer.setBuffer(16);
+        List<TileLayer> layers = TileLayer.decode(renderer.render(mc, half));
+        TileLayer lines = layers.get(0);
+        assertEquals(256, lines.extent);
+        // three horizontal lines and two vertical ones
+        assertEquals(5, lines.features.size());
+        for (TileFeature f : lines.features) {
+            int x = 0;
+            for (int i = 0; i < f.geometry.length;) {
+                int count = f.geometry[i++] >> 3;
+                for (int j = 0; j < count; j++) {
+                    x += decodeZigZag(f.geometry[i]);
+                    i += 2;
+                    assertTrue("x = " + x + " in " + Arrays.toString(f.geometry), x >= -16
+                            && x <= 256 + 16);
+                }
+            }
+        }
+    }
+
+    int decodeZigZag(int n) {
+        return (n >>> 1) ^ -(n & 1);
+    }
+}
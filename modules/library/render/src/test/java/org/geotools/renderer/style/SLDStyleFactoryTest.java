@@ -368,4 +368,75 @@ public class SLDStyleFactoryTest extends TestCase {
          IconStyle2D icon = (IconStyle2D) sld.createPointStyle(feature, symb, range);
          assertNull(icon);
      }
+
+    public void testSharedStyleCache() throws Exception {
+        final Style2DCache cache = new Style2DCache(10);
+        LineSymbolizer symb = sf.createLineSymbolizer(sf.createStroke(ff.literal("#FF0000"),
+                ff.literal(3)), null);
+
+        // a first factory builds the style and shares it
+        SLDStyleFactory first = new SLDStyleFactory();
+        first.setSharedCache(cache);
+        Style2D style = first.createStyle(feature, symb, range);
+        assertEquals(1, cache.size());
+
+        // a second one, with the same configuration, reuses it, getting a private copy
+        SLDStyleFactory second = new SLDStyleFactory();
+        second.setSharedCache(cache);
+        LineStyle2D shared = (LineStyle2D) second.createStyle(feature, symb, range);
+        assertEquals(1, cache.getHits());
+        assertNotSame(style, shared);
+        assertSame(((LineStyle2D) style).getStroke(), shared.getStroke());
+        // modifying the copy does not affect the other renderings
+        shared.setStroke(null);
+        assertNotNull(((LineStyle2D) new SLDStyleFactory() {
+            {
+                setSharedCache(cache);
+            }
+        }.createStyle(feature, symb, range)).getStroke());
+
+        // a rescaled copy of the symbolizer hits the cache as long as the source is provided
+        LineSymbolizer copy = sf.createLineSymbolizer(sf.createStroke(ff.literal("#FF0000"),
+                ff.literal(3)), null);
+        SLDStyleFactory third = new SLDStyleFactory();
+        third.setSharedCache(cache);
+        third.createStyle(feature, copy, range, symb, 1, 1);
+        assertEquals(3, cache.getHits());
+        // but not if the rescaling is different
+        SLDStyleFactory fourth = new SLDStyleFactory();
+        fourth.setSharedCache(cache);
+        fourth.createStyle(feature, copy, range, symb, 2, 1);
+        assertEquals(3, cache.getHits());
+        assertEquals(2, cache.size());
+
+        // invalidation
+        cache.invalidate(symb);
+        assertEquals(0, cache.size());
+    }
+
+    public void testSharedStyleCacheDynamic() throws Exception {
+        Style2DCache cache = new Style2DCache(10);
+        LineSymbolizer symb = sf.createLineSymbolizer(sf.createStroke(ff.literal("#FF0000"),
+                ff.function("strLength", ff.property("symb"))), null);
+        sld.setSharedCache(cache);
+        sld.createStyle(feature, symb, range);
+        sld.createStyle(feature, symb, range);
+        // attribute dependent styles are not shared
+        assertEquals(0, cache.size());
+        sld.setSharedCache(null);
+    }
+
+    public void testStyle2DCacheEviction() throws Exception {
+        Style2DCache cache = new Style2DCache(2);
+        SLDStyleFactory factory = new SLDStyleFactory();
+        factory.setSharedCache(cache);
+        for (int i = 0; i < 5; i++) {
+            factory.createStyle(feature, sf.createLineSymbolizer(), range);
+        }
+        assertEquals(2, cache.size());
+        assertEquals(3, cache.getEvictions());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
 }
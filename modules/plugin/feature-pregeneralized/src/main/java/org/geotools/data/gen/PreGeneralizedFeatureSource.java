@@ -456,15 +456,23 @@ public class PreGeneralizedFeatureSource implements SimpleFeatureSource {
         return fs;
     }
 
+    /**
+     * The distance used to pick the generalization level. The renderer sends
+     * {@link Hints#GEOMETRY_GENERALIZATION} instead of {@link Hints#GEOMETRY_DISTANCE} when all
+     * the backend feature sources support it, so both are taken into account
+     */
     private Double getRequestedDistance(Query query) {
-        Double result =  (Double) query.getHints().get(Hints.GEOMETRY_DISTANCE);
-        if (result == null) {
-            log.warning("No hint for geometry distance in query, fallback to base feature" );
+        Hints hints = query.getHints();
+        Number distance = (Number) hints.get(Hints.GEOMETRY_DISTANCE);
+        if (distance == null) {
+            distance = (Number) hints.get(Hints.GEOMETRY_GENERALIZATION);
         }
-        else {
-            log.info("Hint geometry distance: "+result);
+        if (distance == null) {
+            log.fine("No hint for geometry distance in query, fallback to base feature");
+            return null;
         }
-        return result;
+        log.fine("Hint geometry distance: " + distance);
+        return distance.doubleValue();
     }
 
     private SimpleFeatureSource getFeatureSourceFor(Query query)
@@ -546,7 +554,7 @@ public class PreGeneralizedFeatureSource implements SimpleFeatureSource {
         buff.append(di.getFeatureName()).append(" ");
         buff.append(di.getGeomPropertyName()).append(" ");
         buff.append(di.getDistance());
-        log.info(buff.toString());
+        log.fine(buff.toString());
     }
 
 }
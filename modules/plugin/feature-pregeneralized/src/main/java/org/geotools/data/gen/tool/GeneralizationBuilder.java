@@ -0,0 +1,343 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.gen.tool;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.geotools.data.DataStore;
+import org.geotools.data.FeatureWriter;
+import org.geotools.data.Transaction;
+import org.geotools.data.gen.info.Generalization;
+import org.geotools.data.gen.info.GeneralizationInfo;
+import org.geotools.data.gen.info.GeneralizationInfos;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.data.simple.SimpleFeatureSource;
+import org.geotools.data.simple.SimpleFeatureStore;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+import org.opengis.filter.Filter;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.simplify.TopologyPreservingSimplifier;
+
+/**
+ * Builds a set of generalization levels for a feature source into a target data store, one
+ * feature type per level, and describes them as a {@link GeneralizationInfo} ready to be used
+ * by a {@link org.geotools.data.gen.PreGeneralizedDataStore}, which will then pick the level
+ * matching the {@link org.geotools.factory.Hints#GEOMETRY_DISTANCE} query hint.
+ * <p>
+ * The geometries are simplified with a {@link TopologyPreservingSimplifier}. Each level is
+ * simplified starting from the previous one, so the coarser levels are cheap to compute, the
+ * features are processed in batches by a pool of worker threads while the calling thread writes
+ * the results, in the same order as the source features.
+ * <p>
+ * The distances can be given explicitly, or computed out of the source bounds by just stating
+ * the number of levels. The build is incremental, {@link #build(Filter)} replaces only the
+ * generalized copies of the features matching the filter, leaving the others untouched.
+ */
+public class GeneralizationBuilder {
+
+    static final int DEFAULT_BATCH_SIZE = 256;
+
+    /**
+     * The width, in pixels, of a map showing the whole data set at the coarsest level
+     */
+    static final int OVERVIEW_WIDTH = 1024;
+
+    SimpleFeatureSource source;
+
+    DataStore target;
+
+    double[] distances;
+
+    int levels = 4;
+
+    int threads;
+
+    int batchSize = DEFAULT_BATCH_SIZE;
+
+    /**
+     * Builds a new generalization builder
+     *
+     * @param source the features to be generalized
+     * @param target the store that will receive the generalization levels, must be writable
+     */
+    public GeneralizationBuilder(SimpleFeatureSource source, DataStore target) {
+        this.source = source;
+        this.target = target;
+        this.threads = Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Sets the generalization distances explicitly, one per level
+     */
+    public void setDistances(double... distances) {
+        if (distances == null || distances.length == 0) {
+            throw new IllegalArgumentException("At least one distance is required");
+        }
+        double[] sorted = distances.clone();
+        Arrays.sort(sorted);
+        if (sorted[0] <= 0) {
+            throw new IllegalArgumentException("The distances must be positive");
+        }
+        this.distances = sorted;
+    }
+
+    /**
+     * Sets the number of levels to be computed when no distance is set explicitly. The coarsest
+     * level distance is the size of a pixel when the whole data set is displayed on a map
+     * {@value #OVERVIEW_WIDTH} pixels wide, every finer level halves the distance of the
+     * previous one
+     */
+    public void setLevels(int levels) {
+        if (levels <= 0) {
+            throw new IllegalArgumentException("The number of levels must be positive");
+        }
+        this.levels = levels;
+    }
+
+    /**
+     * Sets the number of threads simplifying the geometries, if zero or negative the number of
+     * available processors is used
+     */
+    public void setThreads(int threads) {
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * The number of features simplified by a worker thread in one go
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("The batch size must be positive");
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Returns the distances of the levels, in ascending order, computing them out of the source
+     * bounds if they were not set explicitly
+     */
+    public double[] getDistances() throws IOException {
+        if (distances == null) {
+            ReferencedEnvelope bounds = source.getBounds();
+            if (bounds == null || bounds.isEmpty()) {
+                throw new IOException("Cannot compute the generalization distances of "
+                        + source.getName() + ", its bounds are empty");
+            }
+            double coarsest = Math.max(bounds.getWidth(), bounds.getHeight()) / OVERVIEW_WIDTH;
+            double[] computed = new double[levels];
+            for (int i = 0; i < levels; i++) {
+                computed[i] = coarsest / Math.pow(2, levels - 1 - i);
+            }
+            distances = computed;
+        }
+        return distances.clone();
+    }
+
+    /**
+     * The name of the feature type holding the level with the specified index, zero being the
+     * most detailed one
+     */
+    public String getTypeName(int level) {
+        return source.getSchema().getTypeName() + "_gen" + (level + 1);
+    }
+
+    /**
+     * Generalizes all the features of the source, replacing the levels contents
+     */
+    public int build() throws IOException {
+        return build(Filter.INCLUDE);
+    }
+
+    /**
+     * Generalizes the source features matching the filter, creating the levels that do not exist
+     * yet. The existing copies of the matching features are removed from the levels first, so the
+     * filter should not use the geometry, which is different in each level
+     *
+     * @return the number of features generalized
+     */
+    public int build(Filter filter) throws IOException {
+        double[] distances = getDistances();
+        SimpleFeatureType schema = source.getSchema();
+        List<String> typeNames = Arrays.asList(target.getTypeNames());
+
+        List<FeatureWriter<SimpleFeatureType, SimpleFeature>> writers = new ArrayList<FeatureWriter<SimpleFeatureType, SimpleFeature>>();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        SimpleFeatureIterator it = null;
+        int count = 0;
+        try {
+            for (int i = 0; i < distances.length; i++) {
+                String typeName = getTypeName(i);
+                if (typeNames.contains(typeName)) {
+                    SimpleFeatureStore store = (SimpleFeatureStore) target
+                            .getFeatureSource(typeName);
+                    store.removeFeatures(filter);
+                } else {
+                    SimpleFeatureTypeBuilder tb = new SimpleFeatureTypeBuilder();
+                    tb.init(schema);
+                    tb.setName(typeName);
+                    target.createSchema(tb.buildFeatureType());
+                }
+                writers.add(target.getFeatureWriterAppend(typeName, Transaction.AUTO_COMMIT));
+            }
+
+            // keep enough batches in flight to have the workers always busy, while the
+            // results are collected and written in the same order they were submitted
+            it = source.getFeatures(filter).features();
+            LinkedList<Future<Geometry[][]>> pending = new LinkedList<Future<Geometry[][]>>();
+            LinkedList<List<SimpleFeature>> batches = new LinkedList<List<SimpleFeature>>();
+            boolean more = true;
+            while (more || !pending.isEmpty()) {
+                while (more && pending.size() < threads * 2) {
+                    List<SimpleFeature> batch = new ArrayList<SimpleFeature>(batchSize);
+                    while (batch.size() < batchSize && it.hasNext()) {
+                        batch.add(it.next());
+                    }
+                    more = batch.size() == batchSize;
+                    if (!batch.isEmpty()) {
+                        batches.add(batch);
+                        pending.add(executor.submit(new SimplifyTask(batch, distances)));
+                    }
+                }
+
+                if (!pending.isEmpty()) {
+                    Geometry[][] simplified = getBatch(pending.removeFirst());
+                    List<SimpleFeature> batch = batches.removeFirst();
+                    for (int i = 0; i < writers.size(); i++) {
+                        write(writers.get(i), batch, simplified[i]);
+                    }
+                    count += batch.size();
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+            try {
+                if (it != null) {
+                    it.close();
+                }
+            } finally {
+                for (FeatureWriter<SimpleFeatureType, SimpleFeature> w : writers) {
+                    w.close();
+                }
+            }
+        }
+
+        return count;
+    }
+
+    void write(FeatureWriter<SimpleFeatureType, SimpleFeature> writer,
+            List<SimpleFeature> features, Geometry[] geometries) throws IOException {
+        for (int i = 0; i < features.size(); i++) {
+            SimpleFeature feature = features.get(i);
+            SimpleFeature generalized = writer.next();
+            for (AttributeDescriptor ad : feature.getFeatureType().getAttributeDescriptors()) {
+                String name = ad.getLocalName();
+                generalized.setAttribute(name, feature.getAttribute(name));
+            }
+            generalized.setDefaultGeometry(geometries[i]);
+            writer.write();
+        }
+    }
+
+    Geometry[][] getBatch(Future<Geometry[][]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the geometries to be simplified");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException("Failed to simplify the geometries", cause);
+        }
+    }
+
+    /**
+     * Describes the levels built by this object and adds the description to the infos, which can
+     * then be used to build a {@link org.geotools.data.gen.PreGeneralizedDataStore}
+     *
+     * @param infos the infos the description will be added to
+     * @param featureName the name of the feature type exposed by the pregeneralized store
+     * @param sourceDataSourceName the name of the source data store in the repository
+     * @param targetDataSourceName the name of the target data store in the repository
+     */
+    public GeneralizationInfo addGeneralizationInfo(GeneralizationInfos infos,
+            String featureName, String sourceDataSourceName, String targetDataSourceName)
+            throws IOException {
+        SimpleFeatureType schema = source.getSchema();
+        String geomPropertyName = schema.getGeometryDescriptor().getLocalName();
+        GeneralizationInfo info = new GeneralizationInfo(schema.getTypeName(), featureName,
+                geomPropertyName, infos);
+        info.setDataSourceName(sourceDataSourceName);
+        double[] distances = getDistances();
+        for (int i = 0; i < distances.length; i++) {
+            Generalization generalization = new Generalization(distances[i], getTypeName(i),
+                    geomPropertyName, info);
+            generalization.setDataSourceName(targetDataSourceName);
+            info.getGeneralizations().add(generalization);
+        }
+        infos.addGeneralizationInfo(info);
+        return info;
+    }
+
+    /**
+     * Simplifies the geometries of a batch of features at all levels, each level starting from
+     * the previous one
+     */
+    static class SimplifyTask implements Callable<Geometry[][]> {
+
+        List<SimpleFeature> features;
+
+        double[] distances;
+
+        SimplifyTask(List<SimpleFeature> features, double[] distances) {
+            this.features = features;
+            this.distances = distances;
+        }
+
+        public Geometry[][] call() {
+            Geometry[][] result = new Geometry[distances.length][features.size()];
+            for (int i = 0; i < features.size(); i++) {
+                Geometry geometry = (Geometry) features.get(i).getDefaultGeometry();
+                for (int j = 0; j < distances.length; j++) {
+                    if (geometry != null) {
+                        geometry = TopologyPreservingSimplifier.simplify(geometry, distances[j]);
+                    }
+                    result[j][i] = geometry;
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.gen.tool;
+
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+import org.geotools.TestData;
+import org.geotools.data.DefaultRepository;
+import org.geotools.data.Query;
+import org.geotools.data.gen.PreGeneralizedDataStore;
+import org.geotools.data.gen.info.GeneralizationInfos;
+import org.geotools.data.memory.MemoryDataStore;
+import org.geotools.data.shapefile.ShapefileDataStore;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.data.simple.SimpleFeatureSource;
+import org.geotools.factory.Hints;
+import org.geotools.factory.CommonFactoryFinder;
+import org.opengis.filter.Filter;
+import org.opengis.filter.FilterFactory;
+
+import com.vividsolutions.jts.geom.Geometry;
+
+public class GeneralizationBuilderTest extends TestCase {
+
+    ShapefileDataStore sourceStore;
+
+    SimpleFeatureSource source;
+
+    MemoryDataStore target;
+
+    @Override
+    protected void setUp() throws Exception {
+        sourceStore = new ShapefileDataStore(TestData.url("shapes/streams.shp"));
+        source = sourceStore.getFeatureSource();
+        target = new MemoryDataStore();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        sourceStore.dispose();
+        target.dispose();
+    }
+
+    public void testBuildLevels() throws Exception {
+        GeneralizationBuilder builder = new GeneralizationBuilder(source, target);
+        builder.setDistances(20, 5, 10);
+        builder.setThreads(2);
+        builder.setBatchSize(3);
+        int count = source.getFeatures().size();
+        assertEquals(count, builder.build());
+
+        int points = countPoints(source.getFeatures());
+        for (int i = 0; i < 3; i++) {
+            SimpleFeatureSource level = target.getFeatureSource(builder.getTypeName(i));
+            assertEquals(count, level.getFeatures().size());
+            int levelPoints = countPoints(level.getFeatures());
+            assertTrue(levelPoints < points);
+            points = levelPoints;
+        }
+
+        // the pregeneralized store picks the level out of the distance hint
+        DefaultRepository repository = new DefaultRepository();
+        repository.register("streams", sourceStore);
+        repository.register("streams_gen", target);
+        GeneralizationInfos infos = new GeneralizationInfos();
+        builder.addGeneralizationInfo(infos, "GenStreams", "streams", "streams_gen");
+        infos.validate();
+        PreGeneralizedDataStore pgds = new PreGeneralizedDataStore(infos, repository);
+        SimpleFeatureSource fs = pgds.getFeatureSource("GenStreams");
+        assertEquals(countPoints(source.getFeatures()), countPoints(fs.getFeatures(Query.ALL)));
+        assertEquals(countPoints(target.getFeatureSource(builder.getTypeName(1)).getFeatures()),
+                countPoints(fs.getFeatures(distanceQuery(Hints.GEOMETRY_DISTANCE, 12.0))));
+        // the renderer uses this one when the backends support it
+        assertEquals(countPoints(target.getFeatureSource(builder.getTypeName(2)).getFeatures()),
+                countPoints(fs.getFeatures(distanceQuery(Hints.GEOMETRY_GENERALIZATION, 25.0))));
+    }
+
+    public void testIncrementalBuild() throws Exception {
+        GeneralizationBuilder builder = new GeneralizationBuilder(source, target);
+        builder.setLevels(3);
+        double[] distances = builder.getDistances();
+        assertEquals(3, distances.length);
+        assertEquals(distances[2], distances[1] * 2, 1e-9);
+        assertEquals(distances[1], distances[0] * 2, 1e-9);
+
+        FilterFactory ff = CommonFactoryFinder.getFilterFactory(null);
+        Filter filter = ff.equals(ff.property("CAT_ID"), ff.literal(2));
+        int filtered = source.getFeatures(filter).size();
+        assertTrue(filtered > 0);
+        assertEquals(filtered, builder.build(filter));
+        assertEquals(filtered, target.getFeatureSource(builder.getTypeName(0)).getFeatures()
+                .size());
+
+        // generalizing everything replaces the existing copies
+        int count = source.getFeatures().size();
+        builder.build();
+        builder.build(filter);
+        for (int i = 0; i < distances.length; i++) {
+            SimpleFeatureSource level = target.getFeatureSource(builder.getTypeName(i));
+            assertEquals(count, level.getFeatures().size());
+            assertEquals(filtered, level.getFeatures(filter).size());
+        }
+    }
+
+    Query distanceQuery(Hints.Key key, double distance) {
+        Query q = new Query("GenStreams");
+        q.getHints().put(key, distance);
+        return q;
+    }
+
+    int countPoints(SimpleFeatureCollection fc) throws IOException {
+        int points = 0;
+        SimpleFeatureIterator it = fc.features();
+        try {
+            while (it.hasNext()) {
+                points += ((Geometry) it.next().getDefaultGeometry()).getNumPoints();
+            }
+        } finally {
+            it.close();
+        }
+        return points;
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.postgis;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.geotools.geometry.jts.LiteCoordinateSequence;
+import org.geotools.geometry.jts.LiteCoordinateSequenceFactory;
+
+import com.vividsolutions.jts.geom.CoordinateSequence;
+import com.vividsolutions.jts.geom.CoordinateSequenceFactory;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.LinearRing;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.geom.PrecisionModel;
+import com.vividsolutions.jts.geom.impl.PackedCoordinateSequence;
+import com.vividsolutions.jts.geom.impl.PackedCoordinateSequenceFactory;
+import com.vividsolutions.jts.io.ParseException;
+
+/**
+ * Parses WKB and PostGIS EWKB into geometries, reading the ordinates straight into the
+ * backing array of a {@link LiteCoordinateSequence} or a {@link PackedCoordinateSequence} when the
+ * geometry factory builds them, without creating a {@link com.vividsolutions.jts.geom.Coordinate}
+ * for each point. With any other coordinate sequence factory the ordinates are set one by one,
+ * as the JTS reader does.
+ * <p>
+ * Both the EWKB flags and the ISO type codes are understood for the Z and M dimensions, the
+ * measures are skipped. The SRID found in EWKB is set in the geometries.
+ */
+public class PackedWKBReader {
+
+    static final int WKB_POINT = 1;
+
+    static final int WKB_LINESTRING = 2;
+
+    static final int WKB_POLYGON = 3;
+
+    static final int WKB_MULTIPOINT = 4;
+
+    static final int WKB_MULTILINESTRING = 5;
+
+    static final int WKB_MULTIPOLYGON = 6;
+
+    static final int WKB_GEOMETRYCOLLECTION = 7;
+
+    static final int EWKB_Z = 0x80000000;
+
+    static final int EWKB_M = 0x40000000;
+
+    static final int EWKB_SRID = 0x20000000;
+
+    GeometryFactory factory;
+
+    CoordinateSequenceFactory csFactory;
+
+    PrecisionModel precisionModel;
+
+    /**
+     * True if the sequences are built out of a double[]
+     */
+    boolean packed;
+
+    ByteBuffer buffer;
+
+    public PackedWKBReader(GeometryFactory factory) {
+        setGeometryFactory(factory);
+    }
+
+    public void setGeometryFactory(GeometryFactory factory) {
+        this.factory = factory;
+        this.csFactory = factory.getCoordinateSequenceFactory();
+        this.precisionModel = factory.getPrecisionModel();
+        this.packed = csFactory instanceof LiteCoordinateSequenceFactory
+                || (csFactory instanceof PackedCoordinateSequenceFactory && ((PackedCoordinateSequenceFactory) csFactory)
+                        .getType() == PackedCoordinateSequenceFactory.DOUBLE);
+    }
+
+    /**
+     * Parses a WKB or EWKB geometry
+     */
+    public Geometry read(byte[] wkb) throws ParseException {
+        buffer = ByteBuffer.wrap(wkb);
+        try {
+            return readGeometry();
+        } catch (BufferUnderflowException e) {
+            throw new ParseException("Unexpected end of the WKB data");
+        } finally {
+            buffer = null;
+        }
+    }
+
+    Geometry readGeometry() throws ParseException {
+        // each geometry, including the nested ones, can change the byte order
+        byte order = buffer.get();
+        buffer.order(order == 1 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+        int typeInt = buffer.getInt();
+
+        boolean hasZ = (typeInt & EWKB_Z) != 0;
+        boolean hasM = (typeInt & EWKB_M) != 0;
+        int srid = (typeInt & EWKB_SRID) != 0 ? buffer.getInt() : 0;
+        int type = typeInt & 0xFFFF;
+        // ISO WKB uses 1000, 2000 and 3000 offsets for Z, M and ZM
+        int iso = type / 1000;
+        type = type % 1000;
+        hasZ |= iso == 1 || iso == 3;
+        hasM |= iso == 2 || iso == 3;
+        int inputDimension = 2 + (hasZ ? 1 : 0) + (hasM ? 1 : 0);
+        int dimension = hasZ ? 3 : 2;
+
+        Geometry result;
+        switch (type) {
+        case WKB_POINT:
+            result = factory.createPoint(readSequence(1, inputDimension, dimension));
+            break;
+        case WKB_LINESTRING:
+            result = factory.createLineString(readSequence(buffer.getInt(), inputDimension,
+                    dimension));
+            break;
+        case WKB_POLYGON:
+            result = readPolygon(inputDimension, dimension);
+            break;
+        case WKB_MULTIPOINT: {
+            Point[] points = new Point[buffer.getInt()];
+            for (int i = 0; i < points.length; i++) {
+                points[i] = (Point) readNested(Point.class);
+            }
+            result = factory.createMultiPoint(points);
+            break;
+        }
+        case WKB_MULTILINESTRING: {
+            LineString[] lines = new LineString[buffer.getInt()];
+            for (int i = 0; i < lines.length; i++) {
+                lines[i] = (LineString) readNested(LineString.class);
+            }
+            result = factory.createMultiLineString(lines);
+            break;
+        }
+        case WKB_MULTIPOLYGON: {
+            Polygon[] polygons = new Polygon[buffer.getInt()];
+            for (int i = 0; i < polygons.length; i++) {
+                polygons[i] = (Polygon) readNested(Polygon.class);
+            }
+            result = factory.createMultiPolygon(polygons);
+            break;
+        }
+        case WKB_GEOMETRYCOLLECTION: {
+            Geometry[] geometries = new Geometry[buffer.getInt()];
+            for (int i = 0; i < geometries.length; i++) {
+                geometries[i] = readGeometry();
+            }
+            result = factory.createGeometryCollection(geometries);
+            break;
+        }
+        default:
+            throw new ParseException("Unknown WKB type " + type);
+        }
+
+        if (srid != 0) {
+            result.setSRID(srid);
+        }
+        return result;
+    }
+
+    Geometry readNested(Class<? extends Geometry> expected) throws ParseException {
+        Geometry g = readGeometry();
+        if (!expected.isInstance(g)) {
+            throw new ParseException("Expected a " + expected.getSimpleName() + " but found a "
+                    + g.getGeometryType());
+        }
+        return g;
+    }
+
+    Polygon readPolygon(int inputDimension, int dimension) throws ParseException {
+        int numRings = buffer.getInt();
+        if (numRings == 0) {
+            return factory.createPolygon(null, null);
+        }
+        LinearRing shell = factory.createLinearRing(readSequence(buffer.getInt(),
+                inputDimension, dimension));
+        LinearRing[] holes = new LinearRing[numRings - 1];
+        for (int i = 0; i < holes.length; i++) {
+            holes[i] = factory.createLinearRing(readSequence(buffer.getInt(), inputDimension,
+                    dimension));
+        }
+        return factory.createPolygon(shell, holes);
+    }
+
+    /**
+     * Reads the points of a sequence, skipping the measures if any
+     */
+    CoordinateSequence readSequence(int size, int inputDimension, int dimension)
+            throws ParseException {
+        if (size < 0 || (long) size * inputDimension * 8 > buffer.remaining()) {
+            throw new ParseException("Invalid number of points " + size);
+        }
+        int skip = (inputDimension - dimension) * 8;
+        boolean floating = precisionModel.isFloating();
+
+        if (packed) {
+            double[] ordinates = new double[size * dimension];
+            int pos = buffer.position();
+            for (int i = 0, j = 0; i < size; i++) {
+                for (int d = 0; d < dimension; d++, pos += 8) {
+                    ordinates[j++] = buffer.getDouble(pos);
+                }
+                pos += skip;
+            }
+            buffer.position(pos);
+            if (!floating) {
+                for (int i = 0; i < ordinates.length; i += dimension) {
+                    ordinates[i] = precisionModel.makePrecise(ordinates[i]);
+                    ordinates[i + 1] = precisionModel.makePrecise(ordinates[i + 1]);
+                }
+            }
+            if (csFactory instanceof LiteCoordinateSequenceFactory) {
+                return new LiteCoordinateSequence(ordinates, dimension);
+            } else {
+                return new PackedCoordinateSequence.Double(ordinates, dimension);
+            }
+        }
+
+        CoordinateSequence cs = csFactory.create(size, dimension);
+        for (int i = 0; i < size; i++) {
+            for (int d = 0; d < dimension; d++) {
+                double value = buffer.getDouble();
+                if (d < 2 && !floating) {
+                    value = precisionModel.makePrecise(value);
+                }
+                cs.setOrdinate(i, d, value);
+            }
+            if (skip > 0) {
+                buffer.position(buffer.position() + skip);
+            }
+        }
+        return cs;
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.postgis;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Wrapper;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geotools.data.jdbc.datasource.DataSourceFinder;
+import org.geotools.data.jdbc.datasource.UnWrapper;
+import org.geotools.factory.Hints;
+import org.geotools.jdbc.JDBCDataStore;
+import org.geotools.jdbc.PrimaryKey;
+import org.geotools.jdbc.PrimaryKeyColumn;
+import org.geotools.jdbc.SQLDialect;
+import org.geotools.util.logging.Logging;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+import org.opengis.feature.type.GeometryDescriptor;
+import org.postgresql.PGConnection;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.LinearRing;
+import com.vividsolutions.jts.io.WKBWriter;
+
+/**
+ * Loads batches of features in a table with <code>COPY ... FROM STDIN</code>, which is
+ * significantly faster than running one insert statement per feature.
+ * <p>
+ * The rows are sent in the COPY text format, with the geometries encoded as hex EWKB, the same
+ * representation PostGIS uses to output them. The text format is used instead of the binary one
+ * as the latter would require to know the exact database type of each column in advance.
+ */
+class PostGISBulkLoader {
+
+    static final Logger LOGGER = Logging.getLogger(PostGISBulkLoader.class);
+
+    static final String NULL = "\\N";
+
+    JDBCDataStore dataStore;
+
+    SQLDialect dialect;
+
+    public PostGISBulkLoader(JDBCDataStore dataStore, SQLDialect dialect) {
+        this.dataStore = dataStore;
+        this.dialect = dialect;
+    }
+
+    /**
+     * Copies the features into the feature type table, along with their primary key values
+     */
+    public void load(SimpleFeatureType featureType, List<SimpleFeature> features,
+            PrimaryKey key, List<List<Object>> keyValues, Connection cx) throws SQLException,
+            IOException {
+        // the attributes to be copied, skipping the exposed pk columns, whose values come
+        // from the key values
+        Set<String> pkColumnNames = new HashSet<String>();
+        for (PrimaryKeyColumn col : key.getColumns()) {
+            pkColumnNames.add(col.getName());
+        }
+        List<AttributeDescriptor> attributes = new ArrayList<AttributeDescriptor>();
+        for (AttributeDescriptor ad : featureType.getAttributeDescriptors()) {
+            if (!pkColumnNames.contains(ad.getLocalName())) {
+                attributes.add(ad);
+            }
+        }
+
+        StringBuffer sql = new StringBuffer("COPY ");
+        if (dataStore.getDatabaseSchema() != null) {
+            dialect.encodeSchemaName(dataStore.getDatabaseSchema(), sql);
+            sql.append(".");
+        }
+        dialect.encodeTableName(featureType.getTypeName(), sql);
+        sql.append(" (");
+        for (AttributeDescriptor ad : attributes) {
+            dialect.encodeColumnName(ad.getLocalName(), sql);
+            sql.append(",");
+        }
+        for (PrimaryKeyColumn col : key.getColumns()) {
+            dialect.encodeColumnName(col.getName(), sql);
+            sql.append(",");
+        }
+        sql.setLength(sql.length() - 1);
+        sql.append(") FROM STDIN");
+        LOGGER.log(Level.FINE, "Copying {0} features: {1}", new Object[] { features.size(), sql });
+
+        StringBuilder rows = new StringBuilder();
+        for (int i = 0; i < features.size(); i++) {
+            SimpleFeature feature = features.get(i);
+            for (AttributeDescriptor ad : attributes) {
+                Object value = feature.getAttribute(ad.getLocalName());
+                if (ad instanceof GeometryDescriptor) {
+                    value = encodeGeometry((Geometry) value, ad);
+                }
+                appendValue(value, rows);
+                rows.append('\t');
+            }
+            for (Object value : keyValues.get(i)) {
+                appendValue(value, rows);
+                rows.append('\t');
+            }
+            rows.setCharAt(rows.length() - 1, '\n');
+        }
+
+        PGConnection pgcx = unwrapConnection(cx);
+        pgcx.getCopyAPI().copyIn(sql.toString(), new StringReader(rows.toString()));
+    }
+
+    /**
+     * Encodes the geometry as hex EWKB, which the geometry and geography input functions accept
+     */
+    String encodeGeometry(Geometry g, AttributeDescriptor descriptor) {
+        if (g == null || g.isEmpty()) {
+            return null;
+        }
+        if (g instanceof LinearRing) {
+            // postgis does not handle linear rings, convert to just a line string
+            g = g.getFactory().createLineString(((LinearRing) g).getCoordinateSequence());
+        }
+
+        // the store records the native srid and dimension of the columns, use the ones of the
+        // geometry only as a fallback
+        Integer srid = (Integer) descriptor.getUserData().get(JDBCDataStore.JDBC_NATIVE_SRID);
+        Integer dimension = (Integer) descriptor.getUserData().get(Hints.COORDINATE_DIMENSION);
+        int outputSrid = srid != null && srid > 0 ? srid : g.getSRID();
+        int outputDimension = dimension != null && dimension > 2 ? 3 : 2;
+
+        int originalSrid = g.getSRID();
+        try {
+            g.setSRID(outputSrid);
+            WKBWriter writer = new WKBWriter(outputDimension, outputSrid > 0);
+            return WKBWriter.toHex(writer.write(g));
+        } finally {
+            g.setSRID(originalSrid);
+        }
+    }
+
+    /**
+     * Appends a value in the COPY text format, escaping the delimiters
+     */
+    static void appendValue(Object value, StringBuilder sb) {
+        if (value == null) {
+            sb.append(NULL);
+            return;
+        }
+
+        String text;
+        if (value instanceof Boolean) {
+            text = ((Boolean) value).booleanValue() ? "t" : "f";
+        } else if (value instanceof byte[]) {
+            text = "\\x" + WKBWriter.toHex((byte[]) value);
+        } else if (value instanceof java.sql.Date || value instanceof Time) {
+            text = value.toString();
+        } else if (value instanceof Date) {
+            // the offset makes it work with columns with and without time zone alike,
+            // the latter just ignore it
+            text = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSSZ").format((Date) value);
+        } else {
+            text = value.toString();
+        }
+
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+            case '\\':
+                sb.append("\\\\");
+                break;
+            case '\t':
+                sb.append("\\t");
+                break;
+            case '\n':
+                sb.append("\\n");
+                break;
+            case '\r':
+                sb.append("\\r");
+                break;
+            default:
+                sb.append(c);
+            }
+        }
+    }
+
+    /**
+     * Obtains the native PostgreSQL connection, needed to access the COPY API
+     */
+    PGConnection unwrapConnection(Connection cx) throws SQLException {
+        if (cx instanceof PGConnection) {
+            return (PGConnection) cx;
+        }
+
+        try {
+            UnWrapper unwrapper = DataSourceFinder.getUnWrapper(cx);
+            if (unwrapper != null) {
+                Connection uwcx = unwrapper.unwrap(cx);
+                if (uwcx instanceof PGConnection) {
+                    return (PGConnection) uwcx;
+                }
+            } else if (cx instanceof Wrapper) {
+                // try to use java 6 unwrapping
+                try {
+                    Wrapper w = cx;
+                    if (w.isWrapperFor(PGConnection.class)) {
+                        return w.unwrap(PGConnection.class);
+                    }
+                } catch (Throwable t) {
+                    // not a mistake, old DBCP versions will throw an Error here, we need to catch
+                    // it
+                    LOGGER.log(Level.FINER, "Failed to unwrap connection using java 6 facilities",
+                            t);
+                }
+            }
+        } catch (IOException e) {
+            throw (SQLException) new SQLException(
+                    "Could not obtain native PostgreSQL connection.").initCause(e);
+        }
+
+        throw new SQLException("Could not obtain native PostgreSQL connection for "
+                + cx.getClass());
+    }
+}
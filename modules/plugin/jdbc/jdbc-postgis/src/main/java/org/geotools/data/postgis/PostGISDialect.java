@@ -40,8 +40,11 @@ import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.jdbc.BasicSQLDialect;
 import org.geotools.jdbc.ColumnMetadata;
 import org.geotools.jdbc.JDBCDataStore;
+import org.geotools.jdbc.PrimaryKey;
+import org.geotools.jdbc.PrimaryKeyColumn;
 import org.geotools.referencing.CRS;
 import org.geotools.util.Version;
+import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.feature.type.AttributeDescriptor;
 import org.opengis.feature.type.GeometryDescriptor;
@@ -127,6 +130,12 @@ public class PostGISDialect extends BasicSQLDialect {
     
     boolean simplifyEnabled = true;
     
+    boolean screenMapEnabled = true;
+    
+    boolean copyInsertEnabled = false;
+    
+    boolean binaryGeometryTransferEnabled = false;
+    
     Version version, pgsqlVersion;
 
     public boolean isLooseBBOXEnabled() {
@@ -169,6 +178,50 @@ public class PostGISDialect extends BasicSQLDialect {
     public void setSimplifyEnabled(boolean simplifyEnabled) {
         this.simplifyEnabled = simplifyEnabled;
     }
+    
+    public boolean isScreenMapEnabled() {
+        return screenMapEnabled;
+    }
+
+    /**
+     * Enables/disables the DISTINCT ON based removal of the features sharing 
+     * the same pixel when the Query contains a screen map hint
+     * 
+     * @param screenMapEnabled
+     */
+    public void setScreenMapEnabled(boolean screenMapEnabled) {
+        this.screenMapEnabled = screenMapEnabled;
+    }
+    
+    public boolean isCopyInsertEnabled() {
+        return copyInsertEnabled;
+    }
+
+    /**
+     * Enables/disables loading the batches of new features with COPY instead of
+     * INSERT statements, see {@link JDBCDataStore#setBatchInsertSize(int)}
+     * 
+     * @param copyInsertEnabled
+     */
+    public void setCopyInsertEnabled(boolean copyInsertEnabled) {
+        this.copyInsertEnabled = copyInsertEnabled;
+    }
+    
+    public boolean isBinaryGeometryTransferEnabled() {
+        return binaryGeometryTransferEnabled;
+    }
+
+    /**
+     * Enables/disables reading the geometries as raw WKB bytes instead of base64 encoded
+     * text. Pays off only if the driver transfers bytea values with the binary protocol,
+     * which requires prepared statements and the <code>binaryTransferEnable=BYTEA</code>
+     * connection property, otherwise they are sent as hex text, which is larger than base64
+     * 
+     * @param binaryGeometryTransferEnabled
+     */
+    public void setBinaryGeometryTransferEnabled(boolean binaryGeometryTransferEnabled) {
+        this.binaryGeometryTransferEnabled = binaryGeometryTransferEnabled;
+    }
 
 
     @Override
@@ -226,6 +279,7 @@ public class PostGISDialect extends BasicSQLDialect {
         }  else {
             reader.setGeometryFactory(factory);
         }
+        reader.setBase64EncodingEnabled(!binaryGeometryTransferEnabled);
         return reader;
     }
 
@@ -242,25 +296,42 @@ public class PostGISDialect extends BasicSQLDialect {
         boolean geography = "geography".equals(gatt.getUserData().get(
                 JDBCDataStore.JDBC_NATIVE_TYPENAME));
     
+        encodeBase64Start(sql);
         if (geography) {
-            sql.append("encode(ST_AsBinary(");
+            sql.append("ST_AsBinary(");
             encodeColumnName(prefix, gatt.getLocalName(), sql);
-            sql.append("),'base64')");
+            sql.append(")");
         }
         else {
             boolean force2D = hints != null && hints.containsKey(Hints.FEATURE_2D) && 
                 Boolean.TRUE.equals(hints.get(Hints.FEATURE_2D));
 
             if (force2D) {
-                sql.append("encode(ST_AsBinary(ST_Force_2D(");
+                sql.append("ST_AsBinary(ST_Force_2D(");
                 encodeColumnName(prefix, gatt.getLocalName(), sql);
-                sql.append(")),'base64')");
+                sql.append("))");
             } else {
-                sql.append("encode(ST_AsEWKB(");
+                sql.append("ST_AsEWKB(");
                 encodeColumnName(prefix, gatt.getLocalName(), sql);
-                sql.append("),'base64')");
+                sql.append(")");
             }
         }
+        encodeBase64End(sql);
+    }
+    
+    /**
+     * Opens the base64 encoding of the WKB, unless the geometries are read as raw bytes
+     */
+    void encodeBase64Start(StringBuffer sql) {
+        if (!binaryGeometryTransferEnabled) {
+            sql.append("encode(");
+        }
+    }
+    
+    void encodeBase64End(StringBuffer sql) {
+        if (!binaryGeometryTransferEnabled) {
+            sql.append(",'base64')");
+        }
     }
     
     @Override
@@ -272,15 +343,94 @@ public class PostGISDialect extends BasicSQLDialect {
             boolean geography = "geography".equals(gatt.getUserData().get(
                     JDBCDataStore.JDBC_NATIVE_TYPENAME));
     
+            encodeBase64Start(sql);
             if (geography) {
-                sql.append("encode(ST_AsBinary(");
+                sql.append("ST_AsBinary(");
                 encodeColumnName(prefix, gatt.getLocalName(), sql);
-                sql.append("),'base64')");
+                sql.append(")");
             } else {
-                sql.append("encode(ST_AsBinary(ST_Simplify(ST_Force_2D(");
+                sql.append("ST_AsBinary(ST_Simplify(ST_Force_2D(");
                 encodeColumnName(prefix, gatt.getLocalName(), sql);
-                sql.append("), "  + distance + ")),'base64')");
+                sql.append("), "  + distance + "))");
             }
+            encodeBase64End(sql);
+        }
+    }
+
+    @Override
+    public void encodeScreenMapDistinct(GeometryDescriptor gatt, String prefix, PrimaryKey key,
+            double spanX, double spanY, StringBuffer sql) {
+        if(!isScreenMapEnabled()) {
+            super.encodeScreenMapDistinct(gatt, prefix, key, spanX, spanY, sql);
+        } else {
+            encodeScreenMapDistinct(gatt, prefix, key, spanX, spanY, sql, null);
+        }
+    }
+    
+    /**
+     * Encodes the DISTINCT ON clause, the spans are encoded as placeholders and added to
+     * <code>values</code> if not null, as literals otherwise
+     */
+    void encodeScreenMapDistinct(GeometryDescriptor gatt, String prefix, PrimaryKey key,
+            double spanX, double spanY, StringBuffer sql, List<Object> values) {
+        // the small features are grouped by the cell containing their bounds center, 
+        // the others are kept apart by their primary key
+        sql.append("DISTINCT ON (CASE WHEN ");
+        encodeScreenMapSmall(gatt, prefix, spanX, spanY, sql, values);
+        sql.append(" THEN floor((ST_XMin(");
+        encodeScreenMapGeometry(gatt, prefix, sql);
+        sql.append(") + ST_XMax(");
+        encodeScreenMapGeometry(gatt, prefix, sql);
+        sql.append(")) / ");
+        encodeScreenMapSpan(2 * spanX, sql, values);
+        sql.append(") END, CASE WHEN ");
+        encodeScreenMapSmall(gatt, prefix, spanX, spanY, sql, values);
+        sql.append(" THEN floor((ST_YMin(");
+        encodeScreenMapGeometry(gatt, prefix, sql);
+        sql.append(") + ST_YMax(");
+        encodeScreenMapGeometry(gatt, prefix, sql);
+        sql.append(")) / ");
+        encodeScreenMapSpan(2 * spanY, sql, values);
+        sql.append(") END");
+        for (PrimaryKeyColumn col : key.getColumns()) {
+            sql.append(", CASE WHEN ");
+            encodeScreenMapSmall(gatt, prefix, spanX, spanY, sql, values);
+            sql.append(" THEN NULL ELSE ");
+            encodeColumnName(prefix, col.getName(), sql);
+            sql.append(" END");
+        }
+        sql.append(")");
+    }
+    
+    private void encodeScreenMapSmall(GeometryDescriptor gatt, String prefix, double spanX,
+            double spanY, StringBuffer sql, List<Object> values) {
+        sql.append("ST_XMax(");
+        encodeScreenMapGeometry(gatt, prefix, sql);
+        sql.append(") - ST_XMin(");
+        encodeScreenMapGeometry(gatt, prefix, sql);
+        sql.append(") < ");
+        encodeScreenMapSpan(spanX, sql, values);
+        sql.append(" AND ST_YMax(");
+        encodeScreenMapGeometry(gatt, prefix, sql);
+        sql.append(") - ST_YMin(");
+        encodeScreenMapGeometry(gatt, prefix, sql);
+        sql.append(") < ");
+        encodeScreenMapSpan(spanY, sql, values);
+    }
+    
+    private void encodeScreenMapSpan(double span, StringBuffer sql, List<Object> values) {
+        if (values != null) {
+            sql.append("?");
+            values.add(span);
+        } else {
+            encodeValue(span, Double.class, sql);
+        }
+    }
+    
+    private void encodeScreenMapGeometry(GeometryDescriptor gatt, String prefix, StringBuffer sql) {
+        encodeColumnName(prefix, gatt.getLocalName(), sql);
+        if ("geography".equals(gatt.getUserData().get(JDBCDataStore.JDBC_NATIVE_TYPENAME))) {
+            sql.append("::geometry");
         }
     }
 
@@ -687,6 +837,53 @@ public class PostGISDialect extends BasicSQLDialect {
         return null;
     }
 
+    @Override
+    public List<Object> getNextSequenceValues(String schemaName, String sequenceName,
+            int count, Connection cx) throws SQLException {
+        Statement st = cx.createStatement();
+        try {
+            String sql = "SELECT nextval('" + sequenceName + "') FROM generate_series(1, "
+                    + count + ")";
+
+            dataStore.getLogger().fine(sql);
+            ResultSet rs = st.executeQuery(sql);
+            try {
+                List<Object> values = new ArrayList<Object>(count);
+                while (rs.next()) {
+                    values.add(rs.getLong(1));
+                }
+                return values;
+            } finally {
+                dataStore.closeSafe(rs);
+            }
+        } finally {
+            dataStore.closeSafe(st);
+        }
+    }
+
+    @Override
+    public List<Object> getNextAutoGeneratedValues(String schemaName, String tableName,
+            String columnName, int count, Connection cx) throws SQLException {
+        // serial columns are backed by a sequence, reserve the values from it
+        String sequenceName = getSequenceForColumn(schemaName, tableName, columnName, cx);
+        if (sequenceName == null) {
+            return null;
+        }
+        return getNextSequenceValues(schemaName, sequenceName, count, cx);
+    }
+
+    @Override
+    public boolean isBulkInsertSupported() {
+        return copyInsertEnabled;
+    }
+
+    @Override
+    public void bulkInsert(SimpleFeatureType featureType, List<SimpleFeature> features,
+            PrimaryKey key, List<List<Object>> keyValues, Connection cx) throws SQLException,
+            IOException {
+        new PostGISBulkLoader(dataStore, this).load(featureType, features, key, keyValues, cx);
+    }
+
     @Override
     public boolean lookupGeneratedValuesPostInsert() {
         return true;
@@ -1095,6 +1292,9 @@ public class PostGISDialect extends BasicSQLDialect {
         if(isSimplifyEnabled()) {
             hints.add(Hints.GEOMETRY_SIMPLIFICATION);
         }
+        if(isScreenMapEnabled()) {
+            hints.add(Hints.SCREENMAP);
+        }
     }
     
 }
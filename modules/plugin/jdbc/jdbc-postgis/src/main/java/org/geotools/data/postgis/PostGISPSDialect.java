@@ -21,16 +21,24 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Types;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+import org.geotools.data.jdbc.datasource.DataSourceFinder;
+import org.geotools.data.jdbc.datasource.UnWrapper;
 import org.geotools.factory.Hints;
 import org.geotools.jdbc.ColumnMetadata;
 import org.geotools.jdbc.JDBCDataStore;
 import org.geotools.jdbc.PreparedFilterToSQL;
 import org.geotools.jdbc.PreparedStatementSQLDialect;
+import org.geotools.jdbc.PrimaryKey;
+import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.feature.type.GeometryDescriptor;
+import org.postgresql.PGStatement;
 
 import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
@@ -96,6 +104,23 @@ public class PostGISPSDialect extends PreparedStatementSQLDialect {
         delegate.encodeGeometryEnvelope(tableName, geometryColumn, sql);
     }
 
+    @Override
+    public void encodeScreenMapDistinct(GeometryDescriptor gatt, String prefix, PrimaryKey key,
+            double spanX, double spanY, StringBuffer sql, List<Object> values) {
+        if (!delegate.isScreenMapEnabled()) {
+            super.encodeScreenMapDistinct(gatt, prefix, key, spanX, spanY, sql, values);
+        } else {
+            delegate.encodeScreenMapDistinct(gatt, prefix, key, spanX, spanY, sql, values);
+        }
+    }
+
+    @Override
+    protected void addSupportedHints(Set<Hints.Key> hints) {
+        if (delegate.isScreenMapEnabled()) {
+            hints.add(Hints.SCREENMAP);
+        }
+    }
+
 
     public void encodePrimaryKey(String column, StringBuffer sql) {
         delegate.encodePrimaryKey(column, sql);
@@ -147,6 +172,30 @@ public class PostGISPSDialect extends PreparedStatementSQLDialect {
                 cx);
     }
 
+    @Override
+    public List<Object> getNextSequenceValues(String schemaName, String sequenceName,
+            int count, Connection cx) throws SQLException {
+        return delegate.getNextSequenceValues(schemaName, sequenceName, count, cx);
+    }
+
+    @Override
+    public List<Object> getNextAutoGeneratedValues(String schemaName, String tableName,
+            String columnName, int count, Connection cx) throws SQLException {
+        return delegate.getNextAutoGeneratedValues(schemaName, tableName, columnName, count, cx);
+    }
+
+    @Override
+    public boolean isBulkInsertSupported() {
+        return delegate.isBulkInsertSupported();
+    }
+
+    @Override
+    public void bulkInsert(SimpleFeatureType featureType, List<SimpleFeature> features,
+            PrimaryKey key, List<List<Object>> keyValues, Connection cx) throws SQLException,
+            IOException {
+        delegate.bulkInsert(featureType, features, key, keyValues, cx);
+    }
+
     public boolean isLooseBBOXEnabled() {
         return delegate.isLooseBBOXEnabled();
     }
@@ -219,6 +268,25 @@ public class PostGISPSDialect extends PreparedStatementSQLDialect {
         }
     }
 
+    @Override
+    public void onSelect(PreparedStatement select, Connection cx, SimpleFeatureType featureType)
+            throws SQLException {
+        if (delegate.isBinaryGeometryTransferEnabled()) {
+            // a negative threshold has the driver use the binary protocol right away,
+            // otherwise the raw geometries would be sent as hex text
+            try {
+                UnWrapper unwrapper = DataSourceFinder.getUnWrapper(select);
+                Statement st = unwrapper != null ? unwrapper.unwrap(select) : select;
+                if (st instanceof PGStatement) {
+                    ((PGStatement) st).setPrepareThreshold(-1);
+                }
+            } catch (IOException e) {
+                throw (SQLException) new SQLException(
+                        "Could not obtain native PostgreSQL statement.").initCause(e);
+            }
+        }
+    }
+
     @Override
     public PreparedFilterToSQL createPreparedFilterToSQL() {
         PostgisPSFilterToSql fts = new PostgisPSFilterToSql(this);
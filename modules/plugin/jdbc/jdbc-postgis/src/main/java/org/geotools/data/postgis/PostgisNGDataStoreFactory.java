@@ -20,18 +20,22 @@ import static org.geotools.data.postgis.PostgisNGDataStoreFactory.SIMPLIFY;
 
 import java.io.IOException;
 import java.sql.Connection;
+import java.sql.Driver;
 import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.Map;
+import java.util.logging.Logger;
 
 import javax.sql.DataSource;
 
+import org.apache.commons.dbcp.BasicDataSource;
 import org.geotools.jdbc.JDBCDataStore;
 import org.geotools.jdbc.JDBCDataStoreFactory;
 import org.geotools.jdbc.SQLDialect;
 import org.geotools.util.KVP;
+import org.geotools.util.logging.Logging;
 
 /**
  * 
@@ -40,6 +44,8 @@ import org.geotools.util.KVP;
  */
 public class PostgisNGDataStoreFactory extends JDBCDataStoreFactory {
     
+    static final Logger LOGGER = Logging.getLogger(PostgisNGDataStoreFactory.class);
+    
     /** parameter for database type */
     public static final Param DBTYPE = new Param("dbtype", String.class, "Type", true, "postgis");
     
@@ -85,6 +91,27 @@ public class PostgisNGDataStoreFactory extends JDBCDataStoreFactory {
     public static final Param SIMPLIFY = new Param("Support on the fly geometry simplification", Boolean.class, 
             "When enabled, operations such as map rendering will pass a hint that will enable the usage of ST_Simplify", false, Boolean.TRUE);
     
+    /**
+     * Enables the removal of the features sharing the same pixel in the database when the 
+     * queries contain screen map hints
+     */
+    public static final Param SCREENMAP_DECIMATION = new Param("Support on the fly screen map decimation", Boolean.class, 
+            "When enabled, map rendering will have the database skip the features smaller than a pixel falling in an already painted pixel", false, Boolean.TRUE);
+    
+    /**
+     * Loads the batches of new features with COPY, see {@link JDBCDataStoreFactory#BATCH_INSERT_SIZE}
+     */
+    public static final Param COPY_INSERT = new Param("Use COPY for bulk inserts", Boolean.class, 
+            "When enabled, the batches of new features are loaded with COPY instead of INSERT statements, requires a batch insert size greater than one", false, Boolean.FALSE,
+            new KVP( Param.LEVEL, "advanced"));
+    
+    /**
+     * Reads the geometries as raw WKB with the binary protocol, instead of base64 encoded text
+     */
+    public static final Param BINARY_GEOMETRY_TRANSFER = new Param("Binary geometry transfer", Boolean.class, 
+            "When enabled along with prepared statements, the geometries are transferred as raw WKB using the binary protocol instead of base64 encoded text", false, Boolean.FALSE,
+            new KVP( Param.LEVEL, "advanced"));
+    
     
     @Override
     protected SQLDialect createSQLDialect(JDBCDataStore dataStore) {
@@ -156,6 +183,18 @@ public class PostgisNGDataStoreFactory extends JDBCDataStoreFactory {
         // check geometry simplification (on by default)
         Boolean simplify = (Boolean) SIMPLIFY.lookUp(params);
         dialect.setSimplifyEnabled(simplify == null || simplify);
+        
+        // check screen map decimation (on by default)
+        Boolean screenMap = (Boolean) SCREENMAP_DECIMATION.lookUp(params);
+        dialect.setScreenMapEnabled(screenMap == null || screenMap);
+        
+        // check bulk loading with COPY (off by default)
+        Boolean copyInsert = (Boolean) COPY_INSERT.lookUp(params);
+        dialect.setCopyInsertEnabled(Boolean.TRUE.equals(copyInsert));
+        
+        // check binary geometry transfer (off by default, it needs prepared statements to
+        // have the driver use the binary protocol)
+        dialect.setBinaryGeometryTransferEnabled(isBinaryGeometryTransfer(params));
 
         return dataStore;
     }
@@ -174,6 +213,9 @@ public class PostgisNGDataStoreFactory extends JDBCDataStoreFactory {
         parameters.put(MAX_OPEN_PREPARED_STATEMENTS.key, MAX_OPEN_PREPARED_STATEMENTS);
         parameters.put(ENCODE_FUNCTIONS.key, ENCODE_FUNCTIONS);
         parameters.put(SIMPLIFY.key, SIMPLIFY);
+        parameters.put(SCREENMAP_DECIMATION.key, SCREENMAP_DECIMATION);
+        parameters.put(COPY_INSERT.key, COPY_INSERT);
+        parameters.put(BINARY_GEOMETRY_TRANSFER.key, BINARY_GEOMETRY_TRANSFER);
         parameters.put(CREATE_DB_IF_MISSING.key, CREATE_DB_IF_MISSING);
         parameters.put(CREATE_PARAMS.key, CREATE_PARAMS);
     }
@@ -191,6 +233,43 @@ public class PostgisNGDataStoreFactory extends JDBCDataStoreFactory {
         return "jdbc:postgresql" + "://" + host + ":" + port + "/" + db;
     }
     
+    @Override
+    public BasicDataSource createDataSource(Map params) throws IOException {
+        BasicDataSource dataSource = super.createDataSource(params);
+        if (isBinaryGeometryTransfer(params)) {
+            // bytea is not among the types the driver reads in binary form by default
+            dataSource.addConnectionProperty("binaryTransferEnable", "BYTEA");
+        }
+        return dataSource;
+    }
+    
+    /**
+     * Returns true if the binary geometry transfer is requested, along with prepared statements,
+     * and the PostgreSQL driver supports it
+     */
+    boolean isBinaryGeometryTransfer(Map params) throws IOException {
+        if (!Boolean.TRUE.equals(PREPARED_STATEMENTS.lookUp(params))
+                || !Boolean.TRUE.equals(BINARY_GEOMETRY_TRANSFER.lookUp(params))) {
+            return false;
+        }
+        if (!isBinaryTransferSupported(new org.postgresql.Driver())) {
+            LOGGER.warning("The PostgreSQL driver in use cannot transfer bytea values in binary "
+                    + "form, a 9.1 or newer driver is needed, disabling binary geometry transfer");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Older drivers ignore the <code>binaryTransferEnable</code> property and cannot force the
+     * binary protocol on a statement, the raw WKB would then be sent as hex text, which is larger
+     * than the base64 encoded one
+     */
+    static boolean isBinaryTransferSupported(Driver driver) {
+        return driver.getMajorVersion() > 9
+                || (driver.getMajorVersion() == 9 && driver.getMinorVersion() >= 1);
+    }
+
     protected DataSource createDataSource(Map params, SQLDialect dialect) throws IOException {
         DataSource ds = super.createDataSource(params, dialect);
         JDBCDataStore closer = new JDBCDataStore();
@@ -46,5 +46,7 @@ public class PostgisNGJNDIDataStoreFactory extends JDBCJNDIDataStoreFactory {
         parameters.put(PREPARED_STATEMENTS.key, PREPARED_STATEMENTS);
         parameters.put(ENCODE_FUNCTIONS.key, ENCODE_FUNCTIONS);
         parameters.put(SIMPLIFY.key, SIMPLIFY);
+        parameters.put(COPY_INSERT.key, COPY_INSERT);
+        parameters.put(BINARY_GEOMETRY_TRANSFER.key, BINARY_GEOMETRY_TRANSFER);
     }
 }
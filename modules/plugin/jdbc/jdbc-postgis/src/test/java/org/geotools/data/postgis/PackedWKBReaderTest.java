@@ -0,0 +1,152 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.postgis;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.geotools.geometry.jts.LiteCoordinateSequence;
+import org.geotools.geometry.jts.LiteCoordinateSequenceFactory;
+import org.junit.Test;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.MultiPolygon;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.geom.impl.PackedCoordinateSequence;
+import com.vividsolutions.jts.geom.impl.PackedCoordinateSequenceFactory;
+import com.vividsolutions.jts.io.ByteOrderValues;
+import com.vividsolutions.jts.io.ParseException;
+import com.vividsolutions.jts.io.WKBWriter;
+import com.vividsolutions.jts.io.WKTReader;
+
+public class PackedWKBReaderTest {
+
+    static final String[] WKT = { "POINT(1 2)", "LINESTRING(0 0, 10 10, 20 5)",
+            "POLYGON((0 0, 10 0, 10 10, 0 10, 0 0), (2 2, 2 3, 3 3, 3 2, 2 2))",
+            "MULTIPOINT((1 1), (2 2))", "MULTILINESTRING((0 0, 1 1), (2 2, 3 3, 4 2))",
+            "MULTIPOLYGON(((0 0, 1 0, 1 1, 0 0)), ((5 5, 6 5, 6 6, 5 5)))",
+            "GEOMETRYCOLLECTION(POINT(1 1), LINESTRING(0 0, 1 1))",
+            "LINESTRING(0 0 1, 10 10 2, 20 5 3)",
+            "POLYGON((0 0 1, 10 0 2, 10 10 3, 0 10 4, 0 0 1))" };
+
+    WKTReader wktReader = new WKTReader();
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        GeometryFactory[] factories = {
+                new GeometryFactory(),
+                new GeometryFactory(new LiteCoordinateSequenceFactory()),
+                new GeometryFactory(new PackedCoordinateSequenceFactory(
+                        PackedCoordinateSequenceFactory.DOUBLE)) };
+        for (GeometryFactory factory : factories) {
+            PackedWKBReader reader = new PackedWKBReader(factory);
+            for (String wkt : WKT) {
+                Geometry expected = wktReader.read(wkt);
+                int dimension = wkt.matches(".*\\d+ \\d+ \\d+.*") ? 3 : 2;
+                for (int byteOrder : new int[] { ByteOrderValues.BIG_ENDIAN,
+                        ByteOrderValues.LITTLE_ENDIAN }) {
+                    byte[] wkb = new WKBWriter(dimension, byteOrder).write(expected);
+                    Geometry actual = reader.read(wkb);
+                    assertTrue(wkt, expected.equalsExact(actual));
+                    assertSame(factory, actual.getFactory());
+                    assertEquals(dimension, dimension(actual));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testPackedSequences() throws Exception {
+        PackedWKBReader reader = new PackedWKBReader(new GeometryFactory(
+                new LiteCoordinateSequenceFactory()));
+        byte[] wkb = new WKBWriter().write(wktReader.read(WKT[2]));
+        Polygon polygon = (Polygon) reader.read(wkb);
+        assertTrue(polygon.getExteriorRing().getCoordinateSequence() instanceof LiteCoordinateSequence);
+        LiteCoordinateSequence cs = (LiteCoordinateSequence) polygon.getInteriorRingN(0)
+                .getCoordinateSequence();
+        assertArrayEquals(new double[] { 2, 2, 2, 3, 3, 3, 3, 2, 2, 2 }, cs.getXYArray(), 0d);
+
+        reader.setGeometryFactory(new GeometryFactory(new PackedCoordinateSequenceFactory(
+                PackedCoordinateSequenceFactory.DOUBLE)));
+        wkb = new WKBWriter().write(wktReader.read(WKT[5]));
+        MultiPolygon mp = (MultiPolygon) reader.read(wkb);
+        assertTrue(((Polygon) mp.getGeometryN(1)).getExteriorRing().getCoordinateSequence() instanceof PackedCoordinateSequence.Double);
+    }
+
+    @Test
+    public void testEWKBSrid() throws Exception {
+        Geometry expected = wktReader.read(WKT[1]);
+        expected.setSRID(4326);
+        byte[] wkb = new WKBWriter(2, true).write(expected);
+        Geometry actual = new PackedWKBReader(new GeometryFactory()).read(wkb);
+        assertEquals(4326, actual.getSRID());
+        assertTrue(expected.equalsExact(actual));
+    }
+
+    @Test
+    public void testMeasuresSkipped() throws Exception {
+        // ISO WKB LINESTRING ZM (3002) and EWKB LINESTRING M
+        ByteBuffer bb = ByteBuffer.allocate(1 + 4 + 4 + 2 * 4 * 8).order(ByteOrder.LITTLE_ENDIAN);
+        bb.put((byte) 1).putInt(3002).putInt(2);
+        bb.putDouble(1).putDouble(2).putDouble(3).putDouble(100);
+        bb.putDouble(4).putDouble(5).putDouble(6).putDouble(200);
+        PackedWKBReader reader = new PackedWKBReader(new GeometryFactory(
+                new LiteCoordinateSequenceFactory()));
+        LineString ls = (LineString) reader.read(bb.array());
+        assertEquals(2, ls.getNumPoints());
+        assertEquals(3, ls.getCoordinateSequence().getDimension());
+        assertEquals(6, ls.getCoordinateN(1).z, 0d);
+        assertEquals(4, ls.getCoordinateN(1).x, 0d);
+
+        bb = ByteBuffer.allocate(1 + 4 + 3 * 8).order(ByteOrder.BIG_ENDIAN);
+        bb.put((byte) 0).putInt(0x40000000 | 1).putDouble(7).putDouble(8).putDouble(300);
+        Point p = (Point) reader.read(bb.array());
+        assertEquals(7, p.getX(), 0d);
+        assertEquals(8, p.getY(), 0d);
+    }
+
+    @Test
+    public void testInvalid() throws Exception {
+        PackedWKBReader reader = new PackedWKBReader(new GeometryFactory());
+        byte[] wkb = new WKBWriter().write(wktReader.read(WKT[1]));
+        byte[] truncated = new byte[wkb.length - 4];
+        System.arraycopy(wkb, 0, truncated, 0, truncated.length);
+        try {
+            reader.read(truncated);
+            fail("Should have failed, the data is truncated");
+        } catch (ParseException e) {
+            // fine
+        }
+
+        wkb[4] = 9;
+        try {
+            reader.read(wkb);
+            fail("Should have failed, the type is unknown");
+        } catch (ParseException e) {
+            // fine
+        }
+    }
+
+    int dimension(Geometry g) {
+        return Double.isNaN(g.getCoordinate().z) ? 2 : 3;
+    }
+}
@@ -105,7 +105,7 @@ public class PostgisNGDataStoreFactoryTest extends JDBCTestSupport {
             assertFalse(dialect.isSimplifyEnabled());
             Set<Hints.Key> baseHints = new HashSet<Key>();
             dialect.addSupportedHints(baseHints);
-            assertTrue(baseHints.isEmpty());
+            assertFalse(baseHints.contains(Hints.GEOMETRY_SIMPLIFICATION));
         } finally {
             store.dispose();
         }
@@ -138,4 +138,43 @@ public class PostgisNGDataStoreFactoryTest extends JDBCTestSupport {
         }
     }
 
+    public void testScreenMapParameter() throws Exception {
+        PostgisNGDataStoreFactory factory = new PostgisNGDataStoreFactory();
+        Properties db = fixture;
+        
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put(HOST.key, db.getProperty(HOST.key));
+        params.put(DATABASE.key, db.getProperty(DATABASE.key));
+        params.put(PORT.key, db.getProperty(PORT.key));
+        params.put(USER.key, db.getProperty(USER.key));
+        params.put(PASSWD.key, db.getProperty(PASSWD.key));
+        
+        // do not specify the screen map decimation, on by default
+        JDBCDataStore store = factory.createDataStore(params);
+        assertNotNull(store);
+        try {
+            PostGISDialect dialect = (PostGISDialect) store.getSQLDialect();
+            assertTrue(dialect.isScreenMapEnabled());
+            Set<Hints.Key> baseHints = new HashSet<Key>();
+            dialect.addSupportedHints(baseHints);
+            assertTrue(baseHints.contains(Hints.SCREENMAP));
+        } finally {
+            store.dispose();
+        }
+        
+        // force it off
+        params.put(PostgisNGDataStoreFactory.SCREENMAP_DECIMATION.key, false);
+        store = factory.createDataStore(params);
+        assertNotNull(store);
+        try {
+            PostGISDialect dialect = (PostGISDialect) store.getSQLDialect();
+            assertFalse(dialect.isScreenMapEnabled());
+            Set<Hints.Key> baseHints = new HashSet<Key>();
+            dialect.addSupportedHints(baseHints);
+            assertFalse(baseHints.contains(Hints.SCREENMAP));
+        } finally {
+            store.dispose();
+        }
+    }
+
 }
@@ -0,0 +1,105 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.postgis.ps;
+
+import static org.geotools.data.postgis.PostgisNGDataStoreFactory.*;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.geotools.data.postgis.PostGISPSDialect;
+import org.geotools.data.postgis.PostgisNGDataStoreFactory;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.jdbc.JDBCDataStore;
+import org.geotools.jdbc.JDBCTestSetup;
+import org.geotools.jdbc.JDBCTestSupport;
+import org.opengis.feature.simple.SimpleFeature;
+import org.postgresql.PGResultSetMetaData;
+
+import com.vividsolutions.jts.geom.Point;
+
+public class PostgisBinaryGeometryTransferTest extends JDBCTestSupport {
+
+    /** The format code of the values sent with the binary protocol */
+    static final int BINARY_FORMAT = 1;
+
+    @Override
+    protected JDBCTestSetup createTestSetup() {
+        return new PostGISPSTestSetup();
+    }
+
+    JDBCDataStore createBinaryStore() throws Exception {
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put(DBTYPE.key, "postgis");
+        params.put(HOST.key, fixture.getProperty("host"));
+        params.put(PORT.key, fixture.getProperty("port"));
+        params.put(DATABASE.key, fixture.getProperty("database"));
+        params.put(USER.key, fixture.getProperty("user"));
+        params.put(PASSWD.key, fixture.getProperty("password"));
+        params.put(SCHEMA.key, "public");
+        params.put(PREPARED_STATEMENTS.key, Boolean.TRUE);
+        params.put(BINARY_GEOMETRY_TRANSFER.key, Boolean.TRUE);
+        return (JDBCDataStore) new PostgisNGDataStoreFactory().createDataStore(params);
+    }
+
+    public void testGeometriesInBinaryForm() throws Exception {
+        JDBCDataStore store = createBinaryStore();
+        try {
+            PostGISPSDialect dialect = (PostGISPSDialect) store.getSQLDialect();
+            Connection cx = store.getDataSource().getConnection();
+            try {
+                PreparedStatement ps = cx.prepareStatement("SELECT ST_AsEWKB(\""
+                        + aname("geometry") + "\") FROM \"" + tname("ft1") + "\"");
+                dialect.onSelect(ps, cx, null);
+                ResultSet rs = ps.executeQuery();
+                try {
+                    // the raw bytes, not their hex text representation
+                    PGResultSetMetaData metadata = (PGResultSetMetaData) rs.getMetaData();
+                    assertEquals(BINARY_FORMAT, metadata.getFormat(1));
+                    assertTrue(rs.next());
+                    // byte order, type, srid and two ordinates
+                    assertEquals(25, rs.getBytes(1).length);
+                } finally {
+                    rs.close();
+                    ps.close();
+                }
+            } finally {
+                cx.close();
+            }
+
+            // and the geometries are parsed back
+            SimpleFeatureIterator it = store.getFeatureSource(tname("ft1")).getFeatures()
+                    .features();
+            try {
+                int count = 0;
+                while (it.hasNext()) {
+                    SimpleFeature f = it.next();
+                    assertTrue(f.getDefaultGeometry() instanceof Point);
+                    count++;
+                }
+                assertEquals(3, count);
+            } finally {
+                it.close();
+            }
+        } finally {
+            store.dispose();
+        }
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.shapefile;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.geotools.data.shapefile.index.attribute.AttributeIndex;
+import org.geotools.data.shapefile.index.attribute.AttributeIndex.KeyType;
+import org.opengis.filter.And;
+import org.opengis.filter.BinaryComparisonOperator;
+import org.opengis.filter.Filter;
+import org.opengis.filter.Or;
+import org.opengis.filter.PropertyIsBetween;
+import org.opengis.filter.PropertyIsEqualTo;
+import org.opengis.filter.PropertyIsGreaterThan;
+import org.opengis.filter.PropertyIsGreaterThanOrEqualTo;
+import org.opengis.filter.PropertyIsLessThan;
+import org.opengis.filter.PropertyIsLessThanOrEqualTo;
+import org.opengis.filter.expression.Expression;
+import org.opengis.filter.expression.Literal;
+import org.opengis.filter.expression.PropertyName;
+
+/**
+ * Turns the attribute comparisons found in a filter into the list of records that might match
+ * them, using the attribute indexes available for the shapefile. The supported filters are
+ * equality, between and range comparisons against literals, combined by AND and OR (an IN
+ * list is usually expressed as an OR of equalities).
+ * <p>
+ * The result is a superset of the records matching the filter, the filter still needs to be
+ * evaluated against the features read.
+ */
+class AttributeIndexQuery {
+
+    IndexManager indexManager;
+
+    /**
+     * The indexes opened so far, by attribute name, with null values for the attributes lacking
+     * a usable index
+     */
+    Map<String, AttributeIndex> indexes = new HashMap<String, AttributeIndex>();
+
+    public AttributeIndexQuery(IndexManager indexManager) {
+        this.indexManager = indexManager;
+    }
+
+    /**
+     * Returns the sorted, zero based numbers of the records that might match the filter, or null
+     * if the indexes cannot be used to narrow down the search
+     */
+    public int[] query(Filter filter) {
+        try {
+            return search(filter);
+        } finally {
+            for (AttributeIndex index : indexes.values()) {
+                if (index != null) {
+                    index.close();
+                }
+            }
+            indexes.clear();
+        }
+    }
+
+    int[] search(Filter filter) {
+        if (filter == Filter.EXCLUDE) {
+            return new int[0];
+        } else if (filter instanceof And) {
+            // records must match all children, skipping the ones we cannot handle
+            int[] result = null;
+            for (Filter child : ((And) filter).getChildren()) {
+                int[] records = search(child);
+                if (records != null) {
+                    result = result == null ? records : intersect(result, records);
+                }
+            }
+            return result;
+        } else if (filter instanceof Or) {
+            // records can match any child, so all of them must be handled
+            int[] result = new int[0];
+            for (Filter child : ((Or) filter).getChildren()) {
+                int[] records = search(child);
+                if (records == null) {
+                    return null;
+                }
+                result = union(result, records);
+            }
+            return result;
+        } else if (filter instanceof PropertyIsBetween) {
+            PropertyIsBetween between = (PropertyIsBetween) filter;
+            AttributeIndex index = getIndex(between.getExpression());
+            if (index != null) {
+                Object lower = toKey(index, between.getLowerBoundary());
+                Object upper = toKey(index, between.getUpperBoundary());
+                if (lower != null && upper != null) {
+                    return index.search(lower, true, upper, true);
+                }
+            }
+            return null;
+        } else if (filter instanceof PropertyIsEqualTo
+                || filter instanceof PropertyIsLessThan
+                || filter instanceof PropertyIsLessThanOrEqualTo
+                || filter instanceof PropertyIsGreaterThan
+                || filter instanceof PropertyIsGreaterThanOrEqualTo) {
+            return searchComparison((BinaryComparisonOperator) filter);
+        }
+
+        return null;
+    }
+
+    int[] searchComparison(BinaryComparisonOperator comparison) {
+        // normalize to property op literal, flipping the comparison if needed
+        Expression property = comparison.getExpression1();
+        Expression literal = comparison.getExpression2();
+        boolean flipped = false;
+        if (property instanceof Literal && literal instanceof PropertyName) {
+            property = comparison.getExpression2();
+            literal = comparison.getExpression1();
+            flipped = true;
+        }
+        AttributeIndex index = getIndex(property);
+        if (index == null) {
+            return null;
+        }
+        // case insensitive matches are not supported
+        if (index.getKeyType() == KeyType.STRING && !comparison.isMatchingCase()) {
+            return null;
+        }
+        Object key = toKey(index, literal);
+        if (key == null) {
+            return null;
+        }
+
+        if (comparison instanceof PropertyIsEqualTo) {
+            return index.search(key, true, key, true);
+        }
+        boolean less = comparison instanceof PropertyIsLessThan
+                || comparison instanceof PropertyIsLessThanOrEqualTo;
+        boolean inclusive = comparison instanceof PropertyIsLessThanOrEqualTo
+                || comparison instanceof PropertyIsGreaterThanOrEqualTo;
+        if (less != flipped) {
+            return index.search(null, false, key, inclusive);
+        } else {
+            return index.search(key, inclusive, null, false);
+        }
+    }
+
+    Object toKey(AttributeIndex index, Expression expression) {
+        if (expression instanceof Literal) {
+            return index.toKey(((Literal) expression).getValue());
+        }
+        return null;
+    }
+
+    AttributeIndex getIndex(Expression expression) {
+        if (!(expression instanceof PropertyName)) {
+            return null;
+        }
+        String name = ((PropertyName) expression).getPropertyName();
+        if (!indexes.containsKey(name)) {
+            indexes.put(name, indexManager.openAttributeIndex(name));
+        }
+        return indexes.get(name);
+    }
+
+    /**
+     * Intersects two sorted arrays
+     */
+    static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int count = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length;) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[count++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return trim(result, count);
+    }
+
+    /**
+     * Merges two sorted arrays, removing duplicates
+     */
+    static int[] union(int[] a, int[] b) {
+        int[] result = new int[a.length + b.length];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length || j < b.length) {
+            int next;
+            if (j >= b.length || (i < a.length && a[i] < b[j])) {
+                next = a[i++];
+            } else if (i >= a.length || b[j] < a[i]) {
+                next = b[j++];
+            } else {
+                next = a[i++];
+                j++;
+            }
+            if (count == 0 || result[count - 1] != next) {
+                result[count++] = next;
+            }
+        }
+        return trim(result, count);
+    }
+
+    static int[] trim(int[] array, int length) {
+        if (array.length == length) {
+            return array;
+        }
+        int[] result = new int[length];
+        System.arraycopy(array, 0, result, 0, length);
+        return result;
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.shapefile;
+
+import static org.geotools.data.shapefile.files.ShpFileType.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geotools.data.shapefile.files.ShpFileType;
+import org.geotools.util.logging.Logging;
+
+/**
+ * Builds the missing or stale spatial and fid indexes of a set of shapefile stores on a bounded
+ * pool of background threads. While the indexes of a store are being built its queries are
+ * answered scanning the shapefile, and the store asks for its indexes to be built ahead of the
+ * ones of the stores that are not being queried.
+ * <p>
+ * The threads are daemons and go away when idle, so the indexer does not need to be disposed
+ * explicitly, but {@link #dispose()} can be used to stop it right away.
+ */
+public class BackgroundIndexer {
+
+    static final Logger LOGGER = Logging.getLogger(BackgroundIndexer.class);
+
+    static final AtomicInteger POOL_SEQUENCE = new AtomicInteger();
+
+    ThreadPoolExecutor executor;
+
+    /**
+     * The tasks scheduled or running, by store
+     */
+    Map<ShapefileDataStore, IndexTask> tasks = new HashMap<ShapefileDataStore, IndexTask>();
+
+    long sequence;
+
+    int scheduled;
+
+    int completed;
+
+    int failed;
+
+    /**
+     * Builds a new indexer
+     *
+     * @param threads the maximum number of indexes built in parallel, if zero or negative the
+     *        number of available processors is used
+     */
+    public BackgroundIndexer(int threads) {
+        if (threads <= 0) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        final int pool = POOL_SEQUENCE.incrementAndGet();
+        ThreadFactory factory = new ThreadFactory() {
+            AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "gt-shapefile-indexer-" + pool + "-"
+                        + count.incrementAndGet());
+                t.setDaemon(true);
+                t.setPriority(Thread.MIN_PRIORITY);
+                return t;
+            }
+        };
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<Runnable>(), factory);
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Schedules the creation of the missing or stale indexes of the store, unless already
+     * scheduled
+     *
+     * @param store the store to be indexed
+     * @param urgent if true the store indexes will be built before the ones of the non urgent
+     *        stores, used when the store is being queried
+     */
+    public synchronized void schedule(ShapefileDataStore store, boolean urgent) {
+        if (executor.isShutdown()) {
+            return;
+        }
+        IndexTask task = tasks.get(store);
+        if (task == null) {
+            task = new IndexTask(store, urgent, sequence++);
+            tasks.put(store, task);
+            scheduled++;
+            executor.execute(task);
+        } else if (urgent && !task.urgent && executor.remove(task)) {
+            // still waiting, move it ahead in the queue
+            task.urgent = true;
+            executor.execute(task);
+        }
+    }
+
+    /**
+     * Removes the store from the queue, if the indexes are already being built the operation
+     * is not interrupted
+     */
+    public synchronized void cancel(ShapefileDataStore store) {
+        IndexTask task = tasks.remove(store);
+        if (task != null && executor.remove(task)) {
+            scheduled--;
+        }
+    }
+
+    /**
+     * Returns true if the indexes of the store are scheduled for creation, or being built
+     */
+    public synchronized boolean isIndexing(ShapefileDataStore store) {
+        return tasks.containsKey(store);
+    }
+
+    /**
+     * The number of stores that have been scheduled for indexing
+     */
+    public synchronized int getScheduledCount() {
+        return scheduled;
+    }
+
+    /**
+     * The number of stores whose indexes have been built or checked
+     */
+    public synchronized int getCompletedCount() {
+        return completed;
+    }
+
+    /**
+     * The number of stores whose indexes could not be built
+     */
+    public synchronized int getFailedCount() {
+        return failed;
+    }
+
+    /**
+     * The number of stores waiting for their indexes to be built, or being indexed
+     */
+    public synchronized int getPendingCount() {
+        return tasks.size();
+    }
+
+    /**
+     * Stops the indexer, the indexes being built are completed, the others are discarded
+     */
+    public synchronized void dispose() {
+        executor.shutdown();
+        executor.getQueue().clear();
+        tasks.clear();
+    }
+
+    /**
+     * Returns true if the indexer has been disposed
+     */
+    public synchronized boolean isDisposed() {
+        return executor.isShutdown();
+    }
+
+    synchronized void taskCompleted(IndexTask task, boolean success) {
+        if (tasks.get(task.store) == task) {
+            tasks.remove(task.store);
+        }
+        if (success) {
+            completed++;
+        } else {
+            failed++;
+        }
+    }
+
+    /**
+     * Builds the indexes of a single store. Urgent tasks come first, then the older ones.
+     */
+    class IndexTask implements Runnable, Comparable<IndexTask> {
+
+        ShapefileDataStore store;
+
+        volatile boolean urgent;
+
+        long order;
+
+        IndexTask(ShapefileDataStore store, boolean urgent, long order) {
+            this.store = store;
+            this.urgent = urgent;
+            this.order = order;
+        }
+
+        public void run() {
+            boolean success = true;
+            try {
+                IndexManager indexManager = store.indexManager;
+                if (store.isIndexed()
+                        && (store.isIndexCreationEnabled() || indexManager
+                                .isSpatialIndexAvailable())) {
+                    ShpFileType spatialType = indexManager.packedIndex ? HRX : QIX;
+                    if (indexManager.isIndexStale(spatialType)) {
+                        success &= indexManager.createSpatialIndex(false);
+                    }
+                }
+                if (store.isFidIndexed() && !indexManager.isIndexUseable(FIX)) {
+                    success &= indexManager.createFidIndex();
+                }
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.fine("Indexed " + indexManager.shpFiles.get(SHP) + " in background");
+                }
+            } catch (Throwable t) {
+                success = false;
+                LOGGER.log(Level.WARNING, "Failed to build the indexes in background", t);
+            } finally {
+                taskCompleted(this, success);
+            }
+        }
+
+        public int compareTo(IndexTask other) {
+            if (urgent != other.urgent) {
+                return urgent ? -1 : 1;
+            }
+            return order < other.order ? -1 : (order == other.order ? 0 : 1);
+        }
+    }
+}
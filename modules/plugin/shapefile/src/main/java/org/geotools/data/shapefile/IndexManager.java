@@ -7,13 +7,16 @@ import java.io.IOException;
 import java.net.URL;
 import java.nio.channels.ReadableByteChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.TreeSet;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.geotools.data.DataSourceException;
 import org.geotools.data.DataUtilities;
+import org.geotools.data.shapefile.dbf.DbaseFileReader;
 import org.geotools.data.shapefile.fid.FidIndexer;
 import org.geotools.data.shapefile.fid.IndexedFidReader;
 import org.geotools.data.shapefile.files.FileWriter;
@@ -24,12 +27,20 @@ import org.geotools.data.shapefile.index.CloseableIterator;
 import org.geotools.data.shapefile.index.Data;
 import org.geotools.data.shapefile.index.DataDefinition;
 import org.geotools.data.shapefile.index.TreeException;
+import org.geotools.data.shapefile.index.attribute.AttributeIndex;
+import org.geotools.data.shapefile.index.attribute.AttributeIndexBuilder;
+import org.geotools.data.shapefile.index.hilbert.PackedRTree;
+import org.geotools.data.shapefile.index.quadtree.Node;
 import org.geotools.data.shapefile.index.quadtree.QuadTree;
 import org.geotools.data.shapefile.index.quadtree.StoreException;
 import org.geotools.data.shapefile.index.quadtree.fs.FileSystemIndexStore;
 import org.geotools.data.shapefile.shp.IndexFile;
 import org.geotools.util.NullProgressListener;
 import org.geotools.util.logging.Logging;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+import org.opengis.feature.type.GeometryDescriptor;
+import org.opengis.filter.Filter;
 import org.opengis.filter.Id;
 import org.opengis.filter.identity.Identifier;
 
@@ -46,12 +57,35 @@ class IndexManager {
 
     static final int DEFAULT_MAX_QIX_CACHE_SIZE;
 
+    /**
+     * When true new spatial indexes are built as packed Hilbert R-trees (.hrx) instead of
+     * quadtrees (.qix)
+     */
+    static final boolean DEFAULT_PACKED_INDEX = Boolean
+            .getBoolean("org.geotools.shapefile.packedIndex");
+
     ShpFiles shpFiles;
 
     int maxQixCacheSize = DEFAULT_MAX_QIX_CACHE_SIZE;
 
     CachedQuadTree cachedTree;
 
+    /**
+     * Whether the spatial index is a packed R-tree, either because it was configured so, or
+     * because one was found on disk
+     */
+    boolean packedIndex;
+
+    /**
+     * The packed R-tree, memory mapped, shared among all queries
+     */
+    PackedRTree packedTree;
+
+    /**
+     * The last modification time of the packed R-tree file when it was mapped
+     */
+    long packedTreeLastModified;
+
     ShapefileDataStore store;
     
     /**
@@ -81,6 +115,7 @@ class IndexManager {
     public IndexManager(ShpFiles shpFiles, ShapefileDataStore store) {
         this.shpFiles = shpFiles;
         this.store = store;
+        this.packedIndex = DEFAULT_PACKED_INDEX || (shpFiles.isLocal() && shpFiles.exists(HRX));
     }
 
     /**
@@ -92,12 +127,18 @@ class IndexManager {
     public boolean createSpatialIndex(boolean force) {
         // create index as needed
         try {
-            if (shpFiles.isLocal() && (isIndexStale(QIX) || force)) {
+            ShpFileType indexType = packedIndex ? HRX : QIX;
+            if (shpFiles.isLocal() && (isIndexStale(indexType) || force)) {
                 ShapefileDataStoreFactory.LOGGER.fine("Creating spatial index for "
                         + shpFiles.get(SHP));
+                if (packedIndex) {
+                    // release the old mapping, the file is going to be replaced
+                    closePackedTree();
+                }
 
                 ShapeFileIndexer indexer = new ShapeFileIndexer();
                 indexer.setShapeFileName(shpFiles);
+                indexer.setIndexType(indexType);
                 indexer.index(false, new NullProgressListener());
 
                 return true;
@@ -118,6 +159,11 @@ class IndexManager {
             return true;
         } else {
             if (shpFiles.isLocal() && (shpFiles.exists(FIX) || createIfMissing)) {
+                BackgroundIndexer indexer = store.getBackgroundIndexer();
+                if (indexer != null && !createIfMissing) {
+                    indexer.schedule(store, true);
+                    return false;
+                }
                 return createFidIndex();
             } else {
                 return false;
@@ -176,7 +222,7 @@ class IndexManager {
      * @return
      */
     boolean isSpatialIndexAvailable() {
-        return shpFiles.isLocal() && shpFiles.exists(QIX);
+        return shpFiles.isLocal() && (shpFiles.exists(QIX) || shpFiles.exists(HRX));
     }
 
     /**
@@ -294,8 +340,25 @@ class IndexManager {
             IOException, TreeException {
         CloseableIterator<Data> tmp = null;
 
-        // check if the spatial index needs recreating
-        createSpatialIndex(false);
+        // check if the spatial index needs recreating. When indexing in background don't wait
+        // for it, let the caller scan the shapefile until the index is ready
+        BackgroundIndexer indexer = store.getBackgroundIndexer();
+        if (indexer == null) {
+            createSpatialIndex(false);
+        } else if (shpFiles.isLocal() && isIndexStale(packedIndex ? HRX : QIX)) {
+            indexer.schedule(store, true);
+            return null;
+        }
+
+        // the packed R-tree is preferred, the quadtree is used as a fallback
+        PackedRTree packed = getPackedTree();
+        if (packed != null) {
+            if (!bbox.contains(packed.getBounds())) {
+                return packed.search(bbox);
+            } else {
+                return null;
+            }
+        }
 
         if (cachedTree == null) {
             boolean canCache = false;
@@ -373,7 +436,345 @@ class IndexManager {
         }
     }
 
+    /**
+     * Returns the packed R-tree, mapping it if necessary, or null if there is no up to date
+     * packed R-tree on disk
+     */
+    synchronized PackedRTree getPackedTree() {
+        if (!shpFiles.isLocal() || !shpFiles.exists(HRX) || isIndexStale(HRX)) {
+            closePackedTree();
+            return null;
+        }
+
+        URL treeURL = shpFiles.acquireRead(HRX, writer);
+        try {
+            File treeFile = DataUtilities.urlToFile(treeURL);
+            if (packedTree != null && treeFile.lastModified() != packedTreeLastModified) {
+                closePackedTree();
+            }
+            if (packedTree == null) {
+                packedTreeLastModified = treeFile.lastModified();
+                packedTree = PackedRTree.open(treeFile);
+            }
+            return packedTree;
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not open the packed R-tree index "
+                    + treeURL + ", falling back on the quadtree one", e);
+            return null;
+        } finally {
+            shpFiles.unlockRead(treeURL, writer);
+        }
+    }
+
+    /**
+     * Releases the packed R-tree mapping, if any. Searches in progress are not affected, the
+     * mapping is released when they are closed.
+     */
+    synchronized void closePackedTree() {
+        if (packedTree != null) {
+            packedTree.close();
+            packedTree = null;
+        }
+    }
+
+    /**
+     * Adds the records appended at the end of the shapefile to the quadtree index, without
+     * rebuilding it from the shapefile contents. The updated tree is written in a temporary file
+     * and then renamed, so that concurrent readers never see a partially written index.
+     * 
+     * @param firstRecord the zero based number of the first appended record
+     * @param envelopes the bounds of the appended records, as minx, miny, maxx, maxy sequences,
+     *        with NaN values for the null geometries
+     * @param count the number of appended records
+     * @throws IOException
+     */
+    synchronized void appendToQuadTree(int firstRecord, double[] envelopes, int count)
+            throws IOException {
+        URL treeURL = shpFiles.acquireWrite(QIX, writer);
+        try {
+            File treeFile = DataUtilities.urlToFile(treeURL);
+            FileSystemIndexStore store = new FileSystemIndexStore(treeFile);
+            QuadTree tree = store.loadInMemory();
+            tree.setNumShapes(firstRecord + count);
+            Node root = tree.getRoot();
+            for (int i = 0; i < count; i++) {
+                int base = i * 4;
+                if (Double.isNaN(envelopes[base])) {
+                    continue;
+                }
+                Envelope bounds = new Envelope(envelopes[base], envelopes[base + 2],
+                        envelopes[base + 1], envelopes[base + 3]);
+                // the root must contain all the records, or the searches would skip them
+                if (!root.getBounds().contains(bounds)) {
+                    Envelope expanded = new Envelope(root.getBounds());
+                    expanded.expandToInclude(bounds);
+                    root.setBounds(expanded);
+                }
+                tree.insert(firstRecord + i, bounds);
+            }
+
+            File temp = new File(treeFile.getParentFile(), treeFile.getName() + ".tmp");
+            new FileSystemIndexStore(temp, (byte) store.getByteOrder()).store(tree);
+            if (!treeFile.delete() || !temp.renameTo(treeFile)) {
+                temp.delete();
+                throw new IOException("Could not replace the spatial index " + treeFile);
+            }
+            cachedTree = null;
+        } catch (StoreException e) {
+            throw new DataSourceException("Failed to update the spatial index", e);
+        } finally {
+            shpFiles.unlockWrite(treeURL, writer);
+        }
+    }
+
+    /**
+     * Builds, or rebuilds, the attribute index for the specified attribute. Once built, the
+     * index is used to speed up the queries comparing the attribute against literals, and it is
+     * rebuilt on demand when the dbf changes (if index creation is enabled)
+     * 
+     * @param attributeName the name of a non geometric attribute
+     * @throws IOException
+     */
+    public synchronized void createAttributeIndex(String attributeName) throws IOException {
+        if (!shpFiles.isLocal()) {
+            throw new IOException("Attribute indexes can only be built for local shapefiles");
+        }
+        int field = getDbfField(attributeName);
+        if (field < 0) {
+            throw new IllegalArgumentException(attributeName + " is not a dbf attribute of "
+                    + store.getTypeName().getLocalPart());
+        }
+        buildAttributeIndex(field);
+    }
+
+    void buildAttributeIndex(int field) throws IOException {
+        DbaseFileReader dbf = store.shpManager.openDbfReader(false);
+        if (dbf == null) {
+            throw new IOException("Could not open the dbf file of " + shpFiles.get(SHP));
+        }
+        try {
+            AttributeIndexBuilder.build(dbf, field, getAttributeIndexFile(field));
+        } finally {
+            dbf.close();
+        }
+    }
+
+    /**
+     * Returns the (zero based) dbf field number of the specified attribute, or -1 if the
+     * attribute is not found or is the geometry
+     */
+    int getDbfField(String attributeName) throws IOException {
+        SimpleFeatureType schema = store.getSchema();
+        int index = schema.indexOf(attributeName);
+        if (index < 0 || schema.getDescriptor(index) instanceof GeometryDescriptor) {
+            return -1;
+        }
+        // the geometry comes first, then all the dbf fields, in order
+        return index - 1;
+    }
+
+    /**
+     * Returns the attribute index file for the specified dbf field, a sibling of the dbf file
+     * named after the field number, e.g., <code>states.3.aix</code>
+     */
+    File getAttributeIndexFile(int field) {
+        File dbfFile = shpFiles.acquireReadFile(DBF, writer);
+        try {
+            String name = dbfFile.getName();
+            String base = name.substring(0, name.length() - DBF.extensionWithPeriod.length());
+            return new File(dbfFile.getParentFile(), base + "." + field + ".aix");
+        } finally {
+            shpFiles.unlockRead(dbfFile, writer);
+        }
+    }
+
+    /**
+     * Returns all the attribute index files found for this shapefile
+     */
+    List<File> getAttributeIndexFiles() {
+        List<File> result = new ArrayList<File>();
+        if (!shpFiles.isLocal()) {
+            return result;
+        }
+        File dbfFile = shpFiles.acquireReadFile(DBF, writer);
+        try {
+            String name = dbfFile.getName();
+            String prefix = name.substring(0, name.length() - DBF.extensionWithPeriod.length())
+                    + ".";
+            File[] files = dbfFile.getParentFile().listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    String fileName = file.getName();
+                    if (fileName.startsWith(prefix) && fileName.endsWith(".aix")
+                            && fileName.substring(prefix.length(), fileName.length() - 4)
+                                    .matches("\\d+")) {
+                        result.add(file);
+                    }
+                }
+            }
+        } finally {
+            shpFiles.unlockRead(dbfFile, writer);
+        }
+        return result;
+    }
+
+    /**
+     * Opens the attribute index of the specified attribute. If the index is older than the dbf
+     * it gets rebuilt, provided index creation is enabled.
+     * 
+     * @return the index, or null if there is no usable index for the attribute
+     */
+    synchronized AttributeIndex openAttributeIndex(String attributeName) {
+        if (!shpFiles.isLocal()) {
+            return null;
+        }
+        try {
+            int field = getDbfField(attributeName);
+            if (field < 0) {
+                return null;
+            }
+            File indexFile = getAttributeIndexFile(field);
+            if (!indexFile.exists()) {
+                return null;
+            }
+            if (isAttributeIndexStale(indexFile)) {
+                if (!store.isIndexCreationEnabled()) {
+                    return null;
+                }
+                LOGGER.fine("Rebuilding attribute index " + indexFile);
+                buildAttributeIndex(field);
+            }
+
+            AttributeIndex index = AttributeIndex.open(indexFile);
+            // make sure the index is about the same field
+            AttributeDescriptor descriptor = store.getSchema().getDescriptor(attributeName);
+            String fieldName = (String) descriptor.getUserData().get(
+                    ShapefileDataStore.ORIGINAL_FIELD_NAME);
+            if (fieldName == null) {
+                fieldName = descriptor.getLocalName();
+            }
+            if (index.getFieldNumber() != field || !fieldName.equals(index.getFieldName())) {
+                LOGGER.warning("Attribute index " + indexFile + " does not match field "
+                        + fieldName + ", ignoring it");
+                index.close();
+                return null;
+            }
+            return index;
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not use the attribute index for " + attributeName, e);
+            return null;
+        }
+    }
+
+    boolean isAttributeIndexStale(File indexFile) {
+        File dbfFile = shpFiles.acquireReadFile(DBF, writer);
+        try {
+            return indexFile.lastModified() < dbfFile.lastModified();
+        } finally {
+            shpFiles.unlockRead(dbfFile, writer);
+        }
+    }
+
+    /**
+     * Marks all the attribute indexes as stale, so that they get rebuilt on the next query
+     */
+    void invalidateAttributeIndexes() {
+        for (File file : getAttributeIndexFiles()) {
+            // the dbf might be modified within the same timestamp granularity, make sure
+            if (!file.setLastModified(0)) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Uses the attribute indexes to find the records that might match the filter
+     * 
+     * @return the sorted, zero based record numbers, or null if the attribute indexes cannot
+     *         help with the filter
+     */
+    int[] queryAttributeIndexes(Filter filter) {
+        if (!shpFiles.isLocal()) {
+            return null;
+        }
+        return new AttributeIndexQuery(this).query(filter);
+    }
+
+    /**
+     * Looks up the .shp offsets of the specified records, and returns them in the same format
+     * used by the spatial indexes
+     * 
+     * @param records the zero based record numbers
+     * @return the records data, or null if the .shx file is not available
+     */
+    List<Data> getRecordsData(int[] records) throws IOException {
+        IndexFile shx = store.shpManager.openIndexFile();
+        if (shx == null) {
+            return null;
+        }
+        try {
+            DataDefinition def = new DataDefinition("US-ASCII");
+            def.addField(Integer.class);
+            def.addField(Long.class);
+            List<Data> result = new ArrayList<Data>(records.length);
+            for (int record : records) {
+                try {
+                    Data data = new Data(def);
+                    data.addValue(new Integer(record + 1));
+                    data.addValue(new Long(shx.getOffsetInBytes(record)));
+                    result.add(data);
+                } catch (TreeException e) {
+                    throw new IOException("Failed to build the record data", e);
+                }
+            }
+            return result;
+        } finally {
+            shx.close();
+        }
+    }
+
+    /**
+     * Filters the results of the spatial index, keeping only the specified records
+     * 
+     * @param records the sorted, zero based record numbers to be kept
+     */
+    static CloseableIterator<Data> filterRecords(final CloseableIterator<Data> delegate,
+            final int[] records) {
+        return new CloseableIterator<Data>() {
+            Data next;
+
+            public boolean hasNext() {
+                while (next == null && delegate.hasNext()) {
+                    Data data = delegate.next();
+                    int record = ((Integer) data.getValue(0)).intValue() - 1;
+                    if (Arrays.binarySearch(records, record) >= 0) {
+                        next = data;
+                    }
+                }
+                return next != null;
+            }
+
+            public Data next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Data result = next;
+                next = null;
+                return result;
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+
+            public void close() throws IOException {
+                delegate.close();
+            }
+        };
+    }
+
     public void dispose() {
         this.cachedTree = null;
+        closePackedTree();
     }
 }
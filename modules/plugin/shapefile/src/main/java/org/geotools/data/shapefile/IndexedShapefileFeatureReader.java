@@ -115,7 +115,7 @@ class IndexedShapefileFeatureReader extends ShapefileFeatureReader {
             Row row;
             if (dbf != null) {
                 ((IndexedDbaseFileReader) dbf).goTo(record.number);
-                row = dbf.readRow();
+                row = dbf.readDetachedRow();
             } else {
                 row = null;
             }
@@ -110,6 +110,9 @@ class IndexedShapefileFeatureWriter extends ShapefileFeatureWriter implements Fi
                 }
 
                 deleteFile(ShpFileType.QIX);
+                indexes.closePackedTree();
+                deleteFile(ShpFileType.HRX);
+                indexes.invalidateAttributeIndexes();
             }
         } catch (Throwable e) {
             ShapefileDataStoreFactory.LOGGER.log(Level.WARNING, "Error creating Spatial index", e);
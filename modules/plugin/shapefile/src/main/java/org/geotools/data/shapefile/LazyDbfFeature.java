@@ -0,0 +1,208 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.shapefile;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+
+import org.geotools.data.DataUtilities;
+import org.geotools.data.shapefile.dbf.DbaseFileReader.Row;
+import org.geotools.feature.simple.SimpleFeatureImpl;
+import org.geotools.filter.identity.FeatureIdImpl;
+import org.geotools.util.Converters;
+import org.opengis.feature.Property;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+
+import com.vividsolutions.jts.geom.Geometry;
+
+/**
+ * A feature whose dbf attributes are decoded from the raw record bytes only when first
+ * accessed, so that the attributes that are never looked at (e.g., the ones not used by a style
+ * or a filter) do not pay the parsing cost.
+ * <p>
+ * Like the other simple features this class is not thread safe, concurrent reads of the same
+ * attribute might end up decoding it twice, but will return equal values.
+ */
+class LazyDbfFeature extends SimpleFeatureImpl {
+
+    /**
+     * The raw dbf record, set to null once all attributes have been decoded
+     */
+    Row row;
+
+    /**
+     * The dbf field number of each attribute, -1 for the geometry
+     */
+    int[] dbfindexes;
+
+    /**
+     * Tracks which attributes have been decoded, set to null once all attributes have been
+     * decoded
+     */
+    boolean[] decoded;
+
+    int pending;
+
+    public LazyDbfFeature(SimpleFeatureType schema, String fid, Geometry geometry, Row row,
+            int[] dbfindexes) {
+        super(new Object[dbfindexes.length], schema, new FeatureIdImpl(fid), false);
+        this.row = row;
+        this.dbfindexes = dbfindexes;
+        this.decoded = new boolean[dbfindexes.length];
+        for (int i = 0; i < dbfindexes.length; i++) {
+            if (dbfindexes[i] == -1) {
+                values[i] = geometry;
+                decoded[i] = true;
+            } else {
+                pending++;
+            }
+        }
+        if (pending == 0) {
+            this.row = null;
+            this.decoded = null;
+        }
+    }
+
+    /**
+     * Decodes the specified attribute, if not already done
+     */
+    void decode(int index) {
+        if (decoded != null && !decoded[index]) {
+            Object value;
+            try {
+                value = row.read(dbfindexes[index]);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to decode attribute "
+                        + featureType.getDescriptor(index).getLocalName() + " of feature "
+                        + getID(), e);
+            }
+            values[index] = convert(value, featureType.getDescriptor(index));
+            markDecoded(index);
+        }
+    }
+
+    /**
+     * Decodes all attributes, used before handing out direct access to the values
+     */
+    void decodeAll() {
+        for (int i = 0; decoded != null && i < values.length; i++) {
+            decode(i);
+        }
+    }
+
+    void markDecoded(int index) {
+        if (decoded != null && !decoded[index]) {
+            decoded[index] = true;
+            if (--pending == 0) {
+                // release the raw record
+                row = null;
+                decoded = null;
+            }
+        }
+    }
+
+    /**
+     * Same conversion as {@link org.geotools.feature.simple.SimpleFeatureBuilder}
+     */
+    Object convert(Object value, AttributeDescriptor descriptor) {
+        if (value != null) {
+            Class<?> target = descriptor.getType().getBinding();
+            if (!target.isInstance(value)) {
+                Object converted = Converters.convert(value, target);
+                if (converted != null) {
+                    value = converted;
+                }
+            }
+        } else if (!descriptor.isNillable()) {
+            value = descriptor.getDefaultValue();
+            if (value == null) {
+                value = DataUtilities.defaultValue(descriptor.getType().getBinding());
+            }
+        }
+        return value;
+    }
+
+    @Override
+    public Object getAttribute(int index) throws IndexOutOfBoundsException {
+        decode(index);
+        return super.getAttribute(index);
+    }
+
+    @Override
+    public void setAttribute(int index, Object value) throws IndexOutOfBoundsException {
+        super.setAttribute(index, value);
+        markDecoded(index);
+    }
+
+    @Override
+    public List<Object> getAttributes() {
+        decodeAll();
+        return super.getAttributes();
+    }
+
+    @Override
+    public void setAttributes(List<Object> values) {
+        super.setAttributes(values);
+        row = null;
+        decoded = null;
+    }
+
+    @Override
+    public Collection<Property> getProperties() {
+        decodeAll();
+        return super.getProperties();
+    }
+
+    @Override
+    public Collection<Property> getProperties(String name) {
+        decodeAll();
+        return super.getProperties(name);
+    }
+
+    @Override
+    public Property getProperty(String name) {
+        decodeAll();
+        return super.getProperty(name);
+    }
+
+    @Override
+    public void setValue(Collection<Property> values) {
+        super.setValue(values);
+        row = null;
+        decoded = null;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        decodeAll();
+        return super.equals(obj);
+    }
+
+    @Override
+    public void validate() {
+        decodeAll();
+        super.validate();
+    }
+
+    @Override
+    public String toString() {
+        decodeAll();
+        return super.toString();
+    }
+}
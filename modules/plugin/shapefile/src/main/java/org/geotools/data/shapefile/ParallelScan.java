@@ -0,0 +1,211 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.shapefile;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geotools.data.FeatureReader;
+import org.geotools.data.Query;
+import org.geotools.feature.visitor.MergeableFeatureCalc;
+import org.geotools.util.logging.Logging;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+/**
+ * Visits a shapefile in parallel: the records are split in contiguous ranges, each range is
+ * read by its own shp/dbf readers and visited by a partial copy of the visitor on a shared
+ * executor, and the partial results are finally merged back into the original visitor.
+ * <p>
+ * Random access to the records is provided by the .shx file, which must be available.
+ */
+class ParallelScan {
+
+    static final Logger LOGGER = Logging.getLogger(ParallelScan.class);
+
+    /**
+     * The minimum number of records in a range, with less than that the cost of opening the
+     * files and starting the tasks is not paid back
+     */
+    static final int MIN_RANGE_SIZE = 10000;
+
+    static ExecutorService executor;
+
+    final ShapefileFeatureSource source;
+
+    final Query query;
+
+    final int threads;
+
+    int minRangeSize = MIN_RANGE_SIZE;
+
+    volatile boolean cancelled;
+
+    /**
+     * Returns the executor shared by all the parallel scans. It runs at most as many threads as
+     * the available processors, the ranges in excess wait in its queue. Its threads are daemons
+     * and die after being idle for a while
+     */
+    static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            int processors = Runtime.getRuntime().availableProcessors();
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(processors, processors, 60L,
+                    TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                        AtomicInteger count = new AtomicInteger();
+
+                        public Thread newThread(Runnable r) {
+                            Thread t = new Thread(r, "gt-shapefile-scan-"
+                                    + count.incrementAndGet());
+                            t.setDaemon(true);
+                            return t;
+                        }
+                    });
+            pool.allowCoreThreadTimeOut(true);
+            executor = pool;
+        }
+        return executor;
+    }
+
+    public ParallelScan(ShapefileFeatureSource source, Query query, int threads) {
+        this.source = source;
+        this.query = query;
+        this.threads = threads;
+    }
+
+    /**
+     * Visits the records in parallel
+     *
+     * @param visitor the visitor, will contain the merged results at the end of the visit
+     * @param records the number of records in the shapefile
+     * @return false if the shapefile is too small to be worth a parallel visit, or the visitor
+     *         cannot be split in partial ones, in this case the visitor has not been touched
+     * @throws IOException
+     */
+    boolean visit(MergeableFeatureCalc visitor, int records) throws IOException {
+        int ranges = Math.min(threads, records / Math.max(1, minRangeSize));
+        if (ranges < 2) {
+            return false;
+        }
+        List<MergeableFeatureCalc> partials = new ArrayList<MergeableFeatureCalc>(ranges);
+        for (int i = 0; i < ranges; i++) {
+            MergeableFeatureCalc partial = visitor.createPartial();
+            if (partial == null) {
+                return false;
+            }
+            partials.add(partial);
+        }
+        // this also makes sure the schema is computed before the readers get built in parallel
+        String typeName = source.getSchema().getTypeName();
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Visiting " + records + " records of " + typeName + " in " + ranges
+                    + " parallel ranges");
+        }
+
+        List<Future<MergeableFeatureCalc>> futures = new ArrayList<Future<MergeableFeatureCalc>>();
+        try {
+            ExecutorService executor = getExecutor();
+            for (int i = 0; i < ranges; i++) {
+                int first = (int) ((long) records * i / ranges);
+                int next = (int) ((long) records * (i + 1) / ranges);
+                futures.add(executor.submit(new RangeVisit(partials.get(i), first, next
+                        - first)));
+            }
+
+            // wait for all ranges to complete before touching the visitor
+            for (Future<MergeableFeatureCalc> future : futures) {
+                future.get();
+            }
+            for (MergeableFeatureCalc partial : partials) {
+                visitor.merge(partial);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            cancel(futures);
+            Thread.currentThread().interrupt();
+            InterruptedIOException ioe = new InterruptedIOException(
+                    "Interrupted while visiting the shapefile");
+            ioe.initCause(e);
+            throw ioe;
+        } catch (ExecutionException e) {
+            cancel(futures);
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Failed to visit the shapefile: " + cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Stops the ranges still running, and makes sure the ones still queued will not run. The
+     * running ones are not interrupted, that would close the channels they are reading from
+     */
+    void cancel(List<Future<MergeableFeatureCalc>> futures) {
+        cancelled = true;
+        for (Future<MergeableFeatureCalc> future : futures) {
+            future.cancel(false);
+        }
+    }
+
+    /**
+     * Visits a range of records with a partial visitor
+     */
+    class RangeVisit implements Callable<MergeableFeatureCalc> {
+
+        MergeableFeatureCalc partial;
+
+        int first;
+
+        int count;
+
+        public RangeVisit(MergeableFeatureCalc partial, int first, int count) {
+            this.partial = partial;
+            this.first = first;
+            this.count = count;
+        }
+
+        public MergeableFeatureCalc call() throws Exception {
+            FeatureReader<SimpleFeatureType, SimpleFeature> reader = source.getRangeReader(
+                    query, first, count);
+            try {
+                while (!cancelled && reader.hasNext()) {
+                    partial.visit(reader.next());
+                }
+            } catch (Exception e) {
+                // no point in keeping the other ranges going
+                cancelled = true;
+                throw e;
+            } finally {
+                reader.close();
+            }
+            return partial;
+        }
+    }
+}
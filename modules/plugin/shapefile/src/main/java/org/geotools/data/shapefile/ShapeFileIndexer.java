@@ -33,6 +33,7 @@ import org.geotools.data.shapefile.files.ShpFiles;
 import org.geotools.data.shapefile.files.StorageFile;
 import org.geotools.data.shapefile.index.LockTimeoutException;
 import org.geotools.data.shapefile.index.TreeException;
+import org.geotools.data.shapefile.index.hilbert.PackedRTreeBuilder;
 import org.geotools.data.shapefile.index.quadtree.Node;
 import org.geotools.data.shapefile.index.quadtree.QuadTree;
 import org.geotools.data.shapefile.index.quadtree.StoreException;
@@ -62,6 +63,8 @@ class ShapeFileIndexer implements FileWriter {
     
     private int max = -1;
     private int leafSize = 16;
+    private int nodeSize = PackedRTreeBuilder.DEFAULT_NODE_SIZE;
+    private ShpFileType indexType = ShpFileType.QIX;
 
 	private String byteOrder;
     private boolean interactive = false;
@@ -79,9 +82,12 @@ class ShapeFileIndexer implements FileWriter {
 
         for (int i = 0; i < args.length; i++) {
             if (args[i].equals("-t")) {
-                // idx.setIdxType(IndexType.valueOf(args[++i]));
-                // just skip it for backwards compatibility
-                i++;
+                // anything but HRX is a quadtree, for backwards compatibility
+                if ("HRX".equalsIgnoreCase(args[++i])) {
+                    idx.setIndexType(ShpFileType.HRX);
+                }
+            } else if (args[i].equals("-n")) {
+                idx.setNodeSize(Integer.parseInt(args[++i]));
             } else if (args[i].equals("-M")) {
                 idx.setMax(Integer.parseInt(args[++i]));
             } else if (args[i].equals("-s")) {
@@ -115,15 +121,19 @@ class ShapeFileIndexer implements FileWriter {
     }
 
     private static void usage() {
-        System.out.println("Usage: ShapeFileIndexer " + "-t <QIX> "
+        System.out.println("Usage: ShapeFileIndexer " + "-t <QIX | HRX> "
                 + "[-M <max tree depth>] "
                 + "[-b <byte order NL | NM>] " + "<shape file>"
-                + "[-s <max number of items in a leaf>]");
+                + "[-s <max number of items in a leaf>]"
+                + "[-n <number of entries in a node>]");
 
         System.out.println();
 
         System.out.println("Options:");
-        System.out.println("\t-t Index type: RTREE or QUADTREE");
+        System.out.println("\t-t Index type: QIX (quadtree) or HRX (packed Hilbert R-tree)");
+        System.out.println();
+        System.out.println("Following options apllies only to HRX:");
+        System.out.println("\t-n number of entries in each tree node (default 16)");
         System.out.println();
         System.out.println("Following options apllies only to QUADTREE:");
         System.out.println("\t-b byte order to use: NL = LSB; "
@@ -165,32 +175,36 @@ class ShapeFileIndexer implements FileWriter {
         ShapefileReader reader = null;
 
         // Temporary file for building...
-        StorageFile storage = shpFiles.getStorageFile(ShpFileType.QIX);
+        StorageFile storage = shpFiles.getStorageFile(indexType);
         File treeFile = storage.getFile();
 
         try {
             reader = new ShapefileReader(shpFiles, true, false, new GeometryFactory());
             
-            if(max == -1) {
-                // compute a reasonable index max depth, considering a fully developed
-                // 10 levels one already contains 200k index nodes, good for indexing up
-                // to 3M features without consuming too much memory
-                int features = reader.getCount(0);
-                max = 1;
-                int nodes = 1;
-                while(nodes * leafSize < features) {
-                    max++;
-                    nodes *= 4;
-                }
-                if(max < 10) {
-                    max = 10;
-                }
+            if (indexType == ShpFileType.HRX) {
+                cnt = this.buildPackedTree(reader, treeFile, verbose);
+            } else {
+                if(max == -1) {
+                    // compute a reasonable index max depth, considering a fully developed
+                    // 10 levels one already contains 200k index nodes, good for indexing up
+                    // to 3M features without consuming too much memory
+                    int features = reader.getCount(0);
+                    max = 1;
+                    int nodes = 1;
+                    while(nodes * leafSize < features) {
+                        max++;
+                        nodes *= 4;
+                    }
+                    if(max < 10) {
+                        max = 10;
+                    }
                 
-                reader.close();
-                reader = new ShapefileReader(shpFiles, true, false, new GeometryFactory());
-            }
+                    reader.close();
+                    reader = new ShapefileReader(shpFiles, true, false, new GeometryFactory());
+                }
             
-            cnt = this.buildQuadTree(reader, treeFile, verbose);
+                cnt = this.buildQuadTree(reader, treeFile, verbose);
+            }
         } finally {
             if (reader != null)
                 reader.close();
@@ -202,6 +216,35 @@ class ShapeFileIndexer implements FileWriter {
         return cnt;
     }
 
+    private int buildPackedTree(ShapefileReader reader, File file, boolean verbose)
+            throws IOException {
+        LOGGER.fine("Building packed Hilbert R-tree spatial index with node size " + nodeSize
+                + " for file " + file.getAbsolutePath());
+
+        IndexFile shpIndex = new IndexFile(shpFiles, false);
+        int numRecs;
+        try {
+            numRecs = shpIndex.getRecordCount();
+        } finally {
+            shpIndex.close();
+        }
+
+        PackedRTreeBuilder builder = new PackedRTreeBuilder(nodeSize, numRecs);
+        while (reader.hasNext()) {
+            Record rec = reader.nextRecord();
+            builder.add(rec.minX, rec.minY, rec.maxX, rec.maxY, rec.offset());
+
+            if (verbose && ((builder.getCount() % 1000) == 0)) {
+                System.out.print('.');
+            }
+        }
+        if (verbose)
+            System.out.println("done");
+        builder.write(file);
+
+        return builder.getCount();
+    }
+
     private int buildQuadTree(ShapefileReader reader, File file, boolean verbose)
             throws IOException, StoreException {
         LOGGER.fine("Building quadtree spatial index with depth " +  max + " for file " + file.getAbsolutePath());
@@ -432,4 +475,34 @@ class ShapeFileIndexer implements FileWriter {
 	public void setLeafSize(int leafSize) {
 		this.leafSize = leafSize;
 	}
+
+    public ShpFileType getIndexType() {
+        return indexType;
+    }
+
+    /**
+     * Sets the type of spatial index to be built, either {@link ShpFileType#QIX} (the default)
+     * or {@link ShpFileType#HRX}
+     * 
+     * @param indexType
+     */
+    public void setIndexType(ShpFileType indexType) {
+        if (indexType != ShpFileType.QIX && indexType != ShpFileType.HRX) {
+            throw new IllegalArgumentException("Unsupported spatial index type " + indexType);
+        }
+        this.indexType = indexType;
+    }
+
+    public int getNodeSize() {
+        return nodeSize;
+    }
+
+    /**
+     * Sets the number of entries in each node of the packed R-tree
+     * 
+     * @param nodeSize
+     */
+    public void setNodeSize(int nodeSize) {
+        this.nodeSize = nodeSize;
+    }
 }
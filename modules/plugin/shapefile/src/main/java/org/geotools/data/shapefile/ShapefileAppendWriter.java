@@ -0,0 +1,789 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.shapefile;
+
+import static org.geotools.data.shapefile.files.ShpFileType.*;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.Calendar;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geotools.data.DataSourceException;
+import org.geotools.data.DataUtilities;
+import org.geotools.data.FeatureWriter;
+import org.geotools.data.shapefile.dbf.DbaseFileHeader;
+import org.geotools.data.shapefile.dbf.DbaseFileWriter;
+import org.geotools.data.shapefile.fid.FidIndexer;
+import org.geotools.data.shapefile.fid.IndexedFidWriter;
+import org.geotools.data.shapefile.files.FileWriter;
+import org.geotools.data.shapefile.files.ShpFileType;
+import org.geotools.data.shapefile.files.ShpFiles;
+import org.geotools.data.shapefile.shp.JTSUtilities;
+import org.geotools.data.shapefile.shp.ShapeHandler;
+import org.geotools.data.shapefile.shp.ShapeType;
+import org.geotools.data.shapefile.shp.ShapefileException;
+import org.geotools.data.shapefile.shp.ShapefileHeader;
+import org.geotools.data.shapefile.shp.ShapefileWriter;
+import org.geotools.resources.NIOUtilities;
+import org.geotools.util.logging.Logging;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.GeometryDescriptor;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+/**
+ * A FeatureWriter that appends new features at the end of an existing shapefile, extending the
+ * .shp, .shx and .dbf files in place instead of copying them into temporary files like
+ * {@link ShapefileFeatureWriter} does, so that the cost of an append depends on the number of
+ * features added, not on the size of the shapefile.
+ * <p>
+ * The headers are rewritten on close, once the new records have been forced to disk. Before
+ * touching the files the original headers and lengths are saved in a journal, which is removed
+ * once the headers are updated: should the process die in between, the journal is used to roll
+ * back the files to their original state the next time they are opened, see
+ * {@link #recover(ShpFiles)}.
+ * <p>
+ * The .fix index is extended along with the shapefile, and the new records are added to the
+ * .qix index if it was up to date. The packed R-tree and the attribute indexes cannot be
+ * extended, they are marked stale and rebuilt on demand.
+ */
+class ShapefileAppendWriter implements FeatureWriter<SimpleFeatureType, SimpleFeature>, FileWriter {
+
+    static final Logger LOGGER = Logging.getLogger(ShapefileAppendWriter.class);
+
+    static final byte DBF_EOF_MARKER = 0x1A;
+
+    ShpFiles shpFiles;
+
+    IndexManager indexManager;
+
+    SimpleFeatureType featureType;
+
+    // the positions of the attributes written in the dbf
+    int[] dbfAttributes;
+
+    // an array for reuse in Feature creation
+    Object[] emptyAtts;
+
+    // an array for reuse in writing to dbf
+    Object[] transferCache;
+
+    FileChannel shpChannel;
+
+    FileChannel shxChannel;
+
+    FileChannel dbfChannel;
+
+    FileChannel fixChannel;
+
+    ShapefileWriter shpWriter;
+
+    DbaseFileWriter dbfWriter;
+
+    ShapeType shapeType;
+
+    ShapeHandler handler;
+
+    // the number of records found in the shapefile, and the current one
+    int originalRecords;
+
+    int records;
+
+    // the length of the .shp file, in bytes
+    long shapefileLength;
+
+    Envelope bounds;
+
+    boolean dbfEofMarker;
+
+    // the next feature id, if the fid index is being extended
+    long nextFid = -1;
+
+    long fixPosition;
+
+    ByteBuffer fixBuffer;
+
+    boolean regenerateFix;
+
+    // the bounds of the appended records, if the quadtree is going to be updated
+    double[] envelopes;
+
+    Journal journal;
+
+    SimpleFeature currentFeature;
+
+    boolean closed;
+
+    /**
+     * Opens an append writer on the shapefile of the specified store, or returns null if the
+     * features cannot be appended in place, because the files are not local, or are empty, or do
+     * not look consistent with each other
+     */
+    static ShapefileAppendWriter open(ShapefileDataStore store, SimpleFeatureType featureType)
+            throws IOException {
+        ShpFiles shpFiles = store.shpFiles;
+        if (!shpFiles.isLocal() || !shpFiles.exists(SHP) || !shpFiles.exists(SHX)
+                || !shpFiles.exists(DBF)) {
+            return null;
+        }
+        recover(shpFiles);
+
+        ShapefileAppendWriter writer = new ShapefileAppendWriter(store, featureType);
+        boolean success = false;
+        try {
+            success = writer.init(store);
+            return success ? writer : null;
+        } finally {
+            if (!success) {
+                writer.rollback();
+                writer.closeChannels();
+            }
+        }
+    }
+
+    ShapefileAppendWriter(ShapefileDataStore store, SimpleFeatureType featureType) {
+        this.shpFiles = store.shpFiles;
+        this.indexManager = store.indexManager;
+        this.featureType = featureType;
+
+        int count = 0;
+        int[] attributes = new int[featureType.getAttributeCount()];
+        for (int i = 0; i < featureType.getAttributeCount(); i++) {
+            // if its a geometry, we don't want to write it to the dbf...
+            if (!(featureType.getDescriptor(i) instanceof GeometryDescriptor)) {
+                attributes[count++] = i;
+            }
+        }
+        dbfAttributes = new int[count];
+        System.arraycopy(attributes, 0, dbfAttributes, 0, count);
+        emptyAtts = new Object[featureType.getAttributeCount()];
+        transferCache = new Object[count];
+    }
+
+    /**
+     * Reads the headers, journals them, and moves the writers at the end of the files
+     */
+    boolean init(ShapefileDataStore store) throws IOException {
+        // check which indexes can be extended before the shapefile gets modified
+        boolean fidIndexed = indexManager.hasFidIndex(false) || store.isFidIndexed()
+                && indexManager.hasFidIndex(true);
+        boolean updateQuadTree = shpFiles.exists(QIX) && !indexManager.isIndexStale(QIX);
+        File journalFile = getJournalFile(shpFiles);
+
+        shpChannel = (FileChannel) shpFiles.getWriteChannel(SHP, this);
+        shxChannel = (FileChannel) shpFiles.getWriteChannel(SHX, this);
+        dbfChannel = (FileChannel) shpFiles.getWriteChannel(DBF, this);
+
+        // shp and shx headers
+        byte[] shpHeaderBytes = readBytes(shpChannel, 0, 100);
+        byte[] shxHeaderBytes = readBytes(shxChannel, 0, 100);
+        if (shpHeaderBytes == null || shxHeaderBytes == null) {
+            return false;
+        }
+        ShapefileHeader shpHeader = new ShapefileHeader();
+        shpHeader.read(ByteBuffer.wrap(shpHeaderBytes), true);
+        ShapefileHeader shxHeader = new ShapefileHeader();
+        shxHeader.read(ByteBuffer.wrap(shxHeaderBytes), true);
+        shapeType = shpHeader.getShapeType();
+        shapefileLength = shpHeader.getFileLength() * 2L;
+        long shxLength = shxHeader.getFileLength() * 2L;
+        int shxRecords = (int) ((shxLength - 100) / 8);
+        if (shapeType == null || shapeType == ShapeType.NULL || shapeType == ShapeType.UNDEFINED
+                || shpChannel.size() < shapefileLength || shxChannel.size() < shxLength
+                || shxRecords <= 0) {
+            return false;
+        }
+
+        // dbf header, only the record count is going to change
+        DbaseFileHeader dbfHeader = new DbaseFileHeader();
+        dbfChannel.position(0);
+        dbfHeader.readHeader(dbfChannel, store.getCharset());
+        long dbfLength = dbfHeader.getHeaderLength() + (long) dbfHeader.getNumRecords()
+                * dbfHeader.getRecordLength();
+        if (dbfHeader.getNumRecords() != shxRecords || dbfChannel.size() < dbfLength
+                || dbfHeader.getNumFields() != dbfAttributes.length) {
+            return false;
+        }
+        byte[] marker = readBytes(dbfChannel, dbfLength, 1);
+        dbfEofMarker = marker != null && marker[0] == DBF_EOF_MARKER;
+        originalRecords = records = shxRecords;
+
+        // fid index, extended if it's in sync with the shapefile, rebuilt otherwise
+        long fixLength = -1;
+        byte[] fixHeaderBytes = null;
+        if (fidIndexed) {
+            fixChannel = (FileChannel) shpFiles.getWriteChannel(FIX, this);
+            fixHeaderBytes = readBytes(fixChannel, 0, IndexedFidWriter.HEADER_SIZE);
+            ByteBuffer fixHeader = fixHeaderBytes == null ? null : ByteBuffer.wrap(fixHeaderBytes);
+            if (fixHeader != null && fixHeader.getLong(1) == records) {
+                fixLength = IndexedFidWriter.HEADER_SIZE + (long) records
+                        * IndexedFidWriter.RECORD_SIZE;
+                byte[] last = readBytes(fixChannel, fixLength - IndexedFidWriter.RECORD_SIZE, 8);
+                if (last != null) {
+                    nextFid = ByteBuffer.wrap(last).getLong() + 1;
+                    fixPosition = fixLength;
+                    fixBuffer = NIOUtilities.allocate(IndexedFidWriter.RECORD_SIZE * 1024);
+                }
+            }
+            if (nextFid < 0) {
+                fixChannel.close();
+                fixChannel = null;
+                fixHeaderBytes = null;
+                fixLength = -1;
+                regenerateFix = true;
+            }
+        }
+
+        // save what's needed to roll back before touching anything
+        journal = new Journal(journalFile);
+        journal.add(SHP, shpHeaderBytes, shapefileLength);
+        journal.add(SHX, shxHeaderBytes, shxLength);
+        journal.add(DBF, readBytes(dbfChannel, 0, 8), dbfLength);
+        if (fixChannel != null) {
+            journal.add(FIX, fixHeaderBytes, fixLength);
+        }
+        journal.write();
+
+        // move at the end of the files
+        try {
+            handler = shapeType.getShapeHandler(new GeometryFactory());
+        } catch (ShapefileException e) {
+            throw new DataSourceException("Unexpected shape type " + shapeType, e);
+        }
+        shpWriter = new ShapefileWriter(shpChannel, shxChannel);
+        shpWriter.moveToEnd(shapeType, records, (int) shapefileLength);
+        dbfChannel.position(dbfLength);
+        dbfWriter = new DbaseFileWriter(dbfHeader, dbfChannel, store.getCharset(),
+                store.getTimeZone(), true);
+        bounds = new Envelope(shpHeader.minX(), shpHeader.maxX(), shpHeader.minY(),
+                shpHeader.maxY());
+        if (updateQuadTree) {
+            envelopes = new double[4 * 1024];
+        }
+
+        return true;
+    }
+
+    /**
+     * Reads the specified number of bytes at the given position, or returns null if the file is
+     * too short
+     */
+    static byte[] readBytes(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                return null;
+            }
+        }
+        return buffer.array();
+    }
+
+    public SimpleFeatureType getFeatureType() {
+        return featureType;
+    }
+
+    /**
+     * Always false, the writer only appends new features
+     */
+    public boolean hasNext() throws IOException {
+        if (closed) {
+            throw new IOException("Writer closed");
+        }
+        return false;
+    }
+
+    public SimpleFeature next() throws IOException {
+        if (closed) {
+            throw new IOException("Writer closed");
+        }
+
+        // we have to write the current feature back into the stream
+        if (currentFeature != null) {
+            write();
+        }
+
+        return currentFeature = DataUtilities.template(featureType, nextFeatureId(), emptyAtts);
+    }
+
+    /**
+     * The id of the next feature to be written
+     */
+    String nextFeatureId() {
+        long id = nextFid >= 0 ? nextFid : records + 1;
+        return featureType.getTypeName() + "." + id;
+    }
+
+    public void remove() throws IOException {
+        if (closed) {
+            throw new IOException("Writer closed");
+        }
+        if (currentFeature == null) {
+            throw new IOException("Current feature is null");
+        }
+
+        // the feature has not been written yet, just forget about it
+        currentFeature = null;
+    }
+
+    public void write() throws IOException {
+        if (closed) {
+            throw new IOException("Writer closed");
+        }
+        if (currentFeature == null) {
+            throw new IOException("Current feature is null");
+        }
+
+        Geometry g = (Geometry) currentFeature.getDefaultGeometry();
+        g = JTSUtilities.convertToCollection(g, shapeType);
+        int length = g == null ? 4 : handler.getLength(g);
+        checkLength(length);
+        shpWriter.writeGeometry(g);
+
+        for (int i = 0; i < dbfAttributes.length; i++) {
+            transferCache[i] = currentFeature.getAttribute(dbfAttributes[i]);
+        }
+        recordWritten(length, g == null ? null : g.getEnvelopeInternal(), transferCache);
+
+        currentFeature = null;
+    }
+
+    /**
+     * Writes a record whose shape has been already encoded by
+     * {@link ShapefileWriter#encodeGeometry(Geometry, ShapeType, ShapeHandler)}
+     *
+     * @param shape the encoded shape
+     * @param envelope the envelope of the geometry, or null if the geometry is null
+     * @param values the dbf attribute values
+     */
+    void write(ByteBuffer shape, Envelope envelope, Object[] values) throws IOException {
+        if (closed) {
+            throw new IOException("Writer closed");
+        }
+        int length = shape.remaining();
+        checkLength(length);
+        shpWriter.writeEncodedGeometry(shape);
+        recordWritten(length, envelope, values);
+    }
+
+    void checkLength(int shapeLength) throws IOException {
+        // offsets and lengths are stored as integer counts of 16 bit words
+        if (shapefileLength + shapeLength + 8 > Integer.MAX_VALUE) {
+            throw new DataSourceException("Cannot append more features, the .shp file "
+                    + "would grow beyond the 2GB limit");
+        }
+    }
+
+    /**
+     * Updates the bounds and length, writes the attributes and the index entries of the record
+     * just appended to the .shp file
+     */
+    void recordWritten(int shapeLength, Envelope envelope, Object[] values) throws IOException {
+        shapefileLength += shapeLength + 8;
+        if (envelope != null && !envelope.isNull()) {
+            bounds.expandToInclude(envelope);
+        }
+
+        dbfWriter.write(values);
+
+        if (fixBuffer != null) {
+            if (fixBuffer.remaining() < IndexedFidWriter.RECORD_SIZE) {
+                drainFix();
+            }
+            fixBuffer.putLong(nextFid++);
+            fixBuffer.putInt(records);
+        }
+
+        if (envelopes != null) {
+            int base = (records - originalRecords) * 4;
+            if (base + 4 > envelopes.length) {
+                double[] grown = new double[envelopes.length * 2];
+                System.arraycopy(envelopes, 0, grown, 0, envelopes.length);
+                envelopes = grown;
+            }
+            if (envelope == null || envelope.isNull()) {
+                envelopes[base] = Double.NaN;
+            } else {
+                envelopes[base] = envelope.getMinX();
+                envelopes[base + 1] = envelope.getMinY();
+                envelopes[base + 2] = envelope.getMaxX();
+                envelopes[base + 3] = envelope.getMaxY();
+            }
+        }
+
+        records++;
+    }
+
+    void drainFix() throws IOException {
+        fixBuffer.flip();
+        while (fixBuffer.hasRemaining()) {
+            fixPosition += fixChannel.write(fixBuffer, fixPosition);
+        }
+        fixBuffer.clear();
+    }
+
+    /**
+     * Updates the headers, making the new records visible, and the indexes
+     */
+    public void close() throws IOException {
+        if (closed) {
+            throw new IOException("Writer closed");
+        }
+
+        try {
+            // make sure to write the last feature...
+            if (currentFeature != null) {
+                write();
+            }
+            commit();
+        } catch (IOException e) {
+            rollback();
+            throw e;
+        } catch (RuntimeException e) {
+            rollback();
+            throw e;
+        } finally {
+            closed = true;
+            closeChannels();
+        }
+
+        updateIndexes();
+    }
+
+    void commit() throws IOException {
+        // cut away whatever might be lying after the new records, and make them durable
+        if (dbfEofMarker) {
+            ByteBuffer marker = ByteBuffer.wrap(new byte[] { DBF_EOF_MARKER });
+            while (marker.hasRemaining()) {
+                dbfChannel.write(marker);
+            }
+        }
+        truncate(shpChannel, shapefileLength);
+        truncate(shxChannel, 100 + 8L * records);
+        truncate(dbfChannel, dbfChannel.position());
+        if (fixBuffer != null) {
+            drainFix();
+            truncate(fixChannel, fixPosition);
+        }
+        force();
+
+        // then update the headers
+        shpWriter.writeHeaders(bounds, shapeType, records, (int) shapefileLength);
+        ByteBuffer dbfHeader = ByteBuffer.allocate(7);
+        dbfHeader.order(ByteOrder.LITTLE_ENDIAN);
+        Calendar c = Calendar.getInstance();
+        dbfHeader.put((byte) (c.get(Calendar.YEAR) % 100));
+        dbfHeader.put((byte) (c.get(Calendar.MONTH) + 1));
+        dbfHeader.put((byte) (c.get(Calendar.DAY_OF_MONTH)));
+        dbfHeader.putInt(records);
+        writeFully(dbfChannel, dbfHeader, 1);
+        if (fixChannel != null) {
+            ByteBuffer fixHeader = ByteBuffer.allocate(8);
+            fixHeader.putLong(records);
+            writeFully(fixChannel, fixHeader, 1);
+        }
+        force();
+
+        journal.delete();
+        journal = null;
+    }
+
+    void rollback() {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.rollback(new FileChannel[] { shpChannel, shxChannel, dbfChannel, fixChannel });
+            journal.delete();
+        } catch (Throwable t) {
+            LOGGER.log(Level.SEVERE, "Failed to roll back the append to "
+                    + shpFiles.get(SHP) + ", it will be retried the next time it's opened", t);
+        }
+        journal = null;
+    }
+
+    void force() throws IOException {
+        shpChannel.force(false);
+        shxChannel.force(false);
+        dbfChannel.force(false);
+        if (fixChannel != null) {
+            fixChannel.force(false);
+        }
+    }
+
+    static void truncate(FileChannel channel, long length) throws IOException {
+        if (channel.size() > length) {
+            channel.truncate(length);
+        }
+    }
+
+    static void writeFully(FileChannel channel, ByteBuffer buffer, long position)
+            throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    void closeChannels() throws IOException {
+        try {
+            if (shpWriter != null) {
+                shpWriter.close();
+            } else {
+                closeChannel(shpChannel);
+                closeChannel(shxChannel);
+            }
+            if (dbfWriter != null) {
+                dbfWriter.close();
+            } else {
+                closeChannel(dbfChannel);
+            }
+            closeChannel(fixChannel);
+        } finally {
+            if (fixBuffer != null) {
+                NIOUtilities.clean(fixBuffer, false);
+                fixBuffer = null;
+            }
+            shpWriter = null;
+            dbfWriter = null;
+            shpChannel = shxChannel = dbfChannel = fixChannel = null;
+        }
+    }
+
+    void closeChannel(FileChannel channel) throws IOException {
+        if (channel != null && channel.isOpen()) {
+            channel.close();
+        }
+    }
+
+    /**
+     * Brings the indexes in sync with the new contents of the shapefile
+     */
+    void updateIndexes() {
+        try {
+            if (regenerateFix) {
+                FidIndexer.generate(shpFiles);
+            }
+        } catch (Throwable e) {
+            LOGGER.log(Level.WARNING, "Error creating Feature ID index", e);
+        }
+        if (envelopes != null) {
+            try {
+                indexManager.appendToQuadTree(originalRecords, envelopes, records
+                        - originalRecords);
+            } catch (Throwable e) {
+                LOGGER.log(Level.WARNING, "Error updating the spatial index, it will be rebuilt",
+                        e);
+                deleteFile(QIX);
+            }
+        }
+        indexManager.closePackedTree();
+        deleteFile(HRX);
+        indexManager.invalidateAttributeIndexes();
+    }
+
+    void deleteFile(ShpFileType type) {
+        File file = shpFiles.acquireWriteFile(type, this);
+        try {
+            if (file.exists()) {
+                file.delete();
+            }
+        } finally {
+            shpFiles.unlockWrite(file, this);
+        }
+    }
+
+    public String id() {
+        return getClass().getName();
+    }
+
+    /**
+     * Returns the journal file for the specified shapefile
+     */
+    static File getJournalFile(ShpFiles shpFiles) {
+        File shpFile = shpFiles.acquireReadFile(SHP, RECOVERY);
+        try {
+            return new File(shpFile.getParentFile(), shpFile.getName() + ".journal");
+        } finally {
+            shpFiles.unlockRead(shpFile, RECOVERY);
+        }
+    }
+
+    /**
+     * Rolls back an append that did not complete, if any, restoring the files as they were before
+     * it started. The journal is read only once the files are locked, an append still running in
+     * another store would otherwise be rolled back as soon as it commits.
+     */
+    static void recover(ShpFiles shpFiles) throws IOException {
+        if (!shpFiles.isLocal() || !getJournalFile(shpFiles).exists()) {
+            return;
+        }
+
+        // lock in the same order as the append writer does
+        FileChannel[] channels = new FileChannel[Journal.TYPES.length];
+        try {
+            try {
+                for (int i = 0; i < channels.length; i++) {
+                    if (shpFiles.exists(Journal.TYPES[i])) {
+                        channels[i] = (FileChannel) shpFiles.getWriteChannel(Journal.TYPES[i],
+                                RECOVERY);
+                    }
+                }
+            } catch (OverlappingFileLockException e) {
+                // the files are being appended to by another store in this JVM
+                LOGGER.fine("Append in progress on " + shpFiles.get(SHP) + ", skipping recovery");
+                return;
+            }
+
+            // the append holding the locks might have completed in the meantime
+            File file = getJournalFile(shpFiles);
+            if (!file.exists()) {
+                return;
+            }
+            LOGGER.warning("Found an incomplete append on " + shpFiles.get(SHP)
+                    + ", rolling it back");
+            Journal journal = Journal.read(file);
+            journal.rollback(channels);
+            journal.delete();
+        } finally {
+            for (FileChannel channel : channels) {
+                if (channel != null) {
+                    channel.close();
+                }
+            }
+        }
+    }
+
+    static final FileWriter RECOVERY = new FileWriter() {
+
+        public String id() {
+            return "Shapefile append recovery";
+        }
+    };
+
+    /**
+     * The original headers and lengths of the files being appended to. The journal is written in
+     * a temporary file, synced and then renamed, so that it's either complete or missing.
+     */
+    static class Journal {
+
+        static final int MAGIC = 0x4754414A; // GTAJ
+
+        static final ShpFileType[] TYPES = new ShpFileType[] { SHP, SHX, DBF, FIX };
+
+        File file;
+
+        byte[][] headers = new byte[TYPES.length][];
+
+        long[] lengths = new long[TYPES.length];
+
+        Journal(File file) {
+            this.file = file;
+        }
+
+        void add(ShpFileType type, byte[] header, long length) {
+            for (int i = 0; i < TYPES.length; i++) {
+                if (TYPES[i] == type) {
+                    headers[i] = header;
+                    lengths[i] = length;
+                }
+            }
+        }
+
+        void write() throws IOException {
+            File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+            FileOutputStream fos = new FileOutputStream(temp);
+            try {
+                DataOutputStream dos = new DataOutputStream(fos);
+                dos.writeInt(MAGIC);
+                for (int i = 0; i < TYPES.length; i++) {
+                    if (headers[i] == null) {
+                        dos.writeInt(-1);
+                    } else {
+                        dos.writeInt(headers[i].length);
+                        dos.write(headers[i]);
+                        dos.writeLong(lengths[i]);
+                    }
+                }
+                dos.flush();
+                fos.getFD().sync();
+            } finally {
+                fos.close();
+            }
+            if (!temp.renameTo(file)) {
+                temp.delete();
+                throw new IOException("Could not create the append journal " + file);
+            }
+        }
+
+        static Journal read(File file) throws IOException {
+            Journal journal = new Journal(file);
+            DataInputStream dis = new DataInputStream(new FileInputStream(file));
+            try {
+                if (dis.readInt() != MAGIC) {
+                    throw new IOException("Invalid append journal " + file);
+                }
+                for (int i = 0; i < TYPES.length; i++) {
+                    int length = dis.readInt();
+                    if (length >= 0) {
+                        journal.headers[i] = new byte[length];
+                        dis.readFully(journal.headers[i]);
+                        journal.lengths[i] = dis.readLong();
+                    }
+                }
+            } finally {
+                dis.close();
+            }
+            return journal;
+        }
+
+        /**
+         * Restores the original headers and lengths, the channels are in the same order as
+         * {@link #TYPES}
+         */
+        void rollback(FileChannel[] channels) throws IOException {
+            for (int i = 0; i < TYPES.length; i++) {
+                FileChannel channel = channels[i];
+                if (headers[i] != null && channel != null) {
+                    ByteBuffer header = ByteBuffer.wrap(headers[i]);
+                    header.position(header.limit());
+                    writeFully(channel, header, 0);
+                    truncate(channel, lengths[i]);
+                    channel.force(false);
+                }
+            }
+        }
+
+        void delete() throws IOException {
+            if (file.exists() && !file.delete()) {
+                throw new IOException("Could not remove the append journal " + file);
+            }
+        }
+    }
+}
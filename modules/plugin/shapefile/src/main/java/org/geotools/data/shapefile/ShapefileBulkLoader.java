@@ -0,0 +1,239 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.shapefile;
+
+import static org.geotools.data.shapefile.files.ShpFileType.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.geotools.data.shapefile.shp.JTSUtilities;
+import org.geotools.data.shapefile.shp.ShapeHandler;
+import org.geotools.data.shapefile.shp.ShapeType;
+import org.geotools.data.shapefile.shp.ShapefileException;
+import org.geotools.data.shapefile.shp.ShapefileWriter;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.data.simple.SimpleFeatureStore;
+import org.geotools.data.store.ContentFeatureSource;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+/**
+ * Appends large amounts of features at the end of a shapefile. The geometries are converted and
+ * encoded in batches by a pool of worker threads, while the calling thread writes the encoded
+ * records sequentially, in the same order as the source features, extending the files in place.
+ * <p>
+ * The attributes of the source features are matched by name against the shapefile ones, the
+ * default geometry is used as the shapefile geometry. If the shapefile cannot be extended in
+ * place (e.g., it's still empty, or it's not a local file) the features are added through the
+ * feature store instead.
+ * <p>
+ * The load is atomic, should any feature fail to be encoded or written the shapefile is rolled
+ * back to its original contents. When the shapefile is extended in place the features do not go
+ * through the feature store, so no {@link org.geotools.data.FeatureEvent} is fired for them,
+ * listeners interested in the new features have to be notified by the caller.
+ */
+public class ShapefileBulkLoader {
+
+    static final int DEFAULT_BATCH_SIZE = 512;
+
+    ShapefileDataStore store;
+
+    int threads;
+
+    int batchSize = DEFAULT_BATCH_SIZE;
+
+    /**
+     * Builds a new loader
+     *
+     * @param store the store whose shapefile will receive the features
+     * @param threads the number of threads encoding the geometries, if zero or negative the
+     *        number of available processors is used
+     */
+    public ShapefileBulkLoader(ShapefileDataStore store, int threads) {
+        this.store = store;
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * The number of features encoded by a worker thread in one go
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("The batch size must be positive");
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Appends the features at the end of the shapefile
+     *
+     * @return the number of features written
+     * @throws IOException
+     */
+    public int load(SimpleFeatureCollection features) throws IOException {
+        ContentFeatureSource source = store.getFeatureSource();
+        if (!(source instanceof SimpleFeatureStore)) {
+            throw new IOException("The shapefile " + store.shpFiles.get(SHP) + " is read only");
+        }
+        ShapefileAppendWriter writer = ShapefileAppendWriter.open(store, source.getSchema());
+        if (writer == null) {
+            return ((SimpleFeatureStore) source).addFeatures(features).size();
+        }
+
+        int count = 0;
+        boolean success = false;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        SimpleFeatureIterator it = features.features();
+        try {
+            // keep enough batches in flight to have the workers always busy, while the
+            // results are collected and written in the same order they were submitted
+            LinkedList<Future<EncodedBatch>> pending = new LinkedList<Future<EncodedBatch>>();
+            boolean more = true;
+            while (more || !pending.isEmpty()) {
+                while (more && pending.size() < threads * 2) {
+                    List<SimpleFeature> batch = new ArrayList<SimpleFeature>(batchSize);
+                    while (batch.size() < batchSize && it.hasNext()) {
+                        batch.add(it.next());
+                    }
+                    more = batch.size() == batchSize;
+                    if (!batch.isEmpty()) {
+                        pending.add(executor.submit(new EncodeTask(batch, writer)));
+                    }
+                }
+
+                if (!pending.isEmpty()) {
+                    EncodedBatch encoded = getBatch(pending.removeFirst());
+                    for (int i = 0; i < encoded.shapes.length; i++) {
+                        writer.write(encoded.shapes[i], encoded.envelopes[i], encoded.values[i]);
+                    }
+                    count += encoded.shapes.length;
+                }
+            }
+            success = true;
+        } finally {
+            executor.shutdownNow();
+            try {
+                it.close();
+            } finally {
+                if (success) {
+                    writer.close();
+                } else {
+                    // do not commit a partial load
+                    writer.rollback();
+                    writer.closeChannels();
+                }
+            }
+        }
+
+        return count;
+    }
+
+    EncodedBatch getBatch(Future<EncodedBatch> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the geometries to be encoded");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException("Failed to encode the geometries", cause);
+        }
+    }
+
+    /**
+     * The records ready to be written
+     */
+    static class EncodedBatch {
+        ByteBuffer[] shapes;
+
+        Envelope[] envelopes;
+
+        Object[][] values;
+
+        EncodedBatch(int size) {
+            shapes = new ByteBuffer[size];
+            envelopes = new Envelope[size];
+            values = new Object[size][];
+        }
+    }
+
+    /**
+     * Converts and encodes the geometries of a batch of features, and collects their attributes
+     */
+    static class EncodeTask implements Callable<EncodedBatch> {
+
+        List<SimpleFeature> features;
+
+        ShapeType shapeType;
+
+        String[] names;
+
+        EncodeTask(List<SimpleFeature> features, ShapefileAppendWriter writer) {
+            this.features = features;
+            this.shapeType = writer.shapeType;
+            SimpleFeatureType schema = writer.getFeatureType();
+            names = new String[writer.dbfAttributes.length];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = schema.getDescriptor(writer.dbfAttributes[i]).getLocalName();
+            }
+        }
+
+        public EncodedBatch call() throws ShapefileException {
+            // handlers are not thread safe, each task uses its own
+            ShapeHandler handler = shapeType.getShapeHandler(new GeometryFactory());
+            EncodedBatch batch = new EncodedBatch(features.size());
+            for (int i = 0; i < features.size(); i++) {
+                SimpleFeature feature = features.get(i);
+                Geometry g = JTSUtilities.convertToCollection(
+                        (Geometry) feature.getDefaultGeometry(), shapeType);
+                batch.shapes[i] = ShapefileWriter.encodeGeometry(g, shapeType, handler);
+                batch.envelopes[i] = g == null ? null : g.getEnvelopeInternal();
+                Object[] values = new Object[names.length];
+                for (int j = 0; j < names.length; j++) {
+                    values[j] = feature.getAttribute(names[j]);
+                }
+                batch.values[i] = values;
+            }
+            return batch;
+        }
+    }
+}
@@ -42,6 +42,7 @@ import org.geotools.data.Query;
 import org.geotools.data.Transaction;
 import org.geotools.data.shapefile.dbf.DbaseFileException;
 import org.geotools.data.shapefile.dbf.DbaseFileHeader;
+import org.geotools.data.shapefile.files.MemoryMapCache;
 import org.geotools.data.shapefile.files.ShpFiles;
 import org.geotools.data.shapefile.files.StorageFile;
 import org.geotools.data.shapefile.shp.ShapeType;
@@ -90,6 +91,12 @@ public class ShapefileDataStore extends ContentDataStore implements FileDataStor
     protected static final Boolean TRACE_ENABLED = "true".equalsIgnoreCase(System
             .getProperty("gt2.shapefile.trace"));
 
+    /**
+     * The default number of threads used to visit a single shapefile, 1 means no parallelism
+     */
+    static final int DEFAULT_SCAN_THREADS = Integer.getInteger("org.geotools.shapefile.scanThreads",
+            1);
+
     /**
      * The stack trace used to track code that grabs the data store without disposing it
      */
@@ -111,6 +118,10 @@ public class ShapefileDataStore extends ContentDataStore implements FileDataStor
 
     boolean fidIndexed = true;
 
+    int scanThreads = DEFAULT_SCAN_THREADS;
+
+    BackgroundIndexer backgroundIndexer;
+
     IndexManager indexManager;
 
     ShapefileSetManager shpManager;
@@ -123,6 +134,12 @@ public class ShapefileDataStore extends ContentDataStore implements FileDataStor
         }
         shpManager = new ShapefileSetManager(shpFiles, this);
         indexManager = new IndexManager(shpFiles, this);
+        try {
+            // roll back appends interrupted by a crash, if any
+            ShapefileAppendWriter.recover(shpFiles);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to roll back an incomplete append on " + url, e);
+        }
     }
 
     @Override
@@ -170,14 +187,20 @@ public class ShapefileDataStore extends ContentDataStore implements FileDataStor
 
     public void setMemoryMapped(boolean memoryMapped) {
         this.memoryMapped = memoryMapped;
+        shpFiles.setMemoryMapCacheEnabled(memoryMapped && bufferCachingEnabled);
     }
 
     public boolean isBufferCachingEnabled() {
         return bufferCachingEnabled;
     }
 
+    /**
+     * When enabled, and the store is memory mapped, the memory mapped regions are shared with all
+     * the other shapefile stores through the JVM wide {@link MemoryMapCache}
+     */
     public void setBufferCachingEnabled(boolean bufferCachingEnabled) {
         this.bufferCachingEnabled = bufferCachingEnabled;
+        shpFiles.setMemoryMapCacheEnabled(memoryMapped && bufferCachingEnabled);
     }
 
     public boolean isIndexed() {
@@ -399,6 +422,12 @@ public class ShapefileDataStore extends ContentDataStore implements FileDataStor
     @Override
     public void dispose() {
         super.dispose();
+        if (backgroundIndexer != null) {
+            backgroundIndexer.cancel(this);
+        }
+        if (indexManager != null) {
+            indexManager.dispose();
+        }
         if (shpFiles != null) {
             shpFiles.dispose();
             shpFiles = null;
@@ -478,6 +507,50 @@ public class ShapefileDataStore extends ContentDataStore implements FileDataStor
     public void setIndexCreationEnabled(boolean indexCreationEnabled) {
         this.indexCreationEnabled = indexCreationEnabled;
     }
+
+    public BackgroundIndexer getBackgroundIndexer() {
+        return backgroundIndexer;
+    }
+
+    /**
+     * Sets the indexer building the missing or stale indexes in background. When set, the
+     * queries don't wait for the indexes to be built, they scan the shapefile until the indexes
+     * are ready, and ask the indexer to build them with priority.
+     * 
+     * @param backgroundIndexer the indexer, or null to build the indexes on demand
+     */
+    public void setBackgroundIndexer(BackgroundIndexer backgroundIndexer) {
+        this.backgroundIndexer = backgroundIndexer;
+    }
+
+    /**
+     * Builds a secondary index on the specified attribute, which will be used to speed up the
+     * queries comparing it against literal values (equality, between, ranges, and the OR/AND
+     * combinations thereof). The index is stored in a sidecar file next to the dbf, and is
+     * rebuilt on demand when the dbf changes, unless index creation is disabled.
+     *
+     * @param attributeName the name of a non geometric attribute
+     * @throws IOException
+     */
+    public void createAttributeIndex(String attributeName) throws IOException {
+        indexManager.createAttributeIndex(attributeName);
+    }
+
+    public int getScanThreads() {
+        return scanThreads;
+    }
+
+    /**
+     * Sets the number of threads used to visit the shapefile with visitors that can merge partial
+     * results (see {@link org.geotools.feature.visitor.MergeableFeatureCalc}). When greater than
+     * one, the records are split in ranges, each one visited in parallel by its own readers.
+     * Defaults to 1, or the value of the "org.geotools.shapefile.scanThreads" system property
+     * 
+     * @param scanThreads
+     */
+    public void setScanThreads(int scanThreads) {
+        this.scanThreads = scanThreads;
+    }
     
     
 
@@ -178,8 +178,25 @@ public class ShapefileDataStoreFactory extends AbstractDataStoreFactory implemen
         // are we creating a directory of shapefiles store, or a single one?
         File dir = DataUtilities.urlToFile(url);
         if (dir != null && dir.isDirectory()) {
-            return new DirectoryDataStore(DataUtilities.urlToFile(url), new ShpFileStoreFactory(
-                    this, params));
+            ShpFileStoreFactory storeFactory = new ShpFileStoreFactory(this, params);
+            Boolean backgroundIndexing = lookup(ShapefileDirectoryFactory.BACKGROUND_INDEXING,
+                    params, Boolean.class);
+            if (Boolean.TRUE.equals(backgroundIndexing) && isEnableSpatialIndex.booleanValue()) {
+                Integer threads = lookup(ShapefileDirectoryFactory.INDEXING_THREADS, params,
+                        Integer.class);
+                final BackgroundIndexer indexer = new BackgroundIndexer(threads != null ? threads
+                        : 0);
+                storeFactory.backgroundIndexer = indexer;
+                // the indexer threads must go away along with the store
+                return new DirectoryDataStore(dir, storeFactory) {
+                    @Override
+                    public void dispose() {
+                        indexer.dispose();
+                        super.dispose();
+                    }
+                };
+            }
+            return new DirectoryDataStore(DataUtilities.urlToFile(url), storeFactory);
         } else {
             ShpFiles shpFiles = new ShpFiles(url);
 
@@ -264,6 +281,11 @@ public class ShapefileDataStoreFactory extends AbstractDataStoreFactory implemen
 
         Map originalParams;
 
+        /**
+         * The indexer shared by all the shapefiles in the directory, if any
+         */
+        BackgroundIndexer backgroundIndexer;
+
         public ShpFileStoreFactory(ShapefileDataStoreFactory factory, Map originalParams) {
             this.shpFactory = factory;
             this.originalParams = originalParams;
@@ -274,7 +296,13 @@ public class ShapefileDataStoreFactory extends AbstractDataStoreFactory implemen
             if (shpFactory.canProcess(url)) {
                 Map<String,Serializable> params = new HashMap<String,Serializable>(originalParams);
                 params.put(URLP.key, url);
-                return shpFactory.createDataStore(params);
+                DataStore store = shpFactory.createDataStore(params);
+                if (backgroundIndexer != null && store instanceof ShapefileDataStore) {
+                    ShapefileDataStore shpStore = (ShapefileDataStore) store;
+                    shpStore.setBackgroundIndexer(backgroundIndexer);
+                    backgroundIndexer.schedule(shpStore, false);
+                }
+                return store;
             } else {
                 return null;
             }
@@ -21,6 +21,7 @@ import java.net.URL;
 import java.util.Map;
 
 import org.geotools.data.DataUtilities;
+import org.geotools.util.KVP;
 
 /**
  * Creates a directory datastore pointing to a directory of shapefiles
@@ -37,6 +38,23 @@ public class ShapefileDirectoryFactory extends ShapefileDataStoreFactory {
     public static final Param URLP = new Param("url", URL.class,
             "Directory containing geospatial files", true);
 
+    /**
+     * Optional - build the missing or stale indexes in background, instead of building them
+     * during the first query hitting each shapefile
+     */
+    public static final Param BACKGROUND_INDEXING = new Param("background indexing",
+            Boolean.class, "build the missing or stale indexes in background, "
+                    + "scanning the shapefiles until they are ready", false, false, new KVP(
+                    Param.LEVEL, "advanced"));
+
+    /**
+     * Optional - number of threads building the indexes in background
+     */
+    public static final Param INDEXING_THREADS = new Param("indexing threads", Integer.class,
+            "number of threads building the indexes in background, "
+                    + "by default the number of available processors", false, null, new KVP(
+                    Param.LEVEL, "advanced"));
+
     public String getDisplayName() {
         return "Directory of spatial files (shapefiles)";
     }
@@ -45,6 +63,16 @@ public class ShapefileDirectoryFactory extends ShapefileDataStoreFactory {
         return "Takes a directory of shapefiles and exposes it as a data store";
     }
 
+    @Override
+    public Param[] getParametersInfo() {
+        Param[] params = super.getParametersInfo();
+        Param[] result = new Param[params.length + 2];
+        System.arraycopy(params, 0, result, 0, params.length);
+        result[params.length] = BACKGROUND_INDEXING;
+        result[params.length + 1] = INDEXING_THREADS;
+        return result;
+    }
+
     public boolean canProcess(Map params) {
         // we don't try to steal single shapefiles away from the main factory
         if (super.canProcess(params)) {
@@ -25,6 +25,7 @@ import org.geotools.data.FeatureReader;
 import org.geotools.data.shapefile.dbf.DbaseFileHeader;
 import org.geotools.data.shapefile.dbf.DbaseFileReader;
 import org.geotools.data.shapefile.dbf.DbaseFileReader.Row;
+import org.geotools.data.shapefile.dbf.IndexedDbaseFileReader;
 import org.geotools.data.shapefile.fid.IndexedFidReader;
 import org.geotools.data.shapefile.shp.ShapeType;
 import org.geotools.data.shapefile.shp.ShapefileReader;
@@ -65,6 +66,12 @@ class ShapefileFeatureReader implements FeatureReader<SimpleFeatureType, SimpleF
 
     IndexedFidReader fidReader;
 
+    /**
+     * The number of records still to be read when reading a range of records, or -1 if reading
+     * up to the end of the file
+     */
+    int recordsLeft = -1;
+
     public ShapefileFeatureReader(SimpleFeatureType schema, ShapefileReader shp, DbaseFileReader dbf, IndexedFidReader fidReader)
             throws IOException {
         this.schema = schema;
@@ -111,6 +118,18 @@ class ShapefileFeatureReader implements FeatureReader<SimpleFeatureType, SimpleF
                     }
                 }
             }
+
+            // have the dbf reader skip the fields we are not interested into
+            int[] selection = new int[dbfindexes.length];
+            int selected = 0;
+            for (int i = 0; i < dbfindexes.length; i++) {
+                if (dbfindexes[i] != -1) {
+                    selection[selected++] = dbfindexes[i];
+                }
+            }
+            int[] fields = new int[selected];
+            System.arraycopy(selection, 0, fields, 0, selected);
+            dbf.setFieldSelection(fields);
         }
     }
 
@@ -138,7 +157,9 @@ class ShapefileFeatureReader implements FeatureReader<SimpleFeatureType, SimpleF
      * @throws IOException
      */
     boolean filesHaveMore() throws IOException {
-        if (dbf == null) {
+        if (recordsLeft == 0) {
+            return false;
+        } else if (dbf == null) {
             return shp.hasNext();
         } else {
             boolean dbfHasNext = dbf.hasNext();
@@ -157,6 +178,9 @@ class ShapefileFeatureReader implements FeatureReader<SimpleFeatureType, SimpleF
     public boolean hasNext() throws IOException {
         while (nextFeature == null && filesHaveMore()) {
             Record record = shp.nextRecord();
+            if (recordsLeft > 0) {
+                recordsLeft--;
+            }
 
             // read the geometry, so that we can decide if this row is to be skipped or not
             Envelope envelope = record.envelope();
@@ -192,7 +216,7 @@ class ShapefileFeatureReader implements FeatureReader<SimpleFeatureType, SimpleF
                 // also grab the dbf row
                 Row row;
                 if (dbf != null) {
-                    row = dbf.readRow();
+                    row = dbf.readDetachedRow();
                     if(row.isDeleted()) {
                         continue;
                     }
@@ -211,20 +235,19 @@ class ShapefileFeatureReader implements FeatureReader<SimpleFeatureType, SimpleF
         return nextFeature != null;
     }
 
+    /**
+     * Builds the feature. The row must have been read with
+     * {@link DbaseFileReader#readDetachedRow()}, as the attributes will be decoded from it only
+     * when accessed
+     */
     SimpleFeature buildFeature(int number, Geometry geometry, Row row) throws IOException {
+        // build the feature id
+        String featureId = buildFeatureId(number);
         if (dbfindexes != null) {
-            for (int i = 0; i < dbfindexes.length; i++) {
-                if (dbfindexes[i] == -1) {
-                    builder.add(geometry);
-                } else {
-                    builder.add(row.read(dbfindexes[i]));
-                }
-            }
+            return new LazyDbfFeature(schema, featureId, geometry, row, dbfindexes);
         } else if(geometry != null) {
             builder.add(geometry);
         }
-        // build the feature id
-        String featureId = buildFeatureId(number);
         return builder.buildFeature(featureId);
     }
     
@@ -291,6 +314,22 @@ class ShapefileFeatureReader implements FeatureReader<SimpleFeatureType, SimpleF
         this.screenMap = screenMap;
     }
 
+    /**
+     * Limits the reader to a range of records. Requires the .shx file to be available, and the
+     * dbf reader, if any, to be an {@link IndexedDbaseFileReader}
+     * 
+     * @param first the zero based index of the first record to read
+     * @param count the number of records to read
+     * @throws IOException
+     */
+    void setRecordRange(int first, int count) throws IOException {
+        shp.goToRecord(first);
+        if (dbf != null) {
+            ((IndexedDbaseFileReader) dbf).goTo(first + 1);
+        }
+        this.recordsLeft = count;
+    }
+
     void disableShxUsage() throws IOException {
         this.shp.disableShxUsage();
 
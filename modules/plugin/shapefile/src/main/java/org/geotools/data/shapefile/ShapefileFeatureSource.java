@@ -39,6 +39,7 @@ import org.geotools.data.FilteringFeatureReader;
 import org.geotools.data.PrjFileReader;
 import org.geotools.data.Query;
 import org.geotools.data.ReTypeFeatureReader;
+import org.geotools.data.Transaction;
 import org.geotools.data.shapefile.dbf.DbaseFileHeader;
 import org.geotools.data.shapefile.dbf.DbaseFileReader;
 import org.geotools.data.shapefile.fid.IndexedFidReader;
@@ -59,6 +60,7 @@ import org.geotools.feature.AttributeTypeBuilder;
 import org.geotools.feature.FeatureTypes;
 import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
 import org.geotools.feature.type.BasicFeatureTypes;
+import org.geotools.feature.visitor.MergeableFeatureCalc;
 import org.geotools.filter.FilterAttributeExtractor;
 import org.geotools.filter.visitor.ExtractBoundsFilterVisitor;
 import org.geotools.geometry.jts.ReferencedEnvelope;
@@ -73,6 +75,9 @@ import org.opengis.feature.type.GeometryDescriptor;
 import org.opengis.feature.type.GeometryType;
 import org.opengis.filter.Filter;
 import org.opengis.filter.Id;
+import org.opengis.filter.expression.Literal;
+import org.opengis.filter.expression.PropertyName;
+import org.opengis.filter.spatial.BBOX;
 import org.opengis.referencing.FactoryException;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 
@@ -127,7 +132,15 @@ class ShapefileFeatureSource extends ContentFeatureSource {
     @Override
     protected ReferencedEnvelope getBoundsInternal(Query query) throws IOException {
         if (query.getFilter() != Filter.INCLUDE) {
-            return null;
+            Envelope bbox = getBBoxOnlyTarget(query);
+            if (bbox == null || query.getStartIndex() != null
+                    || query.getMaxFeatures() != Integer.MAX_VALUE) {
+                return null;
+            }
+            ReferencedEnvelope bounds = new ReferencedEnvelope(getSchema()
+                    .getCoordinateReferenceSystem());
+            scanBBox(bbox, bounds);
+            return bounds;
         }
 
         ReadableByteChannel in = null;
@@ -207,22 +220,117 @@ class ShapefileFeatureSource extends ContentFeatureSource {
 
         }
 
+        Envelope bbox = getBBoxOnlyTarget(query);
+        if (bbox != null) {
+            int count = scanBBox(bbox, null);
+            if (query.getStartIndex() != null) {
+                count = Math.max(0, count - query.getStartIndex());
+            }
+            return Math.min(count, query.getMaxFeatures());
+        }
+
         return -1;
 
     }
 
+    /**
+     * Returns the target envelope if the query filter is a plain BBOX against the default
+     * geometry, null otherwise
+     */
+    Envelope getBBoxOnlyTarget(Query query) {
+        Filter filter = query.getFilter();
+        if (!(filter instanceof BBOX) || getSchema().getGeometryDescriptor() == null) {
+            return null;
+        }
+        BBOX bbox = (BBOX) filter;
+        if (!(bbox.getExpression1() instanceof PropertyName)
+                || !(bbox.getExpression2() instanceof Literal)) {
+            return null;
+        }
+        String name = ((PropertyName) bbox.getExpression1()).getPropertyName();
+        if (!"".equals(name)
+                && !getSchema().getGeometryDescriptor().getLocalName().equals(name)) {
+            return null;
+        }
+        Envelope target = getTargetBBox(query);
+        return target.isNull() ? null : target;
+    }
+
+    /**
+     * Counts the records intersecting the specified envelope, and optionally computes their
+     * bounds, using the spatial index if available. Only the shape record headers and
+     * coordinates are read, the geometries are not built and the dbf is not accessed.
+     * 
+     * @param bbox the target envelope
+     * @param bounds if not null, it will be expanded to include the matching records
+     * @return the number of matching records
+     */
+    int scanBBox(Envelope bbox, Envelope bounds) throws IOException {
+        IndexManager indexManager = getDataStore().indexManager;
+        CloseableIterator<Data> goodRecs = null;
+        if (getDataStore().isIndexed() && !Double.isInfinite(bbox.getWidth())
+                && !Double.isInfinite(bbox.getHeight())) {
+            try {
+                if (indexManager.isSpatialIndexAvailable()
+                        || getDataStore().isIndexCreationEnabled()) {
+                    goodRecs = indexManager.querySpatialIndex(bbox);
+                }
+            } catch (TreeException e) {
+                throw new IOException("Error querying index: " + e.getMessage());
+            }
+        }
+
+        int count = 0;
+        ShapefileReader reader = null;
+        try {
+            if (goodRecs != null && !goodRecs.hasNext()) {
+                return 0;
+            }
+            reader = getDataStore().shpManager.openShapeReader(new GeometryFactory(),
+                    goodRecs != null);
+            if (goodRecs != null) {
+                while (goodRecs.hasNext()) {
+                    Long offset = (Long) goodRecs.next().getValue(1);
+                    reader.goTo((int) offset.longValue());
+                    count += match(reader.nextRecord(), bbox, bounds);
+                }
+            } else {
+                while (reader.hasNext()) {
+                    count += match(reader.nextRecord(), bbox, bounds);
+                }
+            }
+        } finally {
+            try {
+                if (reader != null) {
+                    reader.close();
+                }
+            } finally {
+                if (goodRecs != null) {
+                    goodRecs.close();
+                }
+            }
+        }
+        return count;
+    }
+
+    private int match(ShapefileReader.Record record, Envelope bbox, Envelope bounds) {
+        if (!record.intersects(bbox)) {
+            return 0;
+        }
+        if (bounds != null) {
+            bounds.expandToInclude(record.minX, record.minY);
+            bounds.expandToInclude(record.maxX, record.maxY);
+        }
+        return 1;
+    }
+
     @Override
     protected FeatureReader<SimpleFeatureType, SimpleFeature> getReaderInternal(Query q)
             throws IOException {
         SimpleFeatureType resultSchema = getResultSchema(q);
-        SimpleFeatureType readSchema = getReadSchema(q);
-        GeometryFactory geometryFactory = getGeometryFactory(q);
 
         // grab the target bbox, if any
-        Envelope bbox = new ReferencedEnvelope();
-        if (q.getFilter() != null) {
-            bbox = (Envelope) q.getFilter().accept(ExtractBoundsFilterVisitor.BOUNDS_VISITOR, bbox);
-        }
+        Envelope bbox = getTargetBBox(q);
 
         // see if we can use indexing to speedup the data access
         Filter filter = q != null ? q.getFilter() : null;
@@ -244,6 +352,20 @@ class ShapefileFeatureSource extends ContentFeatureSource {
                 throw new IOException("Error querying index: " + e.getMessage());
             }
         }
+        // narrow down the records further using the attribute indexes, if any
+        if (filter != null && filter != Filter.INCLUDE && !(filter instanceof Id)) {
+            int[] records = indexManager.queryAttributeIndexes(filter);
+            if (records != null) {
+                if (goodRecs != null) {
+                    goodRecs = IndexManager.filterRecords(goodRecs, records);
+                } else {
+                    List<Data> data = indexManager.getRecordsData(records);
+                    if (data != null) {
+                        goodRecs = new CloseableIteratorWrapper<Data>(data.iterator());
+                    }
+                }
+            }
+        }
         // do we have anything to read at all? If not don't bother opening all the files
         if (goodRecs != null && !goodRecs.hasNext()) {
             LOGGER.log(Level.FINE, "Empty results for " + resultSchema.getName().getLocalPart()
@@ -258,6 +380,39 @@ class ShapefileFeatureSource extends ContentFeatureSource {
             fidReader = new IndexedFidReader(shpFiles);
         }
 
+        return buildReader(q, bbox, goodRecs, fidReader, -1, -1);
+    }
+
+    /**
+     * Returns a reader over a range of records, ignoring the indexes. Used to visit the shapefile
+     * in parallel, each thread reading its own range.
+     * 
+     * @param q the query, filtering and retyping will be applied to the records in range
+     * @param first the zero based index of the first record
+     * @param count the number of records to read
+     */
+    FeatureReader<SimpleFeatureType, SimpleFeature> getRangeReader(Query q, int first, int count)
+            throws IOException {
+        return buildReader(q, getTargetBBox(q), null, null, first, count);
+    }
+
+    Envelope getTargetBBox(Query q) {
+        Envelope bbox = new ReferencedEnvelope();
+        if (q.getFilter() != null) {
+            bbox = (Envelope) q.getFilter().accept(ExtractBoundsFilterVisitor.BOUNDS_VISITOR, bbox);
+        }
+        return bbox;
+    }
+
+    private FeatureReader<SimpleFeatureType, SimpleFeature> buildReader(Query q, Envelope bbox,
+            CloseableIterator<Data> goodRecs, IndexedFidReader fidReader, int first, int count)
+            throws IOException {
+        SimpleFeatureType resultSchema = getResultSchema(q);
+        SimpleFeatureType readSchema = getReadSchema(q);
+        GeometryFactory geometryFactory = getGeometryFactory(q);
+        Filter filter = q != null ? q.getFilter() : null;
+        boolean randomAccess = goodRecs != null || first >= 0;
+
         // setup the feature readers
         ShapefileSetManager shpManager = getDataStore().shpManager;
         ShapefileReader shapeReader = shpManager.openShapeReader(geometryFactory, goodRecs != null);
@@ -267,7 +422,7 @@ class ShapefileFeatureSource extends ContentFeatureSource {
                 || (attributes.size() == 1 && readSchema.getGeometryDescriptor() != null)) {
             LOGGER.fine("The DBF file won't be opened since no attributes will be read from it");
         } else {
-            dbfReader = shpManager.openDbfReader(goodRecs != null);
+            dbfReader = shpManager.openDbfReader(randomAccess);
         }
         ShapefileFeatureReader result;
         if (goodRecs != null) {
@@ -275,6 +430,14 @@ class ShapefileFeatureSource extends ContentFeatureSource {
                     goodRecs);
         } else {
             result = new ShapefileFeatureReader(readSchema, shapeReader, dbfReader, fidReader);
+            if (first >= 0) {
+                try {
+                    result.setRecordRange(first, count);
+                } catch (IOException e) {
+                    result.close();
+                    throw e;
+                }
+            }
         }
 
         // setup the target bbox if any, and the generalization hints if available
@@ -497,7 +660,51 @@ class ShapefileFeatureSource extends ContentFeatureSource {
 
     @Override
     protected boolean handleVisitor(Query query, FeatureVisitor visitor) throws IOException {
+        if (visitor instanceof MergeableFeatureCalc && getDataStore().getScanThreads() > 1
+                && canVisitInParallel(query)) {
+            IndexFile shx = getDataStore().shpManager.openIndexFile();
+            if (shx != null) {
+                int records;
+                try {
+                    records = shx.getRecordCount();
+                } finally {
+                    shx.close();
+                }
+                ParallelScan scan = new ParallelScan(this, query, getDataStore().getScanThreads());
+                return scan.visit((MergeableFeatureCalc) visitor, records);
+            }
+        }
         return super.handleVisitor(query, visitor);
     }
 
+    /**
+     * Checks if the query would result in a plain sequential scan of the file, with no other
+     * processing than filtering and retyping, and can thus be split in ranges of records
+     */
+    boolean canVisitInParallel(Query query) {
+        if (getTransaction() != null && getTransaction() != Transaction.AUTO_COMMIT) {
+            return false;
+        }
+        if (!shpFiles.isLocal() || query.getStartIndex() != null
+                || !query.isMaxFeaturesUnlimited()
+                || (query.getSortBy() != null && query.getSortBy().length > 0)
+                || query.getCoordinateSystem() != null
+                || query.getCoordinateSystemReproject() != null) {
+            return false;
+        }
+        // the screen map is not thread safe
+        if (query.getHints() != null && query.getHints().get(Hints.SCREENMAP) != null) {
+            return false;
+        }
+
+        // the indexes would be used to read only the matching records
+        Filter filter = query.getFilter();
+        if (getDataStore().isFidIndexed() && filter instanceof Id) {
+            return false;
+        }
+        Envelope bbox = getTargetBBox(query);
+        return !getDataStore().isIndexed() || bbox.isNull() || Double.isInfinite(bbox.getWidth())
+                || Double.isInfinite(bbox.getHeight());
+    }
+
 }
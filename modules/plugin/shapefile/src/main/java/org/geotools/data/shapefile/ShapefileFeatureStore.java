@@ -60,23 +60,30 @@ class ShapefileFeatureStore extends ContentFeatureStore {
             throw new IllegalArgumentException("no write flags set");
         }
 
-        ShapefileFeatureReader reader = (ShapefileFeatureReader) delegate
-                .getReaderInternal(Query.ALL);
-        FeatureWriter<SimpleFeatureType, SimpleFeature> writer;
+        FeatureWriter<SimpleFeatureType, SimpleFeature> writer = null;
         ShapefileDataStore ds = getDataStore();
-        if(ds.indexManager.hasFidIndex(false) || ds.isFidIndexed() && ds.indexManager.hasFidIndex(true)) {
-            writer = new IndexedShapefileFeatureWriter(ds.indexManager, reader, ds.getCharset(), ds.getTimeZone());
-        } else {
-            writer = new ShapefileFeatureWriter(delegate.shpFiles, reader, ds.getCharset(), 
-                    ds.getTimeZone());
+        // if we only have to add, extend the files in place instead of copying them over
+        boolean append = (flags | WRITER_ADD) == WRITER_ADD;
+        if (append) {
+            writer = ShapefileAppendWriter.open(ds, getAbsoluteSchema());
         }
 
-        // if we only have to add move to the end.
-        // TODO: just make the code transfer the bytes in bulk instead and start actual writing at
-        // the end
-        if ((flags | WRITER_ADD) == WRITER_ADD) {
-            while (writer.hasNext()) {
-                writer.next();
+        if (writer == null) {
+            ShapefileFeatureReader reader = (ShapefileFeatureReader) delegate
+                    .getReaderInternal(Query.ALL);
+            if(ds.indexManager.hasFidIndex(false) || ds.isFidIndexed() && ds.indexManager.hasFidIndex(true)) {
+                writer = new IndexedShapefileFeatureWriter(ds.indexManager, reader, ds.getCharset(), ds.getTimeZone());
+            } else {
+                writer = new ShapefileFeatureWriter(delegate.shpFiles, reader, ds.getCharset(), 
+                        ds.getTimeZone());
+            }
+
+            // if we only have to add move to the end (the shapefile is empty, or could not be
+            // extended in place)
+            if (append) {
+                while (writer.hasNext()) {
+                    writer.next();
+                }
             }
         }
 
@@ -74,15 +74,26 @@ public class DbaseFileReader implements FileReader {
     public final class Row {
         
         boolean deleted;
+
+        byte[] bytes;
+
+        int[] offsets;
         
         public Object read(final int column) throws IOException {
-            final int offset = fieldOffsets[column];
-            return readObject(offset, column);
+            final int offset = offsets[column];
+            if (offset < 0) {
+                throw new IllegalArgumentException("Field " + column
+                        + " is not part of the current field selection");
+            }
+            return readObject(bytes, offset, column);
         }
 
         public String toString() {
             final StringBuffer ret = new StringBuffer("DBF Row - ");
-            for (int i = 0; i < header.getNumFields(); i++) {
+            for (int i = 0; i < offsets.length; i++) {
+                if (offsets[i] < 0) {
+                    continue;
+                }
                 ret.append(header.getFieldName(i)).append(": \"");
                 try {
                     ret.append(this.read(i));
@@ -113,6 +124,20 @@ public class DbaseFileReader implements FileReader {
     
     int[] fieldOffsets;
 
+    Class<?>[] fieldClasses;
+
+    /**
+     * The offsets of the fields in the bytes array, -1 for the fields skipped by the current
+     * field selection
+     */
+    int[] readOffsets;
+
+    /**
+     * Pairs of (offset in the record, length) of the byte ranges copied out of each record when
+     * a field selection is active, null otherwise
+     */
+    int[] copyRanges;
+
     int cnt = 1;
 
     Row row;
@@ -209,13 +234,14 @@ public class DbaseFileReader implements FileReader {
         fieldTypes = new char[header.getNumFields()];
         fieldLengths = new int[header.getNumFields()];
         fieldOffsets = new int[header.getNumFields()];
+        fieldClasses = new Class<?>[header.getNumFields()];
         for (int i = 0, ii = header.getNumFields(); i < ii; i++) {
             fieldTypes[i] = header.getFieldType(i);
             fieldLengths[i] = header.getFieldLength(i);
+            fieldClasses[i] = header.getFieldClass(i);
             if(i > 0)
                 fieldOffsets[i] = fieldOffsets[i -1] + header.getFieldLength(i - 1);
         }
-        bytes = new byte[header.getRecordLength() - 1];
         
 
         // check if we working with a latin-1 char Charset
@@ -223,6 +249,58 @@ public class DbaseFileReader implements FileReader {
         oneBytePerChar = "ISO-8859-1".equals(cname) || "US-ASCII".equals(cname);
         
         row = new Row();
+        setFieldSelection(null);
+    }
+
+    /**
+     * Restricts the reads to the specified fields. {@link #read()} will copy out of each record
+     * only the bytes of the selected fields, skipping the others, and only the selected fields
+     * can be read afterwards: this makes reading a few columns out of a wide file considerably
+     * cheaper.
+     * 
+     * @param fields
+     *                The (zero based) numbers of the fields to be read, or null to read all
+     *                fields
+     */
+    public void setFieldSelection(final int[] fields) {
+        final int numFields = header.getNumFields();
+        if (fields == null) {
+            readOffsets = fieldOffsets;
+            copyRanges = null;
+            bytes = new byte[header.getRecordLength() - 1];
+        } else {
+            final boolean[] selected = new boolean[numFields];
+            for (int i = 0; i < fields.length; i++) {
+                selected[fields[i]] = true;
+            }
+
+            // build the offsets in the compacted bytes, merging adjacent fields into a single
+            // byte range to be copied
+            readOffsets = new int[numFields];
+            final int[] ranges = new int[numFields * 2];
+            int rangeCount = 0;
+            int length = 0;
+            for (int i = 0; i < numFields; i++) {
+                if (!selected[i]) {
+                    readOffsets[i] = -1;
+                    continue;
+                }
+                readOffsets[i] = length;
+                if (i > 0 && selected[i - 1]) {
+                    ranges[rangeCount * 2 - 1] += fieldLengths[i];
+                } else {
+                    ranges[rangeCount * 2] = fieldOffsets[i];
+                    ranges[rangeCount * 2 + 1] = fieldLengths[i];
+                    rangeCount++;
+                }
+                length += fieldLengths[i];
+            }
+            copyRanges = new int[rangeCount * 2];
+            System.arraycopy(ranges, 0, copyRanges, 0, copyRanges.length);
+            bytes = new byte[length];
+        }
+        row.bytes = bytes;
+        row.offsets = readOffsets;
     }
 
     protected int fill(final ByteBuffer buffer, final ReadableByteChannel channel)
@@ -322,6 +400,23 @@ public class DbaseFileReader implements FileReader {
         return row;
     }
 
+    /**
+     * Reads the next record into a new {@link Row}, which is not affected by the following reads
+     * and can be decoded at any later time, even after the reader has been closed. Only the bytes
+     * of the fields selected with {@link #setFieldSelection(int[])} are copied into the row.
+     * 
+     * @throws IOException
+     *                 If an error occurs.
+     */
+    public Row readDetachedRow() throws IOException {
+        read();
+        final Row detached = new Row();
+        detached.deleted = row.deleted;
+        detached.bytes = bytes.clone();
+        detached.offsets = readOffsets;
+        return detached;
+    }
+
     /**
      * Skip the next record.
      * 
@@ -381,7 +476,7 @@ public class DbaseFileReader implements FileReader {
         final int numFields = header.getNumFields();
 
         for (int j = 0; j < numFields; j++) {
-            entry[j + offset] = readObject(fieldOffsets[j], j);
+            entry[j + offset] = readOffsets[j] < 0 ? null : readObject(bytes, readOffsets[j], j);
         }
 
         return entry;
@@ -397,7 +492,7 @@ public class DbaseFileReader implements FileReader {
      */
     public Object readField(final int fieldNum)
             throws IOException {
-        return readObject(fieldOffsets[fieldNum], fieldNum);
+        return row.read(fieldNum);
     }
 
     /**
@@ -427,9 +522,21 @@ public class DbaseFileReader implements FileReader {
             final char deleted = (char) buffer.get();
             row.deleted = deleted == '*';
 
-            buffer.limit(buffer.position() + header.getRecordLength() - 1);
-            buffer.get(bytes); // SK: There is a side-effect here!!!
-            buffer.limit(buffer.capacity());
+            if (copyRanges == null) {
+                buffer.limit(buffer.position() + header.getRecordLength() - 1);
+                buffer.get(bytes); // SK: There is a side-effect here!!!
+                buffer.limit(buffer.capacity());
+            } else {
+                // copy only the selected fields, and move to the end of the record
+                final int start = buffer.position();
+                int target = 0;
+                for (int i = 0; i < copyRanges.length; i += 2) {
+                    buffer.position(start + copyRanges[i]);
+                    buffer.get(bytes, target, copyRanges[i + 1]);
+                    target += copyRanges[i + 1];
+                }
+                buffer.position(start + header.getRecordLength() - 1);
+            }
 
             foundRecord = true;
         }
@@ -449,7 +556,7 @@ public class DbaseFileReader implements FileReader {
     public Object[] readEntry(final Object[] entry) throws IOException {
         return readEntry(entry, 0);
     }
-    private Object readObject(final int fieldOffset, final int fieldNum)
+    private Object readObject(final byte[] bytes, final int fieldOffset, final int fieldNum)
             throws IOException {
         final char type = fieldTypes[fieldNum];
         final int fieldLen = fieldLengths[fieldNum];
@@ -504,11 +611,14 @@ public class DbaseFileReader implements FileReader {
                             final int tempMonth = Integer.parseInt(tempString) - 1;
                             tempString = fastParse(bytes,fieldOffset + 6,2); 
                             final int tempDay = Integer.parseInt(tempString);
-                            calendar.clear();
-                            calendar.set(Calendar.YEAR, tempYear);
-                            calendar.set(Calendar.MONTH, tempMonth);
-                            calendar.set(Calendar.DAY_OF_MONTH, tempDay);
-                            object = calendar.getTime();
+                            // detached rows can be decoded from other threads
+                            synchronized (calendar) {
+                                calendar.clear();
+                                calendar.set(Calendar.YEAR, tempYear);
+                                calendar.set(Calendar.MONTH, tempMonth);
+                                calendar.set(Calendar.DAY_OF_MONTH, tempDay);
+                                object = calendar.getTime();
+                            }
                         } catch (final NumberFormatException nfe) {
                             // todo: use progresslistener, this isn't a grave error.
                         }
@@ -534,9 +644,10 @@ public class DbaseFileReader implements FileReader {
                     int time = i_stream.readInt();
                     int days = i_stream.readInt();
                               
-                    calendar.setTimeInMillis(days * MILLISECS_PER_DAY + DbaseFileHeader.MILLIS_SINCE_4713 + time);
-
-                    object = calendar.getTime();
+                    synchronized (calendar) {
+                        calendar.setTimeInMillis(days * MILLISECS_PER_DAY + DbaseFileHeader.MILLIS_SINCE_4713 + time);
+                        object = calendar.getTime();
+                    }
 
                 } catch (final NumberFormatException nfe) {
                    // todo: use progresslistener, this isn't a grave error.
@@ -550,7 +661,7 @@ public class DbaseFileReader implements FileReader {
                     break;
                 } else {
                     final String string = fastParse(bytes,fieldOffset,fieldLen).trim();
-                    Class clazz = header.getFieldClass(fieldNum);
+                    Class clazz = fieldClasses[fieldNum];
                     if (clazz == Integer.class) {
                         try {
                             object = Integer.parseInt(string);
@@ -122,7 +122,32 @@ public class DbaseFileWriter {
      */
     public DbaseFileWriter(DbaseFileHeader header, WritableByteChannel out, Charset charset, TimeZone timeZone)
             throws IOException {
-        header.writeHeader(out);
+        this(header, out, charset, timeZone, false);
+    }
+
+    /**
+     * Create a DbaseFileWriter using the specified header and writing to the
+     * given channel, optionally appending records to an existing file.
+     * 
+     * @param header
+     *                The DbaseFileHeader to write, or the one of the existing file
+     *                when appending.
+     * @param out
+     *                The Channel to write to. When appending it must be positioned
+     *                right after the last existing record.
+     * @param charset The charset the dbf is (will be) encoded in
+     * @param timeZone The time zone used to encode the dates
+     * @param append
+     *                If true the header is not written, and the caller is responsible
+     *                for updating the number of records in it once done
+     * @throws IOException
+     *                 If errors occur while initializing.
+     */
+    public DbaseFileWriter(DbaseFileHeader header, WritableByteChannel out, Charset charset,
+            TimeZone timeZone, boolean append) throws IOException {
+        if (!append) {
+            header.writeHeader(out);
+        }
         this.header = header;
         this.channel = out;
         this.charset = charset == null ? Charset.defaultCharset() : charset;
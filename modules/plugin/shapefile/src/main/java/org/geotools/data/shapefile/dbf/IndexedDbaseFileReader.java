@@ -140,7 +140,8 @@ public class IndexedDbaseFileReader extends DbaseFileReader {
         } else {
             throw new UnsupportedOperationException("Random access not enabled!");
         }
-
+        // keep hasNext() working for sequential reads starting from here
+        this.cnt = recno;
     }
 
     public boolean IsRandomAccessEnabled() {
@@ -24,6 +24,8 @@ import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
 
 
 /**
@@ -47,6 +49,11 @@ public class FileChannelDecorator extends FileChannel implements
     private final FileWriter writer;
     private boolean closed;
 
+    /**
+     * The cached memory mapped regions used by this channel
+     */
+    private final List<MemoryMapCache.Region> regions = new ArrayList<MemoryMapCache.Region>();
+
     public FileChannelDecorator(FileChannel channel, ShpFiles shapefileFiles,
             URL url, FileReader requestor) {
         this.wrapped = channel;
@@ -78,7 +85,9 @@ public class FileChannelDecorator extends FileChannel implements
     public MappedByteBuffer map(MapMode mode, long position, long size)
             throws IOException {
 //    	return wrapped.map(mode, position, size)
-    	 return shapefileFiles.map(wrapped, url, mode, position, size);
+        synchronized (regions) {
+            return shapefileFiles.map(wrapped, url, mode, position, size, regions);
+        }
     }
 
     public long position() throws IOException {
@@ -145,6 +154,9 @@ public class FileChannelDecorator extends FileChannel implements
         } finally {
             if (!closed) {
                 closed = true;
+                synchronized (regions) {
+                    shapefileFiles.release(regions);
+                }
                 if (reader != null) {
                     shapefileFiles.unlockRead(url, reader);
                 } else {
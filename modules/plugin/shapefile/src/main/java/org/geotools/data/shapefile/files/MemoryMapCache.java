@@ -23,110 +23,320 @@ import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.geotools.data.DataUtilities;
 import org.geotools.resources.NIOUtilities;
-import org.geotools.util.SoftValueHashMap;
 import org.geotools.util.SoftValueHashMap.ValueCleaner;
 import org.geotools.util.logging.Logging;
 
 /**
  * A cache for memory mapped buffers, used to avoid generating over and over
  * read only memory mapped buffers. Mapping a file is a synchronized operation,
- * plus by generating light copies the same buffer can be shared by various threads
+ * plus by generating light copies the same buffer can be shared by various threads.
+ * <p>
+ * A single cache is shared by all the shapefiles in the JVM, see {@link #getInstance()}. The
+ * total size of the mapped regions is kept under a configurable budget by unmapping the least
+ * recently used ones. A region is never unmapped while a channel that mapped it is still open,
+ * if all the regions are in use the budget is temporarily exceeded.
+ * <p>
+ * The default budget can be set with the <code>org.geotools.shapefile.maxMemoryMapCacheSize</code>
+ * system variable, in bytes.
+ *
  * @author Andrea Aime - OpenGeo
  *
  */
-class MemoryMapCache {
-	
-	static final Logger LOGGER = Logging.getLogger(MemoryMapCache.class);
-
-    SoftValueHashMap<MappingKey, MappedByteBuffer> buffers = new SoftValueHashMap<MappingKey, MappedByteBuffer>(0, new BufferCleaner());
-    
-	MappedByteBuffer map(FileChannel wrapped, URL url, MapMode mode, long position, long size) throws IOException {
-		if(mode != MapMode.READ_ONLY) {
-			return wrapped.map(mode, position, size);
-		}
-		
-		File file = DataUtilities.urlToFile(url).getCanonicalFile();
-		MappingKey mk = new MappingKey(file, position, size);
-		MappedByteBuffer buffer = buffers.get(mk);
-		if(buffer == null) {
-			synchronized (this) {
-				buffer = buffers.get(mk);
-				if(buffer == null) {
-					buffer = wrapped.map(mode, position, size);
-					buffers.put(mk, buffer);
-					if(LOGGER.isLoggable(Level.FINE)) {
-						LOGGER.log(Level.FINE, "Mapping and caching " + file.getAbsolutePath());
-					}
-				}
-			}
-		} else {
-			if(LOGGER.isLoggable(Level.FINE)) {
-				LOGGER.log(Level.FINE, "Using cached map for " + file.getAbsolutePath());
-			}
-		}
-		
-		return (MappedByteBuffer) buffer.duplicate();
-	}
-	
-	/**
-	 * Cleans up all memory mapped regions for a specified file. It is necessary to call this
-	 * method before any attempt to open a file for writing on Windows
-	 * @param file
-	 */
-	void cleanFileCache(URL url) {
-	    try {
-    	    final File rawFile = DataUtilities.urlToFile(url);
-    	    if(rawFile == null) {
-    	        // not a local file
-    	        return;
-    	    }
-            File file = rawFile.getCanonicalFile();
-    	    List<MappingKey> keys = new ArrayList<MappingKey>(buffers.keySet());
-    	    for (MappingKey key : keys) {
-                if(key.file.equals(file)) {
-                    MappedByteBuffer buffer = buffers.remove(key);
-                    NIOUtilities.clean(buffer, true);
-                    if(LOGGER.isLoggable(Level.FINE)) {
-        				LOGGER.log(Level.FINE, "Removed mapping for " + file.getAbsolutePath());
-                    }
+public class MemoryMapCache {
+
+    static final Logger LOGGER = Logging.getLogger(MemoryMapCache.class);
+
+    /**
+     * The default budget, 512MB
+     */
+    static final long DEFAULT_MAX_SIZE;
+
+    static {
+        long max = 512 * 1024 * 1024;
+        try {
+            String smax = System.getProperty("org.geotools.shapefile.maxMemoryMapCacheSize");
+            if (smax != null) {
+                max = Long.parseLong(smax);
+            }
+        } catch (Throwable t) {
+            LOGGER.log(Level.SEVERE, "Could not set the max memory map cache size", t);
+        }
+        DEFAULT_MAX_SIZE = max;
+    }
+
+    static final MemoryMapCache INSTANCE = new MemoryMapCache(DEFAULT_MAX_SIZE);
+
+    /**
+     * Returns the memory map cache shared by all the shapefiles
+     */
+    public static MemoryMapCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * The cached regions, in least recently used order
+     */
+    LinkedHashMap<MappingKey, Region> regions = new LinkedHashMap<MappingKey, Region>(16, 0.75f,
+            true);
+
+    BufferCleaner cleaner = new BufferCleaner();
+
+    long maxSize;
+
+    long size;
+
+    long hits;
+
+    long misses;
+
+    long evictions;
+
+    long evictedBytes;
+
+    MemoryMapCache(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns a read only copy of the mapped region, the region must be released with
+     * {@link #release(Region)} once the copy is no longer in use
+     */
+    Region acquire(FileChannel wrapped, URL url, long position, long size) throws IOException {
+        File file = DataUtilities.urlToFile(url).getCanonicalFile();
+        MappingKey mk = new MappingKey(file, position, size);
+        synchronized (this) {
+            Region region = regions.get(mk);
+            if (region != null) {
+                region.users++;
+                hits++;
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.log(Level.FINE, "Using cached map for " + file.getAbsolutePath());
                 }
+                return region;
             }
-	    } catch(Throwable t) {
-	        LOGGER.log(Level.WARNING, "An error occurred while trying to clean the memory map cache", t);
-	    }
-	}
-	
-	void clean() {
-		List<MappingKey> keys = new ArrayList<MappingKey>(buffers.keySet());
-	    for (MappingKey key : keys) {
-            MappedByteBuffer buffer = buffers.remove(key);
-            NIOUtilities.clean(buffer, true);
-            if(LOGGER.isLoggable(Level.FINE)) {
-				LOGGER.log(Level.FINE, "Removed mapping for " + key.file.getAbsolutePath());
+            misses++;
+        }
+
+        // mapping can be slow, don't keep the other files waiting
+        MappedByteBuffer buffer = wrapped.map(MapMode.READ_ONLY, position, size);
+        synchronized (this) {
+            Region region = regions.get(mk);
+            if (region != null) {
+                // another thread mapped the same region in the meantime
+                cleaner.clean(mk, buffer);
+            } else {
+                region = new Region(mk, buffer);
+                regions.put(mk, region);
+                this.size += size;
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.log(Level.FINE, "Mapping and caching " + file.getAbsolutePath());
+                }
             }
+            region.users++;
+            evict();
+            return region;
+        }
+    }
+
+    /**
+     * Releases a region acquired with {@link #acquire(FileChannel, URL, long, long)}
+     */
+    synchronized void release(Region region) {
+        region.users--;
+        if (region.users == 0) {
+            if (region.retired) {
+                unmap(region);
+            } else {
+                evict();
+            }
+        }
+    }
+
+    /**
+     * Unmaps the least recently used regions until the cache gets back under budget
+     */
+    void evict() {
+        Iterator<Region> it = regions.values().iterator();
+        while (size > maxSize && it.hasNext()) {
+            Region region = it.next();
+            if (region.users == 0) {
+                it.remove();
+                evictions++;
+                evictedBytes += region.key.size;
+                unmap(region);
+            }
+        }
+    }
+
+    /**
+     * Removes the region from the cache, and unmaps it as soon as it's no longer in use
+     */
+    void remove(Region region) {
+        regions.remove(region.key);
+        if (region.users == 0) {
+            unmap(region);
+        } else {
+            region.retired = true;
+        }
+    }
+
+    void unmap(Region region) {
+        size -= region.key.size;
+        cleaner.clean(region.key, region.buffer);
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.log(Level.FINE, "Removed mapping for " + region.key.file.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Cleans up all memory mapped regions for a specified file. It is necessary to call this
+     * method before any attempt to open a file for writing on Windows. The regions still in use
+     * are unmapped as soon as they get released.
+     * @param url
+     */
+    synchronized void cleanFileCache(URL url) {
+        try {
+            final File rawFile = DataUtilities.urlToFile(url);
+            if (rawFile == null) {
+                // not a local file
+                return;
+            }
+            File file = rawFile.getCanonicalFile();
+            List<Region> cached = new ArrayList<Region>(regions.values());
+            for (Region region : cached) {
+                if (region.key.file.equals(file)) {
+                    remove(region);
+                }
+            }
+        } catch (Throwable t) {
+            LOGGER.log(Level.WARNING,
+                    "An error occurred while trying to clean the memory map cache", t);
+        }
+    }
+
+    /**
+     * Removes all the regions from the cache. The regions still in use are unmapped as soon as
+     * they get released.
+     */
+    public synchronized void clean() {
+        List<Region> cached = new ArrayList<Region>(regions.values());
+        for (Region region : cached) {
+            remove(region);
+        }
+    }
+
+    /**
+     * The maximum amount of bytes the cache keeps mapped
+     */
+    public synchronized long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Sets the maximum amount of bytes the cache keeps mapped, unmapping the least recently used
+     * regions if the new budget is exceeded
+     */
+    public synchronized void setMaxSize(long maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("The max size cannot be negative");
+        }
+        this.maxSize = maxSize;
+        evict();
+    }
+
+    /**
+     * The amount of bytes currently mapped, including the regions removed from the cache but
+     * still in use
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * The number of requests served by an already mapped region
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * The number of requests that required a new mapping
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * The number of regions unmapped to keep the cache under budget
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * The amount of bytes unmapped to keep the cache under budget
+     */
+    public synchronized long getEvictedBytes() {
+        return evictedBytes;
+    }
+
+    /**
+     * Resets the hit, miss and eviction counters
+     */
+    public synchronized void resetStatistics() {
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+        evictedBytes = 0;
+    }
+
+    /**
+     * A mapped region, along with the number of open channels using it
+     */
+    static class Region {
+        MappingKey key;
+
+        MappedByteBuffer buffer;
+
+        int users;
+
+        boolean retired;
+
+        Region(MappingKey key, MappedByteBuffer buffer) {
+            this.key = key;
+            this.buffer = buffer;
+        }
+
+        /**
+         * A light copy of the buffer, with its own position and limit
+         */
+        MappedByteBuffer duplicate() {
+            return (MappedByteBuffer) buffer.duplicate();
+        }
+    }
+
+    /**
+     * Tracks a memory mapped region of a certain file
+     */
+    static class MappingKey {
+        File file;
+        long position;
+        long size;
+
+        public MappingKey(File file, long position, long size) {
+            super();
+            this.file = file;
+            this.position = position;
+            this.size = size;
         }
-	}
-	
-	/**
-	 * Tracks a memory mapped region of a certain file
-	 */
-	static class MappingKey {
-		File file;
-		long position;
-		long size;
-		
-		public MappingKey(File file, long position, long size) {
-			super();
-			this.file = file;
-			this.position = position;
-			this.size = size;
-		}
 
         @Override
         public int hashCode() {
@@ -158,16 +368,16 @@ class MemoryMapCache {
                 return false;
             return true;
         }
-	}
-	
-	/**
-	 * Cleans up the buffers before the soft reference gets deallocated
-	 * @author Andrea Aime
+    }
+
+    /**
+     * Cleans up the buffers when they get evicted from the cache
+     * @author Andrea Aime
  *
  *
  * @source $URL$
-	 */
-	public class BufferCleaner implements ValueCleaner {
+     */
+    public class BufferCleaner implements ValueCleaner {
 
         public void clean(Object key, Object object) {
             MappedByteBuffer buffer = (MappedByteBuffer) object;
@@ -176,5 +386,4 @@ class MemoryMapCache {
 
     }
 
-
 }
@@ -40,6 +40,7 @@ import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -95,9 +96,9 @@ public class ShpFiles {
     private final Map<Thread, Collection<ShpFilesLocker>> lockers = new ConcurrentHashMap<Thread, Collection<ShpFilesLocker>>();
 
     /**
-     * A cache for read only memory mapped buffers
+     * A cache for read only memory mapped buffers, shared by all shapefiles
      */
-    private final MemoryMapCache mapCache = new MemoryMapCache();
+    private final MemoryMapCache mapCache = MemoryMapCache.getInstance();
 
     private boolean memoryMapCacheEnabled;
 
@@ -231,7 +232,18 @@ public class ShpFiles {
             logCurrentLockers(Level.SEVERE);
             lockers.clear(); // so as not to get this log again.
         }
-        mapCache.clean();
+        if (memoryMapCacheEnabled) {
+            cleanMapCache();
+        }
+    }
+
+    /**
+     * Removes the memory mapped regions of all the files of this shapefile from the cache
+     */
+    private void cleanMapCache() {
+        for (URL url : urls.values()) {
+            mapCache.cleanFileCache(url);
+        }
     }
 
     /**
@@ -918,18 +930,34 @@ public class ShpFiles {
      * @param mode
      * @param position
      * @param size
+     * @param regions the list collecting the cached regions used by the channel, to be released
+     *        with {@link #release(List)} when the channel gets closed
      * @return
      * @throws IOException
      */
-    MappedByteBuffer map(FileChannel wrapped, URL url, MapMode mode, long position, long size)
-            throws IOException {
-        if (memoryMapCacheEnabled) {
-            return mapCache.map(wrapped, url, mode, position, size);
+    MappedByteBuffer map(FileChannel wrapped, URL url, MapMode mode, long position, long size,
+            List<MemoryMapCache.Region> regions) throws IOException {
+        if (memoryMapCacheEnabled && mode == MapMode.READ_ONLY) {
+            MemoryMapCache.Region region = mapCache.acquire(wrapped, url, position, size);
+            regions.add(region);
+            return region.duplicate();
         } else {
             return wrapped.map(mode, position, size);
         }
     }
 
+    /**
+     * Releases the cached regions used by a channel
+     * 
+     * @param regions
+     */
+    void release(List<MemoryMapCache.Region> regions) {
+        for (MemoryMapCache.Region region : regions) {
+            mapCache.release(region);
+        }
+        regions.clear();
+    }
+
     /**
      * Returns the status of the memory map cache. When enabled the memory mapped portions of the
      * files are cached and shared (giving each thread a clone of it)
@@ -949,7 +977,7 @@ public class ShpFiles {
     public void setMemoryMapCacheEnabled(boolean memoryMapCacheEnabled) {
         this.memoryMapCacheEnabled = memoryMapCacheEnabled;
         if (!memoryMapCacheEnabled) {
-            mapCache.clean();
+            cleanMapCache();
         }
     }
 
@@ -0,0 +1,305 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.shapefile.index.attribute;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.geotools.resources.NIOUtilities;
+import org.geotools.util.Converters;
+
+/**
+ * A secondary index over a single dbf column, stored as a file of (key, record number) entries
+ * sorted by key, read straight from a memory mapped buffer. The file layout is (little endian):
+ * <ul>
+ * <li>a 48 bytes header, containing the magic number, the version, the key type, the key
+ * width, the number of entries, the number of records in the dbf, the number and name of the
+ * indexed field</li>
+ * <li>the entries, each one made of the key followed by the zero based record number as an
+ * integer. Numbers are stored as doubles, dates and booleans as longs, strings as a fixed
+ * number of chars, padded with zeroes</li>
+ * </ul>
+ * Null values and deleted records are not indexed.
+ */
+public class AttributeIndex {
+
+    /**
+     * The types of keys that can be stored in the index
+     */
+    public enum KeyType {
+        /**
+         * Numbers, stored as doubles
+         */
+        NUMBER,
+        /**
+         * Dates, stored as milliseconds since the epoch
+         */
+        DATE,
+        /**
+         * Booleans, stored as 0 and 1
+         */
+        BOOLEAN,
+        /**
+         * Strings, stored as fixed width char sequences
+         */
+        STRING;
+
+        /**
+         * Returns the key type used to index values of the specified class, or null if the
+         * class cannot be indexed
+         */
+        public static KeyType forBinding(Class<?> binding) {
+            if (Number.class.isAssignableFrom(binding)) {
+                return NUMBER;
+            } else if (Date.class.isAssignableFrom(binding)) {
+                return DATE;
+            } else if (Boolean.class.equals(binding)) {
+                return BOOLEAN;
+            } else if (String.class.equals(binding)) {
+                return STRING;
+            }
+            return null;
+        }
+    }
+
+    static final int MAGIC = 0x47544149; // GTAI
+
+    static final int VERSION = 1;
+
+    static final int HEADER_SIZE = 48;
+
+    static final int FIELD_NAME_SIZE = 20;
+
+    static final Charset FIELD_NAME_CHARSET = Charset.forName("ISO-8859-1");
+
+    final ByteBuffer buffer;
+
+    final KeyType keyType;
+
+    final int keyWidth;
+
+    final int entrySize;
+
+    final int count;
+
+    final int numRecords;
+
+    final int fieldNumber;
+
+    final String fieldName;
+
+    /**
+     * Memory maps the specified index file
+     */
+    public static AttributeIndex open(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Attribute index file " + file + " is too large");
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            try {
+                return new AttributeIndex(buffer);
+            } catch (IOException e) {
+                NIOUtilities.clean(buffer, true);
+                throw e;
+            }
+        } finally {
+            raf.close();
+        }
+    }
+
+    AttributeIndex(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not an attribute index file");
+        }
+        int version = buffer.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported attribute index version " + version);
+        }
+        int type = buffer.getInt(8);
+        if (type < 0 || type >= KeyType.values().length) {
+            throw new IOException("Unknown attribute index key type " + type);
+        }
+        this.keyType = KeyType.values()[type];
+        this.keyWidth = buffer.getInt(12);
+        this.entrySize = keyWidth + 4;
+        this.count = buffer.getInt(16);
+        this.numRecords = buffer.getInt(20);
+        this.fieldNumber = buffer.getInt(24);
+        byte[] name = new byte[FIELD_NAME_SIZE];
+        for (int i = 0; i < FIELD_NAME_SIZE; i++) {
+            name[i] = buffer.get(28 + i);
+        }
+        this.fieldName = new String(name, FIELD_NAME_CHARSET).trim();
+        if (HEADER_SIZE + (long) count * entrySize > buffer.capacity()) {
+            throw new IOException("Truncated attribute index file");
+        }
+    }
+
+    public KeyType getKeyType() {
+        return keyType;
+    }
+
+    /**
+     * The number of indexed (non null) values
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * The number of records in the dbf at the time the index was built
+     */
+    public int getNumRecords() {
+        return numRecords;
+    }
+
+    /**
+     * The (zero based) number of the indexed field
+     */
+    public int getFieldNumber() {
+        return fieldNumber;
+    }
+
+    /**
+     * The name of the indexed field
+     */
+    public String getFieldName() {
+        return fieldName;
+    }
+
+    /**
+     * Converts the value into a key that can be used to search this index
+     *
+     * @return the key, or null if the value cannot be converted
+     */
+    public Object toKey(Object value) {
+        if (value == null) {
+            return null;
+        }
+        switch (keyType) {
+        case NUMBER:
+            Double number = Converters.convert(value, Double.class);
+            return number == null || number.isNaN() ? null : number;
+        case DATE:
+            Date date = Converters.convert(value, Date.class);
+            return date == null ? null : Long.valueOf(date.getTime());
+        case BOOLEAN:
+            Boolean bool = Converters.convert(value, Boolean.class);
+            return bool == null ? null : Long.valueOf(bool ? 1 : 0);
+        default:
+            // the filters compare strings against other types after converting both to the
+            // other type (e.g., "05" = 5 is true), a lexical lookup would miss matches
+            if (!(value instanceof String)) {
+                return null;
+            }
+            String string = (String) value;
+            // longer strings cannot be found in the index, but cannot be found in the dbf either
+            return string == null || string.length() > keyWidth / 2 ? null : string;
+        }
+    }
+
+    /**
+     * Returns the sorted numbers of the records whose value is between the specified keys
+     *
+     * @param min the lower bound, as returned by {@link #toKey(Object)}, or null if unbounded
+     * @param minInclusive whether records matching the lower bound should be returned
+     * @param max the upper bound, as returned by {@link #toKey(Object)}, or null if unbounded
+     * @param maxInclusive whether records matching the upper bound should be returned
+     * @return the zero based record numbers, in ascending order
+     */
+    public int[] search(Object min, boolean minInclusive, Object max, boolean maxInclusive) {
+        int from = min == null ? 0 : bound(min, minInclusive);
+        int to = max == null ? count : bound(max, !maxInclusive);
+        if (from >= to) {
+            return new int[0];
+        }
+        int[] records = new int[to - from];
+        for (int i = from; i < to; i++) {
+            records[i - from] = buffer.getInt(HEADER_SIZE + i * entrySize + keyWidth);
+        }
+        Arrays.sort(records);
+        return records;
+    }
+
+    /**
+     * Returns the position of the first entry whose key is greater or equal than the specified
+     * one (if inclusive), or strictly greater than it (if not inclusive)
+     */
+    int bound(Object key, boolean inclusive) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int c = compare(mid, key);
+            if (c < 0 || (c == 0 && !inclusive)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Compares the key of the specified entry with the given one
+     */
+    int compare(int entry, Object key) {
+        int offset = HEADER_SIZE + entry * entrySize;
+        switch (keyType) {
+        case NUMBER:
+            return Double.compare(buffer.getDouble(offset), (Double) key);
+        case DATE:
+        case BOOLEAN:
+            long value = buffer.getLong(offset);
+            long other = (Long) key;
+            return value < other ? -1 : (value == other ? 0 : 1);
+        default:
+            String string = (String) key;
+            int chars = keyWidth / 2;
+            for (int i = 0; i < chars; i++) {
+                char c = buffer.getChar(offset + i * 2);
+                if (c == 0) {
+                    // end of the stored string
+                    return i < string.length() ? -1 : 0;
+                } else if (i == string.length()) {
+                    return 1;
+                } else if (c != string.charAt(i)) {
+                    return c - string.charAt(i);
+                }
+            }
+            return chars < string.length() ? -1 : 0;
+        }
+    }
+
+    /**
+     * Releases the mapped buffer
+     */
+    public void close() {
+        NIOUtilities.clean(buffer, true);
+    }
+}
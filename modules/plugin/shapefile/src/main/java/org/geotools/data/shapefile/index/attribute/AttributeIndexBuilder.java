@@ -0,0 +1,294 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.shapefile.index.attribute;
+
+import static org.geotools.data.shapefile.index.attribute.AttributeIndex.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Date;
+
+import org.geotools.data.shapefile.dbf.DbaseFileHeader;
+import org.geotools.data.shapefile.dbf.DbaseFileReader;
+import org.geotools.data.shapefile.dbf.DbaseFileReader.Row;
+import org.geotools.data.shapefile.index.attribute.AttributeIndex.KeyType;
+
+/**
+ * Builds an {@link AttributeIndex} file out of a dbf column. The keys are sorted in memory, the
+ * file is written in a temporary location and then renamed, so that concurrent readers never
+ * see a partially written index.
+ */
+public class AttributeIndexBuilder {
+
+    KeyType keyType;
+
+    int size;
+
+    double[] numbers;
+
+    long[] longs;
+
+    String[] strings;
+
+    int[] records;
+
+    int maxLength;
+
+    /**
+     * Indexes the specified field of the dbf
+     *
+     * @param dbf a dbf reader positioned on the first record, it will be fully read but not
+     *        closed
+     * @param field the zero based number of the field to index
+     * @param file the index file
+     */
+    public static void build(DbaseFileReader dbf, int field, File file) throws IOException {
+        DbaseFileHeader header = dbf.getHeader();
+        KeyType keyType = KeyType.forBinding(header.getFieldClass(field));
+        if (keyType == null) {
+            throw new IOException("Cannot index field " + header.getFieldName(field) + " of type "
+                    + header.getFieldType(field));
+        }
+        AttributeIndexBuilder builder = new AttributeIndexBuilder(keyType);
+        builder.read(dbf, field);
+        builder.sort();
+        builder.write(file, header, field);
+    }
+
+    AttributeIndexBuilder(KeyType keyType) {
+        this.keyType = keyType;
+        this.records = new int[1024];
+        if (keyType == KeyType.NUMBER) {
+            numbers = new double[records.length];
+        } else if (keyType == KeyType.STRING) {
+            strings = new String[records.length];
+        } else {
+            longs = new long[records.length];
+        }
+    }
+
+    void read(DbaseFileReader dbf, int field) throws IOException {
+        dbf.setFieldSelection(new int[] { field });
+        int record = 0;
+        while (dbf.hasNext()) {
+            Row row = dbf.readRow();
+            if (!row.isDeleted()) {
+                Object value = row.read(field);
+                if (value != null) {
+                    add(value, record);
+                }
+            }
+            record++;
+        }
+    }
+
+    void add(Object value, int record) {
+        if (size == records.length) {
+            int newLength = size * 2;
+            records = grow(records, newLength);
+            if (numbers != null) {
+                double[] grown = new double[newLength];
+                System.arraycopy(numbers, 0, grown, 0, size);
+                numbers = grown;
+            } else if (strings != null) {
+                String[] grown = new String[newLength];
+                System.arraycopy(strings, 0, grown, 0, size);
+                strings = grown;
+            } else {
+                long[] grown = new long[newLength];
+                System.arraycopy(longs, 0, grown, 0, size);
+                longs = grown;
+            }
+        }
+        switch (keyType) {
+        case NUMBER:
+            numbers[size] = ((Number) value).doubleValue();
+            break;
+        case DATE:
+            longs[size] = ((Date) value).getTime();
+            break;
+        case BOOLEAN:
+            longs[size] = ((Boolean) value) ? 1 : 0;
+            break;
+        default:
+            String string = (String) value;
+            strings[size] = string;
+            maxLength = Math.max(maxLength, string.length());
+        }
+        records[size++] = record;
+    }
+
+    int[] grow(int[] array, int newLength) {
+        int[] grown = new int[newLength];
+        System.arraycopy(array, 0, grown, 0, size);
+        return grown;
+    }
+
+    /**
+     * Sorts the entries by key, and then by record number
+     */
+    void sort() {
+        quickSort(0, size - 1);
+    }
+
+    void quickSort(int low, int high) {
+        while (high - low > 16) {
+            // median of three as the pivot, moved at the end of the range
+            int mid = (low + high) >>> 1;
+            if (compare(mid, low) < 0) {
+                swap(mid, low);
+            }
+            if (compare(high, low) < 0) {
+                swap(high, low);
+            }
+            if (compare(high, mid) < 0) {
+                swap(high, mid);
+            }
+            swap(mid, high);
+
+            int store = low;
+            for (int i = low; i < high; i++) {
+                if (compare(i, high) < 0) {
+                    swap(i, store++);
+                }
+            }
+            swap(store, high);
+
+            // recurse on the smaller half, loop on the larger one
+            if (store - low < high - store) {
+                quickSort(low, store - 1);
+                low = store + 1;
+            } else {
+                quickSort(store + 1, high);
+                high = store - 1;
+            }
+        }
+        // insertion sort for the small ranges
+        for (int i = low + 1; i <= high; i++) {
+            for (int j = i; j > low && compare(j, j - 1) < 0; j--) {
+                swap(j, j - 1);
+            }
+        }
+    }
+
+    int compare(int i, int j) {
+        int c;
+        switch (keyType) {
+        case NUMBER:
+            c = Double.compare(numbers[i], numbers[j]);
+            break;
+        case STRING:
+            c = strings[i].compareTo(strings[j]);
+            break;
+        default:
+            c = longs[i] < longs[j] ? -1 : (longs[i] == longs[j] ? 0 : 1);
+        }
+        if (c == 0) {
+            c = records[i] - records[j];
+        }
+        return c;
+    }
+
+    void swap(int i, int j) {
+        int record = records[i];
+        records[i] = records[j];
+        records[j] = record;
+        if (numbers != null) {
+            double number = numbers[i];
+            numbers[i] = numbers[j];
+            numbers[j] = number;
+        } else if (strings != null) {
+            String string = strings[i];
+            strings[i] = strings[j];
+            strings[j] = string;
+        } else {
+            long value = longs[i];
+            longs[i] = longs[j];
+            longs[j] = value;
+        }
+    }
+
+    void write(File file, DbaseFileHeader header, int field) throws IOException {
+        int keyWidth = keyType == KeyType.STRING ? Math.max(1, maxLength) * 2 : 8;
+        int entrySize = keyWidth + 4;
+
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        FileOutputStream fos = new FileOutputStream(temp);
+        try {
+            FileChannel channel = fos.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocate(Math.max(HEADER_SIZE, entrySize * 1024));
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+            buffer.putInt(keyType.ordinal());
+            buffer.putInt(keyWidth);
+            buffer.putInt(size);
+            buffer.putInt(header.getNumRecords());
+            buffer.putInt(field);
+            byte[] name = header.getFieldName(field).getBytes(FIELD_NAME_CHARSET);
+            for (int i = 0; i < FIELD_NAME_SIZE; i++) {
+                buffer.put(i < name.length ? name[i] : 0);
+            }
+            flush(buffer, channel);
+
+            for (int i = 0; i < size; i++) {
+                if (buffer.remaining() < entrySize) {
+                    flush(buffer, channel);
+                }
+                switch (keyType) {
+                case NUMBER:
+                    buffer.putDouble(numbers[i]);
+                    break;
+                case STRING:
+                    String string = strings[i];
+                    for (int j = 0, chars = keyWidth / 2; j < chars; j++) {
+                        buffer.putChar(j < string.length() ? string.charAt(j) : 0);
+                    }
+                    break;
+                default:
+                    buffer.putLong(longs[i]);
+                }
+                buffer.putInt(records[i]);
+            }
+            flush(buffer, channel);
+        } finally {
+            fos.close();
+        }
+
+        if (file.exists() && !file.delete()) {
+            temp.delete();
+            throw new IOException("Could not replace the attribute index " + file);
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Could not create the attribute index " + file);
+        }
+    }
+
+    void flush(ByteBuffer buffer, FileChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,328 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.shapefile.index.hilbert;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+import org.geotools.data.shapefile.index.CloseableIterator;
+import org.geotools.data.shapefile.index.Data;
+import org.geotools.data.shapefile.index.DataDefinition;
+import org.geotools.data.shapefile.index.TreeException;
+import org.geotools.resources.NIOUtilities;
+
+import com.vividsolutions.jts.geom.Envelope;
+
+/**
+ * A packed, Hilbert sorted R-tree, read straight from a (usually memory mapped) buffer. The
+ * tree is built bottom up by the {@link PackedRTreeBuilder}, every node but the last one of
+ * each level is full, and the nodes are stored level by level, leaves first, in the following
+ * layout (little endian):
+ * <ul>
+ * <li>a 64 bytes header, containing the magic number, the version, the node size, the number
+ * of items, the number of levels and the bounds of the indexed data</li>
+ * <li>the index of the first entry of each level, plus the total number of entries, padded to
+ * 8 bytes</li>
+ * <li>the entries, 24 bytes each: the bounds as four floats (rounded outwards) followed by two
+ * integers. For the leaves these are the record number and the record offset in the .shp
+ * file, for the other levels the index of the first child entry and the number of children</li>
+ * </ul>
+ * The search works over the buffer using absolute reads, without allocating any object per
+ * node, and without moving anything on the heap, allowing multiple concurrent searches.
+ */
+public class PackedRTree {
+
+    static final int MAGIC = 0x47545052; // GTPR
+
+    static final int VERSION = 1;
+
+    static final int HEADER_SIZE = 64;
+
+    static final int ENTRY_SIZE = 24;
+
+    static final DataDefinition DATA_DEFINITION = new DataDefinition("US-ASCII");
+    static {
+        DATA_DEFINITION.addField(Integer.class);
+        DATA_DEFINITION.addField(Long.class);
+    }
+
+    /**
+     * Max number of results collected (and sorted by offset) at a time
+     */
+    static final int MAX_RESULTS = 32768;
+
+    final ByteBuffer buffer;
+
+    /**
+     * The original buffer, only set if memory mapped, to be unmapped on close
+     */
+    final ByteBuffer mapped;
+
+    final int nodeSize;
+
+    final int numItems;
+
+    final int[] levelStart;
+
+    final int entriesOffset;
+
+    final Envelope bounds;
+
+    int iterators;
+
+    boolean closed;
+
+    /**
+     * Memory maps the specified index file
+     */
+    public static PackedRTree open(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Packed R-tree file " + file + " is too large");
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new PackedRTree(buffer, true);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Builds a tree on top of the specified buffer
+     *
+     * @param buffer the buffer containing the tree
+     * @param memoryMapped if true, the buffer will be unmapped when the tree is closed
+     * @throws IOException if the buffer does not contain a valid tree
+     */
+    public PackedRTree(ByteBuffer buffer, boolean memoryMapped) throws IOException {
+        this.buffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        this.mapped = memoryMapped ? buffer : null;
+        if (this.buffer.capacity() < HEADER_SIZE || this.buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a packed R-tree file");
+        }
+        int version = this.buffer.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported packed R-tree version " + version);
+        }
+        this.nodeSize = this.buffer.getInt(8);
+        this.numItems = this.buffer.getInt(12);
+        int numLevels = this.buffer.getInt(16);
+        if (numItems > 0) {
+            this.bounds = new Envelope(this.buffer.getDouble(24), this.buffer.getDouble(40),
+                    this.buffer.getDouble(32), this.buffer.getDouble(48));
+        } else {
+            this.bounds = new Envelope();
+        }
+        this.levelStart = new int[numLevels + 1];
+        for (int i = 0; i <= numLevels; i++) {
+            levelStart[i] = this.buffer.getInt(HEADER_SIZE + i * 4);
+        }
+        this.entriesOffset = HEADER_SIZE + getLevelStartsSize(numLevels);
+        if (entriesOffset + (long) getNumEntries() * ENTRY_SIZE > this.buffer.capacity()) {
+            throw new IOException("Truncated packed R-tree file");
+        }
+    }
+
+    /**
+     * The size of the level starts section, padded to 8 bytes
+     */
+    static int getLevelStartsSize(int numLevels) {
+        int size = (numLevels + 1) * 4;
+        return (size + 7) / 8 * 8;
+    }
+
+    /**
+     * The bounds of the indexed data
+     */
+    public Envelope getBounds() {
+        return new Envelope(bounds);
+    }
+
+    /**
+     * The number of indexed records
+     */
+    public int getNumItems() {
+        return numItems;
+    }
+
+    public int getNodeSize() {
+        return nodeSize;
+    }
+
+    /**
+     * The number of levels in the tree, including the leaves
+     */
+    public int getNumLevels() {
+        return levelStart.length - 1;
+    }
+
+    int getNumEntries() {
+        return levelStart[levelStart.length - 1];
+    }
+
+    /**
+     * Returns an iterator over the records whose bounds intersect the specified envelope. The
+     * results are returned in chunks sorted by offset, so that the .shp file is mostly read
+     * forward. The iterator must be closed after usage.
+     */
+    public synchronized CloseableIterator<Data> search(Envelope envelope) {
+        if (closed) {
+            throw new IllegalStateException("The packed R-tree has been closed");
+        }
+        iterators++;
+        return new SearchIterator(envelope);
+    }
+
+    /**
+     * Closes the tree. If the buffer is memory mapped it will be unmapped as soon as the last
+     * open iterator is closed.
+     */
+    public synchronized void close() {
+        closed = true;
+        cleanIfUnused();
+    }
+
+    synchronized void releaseIterator() {
+        iterators--;
+        cleanIfUnused();
+    }
+
+    private void cleanIfUnused() {
+        if (closed && iterators == 0 && mapped != null) {
+            NIOUtilities.clean(mapped, true);
+        }
+    }
+
+    /**
+     * Depth first search of the tree, with an explicit stack
+     */
+    class SearchIterator implements CloseableIterator<Data> {
+
+        final double minX, minY, maxX, maxY;
+
+        final int leaves;
+
+        int[] stack;
+
+        int stackSize;
+
+        long[] results = new long[16];
+
+        int resultsSize;
+
+        int resultsIndex;
+
+        Data next;
+
+        boolean iteratorClosed;
+
+        SearchIterator(Envelope envelope) {
+            this.minX = envelope.getMinX();
+            this.minY = envelope.getMinY();
+            this.maxX = envelope.getMaxX();
+            this.maxY = envelope.getMaxY();
+            this.leaves = numItems;
+            int numEntries = getNumEntries();
+            this.stack = new int[getNumLevels() * nodeSize + 1];
+            if (numEntries > 0 && !envelope.isNull()) {
+                // the root is the last entry
+                stack[stackSize++] = numEntries - 1;
+            }
+        }
+
+        public boolean hasNext() {
+            if (iteratorClosed) {
+                throw new IllegalStateException("Iterator has been closed!");
+            }
+            if (next != null) {
+                return true;
+            }
+            if (resultsIndex >= resultsSize) {
+                fillResults();
+            }
+            if (resultsIndex < resultsSize) {
+                long result = results[resultsIndex++];
+                try {
+                    next = new Data(DATA_DEFINITION);
+                    next.addValue(((int) result) + 1);
+                    next.addValue(new Long(result >>> 32));
+                } catch (TreeException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            return next != null;
+        }
+
+        private void fillResults() {
+            resultsSize = 0;
+            resultsIndex = 0;
+            while (stackSize > 0 && resultsSize < MAX_RESULTS) {
+                int entry = stack[--stackSize];
+                int position = entriesOffset + entry * ENTRY_SIZE;
+                if (buffer.getFloat(position) > maxX || buffer.getFloat(position + 4) > maxY
+                        || buffer.getFloat(position + 8) < minX
+                        || buffer.getFloat(position + 12) < minY) {
+                    continue;
+                }
+                int first = buffer.getInt(position + 16);
+                int second = buffer.getInt(position + 20);
+                if (entry < leaves) {
+                    // record number and offset, packed so that sorting orders by offset
+                    if (resultsSize == results.length) {
+                        results = Arrays.copyOf(results,
+                                Math.min(MAX_RESULTS, results.length * 2));
+                    }
+                    results[resultsSize++] = (((long) second) << 32) | (first & 0xFFFFFFFFL);
+                } else {
+                    // push the children in reverse order, so that they are visited in order
+                    for (int child = first + second - 1; child >= first; child--) {
+                        stack[stackSize++] = child;
+                    }
+                }
+            }
+            Arrays.sort(results, 0, resultsSize);
+        }
+
+        public Data next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("No more elements available");
+            }
+            Data result = next;
+            next = null;
+            return result;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        public void close() throws IOException {
+            if (!iteratorClosed) {
+                iteratorClosed = true;
+                releaseIterator();
+            }
+        }
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.shapefile.index.hilbert;
+
+import static org.geotools.data.shapefile.index.hilbert.PackedRTree.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.vividsolutions.jts.geom.Envelope;
+
+/**
+ * Bulk loads a {@link PackedRTree}: the records bounds are collected in memory, sorted along
+ * the Hilbert curve of their centers, and packed in full nodes, level by level, bottom up.
+ * <p>
+ * The records are supposed to be added in the same order they have in the shapefile, the
+ * insertion order is used as the record number.
+ */
+public class PackedRTreeBuilder {
+
+    /** The default number of entries per node */
+    public static final int DEFAULT_NODE_SIZE = 16;
+
+    /** The Hilbert curve is computed on a 2^16 x 2^16 grid */
+    static final int HILBERT_MAX = (1 << 16) - 1;
+
+    final int nodeSize;
+
+    float[] boxes;
+
+    int[] offsets;
+
+    int count;
+
+    Envelope bounds = new Envelope();
+
+    /**
+     * Builds a new packed R-tree builder
+     *
+     * @param nodeSize the number of entries per node
+     * @param expectedRecords the expected number of records, used to size the internal arrays
+     */
+    public PackedRTreeBuilder(int nodeSize, int expectedRecords) {
+        if (nodeSize < 2) {
+            throw new IllegalArgumentException("The node size must be at least 2");
+        }
+        this.nodeSize = nodeSize;
+        int capacity = Math.max(expectedRecords, 16);
+        this.boxes = new float[capacity * 4];
+        this.offsets = new int[capacity];
+    }
+
+    /**
+     * Adds a record to the tree
+     *
+     * @param minX
+     * @param minY
+     * @param maxX
+     * @param maxY
+     * @param offset the offset of the record in the .shp file, in bytes
+     */
+    public void add(double minX, double minY, double maxX, double maxY, int offset) {
+        if (count == offsets.length) {
+            int capacity = offsets.length + offsets.length / 2;
+            boxes = Arrays.copyOf(boxes, capacity * 4);
+            offsets = Arrays.copyOf(offsets, capacity);
+        }
+        boxes[count * 4] = roundDown(minX);
+        boxes[count * 4 + 1] = roundDown(minY);
+        boxes[count * 4 + 2] = roundUp(maxX);
+        boxes[count * 4 + 3] = roundUp(maxY);
+        offsets[count] = offset;
+        bounds.expandToInclude(minX, minY);
+        bounds.expandToInclude(maxX, maxY);
+        count++;
+    }
+
+    /**
+     * The number of records added so far
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Sorts the records and writes down the tree
+     */
+    public void write(File file) throws IOException {
+        // compute the level sizes
+        List<Integer> levelSizes = new ArrayList<Integer>();
+        if (count > 0) {
+            int size = count;
+            levelSizes.add(size);
+            while (size > 1) {
+                size = (size + nodeSize - 1) / nodeSize;
+                levelSizes.add(size);
+            }
+        }
+        int numLevels = levelSizes.size();
+        int[] levelStart = new int[numLevels + 1];
+        for (int i = 0; i < numLevels; i++) {
+            levelStart[i + 1] = levelStart[i] + levelSizes.get(i);
+        }
+        if (HEADER_SIZE + getLevelStartsSize(numLevels) + (long) levelStart[numLevels]
+                * ENTRY_SIZE > Integer.MAX_VALUE) {
+            throw new IOException("Too many records for a packed R-tree: " + count);
+        }
+
+        long[] keys = sortByHilbert();
+
+        FileOutputStream fos = new FileOutputStream(file);
+        try {
+            FileChannel channel = fos.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+
+            // header
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+            buffer.putInt(nodeSize);
+            buffer.putInt(count);
+            buffer.putInt(numLevels);
+            buffer.putInt(0);
+            buffer.putDouble(bounds.getMinX());
+            buffer.putDouble(bounds.getMinY());
+            buffer.putDouble(bounds.getMaxX());
+            buffer.putDouble(bounds.getMaxY());
+            buffer.putLong(0);
+            for (int i = 0; i <= numLevels; i++) {
+                buffer.putInt(levelStart[i]);
+            }
+            while (buffer.position() % 8 != 0) {
+                buffer.put((byte) 0);
+            }
+
+            // leaves, computing the parent level bounds along the way
+            float[] parents = numLevels > 1 ? new float[levelSizes.get(1) * 4] : null;
+            for (int i = 0; i < count; i++) {
+                int record = (int) keys[i];
+                buffer = ensureSpace(channel, buffer);
+                putEntry(buffer, boxes, record, record, offsets[record]);
+                if (parents != null) {
+                    expand(parents, i / nodeSize, boxes, record, i % nodeSize == 0);
+                }
+            }
+
+            // upper levels
+            for (int level = 1; level < numLevels; level++) {
+                int size = levelSizes.get(level);
+                int childCount = levelSizes.get(level - 1);
+                float[] grandParents = level + 1 < numLevels ? new float[levelSizes
+                        .get(level + 1) * 4] : null;
+                for (int i = 0; i < size; i++) {
+                    int firstChild = i * nodeSize;
+                    int children = Math.min(nodeSize, childCount - firstChild);
+                    buffer = ensureSpace(channel, buffer);
+                    putEntry(buffer, parents, i, levelStart[level - 1] + firstChild, children);
+                    if (grandParents != null) {
+                        expand(grandParents, i / nodeSize, parents, i, i % nodeSize == 0);
+                    }
+                }
+                parents = grandParents;
+            }
+
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } finally {
+            fos.close();
+        }
+    }
+
+    /**
+     * Sorts the record numbers along the Hilbert curve, packing the Hilbert value in the
+     * higher 32 bits and the record number in the lower ones, so that a primitive sort can be
+     * used. The Hilbert values use all the 32 bits, their top bit is flipped so that the signed
+     * comparison of the keys follows the unsigned order of the values
+     */
+    long[] sortByHilbert() {
+        long[] keys = new long[count];
+        double width = bounds.getWidth();
+        double height = bounds.getHeight();
+        for (int i = 0; i < count; i++) {
+            double cx = (boxes[i * 4] + (double) boxes[i * 4 + 2]) / 2;
+            double cy = (boxes[i * 4 + 1] + (double) boxes[i * 4 + 3]) / 2;
+            int x = width > 0 ? (int) (HILBERT_MAX * ((cx - bounds.getMinX()) / width)) : 0;
+            int y = height > 0 ? (int) (HILBERT_MAX * ((cy - bounds.getMinY()) / height)) : 0;
+            x = Math.max(0, Math.min(HILBERT_MAX, x));
+            y = Math.max(0, Math.min(HILBERT_MAX, y));
+            keys[i] = ((hilbert(x, y) << 32) ^ Long.MIN_VALUE) | (i & 0xFFFFFFFFL);
+        }
+        Arrays.sort(keys);
+        return keys;
+    }
+
+    /**
+     * Returns the position of the specified cell along the Hilbert curve filling the 2^16 x
+     * 2^16 grid
+     */
+    static long hilbert(int x, int y) {
+        final int n = HILBERT_MAX + 1;
+        long d = 0;
+        for (int s = n / 2; s > 0; s /= 2) {
+            int rx = (x & s) > 0 ? 1 : 0;
+            int ry = (y & s) > 0 ? 1 : 0;
+            d += (long) s * s * ((3 * rx) ^ ry);
+            // rotate the quadrant
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = n - 1 - x;
+                    y = n - 1 - y;
+                }
+                int t = x;
+                x = y;
+                y = t;
+            }
+        }
+        return d;
+    }
+
+    private ByteBuffer ensureSpace(FileChannel channel, ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < ENTRY_SIZE) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+        return buffer;
+    }
+
+    private void putEntry(ByteBuffer buffer, float[] boxes, int index, int first, int second) {
+        buffer.putFloat(boxes[index * 4]);
+        buffer.putFloat(boxes[index * 4 + 1]);
+        buffer.putFloat(boxes[index * 4 + 2]);
+        buffer.putFloat(boxes[index * 4 + 3]);
+        buffer.putInt(first);
+        buffer.putInt(second);
+    }
+
+    private void expand(float[] target, int targetIndex, float[] source, int sourceIndex,
+            boolean first) {
+        int t = targetIndex * 4;
+        int s = sourceIndex * 4;
+        if (first) {
+            System.arraycopy(source, s, target, t, 4);
+        } else {
+            target[t] = Math.min(target[t], source[s]);
+            target[t + 1] = Math.min(target[t + 1], source[s + 1]);
+            target[t + 2] = Math.max(target[t + 2], source[s + 2]);
+            target[t + 3] = Math.max(target[t + 3], source[s + 3]);
+        }
+    }
+
+    /**
+     * Converts to float making sure the result is not greater than the original value
+     */
+    static float roundDown(double value) {
+        float result = (float) value;
+        if (result > value) {
+            result = Math.nextAfter(result, Double.NEGATIVE_INFINITY);
+        }
+        return result;
+    }
+
+    /**
+     * Converts to float making sure the result is not smaller than the original value
+     */
+    static float roundUp(double value) {
+        float result = (float) value;
+        if (result < value) {
+            result = Math.nextUp(result);
+        }
+        return result;
+    }
+}
@@ -357,7 +357,9 @@ public class QuadTree {
 
     public void close() throws StoreException {
         try {
-            indexfile.close();
+            if (indexfile != null) {
+                indexfile.close();
+            }
             root.close();
         } catch (IOException e) {
             throw new StoreException("error closing indexfile", e.getCause());
@@ -249,6 +249,62 @@ public class FileSystemIndexStore implements IndexStore {
         return tree;
     }
 
+    /**
+     * Fully loads in memory a quadtree stored in a '.qix' file. Differently from
+     * {@link #load(IndexFile, boolean)} the resulting quadtree can be modified, and then written
+     * back with {@link #store(QuadTree)}. The byte order of this store is set to the one of the
+     * file, the tree has no index file attached, so it cannot be used to search the shapefile.
+     */
+    public QuadTree loadInMemory() throws StoreException {
+        FileInputStream fis = null;
+        try {
+            fis = new FileInputStream(file);
+            FileChannel channel = fis.getChannel();
+
+            IndexHeader header = new IndexHeader(channel);
+            this.byteOrder = header.getByteOrder();
+
+            ByteOrder order = byteToOrder(this.byteOrder);
+            ByteBuffer buf = ByteBuffer.allocate(8);
+            buf.order(order);
+            channel.read(buf);
+            buf.flip();
+
+            QuadTree tree = new QuadTree(buf.getInt(), buf.getInt(), null);
+            FileSystemNode root = FileSystemNode.readNode(0, null, channel, order, false);
+            try {
+                tree.setRoot(copyNode(root));
+            } finally {
+                root.close();
+            }
+            return tree;
+        } catch (IOException e) {
+            throw new StoreException(e);
+        } finally {
+            if (fis != null) {
+                try {
+                    fis.close();
+                } catch (IOException e) {
+                    LOGGER.log(Level.FINE, "Error closing the index file", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Recursively copies a file system node into memory
+     */
+    private Node copyNode(Node node) throws StoreException {
+        Node copy = new Node(new Envelope(node.getBounds()));
+        for (int i = 0; i < node.getNumShapeIds(); i++) {
+            copy.addShapeId(node.getShapeId(i));
+        }
+        for (int i = 0; i < node.getNumSubNodes(); i++) {
+            copy.addSubNode(copyNode(node.getSubNode(i)));
+        }
+        return copy;
+    }
+
     /**
      * DOCUMENT ME!
      * 
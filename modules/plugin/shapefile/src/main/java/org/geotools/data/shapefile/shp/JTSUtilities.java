@@ -17,6 +17,8 @@
 package org.geotools.data.shapefile.shp;
 
 import org.geotools.factory.Hints;
+import org.geotools.geometry.jts.LiteCoordinateSequence;
+import org.geotools.geometry.jts.LiteCoordinateSequenceFactory;
 import org.opengis.feature.type.GeometryDescriptor;
 
 import com.vividsolutions.jts.algorithm.CGAlgorithms;
@@ -33,6 +35,8 @@ import com.vividsolutions.jts.geom.MultiPolygon;
 import com.vividsolutions.jts.geom.Point;
 import com.vividsolutions.jts.geom.Polygon;
 import com.vividsolutions.jts.geom.impl.CoordinateArraySequence;
+import com.vividsolutions.jts.geom.impl.PackedCoordinateSequence;
+import com.vividsolutions.jts.geom.impl.PackedCoordinateSequenceFactory;
 
 /**
  * A collection of utility methods for use with JTS and the shapefile package.
@@ -50,6 +54,29 @@ public class JTSUtilities {
     private JTSUtilities() {
     }
 
+    /**
+     * Returns true if the factory builds sequences backed by a packed double array, which the
+     * shape handlers can then fill directly from the shapefile buffer
+     */
+    static boolean isPackedDouble(CoordinateSequenceFactory csFactory) {
+        return csFactory instanceof LiteCoordinateSequenceFactory
+                || (csFactory instanceof PackedCoordinateSequenceFactory && ((PackedCoordinateSequenceFactory) csFactory)
+                        .getType() == PackedCoordinateSequenceFactory.DOUBLE);
+    }
+
+    /**
+     * Wraps the packed ordinates in a sequence of the same type the factory would build, without
+     * copying them. The factory must be one accepted by {@link #isPackedDouble}
+     */
+    static CoordinateSequence createPacked(CoordinateSequenceFactory csFactory,
+            double[] ordinates, int dimension) {
+        if (csFactory instanceof LiteCoordinateSequenceFactory) {
+            return new LiteCoordinateSequence(ordinates, dimension);
+        } else {
+            return new PackedCoordinateSequence.Double(ordinates, dimension);
+        }
+    }
+
     /**
      * Determine the min and max "z" values in an array of Coordinates.
      * 
@@ -129,6 +129,10 @@ public class MultiLineHandler implements ShapeHandler {
         for (int i = 0; i < numParts; i++) {
             partOffsets[i] = buffer.getInt();
         }
+        final CoordinateSequenceFactory csFactory = geometryFactory.getCoordinateSequenceFactory();
+        if (JTSUtilities.isPackedDouble(csFactory)) {
+            return readPacked(buffer, csFactory, partOffsets, numPoints, dimensions);
+        }
         // read the first two coordinates and start building the coordinate
         // sequences
         CoordinateSequence[] lines = new CoordinateSequence[numParts];
@@ -211,6 +215,48 @@ public class MultiLineHandler implements ShapeHandler {
         return geometryFactory.createMultiLineString(lineStrings);
     }
 
+    /**
+     * Reads the lines straight into packed ordinate arrays, with a single bulk read per line
+     * when the geometry is flat, and builds the sequences on top of them without further copies
+     */
+    Object readPacked(ByteBuffer buffer, CoordinateSequenceFactory csFactory, int[] partOffsets,
+            int numPoints, int dimensions) {
+        final int numParts = partOffsets.length;
+        final DoubleBuffer doubleBuffer = buffer.asDoubleBuffer();
+        // the z values follow the xy ones and the z range
+        final int zStart = numPoints * 2 + 2;
+        LineString[] lineStrings = new LineString[numParts];
+        for (int part = 0; part < numParts; part++) {
+            int start = partOffsets[part];
+            int finish = part == (numParts - 1) ? numPoints : partOffsets[part + 1];
+            int length = finish - start;
+            // a single point line is turned into a two points one
+            int size = length == 1 ? 2 : length;
+
+            double[] ordinates = new double[size * dimensions];
+            doubleBuffer.position(start * 2);
+            doubleBuffer.get(ordinates, 0, length * 2);
+            if (dimensions == 3) {
+                // spread the xy pairs backwards to make room for the z values
+                for (int i = length - 1; i >= 0; i--) {
+                    ordinates[i * 3 + 1] = ordinates[i * 2 + 1];
+                    ordinates[i * 3] = ordinates[i * 2];
+                }
+                for (int i = 0; i < length; i++) {
+                    ordinates[i * 3 + 2] = doubleBuffer.get(zStart + start + i);
+                }
+            }
+            if (length == 1) {
+                System.arraycopy(ordinates, 0, ordinates, dimensions, dimensions);
+            }
+
+            CoordinateSequence cs = JTSUtilities.createPacked(csFactory, ordinates, dimensions);
+            lineStrings[part] = geometryFactory.createLineString(cs);
+        }
+
+        return geometryFactory.createMultiLineString(lineStrings);
+    }
+
     public void write(ByteBuffer buffer, Object geometry) {
         MultiLineString multi = (MultiLineString) geometry;
 
@@ -29,6 +29,7 @@ import com.vividsolutions.jts.algorithm.CGAlgorithms;
 import com.vividsolutions.jts.algorithm.RobustDeterminant;
 import com.vividsolutions.jts.geom.Coordinate;
 import com.vividsolutions.jts.geom.CoordinateSequence;
+import com.vividsolutions.jts.geom.CoordinateSequenceFactory;
 import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.geom.GeometryFactory;
@@ -148,6 +149,11 @@ public class PolygonHandler implements ShapeHandler {
 
         ArrayList shells = new ArrayList();
         ArrayList holes = new ArrayList();
+        final CoordinateSequenceFactory csFactory = geometryFactory.getCoordinateSequenceFactory();
+        if (JTSUtilities.isPackedDouble(csFactory)) {
+            readPackedRings(buffer, csFactory, partOffsets, numPoints, dimensions, shells, holes);
+            return buildPolygons(shells, holes);
+        }
         CoordinateSequence coords = readCoordinates(buffer, numPoints, dimensions);
 
         int offset = 0;
@@ -210,6 +216,76 @@ public class PolygonHandler implements ShapeHandler {
             }
         }
 
+        return buildPolygons(shells, holes);
+    }
+
+    /**
+     * Reads the rings straight into packed ordinate arrays, closing them if necessary, and sorts
+     * them into shells and holes. Flat rings are read with a single bulk read each, the sequences
+     * are built on top of the arrays without further copies
+     */
+    void readPackedRings(ByteBuffer buffer, CoordinateSequenceFactory csFactory,
+            int[] partOffsets, int numPoints, int dimensions, List shells, List holes) {
+        final int numParts = partOffsets.length;
+        final DoubleBuffer dbuffer = buffer.asDoubleBuffer();
+        // the z values follow the xy ones and the z range
+        final int zStart = numPoints * 2 + 2;
+        for (int part = 0; part < numParts; part++) {
+            int start = partOffsets[part];
+            int finish = part == (numParts - 1) ? numPoints : partOffsets[part + 1];
+            int length = finish - start;
+
+            int close = 0; // '1' if the ring must be closed, '0' otherwise
+            if (length > 0) {
+                int last = finish - 1;
+                if (dbuffer.get(start * 2) != dbuffer.get(last * 2)
+                        || dbuffer.get(start * 2 + 1) != dbuffer.get(last * 2 + 1)
+                        || (dimensions == 3 && dbuffer.get(zStart + start) != dbuffer
+                                .get(zStart + last))) {
+                    close = 1;
+                }
+            }
+            // REVISIT: polygons with only 1 or 2 points are not polygons -
+            // geometryFactory will bomb so we skip if we find one.
+            int size = length + close;
+            if (size != 0 && size <= 3) {
+                continue;
+            }
+
+            double[] ordinates = new double[size * dimensions];
+            dbuffer.position(start * 2);
+            dbuffer.get(ordinates, 0, length * 2);
+            if (dimensions == 3) {
+                // spread the xy pairs backwards to make room for the z values
+                for (int i = length - 1; i >= 0; i--) {
+                    ordinates[i * 3 + 1] = ordinates[i * 2 + 1];
+                    ordinates[i * 3] = ordinates[i * 2];
+                }
+                for (int i = 0; i < length; i++) {
+                    ordinates[i * 3 + 2] = dbuffer.get(zStart + start + i);
+                }
+            }
+            if (close == 1) {
+                System.arraycopy(ordinates, 0, ordinates, length * dimensions, dimensions);
+            }
+
+            CoordinateSequence csRing = JTSUtilities.createPacked(csFactory, ordinates,
+                    dimensions);
+            LinearRing ring = geometryFactory.createLinearRing(csRing);
+            if (CoordinateSequences.isCCW(csRing)) {
+                // counter-clockwise
+                holes.add(ring);
+            } else {
+                // clockwise
+                shells.add(ring);
+            }
+        }
+    }
+
+    /**
+     * Builds the multipolygon out of the shells and holes read from the record
+     */
+    private Object buildPolygons(ArrayList shells, ArrayList holes) {
         // quick optimization: if there's only one shell no need to check
         // for holes inclusion
         if (shells.size() == 1) {
@@ -132,6 +132,89 @@ public class ShapefileReader implements FileReader {
         public Envelope envelope() {
             return new Envelope(minX, maxX, minY, maxY);
         }
+
+        /**
+         * Checks if the shape intersects the specified envelope, with the same semantics as a
+         * BBOX filter. The check works directly on the encoded coordinates, the geometry is not
+         * built.
+         */
+        public boolean intersects(Envelope bbox) {
+            if (type == ShapeType.NULL || bbox.isNull() || minX > bbox.getMaxX()
+                    || maxX < bbox.getMinX() || minY > bbox.getMaxY() || maxY < bbox.getMinY()) {
+                return false;
+            }
+            // this also covers the points, whose envelope is the point itself
+            if (minX >= bbox.getMinX() && maxX <= bbox.getMaxX() && minY >= bbox.getMinY()
+                    && maxY <= bbox.getMaxY()) {
+                return true;
+            }
+
+            // skip the shape bounds, for multipoints we have numPoints and the points,
+            // for lines and polygons numParts, numPoints, the parts and then the points
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (type.isMultiPointType()) {
+                int numPoints = buffer.getInt(start + 32);
+                for (int i = 0, p = start + 36; i < numPoints; i++, p += 16) {
+                    if (bbox.contains(buffer.getDouble(p), buffer.getDouble(p + 8))) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            int numParts = buffer.getInt(start + 32);
+            int numPoints = buffer.getInt(start + 36);
+            int partsStart = start + 40;
+            int pointsStart = partsStart + numParts * 4;
+            for (int part = 0; part < numParts; part++) {
+                int first = buffer.getInt(partsStart + part * 4);
+                int last = part == numParts - 1 ? numPoints : buffer.getInt(partsStart
+                        + (part + 1) * 4);
+                int p = pointsStart + first * 16;
+                double x0 = buffer.getDouble(p);
+                double y0 = buffer.getDouble(p + 8);
+                if (bbox.contains(x0, y0)) {
+                    return true;
+                }
+                for (int i = first + 1; i < last; i++) {
+                    p += 16;
+                    double x1 = buffer.getDouble(p);
+                    double y1 = buffer.getDouble(p + 8);
+                    if (segmentIntersects(bbox, x0, y0, x1, y1)) {
+                        return true;
+                    }
+                    x0 = x1;
+                    y0 = y1;
+                }
+            }
+            if (type.isPolygonType()) {
+                // no ring touches the envelope, so it's either fully inside or fully outside
+                // of the polygon, check one of its corners with the even-odd rule
+                double px = bbox.getMinX();
+                double py = bbox.getMinY();
+                boolean inside = false;
+                for (int part = 0; part < numParts; part++) {
+                    int first = buffer.getInt(partsStart + part * 4);
+                    int last = part == numParts - 1 ? numPoints : buffer.getInt(partsStart
+                            + (part + 1) * 4);
+                    int p = pointsStart + first * 16;
+                    double x0 = buffer.getDouble(p);
+                    double y0 = buffer.getDouble(p + 8);
+                    for (int i = first + 1; i < last; i++) {
+                        p += 16;
+                        double x1 = buffer.getDouble(p);
+                        double y1 = buffer.getDouble(p + 8);
+                        if ((y0 > py) != (y1 > py)
+                                && px < (x1 - x0) * (py - y0) / (y1 - y0) + x0) {
+                            inside = !inside;
+                        }
+                        x0 = x1;
+                        y0 = y1;
+                    }
+                }
+                return inside;
+            }
+            return false;
+        }
         
         public Object getSimplifiedShape() {
             CoordinateSequenceFactory csf = geometryFactory.getCoordinateSequenceFactory();
@@ -183,6 +266,40 @@ public class ShapefileReader implements FileReader {
         }
     }
 
+    /**
+     * Checks if the segment intersects the envelope (boundary included) by clipping it against
+     * the envelope sides (Liang-Barsky)
+     */
+    static boolean segmentIntersects(Envelope bbox, double x0, double y0, double x1, double y1) {
+        double dx = x1 - x0;
+        double dy = y1 - y0;
+        double[] t = new double[] { 0, 1 };
+        return clip(-dx, x0 - bbox.getMinX(), t) && clip(dx, bbox.getMaxX() - x0, t)
+                && clip(-dy, y0 - bbox.getMinY(), t) && clip(dy, bbox.getMaxY() - y0, t);
+    }
+
+    private static boolean clip(double p, double q, double[] t) {
+        if (p == 0) {
+            // parallel to the side, inside only if on the inner side
+            return q >= 0;
+        }
+        double r = q / p;
+        if (p < 0) {
+            if (r > t[1]) {
+                return false;
+            } else if (r > t[0]) {
+                t[0] = r;
+            }
+        } else {
+            if (r < t[0]) {
+                return false;
+            } else if (r < t[1]) {
+                t[1] = r;
+            }
+        }
+        return true;
+    }
+
     private ShapeHandler handler;
 
     private ShapefileHeader header;
@@ -651,6 +768,32 @@ public class ShapefileReader implements FileReader {
         }
     }
 
+    /**
+     * Moves the reader to the specified record, using the .shx file to locate it. Unlike
+     * {@link #goTo(int)} sequential reading with hasNext/next keeps on working after the call,
+     * starting from the specified record.
+     *
+     * @param index the zero based index of the record
+     * @throws IOException
+     * @throws UnsupportedOperationException if the .shx file is not available, or random access
+     *         is not enabled
+     */
+    public void goToRecord(int index) throws IOException, UnsupportedOperationException {
+        if (shxReader == null) {
+            throw new UnsupportedOperationException(
+                    "Record access not available, the .shx file is not in use");
+        }
+        if (!randomAccessEnabled) {
+            throw new UnsupportedOperationException("Random Access not enabled");
+        }
+        currentShape = index;
+        if (index < shxReader.getRecordCount()) {
+            record.end = shxReader.getOffsetInBytes(index);
+        }
+        // hasNext checks the next record number is the current one plus one
+        record.number = index;
+    }
+
     /**
      * Returns the shape at the specified byte distance from the beginning of
      * the file. Mind that:
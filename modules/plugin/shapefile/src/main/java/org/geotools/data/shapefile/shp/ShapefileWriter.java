@@ -198,6 +198,82 @@ public class ShapefileWriter {
         shxChannel.position(100);
     }
 
+    /**
+     * Allocate internal buffers and position the channels at the end of the
+     * records of an existing shapefile, so that the new records continue the
+     * existing numbering and offsets. The headers MUST be rewritten after the
+     * new records are written, or the readers will ignore them...
+     *
+     * @param type the shape type of the existing shapefile
+     * @param numberOfGeometries the number of records already in the file
+     * @param fileLength the length of the existing shapefile (in actual bytes,
+     *        NOT 16 bit words)
+     */
+    public void moveToEnd(ShapeType type, int numberOfGeometries,
+            int fileLength) throws IOException {
+        try {
+            handler = type.getShapeHandler(gf);
+        } catch (ShapefileException se) {
+            throw new RuntimeException("unexpected Exception", se);
+        }
+        if (shapeBuffer == null)
+            allocateBuffers();
+        this.type = type;
+        offset = fileLength / 2;
+        cnt = numberOfGeometries;
+
+        shpChannel.position(fileLength);
+        shxChannel.position(100 + 8L * numberOfGeometries);
+    }
+
+    /**
+     * Encodes the contents of a shapefile record (the shape type followed by
+     * the shape itself, without the record header), so that the encoding can
+     * happen in a different thread than the one writing the records with
+     * {@link #writeEncodedGeometry(ByteBuffer)}. The geometry must be
+     * compatible with the shape type, the handler must be the one of the shape
+     * type, and is not used by any other thread.
+     */
+    public static ByteBuffer encodeGeometry(Geometry g, ShapeType type,
+            ShapeHandler handler) {
+        ByteBuffer buffer;
+        if (g == null) {
+            buffer = ByteBuffer.allocate(4);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(ShapeType.NULL.id);
+        } else {
+            buffer = ByteBuffer.allocate(handler.getLength(g));
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(type.id);
+            handler.write(buffer, g);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Write a single record whose contents have been prepared by
+     * {@link #encodeGeometry(Geometry, ShapeType, ShapeHandler)}
+     */
+    public void writeEncodedGeometry(ByteBuffer content) throws IOException {
+        if (shapeBuffer == null)
+            throw new IOException("Must write headers first");
+        int length = content.remaining() / 2;
+        checkShapeBuffer(content.remaining() + 8);
+
+        shapeBuffer.order(ByteOrder.BIG_ENDIAN);
+        shapeBuffer.putInt(++cnt);
+        shapeBuffer.putInt(length);
+        shapeBuffer.put(content.duplicate());
+
+        // write to the shx
+        indexBuffer.putInt(offset);
+        indexBuffer.putInt(length);
+        offset += length + 4;
+
+        drain();
+    }
+
     /**
      * Write a single Geometry to this shapefile. The Geometry must be
      * compatable with the ShapeType assigned during the writing of the headers.
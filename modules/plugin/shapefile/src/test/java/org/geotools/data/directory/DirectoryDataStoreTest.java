@@ -13,11 +13,19 @@ import org.geotools.data.DataStoreFinder;
 import org.geotools.data.DataUtilities;
 import org.geotools.data.FeatureSource;
 import org.geotools.data.directory.DirectoryDataStore;
+import org.geotools.data.Query;
+import org.geotools.data.shapefile.BackgroundIndexer;
+import org.geotools.data.shapefile.ShapefileDataStore;
 import org.geotools.data.shapefile.ShapefileDataStoreFactory;
+import org.geotools.data.shapefile.ShapefileDirectoryFactory;
+import org.geotools.data.simple.SimpleFeatureSource;
+import org.geotools.factory.CommonFactoryFinder;
 import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
 import org.junit.Ignore;
 import org.junit.Test;
 import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.Filter;
+import org.opengis.filter.FilterFactory2;
 
 import com.vividsolutions.jts.geom.Polygon;
 
@@ -155,4 +163,50 @@ public class DirectoryDataStoreTest extends DirectoryTestSupport {
         
         assertNull(store);
      }
+
+    @Test
+    public void testBackgroundIndexing() throws Exception {
+        copyShapefiles("shapes/archsites.shp");
+        File f = copyShapefiles("shapes/bugsites.shp");
+        tempDir = f.getParentFile();
+
+        Map params = new HashMap();
+        params.put(ShapefileDataStoreFactory.URLP.key, DataUtilities.fileToURL(tempDir));
+        params.put(ShapefileDirectoryFactory.BACKGROUND_INDEXING.key, true);
+        params.put(ShapefileDirectoryFactory.INDEXING_THREADS.key, 2);
+        DirectoryDataStore dds = (DirectoryDataStore) DataStoreFinder.getDataStore(params);
+        BackgroundIndexer indexer = null;
+        try {
+            // listing the types builds the stores and schedules their indexing
+            dds.getTypeNames();
+            ShapefileDataStore archsites = (ShapefileDataStore) dds.getDataStore("archsites");
+            indexer = archsites.getBackgroundIndexer();
+            assertNotNull(indexer);
+            assertSame(indexer, ((ShapefileDataStore) dds.getDataStore("bugsites"))
+                    .getBackgroundIndexer());
+
+            // the queries work while the indexes are being built
+            SimpleFeatureSource fs = dds.getFeatureSource("archsites");
+            FilterFactory2 ff = CommonFactoryFinder.getFilterFactory2(null);
+            Filter bbox = ff.bbox(ff.property(""), fs.getBounds());
+            assertEquals(fs.getCount(Query.ALL), fs.getFeatures(bbox).size());
+
+            long start = System.currentTimeMillis();
+            while (indexer.getPendingCount() > 0 && System.currentTimeMillis() - start < 30000) {
+                Thread.sleep(50);
+            }
+            assertEquals(0, indexer.getPendingCount());
+            assertEquals(0, indexer.getFailedCount());
+            assertEquals(indexer.getScheduledCount(), indexer.getCompletedCount());
+            for (String name : new String[] { "archsites", "bugsites" }) {
+                assertTrue(new File(tempDir, name + ".qix").exists());
+                assertTrue(new File(tempDir, name + ".fix").exists());
+            }
+            assertEquals(fs.getCount(Query.ALL), fs.getFeatures(bbox).size());
+        } finally {
+            dds.dispose();
+        }
+        // disposing the store stops the indexer threads
+        assertTrue(indexer.isDisposed());
+    }
 }
@@ -20,10 +20,13 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.io.FileOutputStream;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.TimeZone;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -107,6 +110,42 @@ public class DbaseFileTest extends TestCaseSupport {
         dbf2.close();
     }
 
+    @Test
+    public void testFieldSelection() throws Exception {
+        Object[] attrs = new Object[dbf.getHeader().getNumFields()];
+        DbaseFileReader dbf2 = new DbaseFileReader(shpFiles, false,
+                ShapefileDataStore.DEFAULT_STRING_CHARSET);
+        // two adjacent fields, an isolated one in the middle, and the last one
+        int[] fields = new int[] { 0, 1, 100, 251 };
+        dbf2.setFieldSelection(fields);
+        List<DbaseFileReader.Row> rows = new ArrayList<DbaseFileReader.Row>();
+        List<Object[]> entries = new ArrayList<Object[]>();
+        while (dbf.hasNext()) {
+            dbf.readEntry(attrs);
+            entries.add(attrs.clone());
+            DbaseFileReader.Row r = dbf2.readDetachedRow();
+            rows.add(r);
+            for (int field : fields) {
+                assertEquals(attrs[field], r.read(field));
+            }
+            try {
+                r.read(2);
+                fail("Field 2 is not selected, should have failed");
+            } catch (IllegalArgumentException e) {
+                // fine
+            }
+        }
+        assertEquals(49, rows.size());
+        dbf2.close();
+
+        // detached rows can still be read after the reader has been closed
+        for (int i = 0; i < rows.size(); i++) {
+            for (int field : fields) {
+                assertEquals(entries.get(i)[field], rows.get(i).read(field));
+            }
+        }
+    }
+
     @Test
     public void testHeader() throws Exception {
         DbaseFileHeader header = new DbaseFileHeader();
@@ -27,6 +27,7 @@ import static org.junit.Assert.fail;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.net.URI;
@@ -47,6 +48,7 @@ import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 import java.util.TimeZone;
 import java.util.TreeSet;
@@ -60,7 +62,11 @@ import org.geotools.data.FeatureReader;
 import org.geotools.data.FeatureWriter;
 import org.geotools.data.Query;
 import org.geotools.data.Transaction;
+import org.geotools.data.collection.ListFeatureCollection;
+import org.geotools.data.shapefile.files.MemoryMapCache;
 import org.geotools.data.shapefile.files.ShpFileType;
+import org.geotools.data.shapefile.files.ShpFiles;
+import org.geotools.data.shapefile.index.quadtree.fs.FileSystemIndexStore;
 import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.data.simple.SimpleFeatureIterator;
 import org.geotools.data.simple.SimpleFeatureSource;
@@ -74,9 +80,17 @@ import org.geotools.feature.FeatureTypes;
 import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
 import org.geotools.feature.type.BasicFeatureTypes;
+import org.geotools.feature.visitor.BoundsVisitor;
+import org.geotools.feature.visitor.CountVisitor;
+import org.geotools.feature.visitor.MaxVisitor;
+import org.geotools.feature.visitor.MergeableFeatureCalc;
+import org.geotools.feature.visitor.MinVisitor;
+import org.geotools.feature.visitor.SumVisitor;
+import org.geotools.feature.visitor.UniqueVisitor;
 import org.geotools.filter.IllegalFilterException;
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.referencing.CRS;
+import org.geotools.util.NullProgressListener;
 import org.junit.After;
 import org.junit.Test;
 import org.opengis.feature.Feature;
@@ -1369,6 +1383,44 @@ public class ShapefileDataStoreTest extends TestCaseSupport {
         s.dispose();
     }
     
+    @Test
+    public void testLazyAttributes() throws Exception {
+        ShapefileDataStore s = new ShapefileDataStore(TestData.url(STATE_POP));
+        try {
+            String typeName = s.getSchema().getTypeName();
+            SimpleFeature[] full = DataUtilities.list(s.getFeatureSource().getFeatures())
+                    .toArray(new SimpleFeature[0]);
+
+            // only a couple of columns out of the 252 in the dbf
+            Query query = new Query(typeName, Filter.INCLUDE, new String[] { "PERSONS",
+                    "the_geom", "STATE_NAME" });
+            FeatureReader<SimpleFeatureType, SimpleFeature> reader = s.getFeatureReader(query,
+                    Transaction.AUTO_COMMIT);
+            List<SimpleFeature> features = new ArrayList<SimpleFeature>();
+            try {
+                while (reader.hasNext()) {
+                    features.add(reader.next());
+                }
+            } finally {
+                reader.close();
+            }
+
+            // the attributes are decoded after the reader has been closed, and the values
+            // must not be affected by the following reads
+            assertEquals(full.length, features.size());
+            for (int i = 0; i < full.length; i++) {
+                SimpleFeature f = features.get(i);
+                assertEquals(full[i].getID(), f.getID());
+                assertEquals(full[i].getAttribute("STATE_NAME"), f.getAttribute("STATE_NAME"));
+                assertEquals(full[i].getAttribute("PERSONS"), f.getAttribute(0));
+                assertEquals(full[i].getDefaultGeometry(), f.getDefaultGeometry());
+                assertEquals(3, f.getAttributes().size());
+            }
+        } finally {
+            s.dispose();
+        }
+    }
+
     @Test
     public void testWrite() throws Exception {
         // create feature type
@@ -1692,6 +1744,576 @@ public class ShapefileDataStoreTest extends TestCaseSupport {
         assertEquals(store.getSupportedHints(), store.delegate.getSupportedHints());
     }
 
+    @Test
+    public void testPackedIndex() throws Exception {
+        File shpFile = copyShapefiles(STATE_POP);
+        String name = shpFile.getName();
+        String baseName = name.substring(0, name.length() - 4);
+        File qixFile = new File(shpFile.getParentFile(), baseName + ".qix");
+        File hrxFile = new File(shpFile.getParentFile(), baseName + ".hrx");
+        qixFile.delete();
+
+        ShpFiles shpFiles = new ShpFiles(shpFile);
+        ShapeFileIndexer indexer = new ShapeFileIndexer();
+        indexer.setShapeFileName(shpFiles);
+        indexer.setIndexType(ShpFileType.HRX);
+        indexer.setNodeSize(4);
+        assertEquals(49, indexer.index(false, new NullProgressListener()));
+        shpFiles.dispose();
+        assertTrue(hrxFile.exists());
+
+        URL url = shpFile.toURI().toURL();
+        ShapefileDataStore indexed = new ShapefileDataStore(url);
+        ShapefileDataStore plain = new ShapefileDataStore(url);
+        try {
+            plain.setIndexed(false);
+            SimpleFeatureSource fs = indexed.getFeatureSource();
+            FilterFactory2 ff = CommonFactoryFinder.getFilterFactory2(null);
+            String geomName = fs.getSchema().getGeometryDescriptor().getLocalName();
+            ReferencedEnvelope bounds = fs.getBounds();
+            for (int i = 1; i < 4; i++) {
+                ReferencedEnvelope queryBounds = new ReferencedEnvelope(bounds);
+                queryBounds.expandBy(-bounds.getWidth() * i / 8, -bounds.getHeight() * i / 8);
+                Query query = new Query(fs.getSchema().getTypeName(), ff.bbox(
+                        ff.property(geomName), queryBounds));
+                Set<String> expected = collectIds(plain.getFeatureSource().getFeatures(query));
+                Set<String> actual = collectIds(fs.getFeatures(query));
+                assertEquals(expected, actual);
+            }
+
+            // the packed tree has been used, no quadtree got created
+            assertNotNull(indexed.indexManager.packedTree);
+            assertFalse(qixFile.exists());
+        } finally {
+            indexed.dispose();
+            plain.dispose();
+        }
+    }
+
+    @Test
+    public void testAttributeIndex() throws Exception {
+        File shpFile = copyShapefiles(STATE_POP);
+        URL url = shpFile.toURI().toURL();
+        ShapefileDataStore indexed = new ShapefileDataStore(url);
+        ShapefileDataStore plain = new ShapefileDataStore(url);
+        try {
+            plain.setIndexed(false);
+            indexed.createAttributeIndex("STATE_NAME");
+            indexed.createAttributeIndex("PERSONS");
+            List<File> indexFiles = indexed.indexManager.getAttributeIndexFiles();
+            assertEquals(2, indexFiles.size());
+
+            SimpleFeatureSource fs = indexed.getFeatureSource();
+            String typeName = fs.getSchema().getTypeName();
+            FilterFactory2 ff = CommonFactoryFinder.getFilterFactory2(null);
+            ReferencedEnvelope bounds = fs.getBounds();
+            ReferencedEnvelope west = new ReferencedEnvelope(bounds.getMinX(),
+                    bounds.centre().x, bounds.getMinY(), bounds.getMaxY(), null);
+            Filter[] filters = new Filter[] {
+                    ff.equals(ff.property("STATE_NAME"), ff.literal("Illinois")),
+                    ff.equals(ff.literal("Texas"), ff.property("STATE_NAME")),
+                    ff.equals(ff.property("STATE_NAME"), ff.literal("Atlantis")),
+                    ff.between(ff.property("PERSONS"), ff.literal(1000000), ff.literal("3000000")),
+                    ff.greater(ff.property("PERSONS"), ff.literal(5000000)),
+                    ff.lessOrEqual(ff.literal(5000000), ff.property("PERSONS")),
+                    ff.or(Arrays.asList((Filter) ff.equals(ff.property("STATE_NAME"),
+                            ff.literal("Illinois")), ff.equals(ff.property("STATE_NAME"),
+                            ff.literal("Ohio")), ff.equals(ff.property("STATE_NAME"),
+                            ff.literal("Utah")))),
+                    ff.and(ff.greater(ff.property("PERSONS"), ff.literal(3000000)),
+                            ff.like(ff.property("SUB_REGION"), "*Cen")),
+                    ff.and(ff.greater(ff.property("PERSONS"), ff.literal(3000000)),
+                            ff.bbox(ff.property("the_geom"), west)) };
+            for (Filter filter : filters) {
+                Query query = new Query(typeName, filter);
+                Set<String> expected = collectIds(plain.getFeatureSource().getFeatures(query));
+                Set<String> actual = collectIds(fs.getFeatures(query));
+                assertEquals(filter.toString(), expected, actual);
+                // make sure the index is actually being used
+                assertNotNull(filter.toString(), indexed.indexManager.queryAttributeIndexes(filter));
+            }
+            assertEquals(1, indexed.indexManager.queryAttributeIndexes(filters[0]).length);
+            assertEquals(0, indexed.indexManager.queryAttributeIndexes(filters[2]).length);
+            assertEquals(3, indexed.indexManager.queryAttributeIndexes(filters[6]).length);
+            // not indexed, or not supported
+            assertNull(indexed.indexManager.queryAttributeIndexes(ff.equals(
+                    ff.property("SUB_REGION"), ff.literal("Pacific"))));
+            assertNull(indexed.indexManager.queryAttributeIndexes(ff.or(
+                    filters[0], ff.equals(ff.property("SUB_REGION"), ff.literal("Pacific")))));
+            assertNull(indexed.indexManager.queryAttributeIndexes(ff.equal(
+                    ff.property("STATE_NAME"), ff.literal("illinois"), false)));
+
+            // stale indexes are rebuilt on demand, unless index creation is disabled
+            for (File file : indexFiles) {
+                assertTrue(file.setLastModified(0));
+            }
+            indexed.setIndexCreationEnabled(false);
+            assertNull(indexed.indexManager.queryAttributeIndexes(filters[0]));
+            indexed.setIndexCreationEnabled(true);
+            assertEquals(1, indexed.indexManager.queryAttributeIndexes(filters[0]).length);
+            IndexManager im = indexed.indexManager;
+            assertTrue(im.getAttributeIndexFile(im.getDbfField("STATE_NAME")).lastModified() > 0);
+        } finally {
+            for (File file : indexed.indexManager.getAttributeIndexFiles()) {
+                file.delete();
+            }
+            indexed.dispose();
+            plain.dispose();
+        }
+    }
+
+    @Test
+    public void testParallelVisit() throws Exception {
+        ShapefileDataStore store = new ShapefileDataStore(TestData.url(STATE_POP));
+        try {
+            ShapefileFeatureSource fs = ((ShapefileFeatureStore) store.getFeatureSource()).delegate;
+            FilterFactory2 ff = CommonFactoryFinder.getFilterFactory2(null);
+            Query all = new Query(fs.getSchema().getTypeName());
+            Query filtered = new Query(fs.getSchema().getTypeName(), ff.greater(
+                    ff.property("PERSONS"), ff.literal(3000000)));
+            for (Query query : new Query[] { all, filtered }) {
+                for (int threads = 2; threads <= 5; threads++) {
+                    // sequential visit first
+                    MergeableFeatureCalc[] expected = new MergeableFeatureCalc[] {
+                            new CountVisitor(), new SumVisitor(ff.property("PERSONS")),
+                            new MinVisitor("STATE_NAME"), new MaxVisitor("PERSONS"),
+                            new UniqueVisitor("SUB_REGION"), new BoundsVisitor() };
+                    for (MergeableFeatureCalc visitor : expected) {
+                        fs.getFeatures(query).accepts(visitor, null);
+                    }
+
+                    // then in parallel, with small enough ranges
+                    ParallelScan scan = new ParallelScan(fs, query, threads);
+                    scan.minRangeSize = 5;
+                    for (MergeableFeatureCalc visitor : expected) {
+                        MergeableFeatureCalc actual = visitor.createPartial();
+                        assertTrue(scan.visit(actual, 49));
+                        assertEquals(visitor.getResult().getValue(), actual.getResult().getValue());
+                    }
+                }
+            }
+
+            // a file this small is not worth a parallel visit, but the results are the same
+            store.setScanThreads(4);
+            CountVisitor count = new CountVisitor();
+            fs.getFeatures().accepts(count, null);
+            assertEquals(49, count.getCount());
+            assertFalse(new ParallelScan(fs, all, 4).visit(new CountVisitor(), 49));
+        } finally {
+            store.dispose();
+        }
+    }
+
+    @Test
+    public void testParallelVisitSubclass() throws Exception {
+        ShapefileDataStore store = new ShapefileDataStore(TestData.url(STATE_POP));
+        try {
+            ShapefileFeatureSource fs = ((ShapefileFeatureStore) store.getFeatureSource()).delegate;
+            FilterFactory2 ff = CommonFactoryFinder.getFilterFactory2(null);
+            Query all = new Query(fs.getSchema().getTypeName());
+            int expected = fs.getFeatures(ff.greater(ff.property("PERSONS"),
+                    ff.literal(3000000))).size();
+
+            // a subclass changing the visit logic, its partials would be plain count visitors
+            CountVisitor visitor = new CountVisitor() {
+                @Override
+                public void visit(Feature feature) {
+                    Number persons = (Number) feature.getProperty("PERSONS").getValue();
+                    if (persons.intValue() > 3000000) {
+                        super.visit(feature);
+                    }
+                }
+            };
+            ParallelScan scan = new ParallelScan(fs, all, 4);
+            scan.minRangeSize = 5;
+            assertFalse(scan.visit(visitor, 49));
+            assertEquals(0, visitor.getCount());
+
+            // the store falls back on the sequential visit
+            store.setScanThreads(4);
+            fs.getFeatures(all).accepts(visitor, null);
+            assertEquals(expected, visitor.getCount());
+        } finally {
+            store.dispose();
+        }
+    }
+
+    @Test
+    public void testParallelVisitInterrupted() throws Exception {
+        ShapefileDataStore store = new ShapefileDataStore(TestData.url(STATE_POP));
+        try {
+            ShapefileFeatureSource fs = ((ShapefileFeatureStore) store.getFeatureSource()).delegate;
+            ParallelScan scan = new ParallelScan(fs, new Query(fs.getSchema().getTypeName()), 4);
+            scan.minRangeSize = 5;
+            Thread.currentThread().interrupt();
+            try {
+                scan.visit(new CountVisitor(), 49);
+                fail("The visit should have been interrupted");
+            } catch (InterruptedIOException e) {
+                // the interrupt is not swallowed, the other ranges are stopped
+                assertTrue(Thread.interrupted());
+                assertTrue(scan.cancelled);
+            }
+        } finally {
+            Thread.interrupted();
+            store.dispose();
+        }
+    }
+
+    @Test
+    public void testBBoxCountAndBounds() throws Exception {
+        for (String name : new String[] { STATE_POP, STREAM, DANISH }) {
+            for (boolean indexed : new boolean[] { false, true }) {
+                File shpFile = copyShapefiles(name);
+                ShapefileDataStore ds = new ShapefileDataStore(shpFile.toURI().toURL());
+                ds.setIndexed(indexed);
+                try {
+                    assertBBoxCountAndBounds(ds);
+                } finally {
+                    ds.dispose();
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks the header based count and bounds match the ones computed reading the features
+     */
+    void assertBBoxCountAndBounds(ShapefileDataStore ds) throws IOException {
+        SimpleFeatureSource fs = ds.getFeatureSource();
+        String geom = fs.getSchema().getGeometryDescriptor().getLocalName();
+        ReferencedEnvelope full = fs.getBounds();
+        FilterFactory2 ff = CommonFactoryFinder.getFilterFactory2(null);
+        Random random = new Random(1);
+        for (int i = 0; i < 30; i++) {
+            // boxes of varying size, some of them inside a single polygon
+            double size = Math.pow(0.5, i % 8);
+            double w = full.getWidth() * size;
+            double h = full.getHeight() * size;
+            double x = full.getMinX() + random.nextDouble() * (full.getWidth() - w);
+            double y = full.getMinY() + random.nextDouble() * (full.getHeight() - h);
+            Filter bbox = ff.bbox(geom, x, y, x + w, y + h, null);
+
+            int expectedCount = 0;
+            ReferencedEnvelope expectedBounds = new ReferencedEnvelope(full
+                    .getCoordinateReferenceSystem());
+            SimpleFeatureIterator it = fs.getFeatures(bbox).features();
+            try {
+                while (it.hasNext()) {
+                    SimpleFeature f = it.next();
+                    expectedCount++;
+                    expectedBounds.expandToInclude(ReferencedEnvelope.reference(f.getBounds()));
+                }
+            } finally {
+                it.close();
+            }
+
+            Query query = new Query(fs.getSchema().getTypeName(), bbox);
+            assertEquals(bbox.toString(), expectedCount, fs.getCount(query));
+            ReferencedEnvelope bounds = fs.getBounds(query);
+            assertNotNull(bounds);
+            assertEquals(bbox.toString(), expectedBounds.isEmpty(), bounds.isEmpty());
+            if (!expectedBounds.isEmpty()) {
+                assertTrue(bbox.toString(), expectedBounds.boundsEquals2D(bounds, 1e-9));
+            }
+
+            // paging is applied to the count
+            query.setMaxFeatures(2);
+            assertEquals(Math.min(2, expectedCount), fs.getCount(query));
+        }
+    }
+
+    @Test
+    public void testAppendInPlace() throws Exception {
+        File shpFile = copyShapefiles(STATE_POP);
+        URL url = shpFile.toURI().toURL();
+        ShapefileDataStore ds = new ShapefileDataStore(url);
+        try {
+            ds.setFidIndexed(true);
+            assertTrue(ds.indexManager.createFidIndex());
+            assertTrue(ds.indexManager.createSpatialIndex(true));
+            SimpleFeatureStore fs = (SimpleFeatureStore) ds.getFeatureSource();
+            ReferencedEnvelope originalBounds = fs.getBounds();
+
+            // three features out of the original bounds, one without a geometry
+            GeometryFactory gf = new GeometryFactory();
+            SimpleFeatureBuilder fb = new SimpleFeatureBuilder(fs.getSchema());
+            ListFeatureCollection added = new ListFeatureCollection(fs.getSchema());
+            for (int i = 0; i < 3; i++) {
+                Geometry square = i == 2 ? null : gf.createPoint(new Coordinate(10 + i, 10 + i))
+                        .buffer(0.5, 1);
+                fb.set("the_geom", square);
+                fb.set("STATE_NAME", "Atlantis" + i);
+                fb.set("PERSONS", 1000 + i);
+                added.add(fb.buildFeature(null));
+            }
+            List<FeatureId> ids = fs.addFeatures(added);
+            assertEquals(3, ids.size());
+            assertFalse(ShapefileAppendWriter.getJournalFile(ds.shpFiles).exists());
+
+            assertEquals(52, fs.getCount(Query.ALL));
+            ReferencedEnvelope bounds = fs.getBounds();
+            assertTrue(bounds.contains((BoundingBox) originalBounds));
+            assertEquals(11.5, bounds.getMaxX(), 1e-6);
+            assertEquals(originalBounds.getMaxY(), bounds.getMaxY(), 1e-6);
+
+            // the fid index and the quadtree have been updated, not rebuilt
+            assertFalse(ds.indexManager.isIndexStale(ShpFileType.FIX));
+            assertFalse(ds.indexManager.isIndexStale(ShpFileType.QIX));
+            File qixFile = DataUtilities.urlToFile(new URL(ds.shpFiles.get(ShpFileType.QIX)));
+            assertEquals(52, new FileSystemIndexStore(qixFile).loadInMemory().getNumShapes());
+
+            // read them back, by id and by bbox (using the indexes)
+            FilterFactory2 ff = CommonFactoryFinder.getFilterFactory2(null);
+            Set<FeatureId> fids = new HashSet<FeatureId>(ids);
+            SimpleFeatureCollection byId = fs.getFeatures(ff.id(fids));
+            assertEquals(3, byId.size());
+            SimpleFeatureIterator it = byId.features();
+            try {
+                while (it.hasNext()) {
+                    SimpleFeature f = it.next();
+                    int i = ids.indexOf(f.getIdentifier());
+                    assertEquals("Atlantis" + i, f.getAttribute("STATE_NAME"));
+                    assertEquals(1000 + i, ((Number) f.getAttribute("PERSONS")).intValue());
+                    assertEquals(i == 2, f.getDefaultGeometry() == null);
+                }
+            } finally {
+                it.close();
+            }
+            Filter bbox = ff.bbox("the_geom", 9, 9, 10.2, 10.2, null);
+            assertEquals(Collections.singleton(ids.get(0).getID()),
+                    collectIds(fs.getFeatures(bbox)));
+            bbox = ff.bbox("the_geom", 10, 10, 12, 12, null);
+            assertEquals(new HashSet<String>(Arrays.asList(ids.get(0).getID(), ids.get(1)
+                    .getID())), collectIds(fs.getFeatures(bbox)));
+
+            // the original features are still there
+            assertEquals(49, fs.getFeatures(ff.bbox(ff.property("the_geom"), originalBounds))
+                    .size());
+        } finally {
+            ds.dispose();
+        }
+    }
+
+    @Test
+    public void testAppendRecovery() throws Exception {
+        File shpFile = copyShapefiles(STATE_POP);
+        URL url = shpFile.toURI().toURL();
+        File dbfFile = sibling(shpFile, "dbf");
+        long shpLength = shpFile.length();
+        long dbfLength = dbfFile.length();
+
+        ShapefileDataStore ds = new ShapefileDataStore(url);
+        try {
+            SimpleFeatureType schema = ds.getSchema();
+            ShapefileAppendWriter writer = ShapefileAppendWriter.open(ds, schema);
+            assertNotNull(writer);
+            for (int i = 0; i < 2; i++) {
+                SimpleFeature f = writer.next();
+                f.setAttribute("STATE_NAME", "Atlantis" + i);
+                f.setDefaultGeometry(new GeometryFactory().createPoint(new Coordinate(i, i))
+                        .buffer(1));
+                writer.write();
+            }
+            // simulate a crash after the shp header got updated, but before the others
+            writer.force();
+            writer.shpWriter.writeHeaders(writer.bounds, writer.shapeType, writer.records,
+                    (int) writer.shapefileLength);
+            writer.closeChannels();
+            assertTrue(ShapefileAppendWriter.getJournalFile(ds.shpFiles).exists());
+        } finally {
+            ds.dispose();
+        }
+
+        // a new store rolls back the append
+        ds = new ShapefileDataStore(url);
+        try {
+            assertFalse(ShapefileAppendWriter.getJournalFile(ds.shpFiles).exists());
+            assertEquals(shpLength, shpFile.length());
+            assertEquals(dbfLength, dbfFile.length());
+            assertEquals(49, ds.getFeatureSource().getCount(Query.ALL));
+            assertEquals(49, ds.getFeatureSource().getFeatures().size());
+        } finally {
+            ds.dispose();
+        }
+    }
+
+    @Test
+    public void testBulkLoad() throws Exception {
+        File shpFile = copyShapefiles(STATE_POP);
+        ShapefileDataStore ds = new ShapefileDataStore(shpFile.toURI().toURL());
+        try {
+            // append the original features 20 times, in small batches
+            SimpleFeatureCollection original = ds.getFeatureSource().getFeatures();
+            ReferencedEnvelope originalBounds = ds.getFeatureSource().getBounds();
+            List<SimpleFeature> source = new ArrayList<SimpleFeature>();
+            for (int i = 0; i < 20; i++) {
+                SimpleFeatureIterator it = original.features();
+                try {
+                    while (it.hasNext()) {
+                        source.add(it.next());
+                    }
+                } finally {
+                    it.close();
+                }
+            }
+            ShapefileBulkLoader loader = new ShapefileBulkLoader(ds, 3);
+            loader.setBatchSize(17);
+            assertEquals(980, loader.load(new ListFeatureCollection(original.getSchema(),
+                    source)));
+
+            SimpleFeatureSource fs = ds.getFeatureSource();
+            assertEquals(1029, fs.getCount(Query.ALL));
+            assertTrue(originalBounds.boundsEquals2D(fs.getBounds(), 1e-9));
+            SimpleFeatureIterator it = fs.getFeatures().features();
+            try {
+                for (int i = 0; i < 1029; i++) {
+                    SimpleFeature actual = it.next();
+                    SimpleFeature expected = source.get(i < 49 ? i : i - 49);
+                    assertEquals(expected.getAttribute("STATE_NAME"),
+                            actual.getAttribute("STATE_NAME"));
+                    assertEquals(expected.getAttribute("PERSONS"), actual.getAttribute("PERSONS"));
+                    assertTrue(((Geometry) expected.getDefaultGeometry())
+                            .equalsExact((Geometry) actual.getDefaultGeometry()));
+                }
+                assertFalse(it.hasNext());
+            } finally {
+                it.close();
+            }
+        } finally {
+            ds.dispose();
+        }
+    }
+
+    @Test
+    public void testBulkLoadFailure() throws Exception {
+        File shpFile = copyShapefiles(STATE_POP);
+        long shpLength = shpFile.length();
+        ShapefileDataStore ds = new ShapefileDataStore(shpFile.toURI().toURL());
+        try {
+            final List<SimpleFeature> source = new ArrayList<SimpleFeature>();
+            SimpleFeatureIterator it = ds.getFeatureSource().getFeatures().features();
+            try {
+                while (it.hasNext()) {
+                    source.add(it.next());
+                }
+            } finally {
+                it.close();
+            }
+            // the source breaks down after a few batches have been written
+            SimpleFeatureCollection failing = new ListFeatureCollection(ds.getSchema(), source) {
+                @Override
+                public SimpleFeatureIterator features() {
+                    final SimpleFeatureIterator delegate = super.features();
+                    return new SimpleFeatureIterator() {
+                        int count;
+
+                        public boolean hasNext() {
+                            return delegate.hasNext();
+                        }
+
+                        public SimpleFeature next() {
+                            if (++count > 40) {
+                                throw new IllegalStateException("Source failure");
+                            }
+                            return delegate.next();
+                        }
+
+                        public void close() {
+                            delegate.close();
+                        }
+                    };
+                }
+            };
+            ShapefileBulkLoader loader = new ShapefileBulkLoader(ds, 2);
+            loader.setBatchSize(10);
+            try {
+                loader.load(failing);
+                fail("The load should have failed");
+            } catch (IllegalStateException e) {
+                // fine
+            }
+
+            // nothing has been committed
+            assertFalse(ShapefileAppendWriter.getJournalFile(ds.shpFiles).exists());
+            assertEquals(shpLength, shpFile.length());
+            assertEquals(49, ds.getFeatureSource().getCount(Query.ALL));
+            assertEquals(49, ds.getFeatureSource().getFeatures().size());
+        } finally {
+            ds.dispose();
+        }
+    }
+
+    @Test
+    public void testRecoverySkipsRunningAppend() throws Exception {
+        File shpFile = copyShapefiles(STATE_POP);
+        URL url = shpFile.toURI().toURL();
+        ShapefileDataStore ds = new ShapefileDataStore(url);
+        try {
+            ShapefileAppendWriter writer = ShapefileAppendWriter.open(ds, ds.getSchema());
+            assertNotNull(writer);
+            SimpleFeature f = writer.next();
+            f.setAttribute("STATE_NAME", "Atlantis");
+            f.setDefaultGeometry(new GeometryFactory().createPoint(new Coordinate(1, 1))
+                    .buffer(1));
+            writer.write();
+
+            // a store opened while the append is running leaves its journal alone
+            ShapefileDataStore other = new ShapefileDataStore(url);
+            other.dispose();
+            assertTrue(ShapefileAppendWriter.getJournalFile(ds.shpFiles).exists());
+
+            writer.close();
+            assertFalse(ShapefileAppendWriter.getJournalFile(ds.shpFiles).exists());
+            assertEquals(50, ds.getFeatureSource().getCount(Query.ALL));
+        } finally {
+            ds.dispose();
+        }
+    }
+
+    @Test
+    public void testSharedMemoryMapCache() throws Exception {
+        File shpFile = copyShapefiles(STATE_POP);
+        URL url = shpFile.toURI().toURL();
+        MemoryMapCache cache = MemoryMapCache.getInstance();
+        long size = cache.getSize();
+        ShapefileDataStore ds1 = new ShapefileDataStore(url);
+        ds1.setMemoryMapped(true);
+        ShapefileDataStore ds2 = new ShapefileDataStore(url);
+        ds2.setMemoryMapped(true);
+        try {
+            long misses = cache.getMisses();
+            assertEquals(49, collectIds(ds1.getFeatureSource().getFeatures()).size());
+            assertTrue(cache.getMisses() > misses);
+            assertTrue(cache.getSize() > size);
+
+            // the second store reuses the regions mapped by the first one
+            long hits = cache.getHits();
+            misses = cache.getMisses();
+            assertEquals(49, collectIds(ds2.getFeatureSource().getFeatures()).size());
+            assertTrue(cache.getHits() > hits);
+            assertEquals(misses, cache.getMisses());
+        } finally {
+            ds1.dispose();
+            ds2.dispose();
+        }
+        // disposing the stores unmapped their files
+        assertEquals(size, cache.getSize());
+    }
+
+    private Set<String> collectIds(SimpleFeatureCollection features) {
+        Set<String> ids = new HashSet<String>();
+        SimpleFeatureIterator it = features.features();
+        try {
+            while (it.hasNext()) {
+                ids.add(it.next().getID());
+            }
+        } finally {
+            it.close();
+        }
+        return ids;
+    }
+
     private void performSpatialQuery(ShapefileDataStore ds) throws IOException {
         SimpleFeatureSource featureSource = ds.getFeatureSource();
         SimpleFeatureType schema = featureSource.getSchema();
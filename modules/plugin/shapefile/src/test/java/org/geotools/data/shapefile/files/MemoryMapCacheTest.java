@@ -0,0 +1,155 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.shapefile.files;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.geotools.data.DataUtilities;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MemoryMapCacheTest {
+
+    File file;
+
+    URL url;
+
+    RandomAccessFile raf;
+
+    FileChannel channel;
+
+    @Before
+    public void setup() throws IOException {
+        file = File.createTempFile("mmap", ".shp");
+        byte[] bytes = new byte[4000];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+        FileOutputStream fos = new FileOutputStream(file);
+        fos.write(bytes);
+        fos.close();
+        url = DataUtilities.fileToURL(file);
+        raf = new RandomAccessFile(file, "r");
+        channel = raf.getChannel();
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        raf.close();
+        file.delete();
+    }
+
+    @Test
+    public void testHitsAndMisses() throws IOException {
+        MemoryMapCache cache = new MemoryMapCache(10000);
+        MemoryMapCache.Region r1 = cache.acquire(channel, url, 0, 1000);
+        MemoryMapCache.Region r2 = cache.acquire(channel, url, 0, 1000);
+        assertSame(r1, r2);
+        MemoryMapCache.Region r3 = cache.acquire(channel, url, 1000, 1000);
+        assertNotSame(r1, r3);
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertEquals(2000, cache.getSize());
+
+        // each user gets its own copy
+        MappedByteBuffer b1 = r1.duplicate();
+        MappedByteBuffer b2 = r2.duplicate();
+        b1.position(10);
+        assertEquals(0, b2.position());
+        assertEquals((byte) 1000, r3.duplicate().get(0));
+
+        cache.release(r1);
+        cache.release(r2);
+        cache.release(r3);
+        // under budget, still cached
+        assertEquals(2000, cache.getSize());
+        assertEquals(0, cache.getEvictions());
+        cache.release(cache.acquire(channel, url, 0, 1000));
+        assertEquals(2, cache.getHits());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction() throws IOException {
+        MemoryMapCache cache = new MemoryMapCache(10000);
+        List<MemoryMapCache.Region> regions = new ArrayList<MemoryMapCache.Region>();
+        for (int i = 0; i < 3; i++) {
+            regions.add(cache.acquire(channel, url, i * 1000, 1000));
+        }
+        // all in use, the budget is exceeded but nothing can be unmapped
+        cache.setMaxSize(2500);
+        assertEquals(3000, cache.getSize());
+        assertEquals(0, cache.getEvictions());
+
+        // use the first one again, so that the second becomes the least recently used
+        cache.release(cache.acquire(channel, url, 0, 1000));
+        cache.setMaxSize(10000);
+        for (MemoryMapCache.Region region : regions) {
+            cache.release(region);
+        }
+        cache.setMaxSize(2500);
+        assertEquals(2000, cache.getSize());
+        assertEquals(1, cache.getEvictions());
+        assertEquals(1000, cache.getEvictedBytes());
+
+        long misses = cache.getMisses();
+        cache.release(cache.acquire(channel, url, 0, 1000));
+        cache.release(cache.acquire(channel, url, 2000, 1000));
+        assertEquals(misses, cache.getMisses());
+        cache.release(cache.acquire(channel, url, 1000, 1000));
+        assertEquals(misses + 1, cache.getMisses());
+        assertEquals(2000, cache.getSize());
+
+        // shrinking the budget unmaps right away
+        cache.setMaxSize(0);
+        assertEquals(0, cache.getSize());
+        assertEquals(4, cache.getEvictions());
+        assertEquals(4000, cache.getEvictedBytes());
+    }
+
+    @Test
+    public void testCleanFileCache() throws IOException {
+        MemoryMapCache cache = new MemoryMapCache(10000);
+        MemoryMapCache.Region used = cache.acquire(channel, url, 0, 1000);
+        cache.release(cache.acquire(channel, url, 1000, 1000));
+        assertEquals(2000, cache.getSize());
+
+        // the region in use stays mapped until released, but is no longer handed out
+        cache.cleanFileCache(url);
+        assertEquals(1000, cache.getSize());
+        assertEquals(0, used.duplicate().get(0));
+        MemoryMapCache.Region other = cache.acquire(channel, url, 0, 1000);
+        assertNotSame(used, other);
+        cache.release(used);
+        assertEquals(1000, cache.getSize());
+        cache.release(other);
+
+        cache.clean();
+        assertEquals(0, cache.getSize());
+        assertEquals(0, cache.getEvictions());
+    }
+}
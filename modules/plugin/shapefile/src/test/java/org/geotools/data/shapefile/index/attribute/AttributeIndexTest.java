@@ -0,0 +1,195 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.shapefile.index.attribute;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.geotools.data.shapefile.dbf.DbaseFileHeader;
+import org.geotools.data.shapefile.dbf.DbaseFileReader;
+import org.geotools.data.shapefile.dbf.DbaseFileWriter;
+import org.geotools.data.shapefile.index.attribute.AttributeIndex.KeyType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AttributeIndexTest {
+
+    static final int RECORDS = 2000;
+
+    static final Charset CHARSET = Charset.forName("ISO-8859-1");
+
+    static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    File dbfFile;
+
+    File indexFile;
+
+    Object[][] values = new Object[RECORDS][];
+
+    @Before
+    public void setup() throws IOException {
+        dbfFile = File.createTempFile("attribute", ".dbf");
+        indexFile = File.createTempFile("attribute", ".aix");
+
+        DbaseFileHeader header = new DbaseFileHeader();
+        header.addColumn("NAME", 'C', 10, 0);
+        header.addColumn("VALUE", 'N', 8, 0);
+        header.addColumn("DATE", 'D', 8, 0);
+        header.setNumRecords(RECORDS);
+        FileOutputStream fos = new FileOutputStream(dbfFile);
+        DbaseFileWriter writer = new DbaseFileWriter(header, fos.getChannel(), CHARSET, UTC);
+        // few distinct values, so that there are plenty of duplicates, and some nulls
+        Random random = new Random(0);
+        for (int i = 0; i < RECORDS; i++) {
+            Object name = i % 50 == 0 ? null : "n" + random.nextInt(100);
+            Object value = i % 40 == 0 ? null : random.nextInt(500) - 250;
+            Object date = new Date((long) random.nextInt(1000) * 24 * 3600 * 1000);
+            values[i] = new Object[] { name, value, date };
+            writer.write(values[i]);
+        }
+        writer.close();
+        fos.close();
+    }
+
+    @After
+    public void cleanup() {
+        dbfFile.delete();
+        indexFile.delete();
+    }
+
+    AttributeIndex build(int field) throws IOException {
+        FileInputStream fis = new FileInputStream(dbfFile);
+        try {
+            DbaseFileReader reader = new DbaseFileReader(fis.getChannel(), false, CHARSET, UTC);
+            AttributeIndexBuilder.build(reader, field, indexFile);
+            reader.close();
+        } finally {
+            fis.close();
+        }
+        return AttributeIndex.open(indexFile);
+    }
+
+    @Test
+    public void testStrings() throws IOException {
+        AttributeIndex index = build(0);
+        try {
+            assertEquals(KeyType.STRING, index.getKeyType());
+            assertEquals("NAME", index.getFieldName());
+            assertEquals(RECORDS, index.getNumRecords());
+            assertEquals(RECORDS - RECORDS / 50, index.getCount());
+
+            String[] keys = new String[] { "n1", "n10", "n5", "n55", "n99", "n", "n999", "a", "z" };
+            for (String min : keys) {
+                assertSearch(index, 0, min, true, min, true);
+                assertSearch(index, 0, min, false, null, false);
+                assertSearch(index, 0, null, false, min, true);
+                for (String max : keys) {
+                    assertSearch(index, 0, min, true, max, false);
+                }
+            }
+            // strings longer than any value cannot be searched
+            assertNull(index.toKey("n1234567890"));
+            // numbers are compared numerically against strings, cannot be looked up
+            assertNull(index.toKey(5));
+        } finally {
+            index.close();
+        }
+    }
+
+    @Test
+    public void testNumbers() throws IOException {
+        AttributeIndex index = build(1);
+        try {
+            assertEquals(KeyType.NUMBER, index.getKeyType());
+            assertEquals(RECORDS - RECORDS / 40, index.getCount());
+            for (int min = -260; min <= 260; min += 13) {
+                Object key = index.toKey(min);
+                assertSearch(index, 1, key, true, key, true);
+                assertSearch(index, 1, key, true, index.toKey(min + 50), true);
+                assertSearch(index, 1, key, false, index.toKey(min + 50), false);
+                assertSearch(index, 1, null, false, key, false);
+            }
+            // the literal can come in as a string
+            assertEquals(index.toKey(12), index.toKey("12"));
+            assertNull(index.toKey("abc"));
+        } finally {
+            index.close();
+        }
+    }
+
+    @Test
+    public void testDates() throws IOException {
+        AttributeIndex index = build(2);
+        try {
+            assertEquals(KeyType.DATE, index.getKeyType());
+            assertEquals(RECORDS, index.getCount());
+            Date date = (Date) values[10][2];
+            assertSearch(index, 2, index.toKey(date), true, index.toKey(date), true);
+            assertSearch(index, 2, index.toKey(date), true, null, true);
+            assertSearch(index, 2, index.toKey(new Date(0)), false,
+                    index.toKey(new Date(date.getTime() * 2)), false);
+        } finally {
+            index.close();
+        }
+    }
+
+    /**
+     * Checks the index returns the same records as a brute force search
+     */
+    void assertSearch(AttributeIndex index, int field, Object min, boolean minInclusive,
+            Object max, boolean maxInclusive) {
+        List<Integer> expected = new ArrayList<Integer>();
+        for (int i = 0; i < RECORDS; i++) {
+            Object key = index.toKey(values[i][field]);
+            if (key == null) {
+                continue;
+            }
+            Comparable<Object> comparable = (Comparable<Object>) key;
+            if (min != null) {
+                int c = comparable.compareTo(min);
+                if (c < 0 || (c == 0 && !minInclusive)) {
+                    continue;
+                }
+            }
+            if (max != null) {
+                int c = comparable.compareTo(max);
+                if (c > 0 || (c == 0 && !maxInclusive)) {
+                    continue;
+                }
+            }
+            expected.add(i);
+        }
+
+        int[] records = index.search(min, minInclusive, max, maxInclusive);
+        List<Integer> actual = new ArrayList<Integer>();
+        for (int record : records) {
+            actual.add(record);
+        }
+        assertEquals(min + " - " + max, expected, actual);
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.shapefile.index.hilbert;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.geotools.data.shapefile.index.CloseableIterator;
+import org.geotools.data.shapefile.index.Data;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vividsolutions.jts.geom.Envelope;
+
+public class PackedRTreeTest {
+
+    File file;
+
+    @Before
+    public void setup() throws IOException {
+        file = File.createTempFile("packed", ".hrx");
+    }
+
+    @After
+    public void cleanup() {
+        file.delete();
+    }
+
+    @Test
+    public void testHilbert() {
+        // the first order curve visits the quadrants in a U shape
+        int half = 1 << 15;
+        long ll = PackedRTreeBuilder.hilbert(0, 0);
+        long ul = PackedRTreeBuilder.hilbert(0, half);
+        long ur = PackedRTreeBuilder.hilbert(half, half);
+        long lr = PackedRTreeBuilder.hilbert(half, 0);
+        assertTrue(ll < ul);
+        assertTrue(ul < ur);
+        assertTrue(ur < lr);
+        assertEquals((1L << 32) - 1, Math.max(
+                PackedRTreeBuilder.hilbert(PackedRTreeBuilder.HILBERT_MAX, 0),
+                PackedRTreeBuilder.hilbert(0, PackedRTreeBuilder.HILBERT_MAX)));
+    }
+
+    @Test
+    public void testSortByHilbertUpperHalf() throws Exception {
+        // the lower right corner is the last cell of the curve, its value does not fit in a
+        // signed int, yet it has to sort after the lower left one
+        PackedRTreeBuilder builder = new PackedRTreeBuilder(4, 2);
+        builder.add(99, 0, 100, 1, 100);
+        builder.add(0, 0, 1, 1, 200);
+        long[] keys = builder.sortByHilbert();
+        assertEquals(1, (int) keys[0]);
+        assertEquals(0, (int) keys[1]);
+    }
+
+    @Test
+    public void testRounding() {
+        double value = 0.1;
+        assertTrue(PackedRTreeBuilder.roundDown(value) <= value);
+        assertTrue(PackedRTreeBuilder.roundUp(value) >= value);
+        assertEquals(1f, PackedRTreeBuilder.roundDown(1), 0f);
+        assertEquals(1f, PackedRTreeBuilder.roundUp(1), 0f);
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        PackedRTreeBuilder builder = new PackedRTreeBuilder(4, 0);
+        builder.write(file);
+        PackedRTree tree = PackedRTree.open(file);
+        try {
+            assertEquals(0, tree.getNumItems());
+            assertEquals(0, tree.getNumLevels());
+            assertTrue(tree.getBounds().isNull());
+            assertEquals(0, search(tree, new Envelope(-180, 180, -90, 90)).size());
+        } finally {
+            tree.close();
+        }
+    }
+
+    @Test
+    public void testSingle() throws Exception {
+        PackedRTreeBuilder builder = new PackedRTreeBuilder(4, 1);
+        builder.add(10, 10, 20, 20, 100);
+        builder.write(file);
+        PackedRTree tree = PackedRTree.open(file);
+        try {
+            assertEquals(1, tree.getNumLevels());
+            assertEquals(new Envelope(10, 20, 10, 20), tree.getBounds());
+            List<Data> results = search(tree, new Envelope(0, 15, 0, 15));
+            assertEquals(1, results.size());
+            assertEquals(1, results.get(0).getValue(0));
+            assertEquals(100L, results.get(0).getValue(1));
+            assertEquals(0, search(tree, new Envelope(0, 5, 0, 5)).size());
+        } finally {
+            tree.close();
+        }
+    }
+
+    @Test
+    public void testRandom() throws Exception {
+        Random random = new Random(0);
+        int count = 10000;
+        double[] boxes = new double[count * 4];
+        // grow the array to check resizing works
+        PackedRTreeBuilder builder = new PackedRTreeBuilder(16, 10);
+        for (int i = 0; i < count; i++) {
+            // clustered data, mixed with some large boxes
+            double size = i % 100 == 0 ? 50 : random.nextDouble();
+            double x = i % 2 == 0 ? random.nextGaussian() * 10 : random.nextDouble() * 360 - 180;
+            double y = i % 2 == 0 ? random.nextGaussian() * 10 : random.nextDouble() * 180 - 90;
+            boxes[i * 4] = x;
+            boxes[i * 4 + 1] = y;
+            boxes[i * 4 + 2] = x + size;
+            boxes[i * 4 + 3] = y + size;
+            builder.add(x, y, x + size, y + size, 100 + i * 8);
+        }
+        builder.write(file);
+
+        PackedRTree tree = PackedRTree.open(file);
+        try {
+            assertEquals(count, tree.getNumItems());
+            assertEquals(5, tree.getNumLevels());
+            for (int q = 0; q < 100; q++) {
+                double x = random.nextDouble() * 360 - 180;
+                double y = random.nextDouble() * 180 - 90;
+                double size = random.nextDouble() * 30;
+                Envelope query = new Envelope(x, x + size, y, y + size);
+
+                List<Data> results = search(tree, query);
+                int expected = 0;
+                for (int i = 0; i < count; i++) {
+                    if (query.intersects(new Envelope(boxes[i * 4], boxes[i * 4 + 2],
+                            boxes[i * 4 + 1], boxes[i * 4 + 3]))) {
+                        expected++;
+                    }
+                }
+                // the float bounds can only add a few extra matches at the borders
+                assertTrue(results.size() >= expected);
+                assertTrue(results.size() <= expected + 2);
+
+                // sorted by offset, record number and offset consistent
+                long lastOffset = -1;
+                for (Data data : results) {
+                    int recno = (Integer) data.getValue(0);
+                    long offset = (Long) data.getValue(1);
+                    assertTrue(offset > lastOffset);
+                    assertEquals(100 + (recno - 1) * 8, offset);
+                    lastOffset = offset;
+                }
+            }
+        } finally {
+            tree.close();
+        }
+    }
+
+    @Test
+    public void testCloseWithOpenIterator() throws Exception {
+        PackedRTreeBuilder builder = new PackedRTreeBuilder(4, 10);
+        for (int i = 0; i < 10; i++) {
+            builder.add(i, i, i + 1, i + 1, 100 + i);
+        }
+        builder.write(file);
+        PackedRTree tree = PackedRTree.open(file);
+        CloseableIterator<Data> it = tree.search(new Envelope(0, 10, 0, 10));
+        tree.close();
+        try {
+            tree.search(new Envelope(0, 10, 0, 10));
+            fail("Should have failed, the tree is closed");
+        } catch (IllegalStateException e) {
+            // fine
+        }
+        // the iterator in progress can still be used
+        int count = 0;
+        while (it.hasNext()) {
+            it.next();
+            count++;
+        }
+        it.close();
+        assertEquals(10, count);
+    }
+
+    List<Data> search(PackedRTree tree, Envelope envelope) throws IOException {
+        List<Data> results = new ArrayList<Data>();
+        CloseableIterator<Data> it = tree.search(envelope);
+        try {
+            while (it.hasNext()) {
+                results.add(it.next());
+            }
+        } finally {
+            it.close();
+        }
+        return results;
+    }
+}
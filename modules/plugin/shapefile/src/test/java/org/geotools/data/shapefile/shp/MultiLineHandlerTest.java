@@ -0,0 +1,75 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.shapefile.shp;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+
+import org.geotools.geometry.jts.LiteCoordinateSequenceFactory;
+import org.junit.Test;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.CoordinateSequence;
+import com.vividsolutions.jts.geom.CoordinateSequenceFactory;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.impl.PackedCoordinateSequenceFactory;
+import com.vividsolutions.jts.io.WKTReader;
+
+public class MultiLineHandlerTest {
+
+    @Test
+    public void testReadPackedSequences() throws Exception {
+        Geometry lines = new WKTReader().read("MULTILINESTRING((0 0 1, 10 0 2, 10 10 3), "
+                + "(20 20 4, 30 20 5), (40 40 6, 50 50 7, 60 40 8, 70 50 9))");
+        CoordinateSequenceFactory[] factories = new CoordinateSequenceFactory[] {
+                new LiteCoordinateSequenceFactory(),
+                new PackedCoordinateSequenceFactory(PackedCoordinateSequenceFactory.DOUBLE) };
+        for (ShapeType type : new ShapeType[] { ShapeType.ARC, ShapeType.ARCZ }) {
+            ByteBuffer buffer = ShapefileWriter.encodeGeometry(lines, type, new MultiLineHandler(
+                    type, new GeometryFactory()));
+            Geometry expected = read(buffer, type, new GeometryFactory());
+            int dimension = type == ShapeType.ARCZ ? 3 : 2;
+            for (CoordinateSequenceFactory csFactory : factories) {
+                Geometry actual = read(buffer, type, new GeometryFactory(csFactory));
+                assertEquals(3, actual.getNumGeometries());
+                for (int i = 0; i < actual.getNumGeometries(); i++) {
+                    CoordinateSequence cs = ((LineString) actual.getGeometryN(i))
+                            .getCoordinateSequence();
+                    assertEquals(csFactory.create(0, dimension).getClass(), cs.getClass());
+                    assertEquals(dimension, cs.getDimension());
+                }
+
+                Coordinate[] expectedCoords = expected.getCoordinates();
+                Coordinate[] actualCoords = actual.getCoordinates();
+                assertEquals(expectedCoords.length, actualCoords.length);
+                for (int i = 0; i < expectedCoords.length; i++) {
+                    assertTrue(expectedCoords[i].equals3D(actualCoords[i]));
+                }
+            }
+        }
+    }
+
+    Geometry read(ByteBuffer buffer, ShapeType type, GeometryFactory gf) throws Exception {
+        ByteBuffer record = buffer.duplicate().order(buffer.order());
+        // skip the shape type
+        record.getInt();
+        return (Geometry) new MultiLineHandler(type, gf).read(record, type, false);
+    }
+}
@@ -18,16 +18,24 @@ package org.geotools.data.shapefile.shp;
 
 import static org.junit.Assert.*;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 
 import org.geotools.data.shapefile.TestCaseSupport;
+import org.geotools.geometry.jts.LiteCoordinateSequenceFactory;
 import org.junit.Test;
 
 import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.CoordinateSequence;
+import com.vividsolutions.jts.geom.CoordinateSequenceFactory;
 import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.geom.GeometryFactory;
 import com.vividsolutions.jts.geom.LinearRing;
+import com.vividsolutions.jts.geom.MultiPolygon;
+import com.vividsolutions.jts.geom.Polygon;
 import com.vividsolutions.jts.geom.PrecisionModel;
+import com.vividsolutions.jts.geom.impl.PackedCoordinateSequenceFactory;
+import com.vividsolutions.jts.io.WKTReader;
 
 /**
  * 
@@ -86,6 +94,46 @@ public class PolygonHandlerTest extends TestCaseSupport {
 
     }
 
+    @Test
+    public void testReadPackedSequences() throws Exception {
+        MultiPolygon mp = JTSUtilities.makeGoodShapeMultiPolygon((MultiPolygon) new WKTReader()
+                .read("MULTIPOLYGON(((0 0 1, 10 0 2, 10 10 3, 0 10 4, 0 0 1), "
+                        + "(2 2 5, 2 4 6, 4 4 7, 4 2 8, 2 2 5)), "
+                        + "((20 20 9, 30 20 10, 30 30 11, 20 20 9)))"));
+        CoordinateSequenceFactory[] factories = new CoordinateSequenceFactory[] {
+                new LiteCoordinateSequenceFactory(),
+                new PackedCoordinateSequenceFactory(PackedCoordinateSequenceFactory.DOUBLE) };
+        for (ShapeType type : new ShapeType[] { ShapeType.POLYGON, ShapeType.POLYGONZ }) {
+            ByteBuffer buffer = ShapefileWriter.encodeGeometry(mp, type, new PolygonHandler(type,
+                    new GeometryFactory()));
+            Geometry expected = read(buffer, type, new GeometryFactory());
+            int dimension = type == ShapeType.POLYGONZ ? 3 : 2;
+            for (CoordinateSequenceFactory csFactory : factories) {
+                Geometry actual = read(buffer, type, new GeometryFactory(csFactory));
+                assertEquals(2, actual.getNumGeometries());
+                Polygon first = (Polygon) actual.getGeometryN(0);
+                assertEquals(1, first.getNumInteriorRing());
+                CoordinateSequence cs = first.getExteriorRing().getCoordinateSequence();
+                assertEquals(csFactory.create(0, dimension).getClass(), cs.getClass());
+                assertEquals(dimension, cs.getDimension());
+
+                Coordinate[] expectedCoords = expected.getCoordinates();
+                Coordinate[] actualCoords = actual.getCoordinates();
+                assertEquals(expectedCoords.length, actualCoords.length);
+                for (int i = 0; i < expectedCoords.length; i++) {
+                    assertTrue(expectedCoords[i].equals3D(actualCoords[i]));
+                }
+            }
+        }
+    }
+
+    Geometry read(ByteBuffer buffer, ShapeType type, GeometryFactory gf) throws Exception {
+        ByteBuffer record = buffer.duplicate().order(buffer.order());
+        // skip the shape type
+        record.getInt();
+        return (Geometry) new PolygonHandler(type, gf).read(record, type, false);
+    }
+
     public static Geometry rectangle(PrecisionModel pm, int SRID) {
         Coordinate[] coords = new Coordinate[5];
         for (int i = 0; i < coords.length; i++) {
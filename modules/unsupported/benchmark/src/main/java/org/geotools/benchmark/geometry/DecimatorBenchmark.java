@@ -0,0 +1,141 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.benchmark.geometry;
+
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.geotools.geometry.jts.Decimator;
+import org.geotools.geometry.jts.LiteCoordinateSequence;
+import org.geotools.geometry.jts.LiteShape2;
+import org.geotools.referencing.operation.transform.ProjectiveTransform;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.opengis.referencing.operation.MathTransform;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LinearRing;
+import com.vividsolutions.jts.geom.Polygon;
+
+/**
+ * Measures the geometry preparation hot path of the renderer, that is, copying a feature
+ * geometry into a {@link LiteShape2} while decimating it and transforming it to screen
+ * coordinates. Run with <code>-prof gc</code> to see the allocation rate along with the times.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class DecimatorBenchmark {
+
+    /** The geometry type */
+    @Param({ "LINE", "POLYGON", "MULTIPOLYGON" })
+    String type;
+
+    /** Number of vertices in the geometry */
+    @Param({ "10", "100", "1000", "10000" })
+    int vertices;
+
+    Rectangle paintArea = new Rectangle(0, 0, 1024, 768);
+
+    Geometry geometry;
+
+    MathTransform worldToScreen;
+
+    Decimator decimator;
+
+    @Setup
+    public void setup() throws Exception {
+        GeometryFactory gf = new GeometryFactory();
+        Random random = new Random(0);
+        if ("LINE".equals(type)) {
+            geometry = gf.createLineString(wiggle(random, 0, 0, 1000, vertices));
+        } else if ("POLYGON".equals(type)) {
+            geometry = polygon(gf, random, 500, 375, 300, vertices);
+        } else {
+            // ten polygons sharing the vertices
+            Polygon[] polygons = new Polygon[10];
+            for (int i = 0; i < polygons.length; i++) {
+                polygons[i] = polygon(gf, random, 50 + i * 100, 375, 40,
+                        Math.max(4, vertices / polygons.length));
+            }
+            geometry = gf.createMultiPolygon(polygons);
+        }
+
+        // world is 1000x750, the map is a 1024x768 image
+        AffineTransform at = new AffineTransform();
+        at.scale(paintArea.width / 1000d, -paintArea.height / 750d);
+        at.translate(0, -750);
+        worldToScreen = ProjectiveTransform.create(at);
+        decimator = new Decimator(worldToScreen.inverse(), paintArea);
+    }
+
+    Coordinate[] wiggle(Random random, double x, double y, double length, int vertices) {
+        Coordinate[] coords = new Coordinate[vertices];
+        for (int i = 0; i < vertices; i++) {
+            coords[i] = new Coordinate(x + length * i / vertices, y + 375 + random.nextDouble()
+                    * 100);
+        }
+        return coords;
+    }
+
+    Polygon polygon(GeometryFactory gf, Random random, double cx, double cy, double radius,
+            int vertices) {
+        Coordinate[] coords = new Coordinate[vertices + 1];
+        for (int i = 0; i < vertices; i++) {
+            double r = radius * (0.9 + random.nextDouble() * 0.1);
+            double angle = -i * 2 * Math.PI / vertices;
+            coords[i] = new Coordinate(cx + r * Math.cos(angle), cy + r * Math.sin(angle));
+        }
+        coords[vertices] = coords[0];
+        LinearRing shell = gf.createLinearRing(coords);
+        return gf.createPolygon(shell, null);
+    }
+
+    /**
+     * Decimates while copying, as the renderer does
+     */
+    @Benchmark
+    public LiteShape2 liteShape() throws Exception {
+        return new LiteShape2(geometry, worldToScreen, decimator, false, true);
+    }
+
+    /**
+     * Full copy of the geometry first, then in place decimation
+     */
+    @Benchmark
+    public Geometry cloneAndDecimate() throws Exception {
+        Geometry copy = LiteCoordinateSequence.cloneGeometry(geometry);
+        decimator.decimateTransformGeneralize(copy, worldToScreen);
+        return copy;
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.benchmark.renderer;
+
+import java.awt.Rectangle;
+import java.awt.geom.Rectangle2D;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.geotools.renderer.label.AbstractLabelIndex;
+import org.geotools.renderer.label.GridLabelIndex;
+import org.geotools.renderer.label.LabelIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the quadtree and grid based label indexes simulating the label placement loop of the
+ * label cache: each candidate position is checked against the labels already placed, and added
+ * to the index if it does not conflict with them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class LabelIndexBenchmark {
+
+    /** The index implementation to be tested */
+    @Param({ "QUADTREE", "GRID" })
+    String index;
+
+    /** Number of candidate label positions */
+    @Param({ "1000", "10000", "50000" })
+    int candidates;
+
+    Rectangle displayArea = new Rectangle(0, 0, 1024, 768);
+
+    Rectangle2D[] bounds;
+
+    @Setup
+    public void setup() {
+        // reproducible set of road name like labels, slightly spilling out of the display area
+        Random random = new Random(0);
+        bounds = new Rectangle2D[candidates];
+        for (int i = 0; i < candidates; i++) {
+            double x = random.nextDouble() * (displayArea.width + 100) - 50;
+            double y = random.nextDouble() * (displayArea.height + 100) - 50;
+            bounds[i] = new Rectangle2D.Double(x, y, 20 + random.nextDouble() * 100,
+                    8 + random.nextDouble() * 8);
+        }
+    }
+
+    @Benchmark
+    public int placeLabels() {
+        AbstractLabelIndex labels = "GRID".equals(index) ? new GridLabelIndex(displayArea)
+                : new LabelIndex();
+        int placed = 0;
+        for (int i = 0; i < bounds.length; i++) {
+            if (!labels.labelsWithinDistance(bounds[i], 2)) {
+                labels.addLabel(null, bounds[i]);
+                placed++;
+            }
+        }
+        return placed;
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.benchmark.renderer;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.geotools.data.collection.ListFeatureCollection;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.geometry.jts.JTSFactoryFinder;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.map.FeatureLayer;
+import org.geotools.map.MapContent;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.geotools.renderer.lite.StreamingRenderer;
+import org.geotools.styling.Style;
+import org.geotools.styling.StyleBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Polygon;
+
+/**
+ * Renders a dense layer of small polygons, like a parcel or building layer seen at a low zoom
+ * level, with and without shape batching, see {@link StreamingRenderer#SHAPE_BATCHING_KEY}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ShapeBatchingBenchmark {
+
+    /** Whether shape batching is enabled */
+    @Param({ "false", "true" })
+    boolean batching;
+
+    /** The symbolization, either a solid fill or a solid stroke */
+    @Param({ "FILL", "STROKE" })
+    String symbolizer;
+
+    /** Number of polygons in the layer */
+    @Param({ "10000", "100000" })
+    int polygons;
+
+    ReferencedEnvelope bounds = new ReferencedEnvelope(0, 1000, 0, 750,
+            DefaultGeographicCRS.WGS84);
+
+    Rectangle paintArea = new Rectangle(0, 0, 1024, 768);
+
+    MapContent mapContent;
+
+    BufferedImage image;
+
+    @Setup
+    public void setup() {
+        SimpleFeatureTypeBuilder tb = new SimpleFeatureTypeBuilder();
+        tb.setName("parcels");
+        tb.add("geom", Polygon.class, DefaultGeographicCRS.WGS84);
+        SimpleFeatureType schema = tb.buildFeatureType();
+
+        // reproducible set of small, irregular hexagons
+        ListFeatureCollection collection = new ListFeatureCollection(schema);
+        SimpleFeatureBuilder fb = new SimpleFeatureBuilder(schema);
+        GeometryFactory gf = JTSFactoryFinder.getGeometryFactory();
+        Random random = new Random(0);
+        for (int i = 0; i < polygons; i++) {
+            double cx = random.nextDouble() * bounds.getWidth();
+            double cy = random.nextDouble() * bounds.getHeight();
+            Coordinate[] coords = new Coordinate[7];
+            for (int j = 0; j < 6; j++) {
+                double radius = 1 + random.nextDouble() * 3;
+                double angle = -j * Math.PI / 3;
+                coords[j] = new Coordinate(cx + radius * Math.cos(angle), cy + radius
+                        * Math.sin(angle));
+            }
+            coords[6] = coords[0];
+            fb.add(gf.createPolygon(gf.createLinearRing(coords), null));
+            collection.add(fb.buildFeature("parcels." + i));
+        }
+
+        StyleBuilder sb = new StyleBuilder();
+        Style style;
+        if ("FILL".equals(symbolizer)) {
+            style = sb.createStyle(sb.createPolygonSymbolizer(null, sb.createFill(Color.ORANGE)));
+        } else {
+            style = sb.createStyle(sb.createLineSymbolizer(sb.createStroke(Color.BLACK, 1)));
+        }
+        mapContent = new MapContent();
+        mapContent.addLayer(new FeatureLayer(collection, style));
+
+        image = new BufferedImage(paintArea.width, paintArea.height,
+                BufferedImage.TYPE_4BYTE_ABGR);
+    }
+
+    @TearDown
+    public void tearDown() {
+        mapContent.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage render() {
+        StreamingRenderer renderer = new StreamingRenderer();
+        renderer.setMapContent(mapContent);
+        Map<Object, Object> hints = new HashMap<Object, Object>();
+        hints.put(StreamingRenderer.SHAPE_BATCHING_KEY, batching);
+        renderer.setRendererHints(hints);
+
+        Graphics2D graphics = image.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                    RenderingHints.VALUE_ANTIALIAS_ON);
+            renderer.paint(graphics, paintArea, bounds);
+        } finally {
+            graphics.dispose();
+        }
+        return image;
+    }
+}